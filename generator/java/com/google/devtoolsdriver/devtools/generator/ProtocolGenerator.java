@@ -0,0 +1,805 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.devtools.generator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Ascii;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+/**
+ * Generates typed bindings of devtools domains from the JSON description of the WebKit inspector
+ * protocol. For each domain, it writes a class of the domain's name to the devtools package, with a
+ * factory for each command, and a typed view of the result of each command and of each event. Each
+ * object type with properties becomes a class that both builds the object for a command and views
+ * it in a result or event; the views read a member of the JSON only when it is asked for.
+ *
+ * <p>Array parameters of integers, strings and object types are passed as lists. Array members of
+ * results and events are read as a {@link javax.json.JsonArray}, except arrays of object types,
+ * which are read as lists of the type.
+ *
+ * <p>Usage: {@code ProtocolGenerator <source root> <protocol file or directory>...}, where each
+ * protocol file holds a domain, or a {@code domains} array of them as in WebKit's Inspector.json.
+ */
+public final class ProtocolGenerator {
+  static final String PACKAGE = "com.google.devtoolsdriver.devtools";
+
+  private static final int MAX_LINE_LENGTH = 100;
+  private static final ImmutableSet<String> KEYWORDS =
+      ImmutableSet.of(
+          "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class",
+          "const", "continue", "default", "do", "double", "else", "enum", "extends", "final",
+          "finally", "float", "for", "goto", "if", "implements", "import", "instanceof", "int",
+          "interface", "long", "native", "new", "package", "private", "protected", "public",
+          "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+          "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false",
+          "null");
+  /** The names a getter of a view cannot take, because a superclass declares them. */
+  private static final ImmutableSet<String> VIEW_METHODS =
+      ImmutableSet.of(
+          "clone", "equals", "finalize", "getClass", "hashCode", "notify", "notifyAll",
+          "toString", "wait");
+  /** The names a getter of an object type cannot take, because DevtoolsObject declares them. */
+  private static final ImmutableSet<String> OBJECT_METHODS =
+      ImmutableSet.<String>builder()
+          .addAll(VIEW_METHODS)
+          .add("create", "properties", "with", "withNumberArray", "withObjectArray")
+          .add("withStringArray")
+          .build();
+  private static final String HEADER =
+      "// Copyright 2017 Google Inc.\n"
+          + "//\n"
+          + "// Licensed under the Apache License, Version 2.0 (the \"License\");\n"
+          + "// you may not use this file except in compliance with the License.\n"
+          + "// You may obtain a copy of the License at\n"
+          + "//\n"
+          + "//      http://www.apache.org/licenses/LICENSE-2.0\n"
+          + "//\n"
+          + "// Unless required by applicable law or agreed to in writing, software\n"
+          + "// distributed under the License is distributed on an \"AS IS\" BASIS,\n"
+          + "// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.\n"
+          + "// See the License for the specific language governing permissions and\n"
+          + "// limitations under the License.\n";
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: ProtocolGenerator <source root> <protocol file or directory>...");
+      System.exit(2);
+    }
+    List<JsonObject> domains = new ArrayList<>();
+    for (int i = 1; i < args.length; i++) {
+      domains.addAll(readProtocol(Paths.get(args[i])));
+    }
+    ProtocolGenerator generator = new ProtocolGenerator(domains);
+    Path directory = Paths.get(args[0]).resolve(PACKAGE.replace('.', '/'));
+    Files.createDirectories(directory);
+    for (JsonObject domain : domains) {
+      String name = domain.getString("domain");
+      Files.write(directory.resolve(name + ".java"), generator.generate(name).getBytes(UTF_8));
+    }
+  }
+
+  /** Reads the domains of a protocol file, or of the .json files of a directory. */
+  static ImmutableList<JsonObject> readProtocol(Path path) throws IOException {
+    ImmutableList.Builder<JsonObject> domains = ImmutableList.builder();
+    if (Files.isDirectory(path)) {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(path, "*.json")) {
+        // Sorted, so that the generated sources do not depend on the order of the listing.
+        for (Path file : ImmutableList.sortedCopyOf(files)) {
+          domains.addAll(readProtocol(file));
+        }
+      }
+    } else {
+      try (Reader reader = Files.newBufferedReader(path, UTF_8)) {
+        domains.addAll(readDomains(reader));
+      }
+    }
+    return domains.build();
+  }
+
+  /** Reads the domains of a protocol file. */
+  static ImmutableList<JsonObject> readDomains(Reader reader) {
+    try (JsonReader jsonReader = Json.createReader(reader)) {
+      JsonObject protocol = jsonReader.readObject();
+      if (protocol.containsKey("domains")) {
+        return protocol.getJsonArray("domains").getValuesAs(JsonObject.class).stream()
+            .collect(ImmutableList.toImmutableList());
+      }
+      return ImmutableList.of(protocol);
+    }
+  }
+
+  private final Map<String, JsonObject> domains = new LinkedHashMap<>();
+  /** The declared types, by their qualified Domain.Type name. */
+  private final Map<String, JsonObject> types = new LinkedHashMap<>();
+
+  ProtocolGenerator(List<JsonObject> domains) {
+    for (JsonObject domain : domains) {
+      String name = domain.getString("domain");
+      this.domains.put(name, domain);
+      for (JsonObject type : members(domain, "types")) {
+        types.put(name + "." + type.getString("id"), type);
+      }
+    }
+  }
+
+  /** Returns the source of the class of the domain. */
+  String generate(String domainName) {
+    JsonObject domain = domains.get(domainName);
+    checkArgument(domain != null, "Unknown domain %s", domainName);
+    Source source = new Source(domainName);
+    for (JsonObject type : members(domain, "types")) {
+      if (isObjectType(type)) {
+        source.objectType(type);
+      }
+    }
+    for (JsonObject command : members(domain, "commands")) {
+      source.command(command);
+    }
+    for (JsonObject event : members(domain, "events")) {
+      source.event(event);
+    }
+    return source.toString();
+  }
+
+  private static List<JsonObject> members(JsonObject object, String name) {
+    return object.containsKey(name)
+        ? object.getJsonArray(name).getValuesAs(JsonObject.class)
+        : ImmutableList.of();
+  }
+
+  /** Whether the type is an object with declared properties, which gets a class of its own. */
+  private static boolean isObjectType(JsonObject type) {
+    return type.getString("type", "").equals("object") && type.containsKey("properties");
+  }
+
+  /** The Java representation of a protocol type. */
+  private enum Kind {
+    INTEGER("int", "Integer", "getInt(\"%s\")"),
+    NUMBER("double", "Double", "getJsonNumber(\"%s\").doubleValue()"),
+    BOOLEAN("boolean", "Boolean", "getBoolean(\"%s\")"),
+    STRING("String", "String", "getString(\"%s\")"),
+    OBJECT("JsonObject", "JsonObject", "getJsonObject(\"%s\")"),
+    ARRAY("JsonArray", "JsonArray", "getJsonArray(\"%s\")"),
+    ANY("JsonValue", "JsonValue", "get(\"%s\")"),
+    /** An object type with properties, which is read and written through its class. */
+    TYPE(null, null, "getJsonObject(\"%s\")");
+
+    private final String type;
+    private final String boxedType;
+    private final String getter;
+
+    private Kind(String type, String boxedType, String getter) {
+      this.type = type;
+      this.boxedType = boxedType;
+      this.getter = getter;
+    }
+  }
+
+  /** A protocol type with its references resolved. */
+  private static final class Resolved {
+    private final Kind kind;
+    /** The qualified Domain.Type name of a TYPE. */
+    private final String typeName;
+    /** The type of the items of an ARRAY, if they are declared. */
+    private final Resolved items;
+
+    private Resolved(Kind kind, String typeName, Resolved items) {
+      this.kind = kind;
+      this.typeName = typeName;
+      this.items = items;
+    }
+
+    private boolean isArrayOf(Kind itemKind) {
+      return kind == Kind.ARRAY && items != null && items.kind == itemKind;
+    }
+  }
+
+  private Resolved resolve(JsonObject property, String domain) {
+    if (property.containsKey("$ref")) {
+      String ref = property.getString("$ref");
+      String qualified = ref.contains(".") ? ref : domain + "." + ref;
+      JsonObject type = types.get(qualified);
+      checkArgument(type != null, "Unknown type %s", qualified);
+      if (isObjectType(type)) {
+        return new Resolved(Kind.TYPE, qualified, null);
+      }
+      return resolve(type, qualified.substring(0, qualified.indexOf('.')));
+    }
+    String type = property.getString("type", "any");
+    switch (type) {
+      case "integer":
+        return new Resolved(Kind.INTEGER, null, null);
+      case "number":
+        return new Resolved(Kind.NUMBER, null, null);
+      case "boolean":
+        return new Resolved(Kind.BOOLEAN, null, null);
+      case "string":
+        return new Resolved(Kind.STRING, null, null);
+      case "object":
+        return new Resolved(Kind.OBJECT, null, null);
+      case "array":
+        Resolved items =
+            property.containsKey("items")
+                ? resolve(property.getJsonObject("items"), domain)
+                : null;
+        return new Resolved(Kind.ARRAY, null, items);
+      case "any":
+        return new Resolved(Kind.ANY, null, null);
+      default:
+        throw new IllegalArgumentException("Unknown type " + type);
+    }
+  }
+
+  /** The source of a generated class, built member by member. */
+  private final class Source {
+    private final String domain;
+    private final SortedSet<String> imports = new TreeSet<>();
+    private final SortedSet<String> staticImports = new TreeSet<>();
+    private final Set<String> classNames = new HashSet<>();
+    private final StringBuilder constants = new StringBuilder();
+    private final StringBuilder members = new StringBuilder();
+    private boolean usesViewsOf;
+
+    private Source(String domain) {
+      this.domain = domain;
+    }
+
+    /** Appends the class of an object type and its factory. */
+    private void objectType(JsonObject type) {
+      String className = className(type.getString("id"));
+      List<JsonObject> properties = members(type, "properties");
+      List<JsonObject> required = new ArrayList<>();
+      List<JsonObject> optional = new ArrayList<>();
+      for (JsonObject property : properties) {
+        (property.getBoolean("optional", false) ? optional : required).add(property);
+      }
+      imports.add("javax.json.JsonObject");
+      members.append('\n');
+      javadoc(
+          members,
+          "  ",
+          type.getString("description", "The " + domain + "." + className + " type."));
+      line(
+          members,
+          "  public static final class " + className,
+          " extends DevtoolsObject.WithOptionals<" + className + "> {");
+      members
+          .append("    private ")
+          .append(className)
+          .append("() {}\n\n")
+          .append("    private ")
+          .append(className)
+          .append("(JsonObject properties) {\n      super(properties);\n    }\n\n")
+          .append("    public static ")
+          .append(className)
+          .append(" of(JsonObject properties) {\n      return new ")
+          .append(className)
+          .append("(properties);\n    }\n");
+      for (JsonObject property : properties) {
+        getter(property, "properties()", OBJECT_METHODS);
+      }
+      for (JsonObject property : optional) {
+        wither(className, property, "    ");
+      }
+      members
+          .append("\n    @Override\n    ")
+          .append(className)
+          .append(" create(JsonObject properties) {\n      return new ")
+          .append(className)
+          .append("(properties);\n    }\n  }\n");
+      factory(
+          "Returns a new " + domain + "." + className + ".",
+          className,
+          factoryName(className),
+          "new " + className + "()",
+          required);
+    }
+
+    private void command(JsonObject command) {
+      String name = command.getString("name");
+      String method = domain + "." + name;
+      List<JsonObject> parameters = members(command, "parameters");
+      List<JsonObject> required = new ArrayList<>();
+      List<JsonObject> optional = new ArrayList<>();
+      for (JsonObject parameter : parameters) {
+        (parameter.getBoolean("optional", false) ? optional : required).add(parameter);
+      }
+
+      String factoryType = "DevtoolsCommand";
+      String start;
+      if (!optional.isEmpty()) {
+        factoryType = className(upperFirst(name) + "Command");
+        commandClass(factoryType, method, optional);
+        start = "new " + factoryType + "()";
+      } else if (required.isEmpty()) {
+        String constant = constantName(name);
+        line(
+            constants,
+            "  private static final DevtoolsCommand " + constant + " =",
+            " new DevtoolsCommand.NoOptionals(\"" + method + "\");");
+        start = constant;
+      } else {
+        start = "new DevtoolsCommand.NoOptionals(\"" + method + "\")";
+      }
+      factory(
+          command.getString("description", "Returns the " + method + " command."),
+          factoryType,
+          javaName(name, VIEW_METHODS),
+          start,
+          required);
+
+      if (command.containsKey("returns")) {
+        view(
+            className(upperFirst(name) + "Result"),
+            "The result of the " + method + " command.",
+            "DevtoolsResult",
+            "result.json()",
+            null,
+            members(command, "returns"));
+      }
+    }
+
+    /** Appends a static factory taking the required parameters of a command or object type. */
+    private void factory(
+        String description, String type, String name, String start, List<JsonObject> required) {
+      List<String> arguments = new ArrayList<>();
+      List<String> calls = new ArrayList<>();
+      for (JsonObject parameter : required) {
+        String parameterName = parameter.getString("name");
+        String javaName = javaName(parameterName, ImmutableSet.of());
+        Resolved resolved = resolve(parameter, domain);
+        arguments.add(parameterType(resolved) + " " + javaName);
+        calls.add("." + withMethod(resolved) + "(\"" + parameterName + "\", " + javaName + ")");
+      }
+      members.append('\n');
+      javadoc(members, "  ", description);
+      signature(members, "  public static " + type + " " + name, arguments);
+      chain(members, "    return " + start, calls);
+      members.append("  }\n");
+    }
+
+    private void commandClass(String className, String method, List<JsonObject> optional) {
+      imports.add("javax.json.JsonObject");
+      members
+          .append("\n  /** The ")
+          .append(method)
+          .append(" command, to which optional parameters can be added. */\n")
+          .append("  public static final class ")
+          .append(className)
+          .append('\n')
+          .append("      extends DevtoolsCommand.WithOptionals<")
+          .append(className)
+          .append("> {\n")
+          .append("    private ")
+          .append(className)
+          .append("() {\n")
+          .append("      super(\"")
+          .append(method)
+          .append("\");\n")
+          .append("    }\n\n")
+          .append("    private ")
+          .append(className)
+          .append("(JsonObject params) {\n")
+          .append("      super(\"")
+          .append(method)
+          .append("\", params);\n")
+          .append("    }\n");
+      for (JsonObject parameter : optional) {
+        wither(className, parameter, "    ");
+      }
+      members
+          .append("\n    @Override\n    ")
+          .append(className)
+          .append(" create(JsonObject params) {\n      return new ")
+          .append(className)
+          .append("(params);\n    }\n  }\n");
+    }
+
+    /**
+     * Appends the method that sets an optional member, overloaded for the JSON values a member of
+     * any type is commonly given.
+     */
+    private void wither(String className, JsonObject parameter, String indent) {
+      String parameterName = parameter.getString("name");
+      String javaName = javaName(parameterName, ImmutableSet.of());
+      Resolved resolved = resolve(parameter, domain);
+      List<String> types =
+          resolved.kind == Kind.ANY
+              ? ImmutableList.of(parameterType(resolved), "String", "long", "double", "boolean")
+              : ImmutableList.of(parameterType(resolved));
+      for (String type : types) {
+        members.append('\n');
+        if (parameter.containsKey("description")) {
+          javadoc(members, indent, parameter.getString("description"));
+        }
+        signature(
+            members,
+            indent + "public " + className + " with" + upperFirst(parameterName),
+            ImmutableList.of(type + " " + javaName));
+        line(
+            members,
+            indent + "  return " + withMethod(resolved) + "(\"" + parameterName + "\",",
+            " " + javaName + ");");
+        members.append(indent).append("}\n");
+      }
+    }
+
+    private void event(JsonObject event) {
+      String name = event.getString("name");
+      view(
+          className(upperFirst(name) + "Event"),
+          event.getString("description", "The " + domain + "." + name + " event."),
+          "DevtoolsEvent",
+          "event.params()",
+          domain + "." + name,
+          members(event, "parameters"));
+    }
+
+    /**
+     * Appends a class viewing a JSON object through getters of its members. An event view checks
+     * the method of the event it is made from.
+     */
+    private void view(
+        String className,
+        String description,
+        String messageType,
+        String json,
+        String eventMethod,
+        List<JsonObject> properties) {
+      imports.add("javax.json.JsonObject");
+      String message = messageType.equals("DevtoolsEvent") ? "event" : "result";
+      members.append('\n');
+      javadoc(members, "  ", description);
+      members.append("  public static final class ").append(className).append(" {\n");
+      if (eventMethod != null) {
+        members
+            .append("    public static final String METHOD = \"")
+            .append(eventMethod)
+            .append("\";\n\n");
+      }
+      members
+          .append("    private final JsonObject json;\n\n")
+          .append("    private ")
+          .append(className)
+          .append("(JsonObject json) {\n      this.json = json;\n    }\n\n");
+      signature(
+          members,
+          "    public static " + className + " of",
+          ImmutableList.of(messageType + " " + message));
+      if (eventMethod != null) {
+        staticImports.add("com.google.common.base.Preconditions.checkArgument");
+        members.append(
+            "      checkArgument(event.method().equals(METHOD), \"Not a %s event: %s\", METHOD,"
+                + " event);\n");
+      }
+      members
+          .append("      return new ")
+          .append(className)
+          .append('(')
+          .append(json)
+          .append(");\n    }\n");
+      if (eventMethod == null) {
+        members
+            .append("\n    public static ")
+            .append(className)
+            .append(" of(JsonObject json) {\n      return new ")
+            .append(className)
+            .append("(json);\n    }\n");
+      }
+      for (JsonObject property : properties) {
+        getter(property, "json", VIEW_METHODS);
+      }
+      members.append("  }\n");
+    }
+
+    /** Appends the getter of a member of the JSON object that {@code json} evaluates to. */
+    private void getter(JsonObject property, String json, Set<String> reserved) {
+      String name = property.getString("name");
+      Resolved resolved = resolve(property, domain);
+      String get = read(resolved, json + "." + String.format(resolved.kind.getter, name));
+      members.append('\n');
+      if (property.containsKey("description")) {
+        javadoc(members, "    ", property.getString("description"));
+      }
+      String type = getterType(resolved);
+      if (property.getBoolean("optional", false)) {
+        imports.add("java.util.Optional");
+        String boxed = type.equals(resolved.kind.type) ? resolved.kind.boxedType : type;
+        signature(
+            members,
+            "    public Optional<" + boxed + "> " + javaName(name, reserved),
+            ImmutableList.of());
+        line(
+            members,
+            "      return " + json + ".containsKey(\"" + name + "\")",
+            " ? Optional.of(" + get + ")",
+            " : Optional.empty();");
+      } else {
+        signature(
+            members, "    public " + type + " " + javaName(name, reserved), ImmutableList.of());
+        line(members, "      return " + get + ";");
+      }
+      members.append("    }\n");
+    }
+
+    /** Returns the expression that reads a member, given the expression of its JSON value. */
+    private String read(Resolved resolved, String value) {
+      if (resolved.kind == Kind.TYPE) {
+        return typeName(resolved.typeName) + ".of(" + value + ")";
+      }
+      if (resolved.isArrayOf(Kind.TYPE)) {
+        usesViewsOf = true;
+        return "viewsOf(" + value + ", " + typeName(resolved.items.typeName) + "::of)";
+      }
+      return value;
+    }
+
+    /** Returns the Java type a getter returns for the protocol type, importing it. */
+    private String getterType(Resolved resolved) {
+      if (resolved.kind == Kind.TYPE) {
+        return typeName(resolved.typeName);
+      }
+      if (resolved.isArrayOf(Kind.TYPE)) {
+        imports.add("java.util.List");
+        return "List<" + typeName(resolved.items.typeName) + ">";
+      }
+      return type(resolved.kind);
+    }
+
+    /** Returns the Java type a parameter of the protocol type is given as, importing it. */
+    private String parameterType(Resolved resolved) {
+      switch (resolved.kind) {
+        case INTEGER:
+          return "long";
+        case TYPE:
+          return typeName(resolved.typeName);
+        case ARRAY:
+          if (resolved.isArrayOf(Kind.INTEGER)) {
+            imports.add("java.util.List");
+            return "List<Long>";
+          }
+          if (resolved.isArrayOf(Kind.STRING)) {
+            imports.add("java.util.List");
+            return "List<String>";
+          }
+          if (resolved.isArrayOf(Kind.TYPE)) {
+            imports.add("java.util.List");
+            return "List<" + typeName(resolved.items.typeName) + ">";
+          }
+          return type(resolved.kind);
+        default:
+          return type(resolved.kind);
+      }
+    }
+
+    /** Returns the method of DevtoolsCommand or DevtoolsObject that sets a parameter. */
+    private String withMethod(Resolved resolved) {
+      if (resolved.isArrayOf(Kind.INTEGER)) {
+        return "withNumberArray";
+      }
+      if (resolved.isArrayOf(Kind.STRING)) {
+        return "withStringArray";
+      }
+      if (resolved.isArrayOf(Kind.TYPE)) {
+        return "withObjectArray";
+      }
+      return "with";
+    }
+
+    /** Returns the name by which this domain's class refers to a qualified object type. */
+    private String typeName(String qualified) {
+      int dot = qualified.indexOf('.');
+      return qualified.substring(0, dot).equals(domain)
+          ? qualified.substring(dot + 1)
+          : qualified;
+    }
+
+    /** Returns the Java type of the kind, importing it. */
+    private String type(Kind kind) {
+      if (kind.type.startsWith("Json")) {
+        imports.add("javax.json." + kind.type);
+      }
+      return kind.type;
+    }
+
+    /** Checks that a nested class name is used once in the domain's class. */
+    private String className(String name) {
+      checkArgument(classNames.add(name), "%s declares class %s twice", domain, name);
+      return name;
+    }
+
+    @Override
+    public String toString() {
+      if (usesViewsOf) {
+        staticImports.add("com.google.common.collect.ImmutableList.toImmutableList");
+        imports.add("java.util.List");
+        imports.add("java.util.function.Function");
+        imports.add("javax.json.JsonArray");
+      }
+      StringBuilder out = new StringBuilder(HEADER);
+      out.append("\n// Generated by ProtocolGenerator from the WebKit inspector protocol.")
+          .append(" Do not edit.\n");
+      out.append("\npackage ")
+          .append(PACKAGE)
+          .append(";\n\n");
+      for (String staticImport : staticImports) {
+        out.append("import static ").append(staticImport).append(";\n");
+      }
+      if (!staticImports.isEmpty()) {
+        out.append('\n');
+      }
+      for (String type : imports) {
+        out.append("import ").append(type).append(";\n");
+      }
+      if (!imports.isEmpty()) {
+        out.append('\n');
+      }
+      String description = domains.get(domain).getString("description", "");
+      javadoc(
+          out,
+          "",
+          ("The commands, results and events of the devtools " + domain + " domain. " + description)
+              .trim());
+      out.append("public final class ").append(domain).append(" {\n");
+      out.append(constants).append(members);
+      if (usesViewsOf) {
+        out.append(
+            "\n  private static <T> List<T> viewsOf(JsonArray array, Function<JsonObject, T> view)"
+                + " {\n    return array.getValuesAs(JsonObject.class).stream().map(view)"
+                + ".collect(toImmutableList());\n  }\n");
+      }
+      if (constants.length() > 0 || members.length() > 0) {
+        out.append('\n');
+      }
+      return out.append("  private ").append(domain).append("() {}\n}\n").toString();
+    }
+  }
+
+  /** Appends a method declaration up to its opening brace, wrapping its parameters if needed. */
+  private static void signature(StringBuilder out, String start, List<String> parameters) {
+    String oneLine = start + "(" + String.join(", ", parameters) + ") {";
+    if (oneLine.length() <= MAX_LINE_LENGTH) {
+      out.append(oneLine).append('\n');
+      return;
+    }
+    String indent = leadingSpaces(start) + "    ";
+    String wrapped = indent + String.join(", ", parameters) + ") {";
+    if (wrapped.length() <= MAX_LINE_LENGTH) {
+      out.append(start).append("(\n").append(wrapped).append('\n');
+      return;
+    }
+    out.append(start).append("(\n").append(indent);
+    out.append(String.join(",\n" + indent, parameters)).append(") {\n");
+  }
+
+  /** Appends a statement of method calls, one to a line if they do not fit on one. */
+  private static void chain(StringBuilder out, String start, List<String> calls) {
+    String oneLine = start + String.join("", calls) + ";";
+    if (oneLine.length() <= MAX_LINE_LENGTH) {
+      out.append(oneLine).append('\n');
+      return;
+    }
+    String indent = leadingSpaces(start) + "    ";
+    out.append(start);
+    for (String call : calls) {
+      out.append('\n').append(indent).append(call);
+    }
+    out.append(";\n");
+  }
+
+  /** Appends a statement, breaking it before each continuation if it does not fit on a line. */
+  private static void line(StringBuilder out, String start, String... continuations) {
+    String oneLine = start + String.join("", continuations);
+    if (oneLine.length() <= MAX_LINE_LENGTH) {
+      out.append(oneLine).append('\n');
+      return;
+    }
+    String indent = leadingSpaces(start) + "    ";
+    out.append(start);
+    for (String continuation : continuations) {
+      out.append('\n').append(indent).append(continuation.trim());
+    }
+    out.append('\n');
+  }
+
+  private static void javadoc(StringBuilder out, String indent, String text) {
+    String escaped = text.replace("*/", "*&#47;").replace("@", "{@literal @}").trim();
+    String oneLine = indent + "/** " + escaped + " */";
+    if (oneLine.length() <= MAX_LINE_LENGTH) {
+      out.append(oneLine).append('\n');
+      return;
+    }
+    out.append(indent).append("/**\n");
+    StringBuilder line = new StringBuilder(indent).append(" *");
+    for (String word : escaped.split("\\s+")) {
+      if (line.length() + 1 + word.length() > MAX_LINE_LENGTH
+          && line.length() > indent.length() + 2) {
+        out.append(line).append('\n');
+        line.setLength(0);
+        line.append(indent).append(" *");
+      }
+      line.append(' ').append(word);
+    }
+    out.append(line).append('\n').append(indent).append(" */\n");
+  }
+
+  private static String leadingSpaces(String line) {
+    int i = 0;
+    while (i < line.length() && line.charAt(i) == ' ') {
+      i++;
+    }
+    return line.substring(0, i);
+  }
+
+  /** Returns a Java name for a protocol name, which is a keyword or a reserved method name. */
+  private static String javaName(String name, Set<String> reserved) {
+    return KEYWORDS.contains(name) || reserved.contains(name) ? name + "_" : name;
+  }
+
+  private static String upperFirst(String name) {
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  /**
+   * Returns the lowerCamel name of the factory of an object type, lowering a leading acronym:
+   * RGBA becomes rgba, and DOMNode becomes domNode.
+   */
+  static String factoryName(String type) {
+    int upper = 0;
+    while (upper < type.length() && Character.isUpperCase(type.charAt(upper))) {
+      upper++;
+    }
+    // The last capital of an acronym that is followed by a word starts that word.
+    int end = upper > 1 && upper < type.length() ? upper - 1 : Math.max(upper, 1);
+    return Ascii.toLowerCase(type.substring(0, end)) + type.substring(end);
+  }
+
+  /** Returns the UPPER_UNDERSCORE form of a lowerCamel name, keeping acronyms together. */
+  static String constantName(String name) {
+    StringBuilder out = new StringBuilder();
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (i > 0 && Character.isUpperCase(c)) {
+        char previous = name.charAt(i - 1);
+        boolean nextIsLower = i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1));
+        if (!Character.isUpperCase(previous) || nextIsLower) {
+          out.append('_');
+        }
+      }
+      out.append(Character.toUpperCase(c));
+    }
+    return out.toString();
+  }
+}
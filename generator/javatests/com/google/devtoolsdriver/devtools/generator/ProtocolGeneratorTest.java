@@ -0,0 +1,120 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.devtools.generator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ProtocolGeneratorTest {
+  private static final String PROTOCOL =
+      "{\"domains\": ["
+          + "{\"domain\": \"Base\", \"types\": [{\"id\": \"Id\", \"type\": \"integer\"},"
+          + "  {\"id\": \"RGBColor\", \"type\": \"object\", \"properties\": ["
+          + "    {\"name\": \"r\", \"type\": \"integer\"},"
+          + "    {\"name\": \"hashCode\", \"type\": \"string\", \"optional\": true}]}]},"
+          + "{\"domain\": \"Test\", \"commands\": ["
+          + "  {\"name\": \"run\", \"description\": \"Runs it.\", \"parameters\": ["
+          + "    {\"name\": \"id\", \"$ref\": \"Base.Id\"},"
+          + "    {\"name\": \"default\", \"type\": \"boolean\", \"optional\": true}],"
+          + "   \"returns\": [{\"name\": \"count\", \"type\": \"number\", \"optional\": true}]},"
+          + "  {\"name\": \"stopXHR\"}],"
+          + " \"events\": [{\"name\": \"done\", \"parameters\": ["
+          + "    {\"name\": \"items\", \"type\": \"array\", \"items\": {\"type\": \"string\"}},"
+          + "    {\"name\": \"color\", \"$ref\": \"Base.RGBColor\"},"
+          + "    {\"name\": \"colors\", \"type\": \"array\", \"optional\": true,"
+          + "     \"items\": {\"$ref\": \"Base.RGBColor\"}}]}]}"
+          + "]}";
+
+  @Test
+  public void testGeneratesCommandsResultsAndEvents() {
+    ProtocolGenerator generator =
+        new ProtocolGenerator(ProtocolGenerator.readDomains(new StringReader(PROTOCOL)));
+
+    String source = generator.generate("Test");
+
+    assertThat(source).contains("public final class Test {");
+    assertThat(source)
+        .contains(
+            "private static final DevtoolsCommand STOP_XHR ="
+                + " new DevtoolsCommand.NoOptionals(\"Test.stopXHR\");");
+    assertThat(source).contains("public static RunCommand run(long id) {");
+    assertThat(source).contains("public RunCommand withDefault(boolean default_) {");
+    assertThat(source).contains("public Optional<Double> count() {");
+    assertThat(source).contains("public static final String METHOD = \"Test.done\";");
+    assertThat(source).contains("public JsonArray items() {");
+    assertThat(source)
+        .contains("import java.util.Optional;\nimport java.util.function.Function;\n");
+  }
+
+  @Test
+  public void testGeneratesObjectTypes() {
+    ProtocolGenerator generator =
+        new ProtocolGenerator(ProtocolGenerator.readDomains(new StringReader(PROTOCOL)));
+
+    String base = generator.generate("Base");
+    String test = generator.generate("Test");
+
+    assertThat(base)
+        .contains(
+            "public static final class RGBColor extends DevtoolsObject.WithOptionals<RGBColor> {");
+    assertThat(base).contains("public static RGBColor rgbColor(long r) {");
+    assertThat(base).contains("public int r() {");
+    assertThat(base).contains("public Optional<String> hashCode_() {");
+    assertThat(base).contains("public RGBColor withHashCode(String hashCode) {");
+    assertThat(test).contains("public Base.RGBColor color() {");
+    assertThat(test).contains("return Base.RGBColor.of(json.getJsonObject(\"color\"));");
+    assertThat(test).contains("public Optional<List<Base.RGBColor>> colors() {");
+    assertThat(test)
+        .contains("Optional.of(viewsOf(json.getJsonArray(\"colors\"), Base.RGBColor::of))");
+  }
+
+  @Test
+  public void testRejectsClassesDeclaredTwice() {
+    String protocol =
+        "{\"domain\": \"Test\", \"types\": [{\"id\": \"RunCommand\", \"type\": \"object\","
+            + " \"properties\": []}], \"commands\": [{\"name\": \"run\", \"parameters\": ["
+            + "  {\"name\": \"fast\", \"type\": \"boolean\", \"optional\": true}]}]}";
+    ProtocolGenerator generator =
+        new ProtocolGenerator(ProtocolGenerator.readDomains(new StringReader(protocol)));
+
+    try {
+      generator.generate("Test");
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // The RunCommand type and the class of the run command clash.
+    }
+  }
+
+  @Test
+  public void testFactoryNameLowersLeadingAcronyms() {
+    assertThat(ProtocolGenerator.factoryName("CallArgument")).isEqualTo("callArgument");
+    assertThat(ProtocolGenerator.factoryName("RGBA")).isEqualTo("rgba");
+    assertThat(ProtocolGenerator.factoryName("DOMNode")).isEqualTo("domNode");
+  }
+
+  @Test
+  public void testConstantNameKeepsAcronymsTogether() {
+    assertThat(ProtocolGenerator.constantName("enable")).isEqualTo("ENABLE");
+    assertThat(ProtocolGenerator.constantName("getOuterHTML")).isEqualTo("GET_OUTER_HTML");
+    assertThat(ProtocolGenerator.constantName("setExtraHTTPHeaders"))
+        .isEqualTo("SET_EXTRA_HTTP_HEADERS");
+  }
+}
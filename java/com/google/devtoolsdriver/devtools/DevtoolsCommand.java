@@ -15,16 +15,17 @@
 package com.google.devtoolsdriver.devtools;
 
 import com.google.common.base.MoreObjects;
+import com.google.devtoolsdriver.util.JavaxJson;
 import java.util.List;
 import java.util.Objects;
-import javax.json.Json;
 import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
 
 /** A command message in the Devtools protocol. */
 public abstract class DevtoolsCommand extends ObjectWrapper<DevtoolsCommand>
     implements DevtoolsMessage {
   private final String method;
+  private volatile MessageTemplate template;
 
   private DevtoolsCommand(String method, JsonObject object) {
     super(object);
@@ -68,21 +69,22 @@ public abstract class DevtoolsCommand extends ObjectWrapper<DevtoolsCommand>
 
   /**
    * Convert this JSON command to a JsonObject message that can be sent to a remote debugger. The
-   * returned messages will have the specified id in its 'id' field.
+   * returned messages will have the specified id in its 'id' field. The message is encoded once per
+   * command, so a command that is sent again only has its id spliced in.
    */
   final JsonObject toJson(int id) {
-    JsonObjectBuilder builder = Json.createObjectBuilder().add("method", method());
-    if (!object.isEmpty()) {
-      builder.add("params", object);
+    MessageTemplate result = template;
+    if (result == null) {
+      result = new MessageTemplate(method, object);
+      template = result;
     }
-    builder.add("id", id);
-    return builder.build();
+    return result.message(id);
   }
 
   /** A devtools command with no optional parameters */
   static final class NoOptionals extends DevtoolsCommand {
     NoOptionals(String method) {
-      super(method, Json.createObjectBuilder().build());
+      super(method, JavaxJson.EMPTY_OBJECT);
     }
 
     NoOptionals(String method, JsonObject params) {
@@ -98,7 +100,7 @@ public abstract class DevtoolsCommand extends ObjectWrapper<DevtoolsCommand>
   /** A devtools command with publicly exposed functions for adding optional parameters */
   abstract static class WithOptionals<C extends DevtoolsCommand> extends DevtoolsCommand {
     WithOptionals(String method) {
-      super(method, Json.createObjectBuilder().build());
+      super(method, JavaxJson.EMPTY_OBJECT);
     }
 
     WithOptionals(String method, JsonObject params) {
@@ -140,6 +142,12 @@ public abstract class DevtoolsCommand extends ObjectWrapper<DevtoolsCommand>
       return (C) super.with(name, value);
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    final C with(String name, JsonValue value) {
+      return (C) super.with(name, value);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     final C withNumberArray(String name, List<Long> numberList) {
@@ -14,24 +14,41 @@
 
 package com.google.devtoolsdriver.devtools;
 
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.util.concurrent.ForwardingFuture.SimpleForwardingFuture;
+import com.google.common.base.Utf8;
+import com.google.common.util.concurrent.ForwardingListenableFuture.SimpleForwardingListenableFuture;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.devtoolsdriver.util.Metrics;
+import com.google.devtoolsdriver.util.TraceSpan;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import javax.json.JsonObject;
 
 /** A template for communication with a developer tools remote debugger. */
 public abstract class DevtoolsDebugger {
+  /**
+   * Told of the commands that debuggers send from a thread while it runs a task on behalf of the
+   * listener, such as a WebDriver request.
+   */
+  public interface CommandListener {
+    void commandSent(DevtoolsCommand command);
+  }
+
   private static final IdGenerator ID_GENERATOR =
       new IdGenerator() {
         private final AtomicInteger counter = new AtomicInteger();
@@ -42,6 +59,26 @@ public abstract class DevtoolsDebugger {
         }
       };
 
+  /** Fails the futures of commands that outlive their timeout. */
+  private static final ScheduledExecutorService TIMEOUT_EXECUTOR =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("devtools-timeout-%d").setDaemon(true).build());
+
+  private static final ThreadLocal<CommandListener> commandListener = new ThreadLocal<>();
+
+  private static final LongAdder commandsSent =
+      Metrics.global()
+          .counter("devtools_commands_sent_total", "Devtools commands sent to the debuggers.");
+  private static final AtomicInteger pendingCommands = new AtomicInteger();
+
+  static {
+    Metrics.global()
+        .gauge(
+            "devtools_commands_pending",
+            "Devtools commands sent and awaiting a response.",
+            pendingCommands::get);
+  }
+
   private final IdGenerator idGenerator;
   private final Map<Integer, CommandFuture> idToFuture = new ConcurrentHashMap<>();
   private final Set<Consumer<DevtoolsEvent>> eventListeners = new CopyOnWriteArraySet<>();
@@ -69,23 +106,91 @@ public abstract class DevtoolsDebugger {
           Futures.getChecked(future, IOException.class, timeout.toNanos(), NANOSECONDS);
       return convertResponseToResult(command, response);
     } catch (IOException e) {
-      idToFuture.remove(future.id());
+      abandonPending(future.id());
       throw e;
     }
   }
 
+  /**
+   * Sends a command to the debugger and returns a future of the result, without blocking the
+   * calling thread while the debugger processes it. The future fails with a {@link
+   * DevtoolsErrorException} if the command caused an error in the debugger, an {@link IOException}
+   * if it could not be sent, or a {@link java.util.concurrent.TimeoutException} if no response
+   * arrived within the timeout.
+   */
+  public final ListenableFuture<DevtoolsResult> sendCommandAsync(
+      DevtoolsCommand command, Duration timeout) {
+    CommandFuture future;
+    try {
+      future = sendCommandAsync(command);
+    } catch (IOException e) {
+      return Futures.immediateFailedFuture(e);
+    }
+    ListenableFuture<JsonObject> response =
+        Futures.withTimeout(future, timeout.toNanos(), NANOSECONDS, TIMEOUT_EXECUTOR);
+    response.addListener(() -> abandonPending(future.id()), directExecutor());
+    return Futures.transformAsync(
+        response,
+        json -> Futures.immediateFuture(convertResponseToResult(command, json)),
+        directExecutor());
+  }
+
   @VisibleForTesting
   final CommandFuture sendCommandAsync(DevtoolsCommand command) throws IOException {
     int commandId = idGenerator.nextId();
-    CommandFuture future = new CommandFuture(commandId);
+    JsonObject message = command.toJson(commandId);
+    // The span lasts until the response arrives; messages sent on its behalf are its children.
+    TraceSpan span = TraceSpan.current().startChild("devtools " + command.method());
+    if (span.isRecording()) {
+      span.put("id", commandId).put("requestBytes", Utf8.encodedLength(message.toString()));
+    }
+    CommandFuture future = new CommandFuture(commandId, span);
     idToFuture.put(commandId, future);
-    try {
-      sendMessage(command.toJson(commandId));
-      return future;
+    pendingCommands.incrementAndGet();
+    try (TraceSpan.Scope scope = span.makeCurrent()) {
+      sendMessage(message);
     } catch (IOException e) {
-      idToFuture.remove(commandId);
+      abandonPending(commandId);
       throw e;
     }
+    commandsSent.increment();
+    CommandListener listener = commandListener.get();
+    if (listener != null) {
+      listener.commandSent(command);
+    }
+    return future;
+  }
+
+  private CommandFuture removePending(int commandId) {
+    CommandFuture future = idToFuture.remove(commandId);
+    if (future != null) {
+      pendingCommands.decrementAndGet();
+    }
+    return future;
+  }
+
+  /** Stops waiting for the response to a command, if it has not arrived. */
+  private void abandonPending(int commandId) {
+    CommandFuture future = removePending(commandId);
+    if (future != null) {
+      future.span.put("responseReceived", false).end();
+    }
+  }
+
+  /**
+   * Returns a task that runs the given one with the listener told of the commands that debuggers
+   * send from the running thread.
+   */
+  public static Runnable withCommandListener(CommandListener listener, Runnable task) {
+    return () -> {
+      CommandListener previous = commandListener.get();
+      commandListener.set(listener);
+      try {
+        task.run();
+      } finally {
+        commandListener.set(previous);
+      }
+    };
   }
 
   @VisibleForTesting
@@ -102,6 +207,11 @@ public abstract class DevtoolsDebugger {
     eventListeners.add(listener);
   }
 
+  /** Removes all the listeners of devtools events. */
+  public final void removeAllEventListeners() {
+    eventListeners.clear();
+  }
+
   /**
    * Sends a JSON message to the socket.
    *
@@ -114,8 +224,16 @@ public abstract class DevtoolsDebugger {
     // If there's no id, it's an event message.
     if (message.containsKey("id")) {
       int commandId = message.getInt("id");
-      CommandFuture future = idToFuture.remove(commandId);
+      CommandFuture future = removePending(commandId);
       if (future != null) {
+        if (future.span.isRecording()) {
+          future
+              .span
+              .put("responseReceived", true)
+              .put("responseBytes", Utf8.encodedLength(message.toString()))
+              .put("error", message.containsKey("error"))
+              .end();
+        }
         future.set(message);
       }
       // Or, it's a result object if it has a method.
@@ -137,12 +255,14 @@ public abstract class DevtoolsDebugger {
     return super.hashCode();
   }
 
-  static final class CommandFuture extends SimpleForwardingFuture<JsonObject> {
+  static final class CommandFuture extends SimpleForwardingListenableFuture<JsonObject> {
     private final int id;
+    private final TraceSpan span;
 
-    private CommandFuture(int id) {
+    private CommandFuture(int id, TraceSpan span) {
       super(SettableFuture.create());
       this.id = id;
+      this.span = span;
     }
 
     private int id() {
@@ -15,10 +15,11 @@
 package com.google.devtoolsdriver.devtools;
 
 import com.google.common.base.MoreObjects;
+import com.google.devtoolsdriver.util.JavaxJson;
 import java.util.List;
 import java.util.Objects;
-import javax.json.Json;
 import javax.json.JsonObject;
+import javax.json.JsonValue;
 
 /** A Devtool-defined object (JSON object with defined schema) to be used in Devtools commands. */
 public abstract class DevtoolsObject extends ObjectWrapper<DevtoolsObject> {
@@ -58,7 +59,7 @@ public abstract class DevtoolsObject extends ObjectWrapper<DevtoolsObject> {
   /** A Devtools type with no optional field */
   static final class NoOptionals extends DevtoolsObject {
     NoOptionals() {
-      super(Json.createObjectBuilder().build());
+      super(JavaxJson.EMPTY_OBJECT);
     }
 
     NoOptionals(JsonObject properties) {
@@ -74,7 +75,7 @@ public abstract class DevtoolsObject extends ObjectWrapper<DevtoolsObject> {
   /** Abstract type for a Devtools type with optional fields */
   abstract static class WithOptionals<T extends DevtoolsObject> extends DevtoolsObject {
     WithOptionals() {
-      super(Json.createObjectBuilder().build());
+      super(JavaxJson.EMPTY_OBJECT);
     }
 
     WithOptionals(JsonObject properties) {
@@ -116,6 +117,12 @@ public abstract class DevtoolsObject extends ObjectWrapper<DevtoolsObject> {
       return (T) super.with(name, value);
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    final T with(String name, JsonValue value) {
+      return (T) super.with(name, value);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     final T withNumberArray(String name, List<Long> numberList) {
@@ -0,0 +1,131 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.devtools;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+/** A JSON object whose members are built, once, when it is first read. */
+abstract class LazyJsonObject extends AbstractMap<String, JsonValue> implements JsonObject {
+  private volatile JsonObject built;
+
+  /** Builds the members of the object. */
+  abstract JsonObject build();
+
+  /** Returns whether the members have been built. */
+  final boolean isBuilt() {
+    return built != null;
+  }
+
+  final JsonObject built() {
+    JsonObject result = built;
+    if (result == null) {
+      result = build();
+      built = result;
+    }
+    return result;
+  }
+
+  @Override
+  public Set<Map.Entry<String, JsonValue>> entrySet() {
+    return built().entrySet();
+  }
+
+  @Override
+  public int size() {
+    return built().size();
+  }
+
+  @Override
+  public JsonValue get(Object key) {
+    return built().get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return built().containsKey(key);
+  }
+
+  @Override
+  public JsonArray getJsonArray(String name) {
+    return built().getJsonArray(name);
+  }
+
+  @Override
+  public JsonObject getJsonObject(String name) {
+    return built().getJsonObject(name);
+  }
+
+  @Override
+  public JsonNumber getJsonNumber(String name) {
+    return built().getJsonNumber(name);
+  }
+
+  @Override
+  public JsonString getJsonString(String name) {
+    return built().getJsonString(name);
+  }
+
+  @Override
+  public String getString(String name) {
+    return built().getString(name);
+  }
+
+  @Override
+  public String getString(String name, String defaultValue) {
+    return built().getString(name, defaultValue);
+  }
+
+  @Override
+  public int getInt(String name) {
+    return built().getInt(name);
+  }
+
+  @Override
+  public int getInt(String name, int defaultValue) {
+    return built().getInt(name, defaultValue);
+  }
+
+  @Override
+  public boolean getBoolean(String name) {
+    return built().getBoolean(name);
+  }
+
+  @Override
+  public boolean getBoolean(String name, boolean defaultValue) {
+    return built().getBoolean(name, defaultValue);
+  }
+
+  @Override
+  public boolean isNull(String name) {
+    return built().isNull(name);
+  }
+
+  @Override
+  public final ValueType getValueType() {
+    return ValueType.OBJECT;
+  }
+
+  @Override
+  public String toString() {
+    return built().toString();
+  }
+}
@@ -0,0 +1,220 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.devtools;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.devtoolsdriver.util.JavaxJson;
+import java.util.Map;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+/**
+ * The encoded form of the messages of a command, computed once, into which the id of each message
+ * is spliced. Sending a command that is kept, such as a constant, then costs a concatenation rather
+ * than building and encoding a new message.
+ *
+ * <p>Long strings, which are usually the atoms in script commands and come back in new commands,
+ * have their encoded form cached across templates.
+ */
+final class MessageTemplate {
+  private static final int MIN_CACHED_STRING_LENGTH = 512;
+  private static final Cache<String, String> ENCODED_STRINGS =
+      CacheBuilder.newBuilder()
+          .maximumWeight(4 << 20)
+          .<String, String>weigher((string, encoded) -> string.length() + encoded.length())
+          .build();
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final String method;
+  private final JsonObject params;
+  /** The encoded message up to its id: {"method":...,"params":{...},"id": */
+  private final String prefix;
+
+  MessageTemplate(String method, JsonObject params) {
+    this.method = method;
+    this.params = params;
+    // Sized up front, since growing the builder of a message with an atom costs more than the atom.
+    StringBuilder out = new StringBuilder(64 + method.length() + estimatedLength(params));
+    out.append("{\"method\":");
+    appendString(out, method);
+    if (!params.isEmpty()) {
+      out.append(",\"params\":");
+      appendObject(out, params);
+    }
+    prefix = out.append(",\"id\":").toString();
+  }
+
+  /** Returns the message with the given id. */
+  JsonObject message(int id) {
+    return new Message(id);
+  }
+
+  private final class Message extends LazyJsonObject {
+    private final int id;
+    private String encoded;
+
+    private Message(int id) {
+      this.id = id;
+    }
+
+    @Override
+    JsonObject build() {
+      JsonObjectBuilder builder = JavaxJson.createObjectBuilder().add("method", method);
+      if (!params.isEmpty()) {
+        builder.add("params", params);
+      }
+      return builder.add("id", id).build();
+    }
+
+    @Override
+    public String toString() {
+      // A race only encodes the message twice.
+      String result = encoded;
+      if (result == null) {
+        // Unlike appending to a builder, concat copies the prefix once.
+        result = prefix.concat(id + "}");
+        encoded = result;
+      }
+      return result;
+    }
+  }
+
+  private static int estimatedLength(JsonValue value) {
+    switch (value.getValueType()) {
+      case OBJECT:
+        int objectLength = 2;
+        for (Map.Entry<String, JsonValue> e : ((JsonObject) value).entrySet()) {
+          objectLength += e.getKey().length() + 4 + estimatedLength(e.getValue());
+        }
+        return objectLength;
+      case ARRAY:
+        int arrayLength = 2;
+        for (JsonValue element : (JsonArray) value) {
+          arrayLength += estimatedLength(element) + 1;
+        }
+        return arrayLength;
+      case STRING:
+        String string = ((JsonString) value).getString();
+        String encoded =
+            string.length() < MIN_CACHED_STRING_LENGTH
+                ? null
+                : ENCODED_STRINGS.getIfPresent(string);
+        return encoded != null ? encoded.length() : string.length() + string.length() / 8 + 2;
+      default:
+        return 8;
+    }
+  }
+
+  private static void appendValue(StringBuilder out, JsonValue value) {
+    switch (value.getValueType()) {
+      case OBJECT:
+        appendObject(out, (JsonObject) value);
+        break;
+      case ARRAY:
+        appendArray(out, (JsonArray) value);
+        break;
+      case STRING:
+        appendString(out, ((JsonString) value).getString());
+        break;
+      default:
+        // Numbers and literals encode as themselves.
+        out.append(value.toString());
+    }
+  }
+
+  private static void appendObject(StringBuilder out, JsonObject object) {
+    out.append('{');
+    boolean first = true;
+    for (Map.Entry<String, JsonValue> e : object.entrySet()) {
+      if (!first) {
+        out.append(',');
+      }
+      first = false;
+      appendString(out, e.getKey());
+      out.append(':');
+      appendValue(out, e.getValue());
+    }
+    out.append('}');
+  }
+
+  private static void appendArray(StringBuilder out, JsonArray array) {
+    out.append('[');
+    for (int i = 0; i < array.size(); i++) {
+      if (i > 0) {
+        out.append(',');
+      }
+      appendValue(out, array.get(i));
+    }
+    out.append(']');
+  }
+
+  private static void appendString(StringBuilder out, String string) {
+    if (string.length() < MIN_CACHED_STRING_LENGTH) {
+      encodeString(out, string);
+      return;
+    }
+    String encoded = ENCODED_STRINGS.getIfPresent(string);
+    if (encoded == null) {
+      StringBuilder encodedOut = new StringBuilder(string.length() + 16);
+      encodeString(encodedOut, string);
+      encoded = encodedOut.toString();
+      ENCODED_STRINGS.put(string, encoded);
+    }
+    out.append(encoded);
+  }
+
+  private static void encodeString(StringBuilder out, String string) {
+    out.append('"');
+    int start = 0;
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if (c >= 0x20 && c != '"' && c != '\\') {
+        continue;
+      }
+      out.append(string, start, i);
+      start = i + 1;
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\b':
+          out.append("\\b");
+          break;
+        case '\f':
+          out.append("\\f");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          out.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+      }
+    }
+    out.append(string, start, string.length()).append('"');
+  }
+}
@@ -16,10 +16,9 @@ package com.google.devtoolsdriver.devtools;
 
 import com.google.devtoolsdriver.util.JavaxJson;
 import java.util.List;
-import javax.json.Json;
 import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
 
 /** A fluent base for all Devtools objects */
 abstract class ObjectWrapper<T> {
@@ -30,57 +29,56 @@ abstract class ObjectWrapper<T> {
   }
 
   T with(String name, boolean value) {
-    return create(toObjectBuilder().add(name, value));
+    return create(PersistentJsonObject.with(object, name, value));
   }
 
   T with(String name, long value) {
-    return create(toObjectBuilder().add(name, value));
+    return create(PersistentJsonObject.with(object, name, value));
   }
 
   T with(String name, double value) {
-    return create(toObjectBuilder().add(name, value));
+    return create(PersistentJsonObject.with(object, name, value));
   }
 
   T with(String name, String value) {
-    return create(toObjectBuilder().add(name, value));
+    return create(PersistentJsonObject.with(object, name, value));
   }
 
   T with(String name, DevtoolsObject value) {
-    return create(toObjectBuilder().add(name, value.object));
+    return create(PersistentJsonObject.with(object, name, value.object));
+  }
+
+  T with(String name, JsonValue value) {
+    return create(PersistentJsonObject.with(object, name, value));
   }
 
   T withNumberArray(String name, List<Long> numList) {
-    JsonArrayBuilder arrayBuilder = Json.createArrayBuilder();
+    JsonArrayBuilder arrayBuilder = JavaxJson.createArrayBuilder();
     for (long l : numList) {
       arrayBuilder.add(l);
     }
-    return create(toObjectBuilder().add(name, arrayBuilder));
+    return create(PersistentJsonObject.with(object, name, arrayBuilder.build()));
   }
 
   T withStringArray(String name, List<String> stringList) {
-    JsonArrayBuilder arrayBuilder = Json.createArrayBuilder();
+    JsonArrayBuilder arrayBuilder = JavaxJson.createArrayBuilder();
     for (String s : stringList) {
       arrayBuilder.add(s);
     }
-    return create(toObjectBuilder().add(name, arrayBuilder));
+    return create(PersistentJsonObject.with(object, name, arrayBuilder.build()));
   }
 
   T withObjectArray(String name, List<? extends DevtoolsObject> objectList) {
-    JsonArrayBuilder arrayBuilder = Json.createArrayBuilder();
+    JsonArrayBuilder arrayBuilder = JavaxJson.createArrayBuilder();
     for (DevtoolsObject t : objectList) {
       arrayBuilder.add(t.object);
     }
-    return create(toObjectBuilder().add(name, arrayBuilder));
+    return create(PersistentJsonObject.with(object, name, arrayBuilder.build()));
   }
 
-  /** Create a new instance of the DevtoolsObject subclass, using parameters */
+  /**
+   * Create a new instance of the DevtoolsObject subclass, using parameters. The parameters share
+   * those of this instance, so creating an instance with one more costs no copying.
+   */
   abstract T create(JsonObject params);
-
-  private T create(JsonObjectBuilder builder) {
-    return create(builder.build());
-  }
-
-  private JsonObjectBuilder toObjectBuilder() {
-    return JavaxJson.toBuilder(object);
-  }
 }
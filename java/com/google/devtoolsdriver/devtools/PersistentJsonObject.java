@@ -0,0 +1,96 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.devtools;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.devtoolsdriver.util.JavaxJson;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+
+/**
+ * A JSON object made by adding a member to another, which it shares rather than copies. The
+ * members are only built into a map, once, when the object is first read, so that building an
+ * object by adding k members one at a time costs O(k) rather than O(k^2).
+ */
+final class PersistentJsonObject extends LazyJsonObject {
+  private final JsonObject previous;
+  private final String name;
+  /** A Boolean, Long, Double, String or JsonValue. */
+  private final Object value;
+
+  private PersistentJsonObject(JsonObject previous, String name, Object value) {
+    this.previous = checkNotNull(previous);
+    this.name = checkNotNull(name);
+    this.value = checkNotNull(value);
+  }
+
+  static JsonObject with(JsonObject object, String name, boolean value) {
+    return new PersistentJsonObject(object, name, value);
+  }
+
+  static JsonObject with(JsonObject object, String name, long value) {
+    return new PersistentJsonObject(object, name, value);
+  }
+
+  static JsonObject with(JsonObject object, String name, double value) {
+    return new PersistentJsonObject(object, name, value);
+  }
+
+  static JsonObject with(JsonObject object, String name, String value) {
+    return new PersistentJsonObject(object, name, value);
+  }
+
+  static JsonObject with(JsonObject object, String name, JsonValue value) {
+    return new PersistentJsonObject(object, name, value);
+  }
+
+  @Override
+  JsonObject build() {
+    // Walk back to the nearest object that has its members, then add the later ones in order.
+    List<PersistentJsonObject> chain = new ArrayList<>();
+    JsonObject base = this;
+    while (base instanceof PersistentJsonObject && !((PersistentJsonObject) base).isBuilt()) {
+      chain.add((PersistentJsonObject) base);
+      base = ((PersistentJsonObject) base).previous;
+    }
+    JsonObjectBuilder builder = JavaxJson.createObjectBuilder();
+    for (Map.Entry<String, JsonValue> e : base.entrySet()) {
+      builder.add(e.getKey(), e.getValue());
+    }
+    for (int i = chain.size() - 1; i >= 0; i--) {
+      chain.get(i).addTo(builder);
+    }
+    return builder.build();
+  }
+
+  private void addTo(JsonObjectBuilder builder) {
+    if (value instanceof Boolean) {
+      builder.add(name, (Boolean) value);
+    } else if (value instanceof Long) {
+      builder.add(name, (Long) value);
+    } else if (value instanceof Double) {
+      builder.add(name, (Double) value);
+    } else if (value instanceof String) {
+      builder.add(name, (String) value);
+    } else {
+      builder.add(name, (JsonValue) value);
+    }
+  }
+}
@@ -0,0 +1,352 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.safari;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.devtoolsdriver.webdriver.BrowserException;
+import com.google.iosdevicecontrol.IosDevice;
+import com.google.iosdevicecontrol.IosDeviceHost;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Leases the connected devices of a host to browser sessions, one session per device. Requests for
+ * a lease wait in a FIFO queue, up to a timeout, until a matching device is free.
+ *
+ * <p>A browser kept running between sessions is parked in the pool with its device, which is then
+ * free again: the next request for the device, or for any device, is handed the idle browser ahead
+ * of devices without one.
+ */
+final class DevicePool {
+  /** Lists the udids of the connected devices. */
+  interface DeviceLister {
+    ImmutableSet<String> connectedUdids() throws IOException;
+  }
+
+  /** The lease of a device, which returns it to the pool when closed. */
+  final class Lease implements Closeable {
+    private final String udid;
+    private final Optional<SafariBrowser> idleBrowser;
+    @GuardedBy("DevicePool.this")
+    private boolean released;
+
+    private Lease(String udid, Optional<SafariBrowser> idleBrowser) {
+      this.udid = udid;
+      this.idleBrowser = idleBrowser;
+    }
+
+    String udid() {
+      return udid;
+    }
+
+    /** Returns the browser that was left running on the device, if any. */
+    Optional<SafariBrowser> idleBrowser() {
+      return idleBrowser;
+    }
+
+    /**
+     * Returns the device to the pool with a browser left running on it, for the next lease of the
+     * device to take over.
+     */
+    void park(SafariBrowser browser) {
+      checkNotNull(browser);
+      synchronized (DevicePool.this) {
+        checkState(!released, "the lease of %s is released", udid);
+        released = true;
+        leased.remove(udid);
+        idle.put(udid, browser);
+        dispatch();
+      }
+    }
+
+    @Override
+    public void close() {
+      synchronized (DevicePool.this) {
+        if (!released) {
+          released = true;
+          leased.remove(udid);
+          dispatch();
+        }
+      }
+    }
+  }
+
+  /** A queued lease request, for a specific device or any free device. */
+  private static final class Waiter {
+    private final Optional<String> udid;
+    private String assigned;
+    private SafariBrowser idleBrowser;
+
+    private Waiter(Optional<String> udid) {
+      this.udid = udid;
+    }
+  }
+
+  // Devices plugged in while requests wait are only noticed by polling the host.
+  private static final long POLL_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  static DevicePool forHost(IosDeviceHost host, int maxLeases, Duration waitTimeout) {
+    checkNotNull(host);
+    return new DevicePool(
+        () -> {
+          ImmutableSet.Builder<String> udids = ImmutableSet.builder();
+          for (IosDevice device : host.connectedDevices()) {
+            udids.add(device.udid());
+          }
+          return udids.build();
+        },
+        maxLeases,
+        waitTimeout);
+  }
+
+  private final DeviceLister lister;
+  private final int maxLeases;
+  private final long waitTimeoutNanos;
+
+  @GuardedBy("this")
+  private final Set<String> leased = new HashSet<>();
+
+  @GuardedBy("this")
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+  /** The browsers left running on devices that are not leased, oldest first. */
+  @GuardedBy("this")
+  private final Map<String, SafariBrowser> idle = new LinkedHashMap<>();
+
+  @GuardedBy("this")
+  private ImmutableSet<String> connected = ImmutableSet.of();
+
+  @GuardedBy("this")
+  private long lastRefreshNanos;
+
+  /** Whether a thread is listing the connected devices, which it does outside the lock. */
+  @GuardedBy("this")
+  private boolean refreshing;
+
+  @GuardedBy("this")
+  private long leaseCount;
+
+  @GuardedBy("this")
+  private long timeoutCount;
+
+  @GuardedBy("this")
+  private long totalWaitNanos;
+
+  @GuardedBy("this")
+  private long maxWaitNanos;
+
+  /**
+   * Creates a pool of the devices listed by {@code lister}, which leases at most {@code maxLeases}
+   * of them at a time and lets lease requests wait at most {@code waitTimeout}.
+   */
+  DevicePool(DeviceLister lister, int maxLeases, Duration waitTimeout) {
+    checkArgument(maxLeases > 0);
+    checkArgument(!waitTimeout.isNegative());
+    this.lister = checkNotNull(lister);
+    this.maxLeases = maxLeases;
+    this.waitTimeoutNanos = waitTimeout.toNanos();
+    lastRefreshNanos = System.nanoTime() - POLL_INTERVAL_NANOS;
+  }
+
+  /**
+   * Leases the device with the given udid, or any free device if absent, waiting for one to be
+   * released if none is free.
+   */
+  Lease lease(Optional<String> udid) throws BrowserException {
+    long start = System.nanoTime();
+    long deadline = start + waitTimeoutNanos;
+    Waiter waiter = new Waiter(udid);
+    refreshConnected(false);
+    synchronized (this) {
+      if (udid.isPresent() && !connected.contains(udid.get())) {
+        throw new BrowserException("no connected device with udid " + udid.get());
+      }
+      waiters.addLast(waiter);
+      dispatch();
+    }
+    Lease lease = null;
+    try {
+      while (lease == null) {
+        synchronized (this) {
+          if (waiter.assigned == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+              timeoutCount++;
+              throw new BrowserException(
+                  String.format(
+                      "no device became free within %d ms; %d requests were queued",
+                      TimeUnit.NANOSECONDS.toMillis(waitTimeoutNanos), waiters.size()));
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, Math.min(remaining, POLL_INTERVAL_NANOS));
+          }
+          if (waiter.assigned != null) {
+            long waitNanos = System.nanoTime() - start;
+            leaseCount++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+            lease = new Lease(waiter.assigned, Optional.ofNullable(waiter.idleBrowser));
+          }
+        }
+        if (lease == null) {
+          refreshConnected(true);
+        }
+      }
+      return lease;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BrowserException(e);
+    } finally {
+      if (lease == null) {
+        synchronized (this) {
+          if (waiter.assigned == null) {
+            waiters.remove(waiter);
+          } else {
+            // Assigned as the request gave up, so the device was never handed over.
+            leased.remove(waiter.assigned);
+            if (waiter.idleBrowser != null) {
+              idle.put(waiter.assigned, waiter.idleBrowser);
+            }
+          }
+          // The requests queued behind this one may be satisfiable now.
+          dispatch();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of devices that can be leased at once, that is the connected devices up to
+   * the maximum number of leases.
+   */
+  int capacity() {
+    refreshConnected(false);
+    synchronized (this) {
+      return Math.min(maxLeases, connected.size());
+    }
+  }
+
+  /** Removes and returns the idle browsers, whose devices stay free. */
+  synchronized ImmutableList<SafariBrowser> takeIdleBrowsers() {
+    ImmutableList<SafariBrowser> browsers = ImmutableList.copyOf(idle.values());
+    idle.clear();
+    return browsers;
+  }
+
+  /** Returns the queue, utilization and wait statistics of the pool. */
+  synchronized ImmutableMap<String, Object> stats() {
+    long free = Math.min(maxLeases - leased.size(), freeDevices().count());
+    return ImmutableMap.<String, Object>builder()
+        .put("connectedDevices", connected.size())
+        .put("leasedDevices", leased.size())
+        .put("freeDevices", free)
+        .put("idleBrowsers", idle.size())
+        .put("queueLength", waiters.size())
+        .put("leases", leaseCount)
+        .put("timeouts", timeoutCount)
+        .put("averageWaitMillis", leaseCount == 0 ? 0 : nanosToMillis(totalWaitNanos / leaseCount))
+        .put("maxWaitMillis", nanosToMillis(maxWaitNanos))
+        .build();
+  }
+
+  /**
+   * Lists the connected devices and dispatches them to the waiters. Listing is slow device I/O, so
+   * it runs outside the lock, and only the result is published under it. When {@code onlyIfStale},
+   * the devices are not listed if another thread is listing them or did within the poll interval.
+   */
+  private void refreshConnected(boolean onlyIfStale) {
+    synchronized (this) {
+      if (onlyIfStale
+          && (refreshing || System.nanoTime() - lastRefreshNanos < POLL_INTERVAL_NANOS)) {
+        return;
+      }
+      refreshing = true;
+    }
+    ImmutableSet<String> udids = null;
+    try {
+      udids = lister.connectedUdids();
+    } catch (IOException e) {
+      // Keep the last known devices, the host may well answer on the next poll.
+    } finally {
+      synchronized (this) {
+        refreshing = false;
+        lastRefreshNanos = System.nanoTime();
+        if (udids != null) {
+          connected = udids;
+        }
+        dispatch();
+      }
+    }
+  }
+
+  /**
+   * Assigns free devices to the waiters, in the order they were queued, and wakes them up. Devices
+   * with an idle browser are assigned first, together with the browser. A waiter for a specific
+   * device does not hold up the waiters behind it while that device is leased.
+   */
+  @GuardedBy("this")
+  private void dispatch() {
+    TreeSet<String> free = new TreeSet<>();
+    freeDevices().forEach(free::add);
+    for (Iterator<Waiter> it = waiters.iterator(); it.hasNext() && leased.size() < maxLeases; ) {
+      Waiter waiter = it.next();
+      String udid;
+      if (waiter.udid.isPresent()) {
+        udid = waiter.udid.get();
+        if (!idle.containsKey(udid) && !free.contains(udid)) {
+          udid = null;
+        }
+      } else {
+        udid = idle.isEmpty() ? free.pollFirst() : idle.keySet().iterator().next();
+      }
+      if (udid != null) {
+        checkState(leased.add(udid));
+        free.remove(udid);
+        waiter.assigned = udid;
+        waiter.idleBrowser = idle.remove(udid);
+        it.remove();
+      }
+    }
+    notifyAll();
+  }
+
+  /** Returns the connected devices that are neither leased nor running an idle browser. */
+  @GuardedBy("this")
+  private Stream<String> freeDevices() {
+    return connected.stream().filter(udid -> !leased.contains(udid) && !idle.containsKey(udid));
+  }
+
+  private static long nanosToMillis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
@@ -0,0 +1,726 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.safari;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.dd.plist.NSDictionary;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableList;
+import com.google.devtoolsdriver.util.JavaxJson;
+import com.google.devtoolsdriver.webdriver.JsAtoms;
+import com.google.iosdevicecontrol.webinspector.ApplicationSentDataMessage;
+import com.google.iosdevicecontrol.webinspector.ApplicationSentListingMessage;
+import com.google.iosdevicecontrol.webinspector.ForwardGetListingMessage;
+import com.google.iosdevicecontrol.webinspector.ForwardSocketDataMessage;
+import com.google.iosdevicecontrol.webinspector.InspectorApplication;
+import com.google.iosdevicecontrol.webinspector.InspectorMessage;
+import com.google.iosdevicecontrol.webinspector.InspectorPage;
+import com.google.iosdevicecontrol.webinspector.InspectorSocket;
+import com.google.iosdevicecontrol.webinspector.ReportConnectedApplicationListMessage;
+import com.google.iosdevicecontrol.webinspector.ReportIdentifierMessage;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.concurrent.GuardedBy;
+import javax.imageio.ImageIO;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * An in-process stand-in for the web inspector of a device running Safari, so that the driver can
+ * be run, and load tested, without Apple hardware. It answers the inspector messages that {@link
+ * InspectorMessenger} sends the way Safari does, with a single page, and answers the devtools
+ * commands forwarded to that page from a small model of its document: a tree of nodes, blank
+ * after each navigation, which tests can add elements to. The DOM commands are answered from the
+ * tree, and the scripts the driver runs are answered from the node they are called on, by the
+ * property they read or the atom they call.
+ *
+ * <p>Every message the device sends is delayed by a fixed latency, and, when a bandwidth is set,
+ * by the time its devtools payload takes to go over a link of that bandwidth, one message at a
+ * time.
+ */
+final class FakeInspectorDevice implements InspectorSocket {
+  /** Answers a devtools command with its result, given the params and the device. */
+  interface Responder extends BiFunction<JsonObject, FakeInspectorDevice, JsonObject> {}
+
+  private static final String SAFARI_BUNDLE_ID = "com.apple.mobilesafari";
+  private static final String SAFARI_APP_ID = "PID:1";
+  private static final String CONTENT_APP_ID = "PID:2";
+  private static final int PAGE_ID = 1;
+  private static final int DOCUMENT_NODE_TYPE = 9;
+  private static final int ELEMENT_NODE_TYPE = 1;
+
+  /** A property read, or getAttribute call, on the object a function is called on. */
+  private static final Pattern PROPERTY_FUNCTION =
+      Pattern.compile(
+          "\\(function\\(arg\\) \\{ var (\\w+) ?= ?this\\.(\\w+|getAttribute\\('[^']*'\\));"
+              + " ?return \\1;\\}\\)");
+  /** A property read, or method call, on the document of the page. */
+  private static final Pattern DOCUMENT_EXPRESSION =
+      Pattern.compile("document\\.(\\w+(?:\\(\\))?);?");
+  private static final Pattern GET_ATTRIBUTE = Pattern.compile("getAttribute\\('([^']*)'\\)");
+  /** One simple selector of a compound selector. */
+  private static final Pattern SIMPLE_SELECTOR =
+      Pattern.compile("([#.]?)([\\w-]+|\\*)|\\[([\\w-]+)(?:=\"?([^\"\\]]*)\"?)?\\]");
+
+  private static final Supplier<byte[]> SCREENSHOT = Suppliers.memoize(() -> blankPng(320, 568));
+
+  private final String udid;
+  private final long latencyNanos;
+  private final long bytesPerSecond;
+  private final Map<String, Responder> responders = new ConcurrentHashMap<>();
+  private volatile Consumer<JsonObject> commandListener = command -> {};
+  private final DelayQueue<Outgoing> outgoing = new DelayQueue<>();
+
+  @GuardedBy("this")
+  private long sequence;
+
+  @GuardedBy("this")
+  private long linkFreeNanos;
+
+  @GuardedBy("this")
+  private int pageCount = 1;
+
+  @GuardedBy("this")
+  private String url = "about:blank";
+
+  @GuardedBy("this")
+  private int nextNodeId = 1;
+
+  @GuardedBy("this")
+  private final Map<Integer, Node> nodes = new HashMap<>();
+
+  @GuardedBy("this")
+  private Node document;
+
+  @GuardedBy("this")
+  private final List<Integer> tappedNodes = new ArrayList<>();
+
+  @GuardedBy("this")
+  private Optional<String> connectionId = Optional.empty();
+
+  @GuardedBy("this")
+  private boolean closed;
+
+  /**
+   * Creates a device, identified by {@code udid}, that delays its messages by {@code latency} and
+   * sends their payloads at {@code bytesPerSecond}, or instantly if that is 0.
+   */
+  FakeInspectorDevice(String udid, Duration latency, long bytesPerSecond) {
+    checkArgument(!latency.isNegative());
+    checkArgument(bytesPerSecond >= 0);
+    this.udid = checkNotNull(udid);
+    this.latencyNanos = latency.toNanos();
+    this.bytesPerSecond = bytesPerSecond;
+    synchronized (this) {
+      newDocument();
+    }
+    respondTo("DOM.getDocument", (params, device) -> device.getDocument());
+    respondTo(
+        "DOM.querySelector",
+        (params, device) ->
+            device.querySelector(params.getInt("nodeId"), params.getString("selector")));
+    respondTo(
+        "DOM.querySelectorAll",
+        (params, device) ->
+            device.querySelectorAll(params.getInt("nodeId"), params.getString("selector")));
+    respondTo("DOM.resolveNode", (params, device) -> device.resolveNode(params.getInt("nodeId")));
+    respondTo(
+        "DOM.requestNode", (params, device) -> device.requestNode(params.getString("objectId")));
+    respondTo("Page.navigate", (params, device) -> device.navigate(params.getString("url")));
+    respondTo("Page.reload", (params, device) -> device.navigate(device.url()));
+    respondTo(
+        "Runtime.evaluate", (params, device) -> device.evaluate(params.getString("expression")));
+    respondTo("Runtime.callFunctionOn", (params, device) -> device.callFunctionOn(params));
+  }
+
+  String udid() {
+    return udid;
+  }
+
+  /** Scripts the result of a devtools command; commands with no script get an empty result. */
+  void respondTo(String method, Responder responder) {
+    responders.put(method, checkNotNull(responder));
+  }
+
+  /** Sets a listener of the devtools commands the device receives, before it answers them. */
+  void setCommandListener(Consumer<JsonObject> listener) {
+    commandListener = checkNotNull(listener);
+  }
+
+  /**
+   * Opens another page, listed after the others, returning its page id. The pages share the model
+   * of the document, so the page only matters to the inspector messages.
+   */
+  synchronized int openPage() {
+    return PAGE_ID + pageCount++;
+  }
+
+  /** Sends a devtools event from the page. */
+  void sendEvent(String method, JsonObject params) {
+    sendData(Json.createObjectBuilder().add("method", method).add("params", params).build());
+  }
+
+  synchronized String url() {
+    return url;
+  }
+
+  /** Returns the node id of the body of the current document, for tests to add elements to. */
+  synchronized int bodyNodeId() {
+    return document.children.get(0).children.get(1).nodeId;
+  }
+
+  /**
+   * Adds an element holding the text to the node of the current document, returning the node id of
+   * the element.
+   */
+  synchronized int addElement(
+      int parentNodeId, String tagName, Map<String, String> attributes, String text) {
+    Node parent = node(parentNodeId);
+    Node element = newNode(ELEMENT_NODE_TYPE, tagName.toUpperCase(Locale.ROOT));
+    element.attributes.putAll(attributes);
+    element.text = text;
+    element.parent = parent;
+    parent.children.add(element);
+    return element.nodeId;
+  }
+
+  /** Returns the node ids of the elements tapped, in order. */
+  synchronized ImmutableList<Integer> tappedNodes() {
+    return ImmutableList.copyOf(tappedNodes);
+  }
+
+  byte[] takeScreenshot() {
+    return blankScreenshot();
+  }
+
+  /** Returns a blank PNG the size of an iPhone screen. */
+  static byte[] blankScreenshot() {
+    return SCREENSHOT.get().clone();
+  }
+
+  @Override
+  public void sendMessage(NSDictionary plist) {
+    InspectorMessage message = InspectorMessage.fromPlist(plist);
+    switch (message.selector()) {
+      case REPORT_IDENTIFIER:
+        synchronized (this) {
+          connectionId = Optional.of(((ReportIdentifierMessage) message).connectionId());
+        }
+        send(
+            ReportConnectedApplicationListMessage.builder()
+                .applicationDictionary(ImmutableList.of(safariApp(), contentApp()))
+                .build(),
+            0);
+        send(listing(), 0);
+        return;
+
+      case FORWARD_GET_LISTING:
+        if (((ForwardGetListingMessage) message).applicationId().equals(CONTENT_APP_ID)) {
+          send(listing(), 0);
+        }
+        return;
+
+      case FORWARD_SOCKET_DATA:
+        answer(((ForwardSocketDataMessage) message).socketData());
+        return;
+
+      default:
+        // Socket setups and anything else need no answer.
+    }
+  }
+
+  /** Waits for the next message the device sends, or returns empty once it is closed. */
+  @Override
+  public Optional<NSDictionary> receiveMessage() {
+    try {
+      Outgoing next = outgoing.take();
+      if (next.plist == null) {
+        // Leave the end of the stream for any later call.
+        outgoing.add(next);
+        return Optional.empty();
+      }
+      return Optional.of(next.plist);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      closed = true;
+      outgoing.add(new Outgoing(null, System.nanoTime(), sequence++));
+    }
+  }
+
+  private void answer(JsonObject command) {
+    commandListener.accept(command);
+    int id = command.getInt("id");
+    String method = command.getString("method");
+    JsonObject params = command.getJsonObject("params");
+    Responder responder = responders.get(method);
+    JsonObjectBuilder response = Json.createObjectBuilder().add("id", id);
+    try {
+      JsonObject result =
+          responder == null
+              ? JavaxJson.EMPTY_OBJECT
+              : responder.apply(params != null ? params : JavaxJson.EMPTY_OBJECT, this);
+      response.add("result", result);
+    } catch (RuntimeException e) {
+      response.add(
+          "error",
+          Json.createObjectBuilder().add("code", -32000).add("message", String.valueOf(e)));
+    }
+    sendData(response.build());
+    if (method.equals("Page.navigate") || method.equals("Page.reload")) {
+      // As in Safari, the page loads after the navigation command is answered.
+      sendEvent("DOM.documentUpdated", JavaxJson.EMPTY_OBJECT);
+      sendEvent("Page.loadEventFired", Json.createObjectBuilder().add("timestamp", now()).build());
+    }
+  }
+
+  private void sendData(JsonObject data) {
+    String destination;
+    synchronized (this) {
+      destination = connectionId.orElse("");
+    }
+    int size = data.toString().getBytes(StandardCharsets.UTF_8).length;
+    send(
+        ApplicationSentDataMessage.builder()
+            .applicationId(CONTENT_APP_ID)
+            .destination(destination)
+            .messageData(data)
+            .build(),
+        size);
+  }
+
+  /** Queues the message to be received once it has gone over the simulated link. */
+  private synchronized void send(InspectorMessage message, int payloadBytes) {
+    if (closed) {
+      return;
+    }
+    long start = Math.max(System.nanoTime(), linkFreeNanos);
+    long transferNanos =
+        bytesPerSecond == 0 ? 0 : TimeUnit.SECONDS.toNanos(payloadBytes) / bytesPerSecond;
+    linkFreeNanos = start + transferNanos;
+    outgoing.add(new Outgoing(message.toPlist(), linkFreeNanos + latencyNanos, sequence++));
+  }
+
+  /** Navigates to the url, which replaces the document with a blank one, with new node ids. */
+  private synchronized JsonObject navigate(String newUrl) {
+    url = newUrl;
+    newDocument();
+    return Json.createObjectBuilder().add("frameId", "1").build();
+  }
+
+  /** The blank document: a document node holding an html element with a head and a body. */
+  @GuardedBy("this")
+  private void newDocument() {
+    nodes.clear();
+    tappedNodes.clear();
+    document = newNode(DOCUMENT_NODE_TYPE, "#document");
+    Node html = newNode(ELEMENT_NODE_TYPE, "HTML");
+    html.parent = document;
+    document.children.add(html);
+    for (String name : ImmutableList.of("HEAD", "BODY")) {
+      Node child = newNode(ELEMENT_NODE_TYPE, name);
+      child.parent = html;
+      html.children.add(child);
+    }
+  }
+
+  @GuardedBy("this")
+  private Node newNode(int nodeType, String nodeName) {
+    Node node = new Node(nextNodeId++, nodeType, nodeName);
+    nodes.put(node.nodeId, node);
+    return node;
+  }
+
+  /** Returns the node, failing the command as Safari does if there is none with the id. */
+  @GuardedBy("this")
+  private Node node(int nodeId) {
+    Node node = nodes.get(nodeId);
+    if (node == null) {
+      throw new IllegalArgumentException("No node with given id found");
+    }
+    return node;
+  }
+
+  private synchronized JsonObject getDocument() {
+    return Json.createObjectBuilder().add("root", toJson(document)).build();
+  }
+
+  @GuardedBy("this")
+  private JsonObjectBuilder toJson(Node node) {
+    JsonArrayBuilder attributes = Json.createArrayBuilder();
+    node.attributes.forEach((name, value) -> attributes.add(name).add(value));
+    JsonArrayBuilder children = Json.createArrayBuilder();
+    node.children.forEach(child -> children.add(toJson(child)));
+    JsonObjectBuilder json =
+        Json.createObjectBuilder()
+            .add("nodeId", node.nodeId)
+            .add("nodeType", node.nodeType)
+            .add("nodeName", node.nodeName)
+            .add("localName", node.isElement() ? node.nodeName.toLowerCase(Locale.ROOT) : "")
+            .add("nodeValue", "")
+            .add("childNodeCount", node.children.size())
+            .add("children", children);
+    if (node.isElement()) {
+      json.add("attributes", attributes);
+    } else {
+      json.add("documentURL", url);
+    }
+    return json;
+  }
+
+  private synchronized JsonObject querySelector(int nodeId, String selector) {
+    List<Node> matches = select(node(nodeId), selector, true);
+    return Json.createObjectBuilder()
+        .add("nodeId", matches.isEmpty() ? 0 : matches.get(0).nodeId)
+        .build();
+  }
+
+  private synchronized JsonObject querySelectorAll(int nodeId, String selector) {
+    JsonArrayBuilder nodeIds = Json.createArrayBuilder();
+    select(node(nodeId), selector, false).forEach(node -> nodeIds.add(node.nodeId));
+    return Json.createObjectBuilder().add("nodeIds", nodeIds).build();
+  }
+
+  private synchronized JsonObject resolveNode(int nodeId) {
+    return Json.createObjectBuilder().add("object", nodeObject(node(nodeId))).build();
+  }
+
+  private synchronized JsonObject requestNode(String objectId) {
+    return Json.createObjectBuilder().add("nodeId", nodeOf(objectId).nodeId).build();
+  }
+
+  /** Evaluates the expressions that read a property of the document; others are undefined. */
+  private synchronized JsonObject evaluate(String expression) {
+    Matcher property = DOCUMENT_EXPRESSION.matcher(expression.trim());
+    if (property.matches()) {
+      return property(document, property.group(1));
+    }
+    return remoteObject(Json.createObjectBuilder().add("type", "undefined"));
+  }
+
+  /**
+   * Calls the function on the node, answering the property reads and the atoms the fake models
+   * from the node; any other function returns undefined.
+   */
+  private synchronized JsonObject callFunctionOn(JsonObject params) {
+    Node node = nodeOf(params.getString("objectId"));
+    String function = params.getString("functionDeclaration");
+    Matcher property = PROPERTY_FUNCTION.matcher(function);
+    if (property.matches()) {
+      return property(node, property.group(2));
+    }
+    // The atoms are called on the element passed as their first argument.
+    JsonArray arguments = params.getJsonArray("arguments");
+    JsonObject argument =
+        arguments != null && !arguments.isEmpty()
+            ? arguments.getJsonObject(0)
+            : JavaxJson.EMPTY_OBJECT;
+    Node target = argument.containsKey("objectId") ? nodeOf(argument.getString("objectId")) : node;
+    if (function.contains(JsAtoms.tap("arg"))) {
+      tappedNodes.add(target.nodeId);
+    } else if (function.contains(JsAtoms.getVisibleText("arg"))) {
+      return string(target.text());
+    } else if (function.contains(JsAtoms.isShown("arg"))
+        || function.contains(JsAtoms.isEnabled("arg"))) {
+      return remoteObject(Json.createObjectBuilder().add("type", "boolean").add("value", true));
+    }
+    return remoteObject(Json.createObjectBuilder().add("type", "undefined"));
+  }
+
+  /** Reads a property of the node, or calls one of its methods that takes no arguments. */
+  @GuardedBy("this")
+  private JsonObject property(Node node, String name) {
+    Matcher getAttribute = GET_ATTRIBUTE.matcher(name);
+    if (getAttribute.matches()) {
+      String value = node.attributes.get(getAttribute.group(1));
+      return value != null ? string(value) : nullObject();
+    }
+    switch (name) {
+      case "hasFocus()":
+        return remoteObject(Json.createObjectBuilder().add("type", "boolean").add("value", true));
+      case "readyState":
+        return string("complete");
+      case "URL":
+      case "documentURI":
+        return string(url);
+      case "title":
+        return string("");
+      case "tagName":
+      case "nodeName":
+        return string(node.nodeName);
+      case "innerText":
+      case "textContent":
+        return string(node.text());
+      default:
+        String value = node.attributes.get(name.equals("className") ? "class" : name);
+        return value != null
+            ? string(value)
+            : remoteObject(Json.createObjectBuilder().add("type", "undefined"));
+    }
+  }
+
+  @GuardedBy("this")
+  private Node nodeOf(String objectId) {
+    JsonObject id = JavaxJson.parseObject(objectId);
+    return node(id.getInt("node"));
+  }
+
+  private static JsonObjectBuilder nodeObject(Node node) {
+    return Json.createObjectBuilder()
+        .add("type", "object")
+        .add("subtype", "node")
+        .add("className", node.isElement() ? "HTMLElement" : "HTMLDocument")
+        .add("objectId", "{\"node\":" + node.nodeId + "}");
+  }
+
+  /** Returns the elements under the root that match the selector, in document order. */
+  private static List<Node> select(Node root, String selector, boolean first) {
+    List<Node> matches = new ArrayList<>();
+    Deque<Node> pending = new ArrayDeque<>(root.children);
+    while (!pending.isEmpty()) {
+      Node node = pending.pollFirst();
+      if (node.isElement() && matches(node, selector)) {
+        matches.add(node);
+        if (first) {
+          break;
+        }
+      }
+      for (int i = node.children.size() - 1; i >= 0; i--) {
+        pending.addFirst(node.children.get(i));
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Returns whether the element matches the selector: a list of compound selectors of tags, ids,
+   * classes and attributes, combined by descendance.
+   */
+  private static boolean matches(Node node, String selector) {
+    for (String group : Splitter.on(',').trimResults().split(selector)) {
+      List<String> compounds =
+          Splitter.on(CharMatcher.whitespace()).omitEmptyStrings().splitToList(group);
+      if (!compounds.isEmpty() && matches(node, compounds, compounds.size() - 1)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean matches(Node node, List<String> compounds, int last) {
+    if (!matchesCompound(node, compounds.get(last))) {
+      return false;
+    }
+    if (last == 0) {
+      return true;
+    }
+    for (Node ancestor = node.parent; ancestor != null; ancestor = ancestor.parent) {
+      if (ancestor.isElement() && matches(ancestor, compounds, last - 1)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean matchesCompound(Node node, String compound) {
+    Matcher simple = SIMPLE_SELECTOR.matcher(compound);
+    int position = 0;
+    while (position < compound.length()) {
+      if (!simple.find(position) || simple.start() != position) {
+        throw new IllegalArgumentException("Unsupported selector " + compound);
+      }
+      position = simple.end();
+      if (simple.group(3) != null) {
+        String value = node.attributes.get(simple.group(3));
+        if (value == null || (simple.group(4) != null && !simple.group(4).equals(value))) {
+          return false;
+        }
+      } else if (simple.group(1).equals("#")) {
+        if (!simple.group(2).equals(node.attributes.get("id"))) {
+          return false;
+        }
+      } else if (simple.group(1).equals(".")) {
+        String classes = node.attributes.getOrDefault("class", "");
+        if (!Splitter.on(CharMatcher.whitespace()).splitToList(classes).contains(simple.group(2))) {
+          return false;
+        }
+      } else if (!simple.group(2).equals("*") && !simple.group(2).equalsIgnoreCase(node.nodeName)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static JsonObject string(String value) {
+    return remoteObject(Json.createObjectBuilder().add("type", "string").add("value", value));
+  }
+
+  private static JsonObject nullObject() {
+    return remoteObject(
+        Json.createObjectBuilder().add("type", "object").add("subtype", "null").addNull("value"));
+  }
+
+  private static JsonObject remoteObject(JsonObjectBuilder result) {
+    return Json.createObjectBuilder().add("result", result).add("wasThrown", false).build();
+  }
+
+  private static double now() {
+    return System.currentTimeMillis() / 1000.0;
+  }
+
+  private synchronized ApplicationSentListingMessage listing() {
+    ImmutableList.Builder<InspectorPage> pages = ImmutableList.builder();
+    for (int i = 0; i < pageCount; i++) {
+      pages.add(
+          InspectorPage.builder()
+              .connectionId(connectionId.orElse(""))
+              .pageId(PAGE_ID + i)
+              .title("")
+              .type("WIRTypeWeb")
+              .url(url)
+              .build());
+    }
+    return ApplicationSentListingMessage.builder()
+        .applicationId(CONTENT_APP_ID)
+        .listing(pages.build())
+        .build();
+  }
+
+  private static InspectorApplication safariApp() {
+    return InspectorApplication.builder()
+        .applicationBundleId(SAFARI_BUNDLE_ID)
+        .applicationId(SAFARI_APP_ID)
+        .applicationName("Safari")
+        .isApplicationActive(true)
+        .isApplicationProxy(false)
+        .build();
+  }
+
+  private static InspectorApplication contentApp() {
+    return InspectorApplication.builder()
+        .applicationBundleId("com.apple.WebKit.WebContent")
+        .applicationId(CONTENT_APP_ID)
+        .applicationName("Safari Web Content")
+        .hostApplicationId(SAFARI_APP_ID)
+        .isApplicationActive(true)
+        .isApplicationProxy(true)
+        .build();
+  }
+
+  private static byte[] blankPng(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    try {
+      ImageIO.write(image, "png", png);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return png.toByteArray();
+  }
+
+  /** A node of the document. */
+  private static final class Node {
+    final int nodeId;
+    final int nodeType;
+    final String nodeName;
+    final Map<String, String> attributes = new LinkedHashMap<>();
+    final List<Node> children = new ArrayList<>();
+    Node parent;
+    String text = "";
+
+    Node(int nodeId, int nodeType, String nodeName) {
+      this.nodeId = nodeId;
+      this.nodeType = nodeType;
+      this.nodeName = nodeName;
+    }
+
+    boolean isElement() {
+      return nodeType == ELEMENT_NODE_TYPE;
+    }
+
+    /** The text of the node and of the nodes under it. */
+    String text() {
+      StringBuilder all = new StringBuilder(text);
+      children.forEach(child -> all.append(child.text()));
+      return all.toString();
+    }
+  }
+
+  /**
+   * A message that can be received once its due time has passed, after the messages sent before
+   * it. A null plist marks the end of the stream.
+   */
+  private static final class Outgoing implements Delayed {
+    private final NSDictionary plist;
+    private final long dueNanos;
+    private final long sequence;
+
+    private Outgoing(NSDictionary plist, long dueNanos, long sequence) {
+      this.plist = plist;
+      this.dueNanos = dueNanos;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      Outgoing that = (Outgoing) other;
+      return ComparisonChain.start()
+          .compare(dueNanos, that.dueNanos)
+          .compare(sequence, that.sequence)
+          .result();
+    }
+  }
+}
@@ -32,6 +32,10 @@ import com.google.iosdevicecontrol.util.FluentLogger;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.Monitor;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.devtoolsdriver.safari.InspectorRecorder.Direction;
+import com.google.devtoolsdriver.util.JavaxJson;
+import com.google.devtoolsdriver.util.Metrics;
+import com.google.devtoolsdriver.util.TraceSpan;
 import com.google.iosdevicecontrol.util.EllipsisFormat;
 import com.google.iosdevicecontrol.webinspector.ApplicationConnectedMessage;
 import com.google.iosdevicecontrol.webinspector.ApplicationDisconnectedMessage;
@@ -51,14 +55,17 @@ import com.google.iosdevicecontrol.webinspector.ReportIdentifierMessage;
 import com.google.iosdevicecontrol.webinspector.WebInspector;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -75,7 +82,24 @@ final class InspectorMessenger implements Closeable {
   /** The sender value seems to be an arbitrary UUID, so choose a fixed one here. */
   private static final String SENDER_UUID = UUID.randomUUID().toString();
 
+  private static final LongAdder messagesSent =
+      Metrics.global().counter("inspector_messages_sent_total", "Messages sent to web inspectors.");
+  private static final LongAdder messagesReceived =
+      Metrics.global()
+          .counter("inspector_messages_received_total", "Messages received from web inspectors.");
+  private static final LongAdder devtoolsBytesSent =
+      Metrics.global()
+          .counter(
+              "inspector_devtools_bytes_sent_total",
+              "UTF-8 bytes of the devtools messages sent to web inspectors.");
+  private static final LongAdder devtoolsBytesReceived =
+      Metrics.global()
+          .counter(
+              "inspector_devtools_bytes_received_total",
+              "UTF-8 bytes of the devtools messages received from web inspectors.");
+
   private final WebInspector inspector;
+  private final Optional<InspectorRecorder> recorder;
   private final String connectionId = UUID.randomUUID().toString();
   private final AtomicReference<Consumer<JsonObject>> devtoolsListener = new AtomicReference<>();
   private final ScheduledExecutorService executor;
@@ -85,16 +109,35 @@ final class InspectorMessenger implements Closeable {
   @GuardedBy("monitor")
   private final BiMap<String, AppListing> appIdToListings = HashBiMap.create();
 
+  /** The spans of the traced devtools commands sent and not yet answered, by command id. */
+  private final Map<Integer, TraceSpan> commandSpans = new ConcurrentHashMap<>();
+
+  /** The id of the last traced devtools command sent, whose span the events are received in. */
+  private volatile int lastTracedCommandId = -1;
+
   @GuardedBy("this")
   private Optional<PageContext> activePageContext = Optional.empty();
 
   InspectorMessenger(WebInspector inspector) {
-    this(inspector, Executors.newSingleThreadScheduledExecutor());
+    this(inspector, Optional.empty());
+  }
+
+  /** Creates a messenger that logs the messages it sends and receives to the recorder, if any. */
+  InspectorMessenger(WebInspector inspector, Optional<InspectorRecorder> recorder) {
+    this(inspector, recorder, Executors.newSingleThreadScheduledExecutor());
   }
 
   @VisibleForTesting
   InspectorMessenger(WebInspector inspector, ScheduledExecutorService executor) {
+    this(inspector, Optional.empty(), executor);
+  }
+
+  private InspectorMessenger(
+      WebInspector inspector,
+      Optional<InspectorRecorder> recorder,
+      ScheduledExecutorService executor) {
     this.inspector = checkNotNull(inspector);
+    this.recorder = checkNotNull(recorder);
     this.executor = checkNotNull(executor);
     receiveFuture = executor.scheduleWithFixedDelay(this::receiveMessage, 0, 50, MILLISECONDS);
   }
@@ -153,6 +196,13 @@ final class InspectorMessenger implements Closeable {
   synchronized void sendCommand(JsonObject command) throws IOException {
     PageContext activePageContext = checkActivePageContext();
     checkNotNull(devtoolsListener.get());
+    devtoolsBytesSent.add(JavaxJson.encodedLength(command));
+    TraceSpan span = TraceSpan.current();
+    if (span.isRecording()) {
+      int commandId = command.getInt("id");
+      commandSpans.put(commandId, span);
+      lastTracedCommandId = commandId;
+    }
     sendMessage(
         ForwardSocketDataMessage.builder()
             .applicationId(activePageContext.appId)
@@ -243,7 +293,13 @@ final class InspectorMessenger implements Closeable {
       try {
         MoreExecutors.shutdownAndAwaitTermination(executor, 5, SECONDS);
       } finally {
-        inspector.close();
+        try {
+          inspector.close();
+        } finally {
+          if (recorder.isPresent()) {
+            recorder.get().close();
+          }
+        }
       }
     }
   }
@@ -274,7 +330,16 @@ final class InspectorMessenger implements Closeable {
   private void sendMessage(InspectorMessage.Builder builder) throws IOException {
     InspectorMessage message = builder.build();
     logger.atInfo().log("Message sent: %s", formatMessage(message));
-    inspector.sendMessage(message);
+    // Record the message before the inspector can answer it, so the log keeps them in order.
+    recorder.ifPresent(r -> r.record(Direction.SENT, message));
+    TraceSpan span = TraceSpan.current().startChild("inspector.send");
+    try {
+      span.put("selector", message.selector().toString());
+      inspector.sendMessage(message);
+    } finally {
+      span.end();
+    }
+    messagesSent.increment();
   }
 
   private void receiveMessage() {
@@ -296,8 +361,23 @@ final class InspectorMessenger implements Closeable {
     }
   }
 
+  /**
+   * Returns the span in which the command answered by the devtools message was sent, or, for an
+   * event, the span of the last command sent, if it is not yet answered; else {@link
+   * TraceSpan#NOOP}.
+   */
+  private TraceSpan sendSpanOf(JsonObject data) {
+    TraceSpan span =
+        data.containsKey("id")
+            ? commandSpans.remove(data.getInt("id"))
+            : commandSpans.get(lastTracedCommandId);
+    return span != null ? span : TraceSpan.NOOP;
+  }
+
   private void onMessageReceived(InspectorMessage message) {
     logger.atInfo().log("Message received: %s", formatMessage(message));
+    recorder.ifPresent(r -> r.record(Direction.RECEIVED, message));
+    messagesReceived.increment();
     switch (message.selector()) {
       case APPLICATION_CONNECTED:
         addApplication(((ApplicationConnectedMessage) message).asApplication());
@@ -320,7 +400,19 @@ final class InspectorMessenger implements Closeable {
         return;
 
       case APPLICATION_SENT_DATA:
-        devtoolsListener.get().accept(((ApplicationSentDataMessage) message).messageData());
+        JsonObject data = ((ApplicationSentDataMessage) message).messageData();
+        long bytes = JavaxJson.encodedLength(data);
+        devtoolsBytesReceived.add(bytes);
+        TraceSpan span = sendSpanOf(data).startChild("inspector.receive");
+        try (TraceSpan.Scope scope = span.makeCurrent()) {
+          span.put("bytes", bytes);
+          if (data.containsKey("method")) {
+            span.put("event", data.getString("method"));
+          }
+          devtoolsListener.get().accept(data);
+        } finally {
+          span.end();
+        }
         return;
 
       case APPLICATION_SENT_LISTING:
@@ -0,0 +1,200 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.safari;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.dd.plist.BinaryPropertyListParser;
+import com.dd.plist.BinaryPropertyListWriter;
+import com.dd.plist.NSDictionary;
+import com.dd.plist.NSObject;
+import com.dd.plist.PropertyListFormatException;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.iosdevicecontrol.util.FluentLogger;
+import com.google.iosdevicecontrol.webinspector.InspectorMessage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Records the inspector messages that an {@link InspectorMessenger} sends and receives to a
+ * compact binary log, which {@link InspectorReplayer} can play back without a device.
+ *
+ * <p>The log starts with a magic number and a version byte, followed by one record per message: a
+ * direction byte, the nanoseconds since the previous record as a varint, and the message as a
+ * length-prefixed binary plist.
+ */
+final class InspectorRecorder implements Closeable {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final byte[] MAGIC = {'W', 'I', 'R', 'L'};
+  private static final int VERSION = 1;
+
+  /** Whether a message was sent to or received from the inspector. */
+  enum Direction {
+    SENT,
+    RECEIVED
+  }
+
+  /** A message in a log, with the nanoseconds at which it was recorded since the log began. */
+  static final class Record {
+    final Direction direction;
+    final long nanos;
+    final NSDictionary plist;
+
+    Record(Direction direction, long nanos, NSDictionary plist) {
+      this.direction = checkNotNull(direction);
+      this.nanos = nanos;
+      this.plist = checkNotNull(plist);
+    }
+
+    InspectorMessage message() {
+      return InspectorMessage.fromPlist(plist);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper("Record")
+          .add("direction", direction)
+          .add("nanos", nanos)
+          .add("message", message())
+          .toString();
+    }
+  }
+
+  @GuardedBy("this")
+  private final DataOutputStream out;
+
+  @GuardedBy("this")
+  private long lastNanos = System.nanoTime();
+
+  @GuardedBy("this")
+  private boolean failed;
+
+  InspectorRecorder(OutputStream out) throws IOException {
+    this.out = new DataOutputStream(new BufferedOutputStream(out));
+    this.out.write(MAGIC);
+    this.out.writeByte(VERSION);
+  }
+
+  /** Returns a recorder to a new file at the path. */
+  static InspectorRecorder toFile(Path path) throws IOException {
+    return new InspectorRecorder(Files.newOutputStream(path));
+  }
+
+  /**
+   * Appends the message to the log. A failure to write is logged and ends the recording, rather
+   * than failing the session being recorded.
+   */
+  synchronized void record(Direction direction, InspectorMessage message) {
+    if (failed) {
+      return;
+    }
+    long now = System.nanoTime();
+    try {
+      byte[] plist = BinaryPropertyListWriter.writeToArray(message.toPlist());
+      out.writeByte(direction.ordinal());
+      writeVarint(now - lastNanos);
+      writeVarint(plist.length);
+      out.write(plist);
+      lastNanos = now;
+    } catch (IOException e) {
+      failed = true;
+      logger.atWarning().withCause(e).log("Stopped recording the inspector messages");
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+
+  /** Reads all the records of a log. */
+  static ImmutableList<Record> read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+    byte[] magic = new byte[MAGIC.length];
+    data.readFully(magic);
+    if (!Arrays.equals(magic, MAGIC)) {
+      throw new IOException("not an inspector log");
+    }
+    int version = data.readUnsignedByte();
+    if (version != VERSION) {
+      throw new IOException("unsupported inspector log version: " + version);
+    }
+    ImmutableList.Builder<Record> records = ImmutableList.builder();
+    long nanos = 0;
+    for (int direction; (direction = data.read()) != -1; ) {
+      if (direction >= Direction.values().length) {
+        throw new IOException("bad record direction: " + direction);
+      }
+      nanos += readVarint(data);
+      byte[] plist = new byte[Math.toIntExact(readVarint(data))];
+      data.readFully(plist);
+      records.add(new Record(Direction.values()[direction], nanos, parsePlist(plist)));
+    }
+    return records.build();
+  }
+
+  /** Reads all the records of the log file at the path. */
+  static ImmutableList<Record> readFile(Path path) throws IOException {
+    try (InputStream in = Files.newInputStream(path)) {
+      return read(in);
+    }
+  }
+
+  @GuardedBy("this")
+  private void writeVarint(long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarint(DataInputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("malformed varint");
+  }
+
+  private static NSDictionary parsePlist(byte[] bytes) throws IOException {
+    NSObject plist;
+    try {
+      plist = BinaryPropertyListParser.parse(bytes);
+    } catch (PropertyListFormatException e) {
+      throw new IOException(e);
+    }
+    if (!(plist instanceof NSDictionary)) {
+      throw new IOException("record is not a dictionary: " + plist);
+    }
+    return (NSDictionary) plist;
+  }
+}
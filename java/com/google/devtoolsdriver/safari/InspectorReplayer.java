@@ -0,0 +1,271 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.safari;
+
+import com.dd.plist.NSDictionary;
+import com.google.common.base.Verify;
+import com.google.common.collect.ImmutableList;
+import com.google.devtoolsdriver.safari.InspectorRecorder.Direction;
+import com.google.devtoolsdriver.safari.InspectorRecorder.Record;
+import com.google.devtoolsdriver.util.JavaxJson;
+import com.google.iosdevicecontrol.webinspector.ApplicationSentDataMessage;
+import com.google.iosdevicecontrol.webinspector.ForwardSocketDataMessage;
+import com.google.iosdevicecontrol.webinspector.InspectorMessage;
+import com.google.iosdevicecontrol.webinspector.InspectorSocket;
+import com.google.iosdevicecontrol.webinspector.ReportIdentifierMessage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import javax.annotation.concurrent.GuardedBy;
+import javax.json.JsonObject;
+
+/**
+ * Plays back a log of {@link InspectorRecorder} as the web inspector of a device, so a recorded
+ * session can be run again deterministically without the device, e.g. to measure the round trips
+ * and CPU time of the driver from a load harness or benchmark; see {@link
+ * SafariBrowser#startOnReplay}.
+ *
+ * <p>The replayer expects the messages sent to it to be the ones recorded as sent, and answers
+ * them with the messages recorded as received after them, in the recorded order, as soon as they
+ * are due: a reply to a devtools command once that command is sent, and any other message once
+ * every message recorded before it is sent. A reply may overtake other messages not yet due, so
+ * that a driver that awaits each reply before sending its next command can replay a session
+ * recorded with concurrent commands. Sent messages recorded up to the next reply not yet due may
+ * arrive in any order, since concurrent commands may race, and are matched by their selector and
+ * devtools method. The ids of the devtools commands sent are mapped to the recorded
+ * ones, and the replies are rewritten to carry the ids of the commands sent. The replay ignores the
+ * recorded timing.
+ *
+ * <p>A message that the log did not expect makes the replay diverge: the send fails, and so does
+ * {@link #verifyComplete}.
+ */
+public final class InspectorReplayer implements InspectorSocket {
+  private static final NSDictionary END_OF_STREAM = new NSDictionary();
+
+  private final ImmutableList<Record> records;
+  private final BlockingQueue<NSDictionary> received = new LinkedBlockingQueue<>();
+
+  /** The recorded sent messages yet to be matched, by their index in the log. */
+  @GuardedBy("this")
+  private final SortedMap<Integer, Record> expected = new TreeMap<>();
+
+  /** The indexes of the recorded received messages not yet due, in the order recorded. */
+  @GuardedBy("this")
+  private final List<Integer> held = new ArrayList<>();
+
+  /** The ids of the devtools commands sent, keyed by the ids recorded for them. */
+  @GuardedBy("this")
+  private final Map<Integer, Integer> commandIds = new HashMap<>();
+
+  @GuardedBy("this")
+  private int nextRecord;
+
+  @GuardedBy("this")
+  private Optional<String> connectionId = Optional.empty();
+
+  @GuardedBy("this")
+  private Optional<String> divergence = Optional.empty();
+
+  @GuardedBy("this")
+  private boolean closed;
+
+  InspectorReplayer(List<Record> records) {
+    this.records = ImmutableList.copyOf(records);
+    synchronized (this) {
+      advance();
+    }
+  }
+
+  /** Returns a replayer of the log file at the path. */
+  public static InspectorReplayer fromFile(Path path) throws IOException {
+    return new InspectorReplayer(InspectorRecorder.readFile(path));
+  }
+
+  /** Returns a new replayer of the same log, to run the session again without reading it again. */
+  public InspectorReplayer newReplay() {
+    return new InspectorReplayer(records);
+  }
+
+  @Override
+  public synchronized void sendMessage(NSDictionary plist) throws IOException {
+    InspectorMessage message = InspectorMessage.fromPlist(plist);
+    if (divergence.isPresent()) {
+      throw new IOException("replay diverged: " + divergence.get());
+    }
+    String key = matchKey(message);
+    Iterator<Record> it = expected.values().iterator();
+    Record match = null;
+    while (match == null && it.hasNext()) {
+      Record record = it.next();
+      if (matchKey(record.message()).equals(key)) {
+        match = record;
+        it.remove();
+      }
+    }
+    if (match == null) {
+      List<String> expectedKeys = new ArrayList<>();
+      for (Record record : expected.values()) {
+        expectedKeys.add(matchKey(record.message()));
+      }
+      divergence = Optional.of("sent " + key + " but expected one of " + expectedKeys);
+      throw new IOException("replay diverged: " + divergence.get());
+    }
+
+    switch (message.selector()) {
+      case REPORT_IDENTIFIER:
+        connectionId = Optional.of(((ReportIdentifierMessage) message).connectionId());
+        break;
+      case FORWARD_SOCKET_DATA:
+        JsonObject recorded = ((ForwardSocketDataMessage) match.message()).socketData();
+        JsonObject sent = ((ForwardSocketDataMessage) message).socketData();
+        commandIds.put(recorded.getInt("id"), sent.getInt("id"));
+        break;
+      default:
+        break;
+    }
+    advance();
+  }
+
+  /** Waits for the next message due from the log, or returns empty once the replayer is closed. */
+  @Override
+  public Optional<NSDictionary> receiveMessage() {
+    try {
+      NSDictionary next = received.take();
+      if (next == END_OF_STREAM) {
+        // Leave the end of the stream for any later call.
+        received.add(next);
+        return Optional.empty();
+      }
+      return Optional.of(next);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      closed = true;
+      received.add(END_OF_STREAM);
+    }
+  }
+
+  /**
+   * Verifies that every recorded message was sent or received, and nothing else was sent.
+   *
+   * @throws com.google.common.base.VerifyException if the replay diverged or is incomplete
+   */
+  public synchronized void verifyComplete() {
+    Verify.verify(!divergence.isPresent(), "replay diverged: %s", divergence.orElse(null));
+    Verify.verify(
+        expected.isEmpty() && held.isEmpty() && nextRecord == records.size(),
+        "replay incomplete: %s of %s messages remain",
+        records.size() - nextRecord + expected.size() + held.size(),
+        records.size());
+  }
+
+  /**
+   * Queues the held messages that are now due, then expects the sent messages recorded from the
+   * next record on, and queues or holds the received ones, up to the first reply not yet due.
+   */
+  @GuardedBy("this")
+  private void advance() {
+    Iterator<Integer> it = held.iterator();
+    while (it.hasNext()) {
+      int index = it.next();
+      if (isDue(index)) {
+        received.add(replyOf(records.get(index)));
+        it.remove();
+      }
+    }
+    while (nextRecord < records.size()) {
+      int index = nextRecord++;
+      Record record = records.get(index);
+      if (record.direction == Direction.SENT) {
+        expected.put(index, record);
+      } else if (isDue(index)) {
+        received.add(replyOf(record));
+      } else {
+        held.add(index);
+        if (commandId(record).isPresent()) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether the received message at the index is due: a reply to a devtools command once
+   * the command is sent, and any other message once every message recorded before it is sent.
+   */
+  @GuardedBy("this")
+  private boolean isDue(int index) {
+    OptionalInt commandId = commandId(records.get(index));
+    if (commandId.isPresent() && commandIds.containsKey(commandId.getAsInt())) {
+      return true;
+    }
+    return expected.isEmpty() || expected.firstKey() > index;
+  }
+
+  /** Returns the recorded id of the command that the received record replies to, if any. */
+  private static OptionalInt commandId(Record record) {
+    InspectorMessage message = record.message();
+    if (!(message instanceof ApplicationSentDataMessage)) {
+      return OptionalInt.empty();
+    }
+    JsonObject reply = ((ApplicationSentDataMessage) message).messageData();
+    return reply.containsKey("id") ? OptionalInt.of(reply.getInt("id")) : OptionalInt.empty();
+  }
+
+  /** Rewrites the recorded devtools reply to the connection and command ids of the replay. */
+  @GuardedBy("this")
+  private NSDictionary replyOf(Record record) {
+    InspectorMessage message = record.message();
+    if (!(message instanceof ApplicationSentDataMessage)) {
+      return record.plist;
+    }
+    ApplicationSentDataMessage data = (ApplicationSentDataMessage) message;
+    JsonObject reply = data.messageData();
+    if (reply.containsKey("id") && commandIds.containsKey(reply.getInt("id"))) {
+      reply = JavaxJson.toBuilder(reply).add("id", commandIds.get(reply.getInt("id"))).build();
+    }
+    return ApplicationSentDataMessage.builder()
+        .applicationId(data.applicationId())
+        .destination(connectionId.orElse(data.destination()))
+        .messageData(reply)
+        .build()
+        .toPlist();
+  }
+
+  /** Identifies what a sent message must match in the log: its selector and devtools method. */
+  private static String matchKey(InspectorMessage message) {
+    if (message instanceof ForwardSocketDataMessage) {
+      String method = ((ForwardSocketDataMessage) message).socketData().getString("method", "");
+      return message.selector() + " " + method;
+    }
+    return message.selector().toString();
+  }
+}
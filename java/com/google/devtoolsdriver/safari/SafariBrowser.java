@@ -15,18 +15,31 @@
 package com.google.devtoolsdriver.safari;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.devtoolsdriver.devtools.Console;
+import com.google.devtoolsdriver.devtools.DOM;
 import com.google.devtoolsdriver.devtools.DevtoolsCommand;
 import com.google.devtoolsdriver.devtools.DevtoolsDebugger;
 import com.google.devtoolsdriver.devtools.DevtoolsErrorException;
 import com.google.devtoolsdriver.devtools.DevtoolsEvent;
 import com.google.devtoolsdriver.devtools.DevtoolsResult;
+import com.google.devtoolsdriver.devtools.Network;
+import com.google.devtoolsdriver.devtools.Page;
 import com.google.devtoolsdriver.devtools.Runtime;
+import com.google.devtoolsdriver.devtools.Timeline;
 import com.google.devtoolsdriver.safari.InspectorMessenger.AppListing;
 import com.google.devtoolsdriver.webdriver.Browser;
 import com.google.devtoolsdriver.webdriver.BrowserException;
+import com.google.devtoolsdriver.webdriver.NetworkConditions;
 import com.google.devtoolsdriver.webdriver.PageId;
 import com.google.iosdevicecontrol.IosAppBundleId;
 import com.google.iosdevicecontrol.IosAppProcess;
@@ -36,11 +49,19 @@ import com.google.iosdevicecontrol.openurl.OpenUrlApp;
 import com.google.iosdevicecontrol.real.RealDevice;
 import com.google.iosdevicecontrol.simulator.SimulatorDevice;
 import com.google.iosdevicecontrol.webinspector.InspectorPage;
+import com.google.iosdevicecontrol.webinspector.InspectorSocket;
 import com.google.iosdevicecontrol.webinspector.WebInspector;
 import java.io.Closeable;
 import java.io.IOException;
 import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import javax.json.JsonObject;
 
 /** An implementation of the Devtools browser interface for mobile Safari */
@@ -50,24 +71,90 @@ public abstract class SafariBrowser implements Browser {
   private static final DevtoolsCommand CLOSE_COMMAND = Runtime.evaluate("window.close()");
   private static final Duration HAS_FOCUS_TIMEOUT = Duration.ofSeconds(10);
   private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(15);
+  private static final Duration RESET_TIMEOUT = Duration.ofSeconds(15);
+  private static final int SCREENSHOT_THREADS = 8;
+
+  /**
+   * The commands that turn off what a session may turn on, keyed by the method turning it on. The
+   * Timeline recording is stopped before the domains are disabled.
+   */
+  private static final ImmutableMap<String, DevtoolsCommand> TURN_OFF_COMMANDS =
+      ImmutableMap.<String, DevtoolsCommand>builder()
+          .put(Timeline.start().method(), Timeline.stop())
+          .put(Network.enable().method(), Network.disable())
+          .put(Page.enable().method(), Page.disable())
+          .put(DOM.enable().method(), DOM.disable())
+          .put(Runtime.enable().method(), Runtime.disable())
+          .put(Console.enable().method(), Console.disable())
+          .build();
+
+  /**
+   * Takes the device screenshots, which run a device tool, off the threads awaiting them; a few
+   * threads, since each screenshot keeps its device busy anyway.
+   */
+  private static final ListeningExecutorService SCREENSHOT_EXECUTOR =
+      MoreExecutors.listeningDecorator(
+          Executors.newFixedThreadPool(
+              SCREENSHOT_THREADS,
+              new ThreadFactoryBuilder()
+                  .setNameFormat("device-screenshot-%d")
+                  .setDaemon(true)
+                  .build()));
+
+  static SafariBrowser startOnRealDevice(IosDevice device, Optional<InspectorRecorder> recorder)
+      throws BrowserException {
+    return new RealDeviceSafariBrowser(device, recorder);
+  }
+
+  static SafariBrowser startOnSimulator(IosDevice device, Optional<InspectorRecorder> recorder)
+      throws BrowserException {
+    SimulatorDevice sim = (SimulatorDevice) device;
+    try {
+      IosAppProcess safariProcess = sim.runApplication(new IosAppBundleId(SAFARI_BUNDLE_ID));
+      return new SimulatorSafariBrowser(sim, safariProcess, recorder);
+    } catch (IosDeviceException e) {
+      throw new BrowserException(e);
+    }
+  }
 
-  static SafariBrowser startOnRealDevice(IosDevice device) throws BrowserException {
-    return new RealDeviceSafariBrowser(device);
+  static SafariBrowser startOnFakeDevice(
+      FakeInspectorDevice device, Optional<InspectorRecorder> recorder) throws BrowserException {
+    return new FakeDeviceSafariBrowser(device.udid(), device, device::takeScreenshot, recorder);
   }
 
-  static SafariBrowser startOnSimulator(IosDevice device) throws BrowserException {
-    return new SimulatorSafariBrowser(device);
+  /**
+   * Starts a browser that replays a recorded session, with blank screenshots, for load harnesses
+   * and benchmarks of the driver.
+   */
+  public static SafariBrowser startOnReplay(String udid, InspectorReplayer replayer)
+      throws BrowserException {
+    return new FakeDeviceSafariBrowser(
+        udid, replayer, FakeInspectorDevice::blankScreenshot, Optional.empty());
   }
 
-  private final IosDevice device;
+  private final String udid;
   private final InspectorMessenger messenger;
   private final SafariDebugger debugger = new SafariDebugger();
+  private Closeable onClose = () -> {};
+  private Predicate<SafariBrowser> recycler = browser -> false;
+  /** The methods of the commands sent since the last reset that turned something on. */
+  private final Set<String> turnedOn = ConcurrentHashMap.newKeySet();
 
-  private SafariBrowser(IosDevice device) throws BrowserException {
-    this.device = checkNotNull(device);
-    messenger = new InspectorMessenger(openSafari());
+  private SafariBrowser(String udid, WebInspector inspector, Optional<InspectorRecorder> recorder)
+      throws BrowserException {
+    this.udid = checkNotNull(udid);
+    messenger = new InspectorMessenger(inspector, recorder);
     messenger.setEventListener(debugger);
-    connect();
+    try {
+      connect();
+    } catch (BrowserException | RuntimeException e) {
+      try {
+        messenger.close();
+      } catch (IOException closeException) {
+        e.addSuppressed(closeException);
+      }
+      throw e;
+    }
   }
 
   private void connect() throws BrowserException {
@@ -119,6 +206,7 @@ public abstract class SafariBrowser implements Browser {
   @Override
   public final DevtoolsResult sendCommand(DevtoolsCommand command, Duration timeout)
       throws BrowserException {
+    noteTurnedOn(command);
     try {
       return debugger.sendCommand(command, timeout);
     } catch (DevtoolsErrorException | IOException e) {
@@ -126,6 +214,23 @@ public abstract class SafariBrowser implements Browser {
     }
   }
 
+  @Override
+  public final ListenableFuture<DevtoolsResult> sendCommandAsync(
+      DevtoolsCommand command, Duration timeout) {
+    noteTurnedOn(command);
+    return Futures.catchingAsync(
+        debugger.sendCommandAsync(command, timeout),
+        Exception.class,
+        e -> Futures.immediateFailedFuture(new BrowserException(e)),
+        directExecutor());
+  }
+
+  private void noteTurnedOn(DevtoolsCommand command) {
+    if (TURN_OFF_COMMANDS.containsKey(command.method())) {
+      turnedOn.add(command.method());
+    }
+  }
+
   @Override
   public final void addEventListener(Consumer<DevtoolsEvent> listener) {
     debugger.addEventListener(listener);
@@ -133,11 +238,12 @@ public abstract class SafariBrowser implements Browser {
 
   @Override
   public final byte[] takeScreenshot() throws BrowserException {
-    try {
-      return device.takeScreenshot();
-    } catch (IosDeviceException e) {
-      throw new BrowserException(e);
-    }
+    return takeDeviceScreenshot();
+  }
+
+  @Override
+  public final ListenableFuture<byte[]> takeScreenshotAsync() {
+    return SCREENSHOT_EXECUTOR.submit(this::takeDeviceScreenshot);
   }
 
   @Override
@@ -150,9 +256,65 @@ public abstract class SafariBrowser implements Browser {
     return "MAC";
   }
 
+  /** Sets a resource to close after the browser is closed, such as the lease of its device. */
+  final void setOnClose(Closeable onClose) {
+    this.onClose = checkNotNull(onClose);
+  }
+
+  /**
+   * Sets the hook offered the browser when it is closed, which returns whether it took the browser
+   * for reuse; otherwise, the browser is shut down.
+   */
+  final void setRecycler(Predicate<SafariBrowser> recycler) {
+    this.recycler = checkNotNull(recycler);
+  }
+
+  /** Returns the udid of the device the browser runs on. */
+  final String udid() {
+    return udid;
+  }
+
+  /**
+   * Resets the browser in place for a new session: removes the event listeners, closes all the
+   * pages but one, clears the cookies and cache, turns off the network throttling, cache disabling
+   * and service worker bypass a session may have set, stops the Timeline recording and disables
+   * the domains the session turned on, and navigates the remaining page to a blank page.
+   */
+  final void reset() throws BrowserException {
+    debugger.removeAllEventListeners();
+    ImmutableList<PageId> pages = listPages();
+    if (pages.isEmpty()) {
+      throw new BrowserException("no page left to reset");
+    }
+    for (PageId pageId : pages.subList(1, pages.size())) {
+      switchTo(pageId);
+      sendCommand(CLOSE_COMMAND, CLOSE_TIMEOUT);
+    }
+    switchTo(pages.get(0));
+    sendCommand(Network.clearBrowserCookies(), RESET_TIMEOUT);
+    sendCommand(Network.clearBrowserCache(), RESET_TIMEOUT);
+    sendCommand(NetworkConditions.NONE.toCommand(), RESET_TIMEOUT);
+    sendCommand(Network.setCacheDisabled(false), RESET_TIMEOUT);
+    sendCommand(Network.setBypassServiceWorker(false), RESET_TIMEOUT);
+    for (Map.Entry<String, DevtoolsCommand> turnOff : TURN_OFF_COMMANDS.entrySet()) {
+      if (turnedOn.remove(turnOff.getKey())) {
+        sendCommand(turnOff.getValue(), RESET_TIMEOUT);
+      }
+    }
+    sendCommand(Page.navigate("about:blank"), RESET_TIMEOUT);
+  }
+
   @Override
   public final void close() throws BrowserException {
-    try (Closeable ignored = this.messenger) {
+    if (!recycler.test(this)) {
+      shutdown();
+    }
+  }
+
+  /** Closes all the tabs and Safari, and releases the device. */
+  final void shutdown() throws BrowserException {
+    try (Closeable ignoredOnClose = this.onClose;
+        Closeable ignored = this.messenger) {
       // Attempt to close all the tabs through JavaScript.
       for (PageId pageId : listPages()) {
         switchTo(pageId);
@@ -164,8 +326,8 @@ public abstract class SafariBrowser implements Browser {
     }
   }
 
-  /** Hook method to open Safari. */
-  abstract WebInspector openSafari() throws BrowserException;
+  /** Hook method to take a screenshot of the device in PNG format. */
+  abstract byte[] takeDeviceScreenshot() throws BrowserException;
 
   /** Hook method to close Safari */
   abstract void closeSafari() throws BrowserException;
@@ -187,26 +349,34 @@ public abstract class SafariBrowser implements Browser {
   }
 
   private static final class RealDeviceSafariBrowser extends SafariBrowser {
-    RealDeviceSafariBrowser(IosDevice device) throws BrowserException {
-      super(device);
+    private final IosDevice device;
+
+    RealDeviceSafariBrowser(IosDevice device, Optional<InspectorRecorder> recorder)
+        throws BrowserException {
+      super(device.udid(), openSafari(device), recorder);
+      this.device = device;
     }
 
-    @Override
-    WebInspector openSafari() throws BrowserException {
+    private static WebInspector openSafari(IosDevice device) throws BrowserException {
       OpenUrlApp openUrlResource = OpenUrlApp.fromResource();
       try {
-        openUrlResource.openBlankPage(super.device);
-        return WebInspector.connectToRealDevice(super.device.udid());
+        openUrlResource.openBlankPage(device);
+        return WebInspector.connectToRealDevice(device.udid());
       } catch (IOException e) {
-        throw new BrowserException(new IosDeviceException(super.device, e));
+        throw new BrowserException(new IosDeviceException(device, e));
       } catch (IosDeviceException e) {
         throw new BrowserException(e);
       }
     }
 
+    @Override
+    byte[] takeDeviceScreenshot() throws BrowserException {
+      return screenshotOf(device);
+    }
+
     @Override
     void closeSafari() throws BrowserException {
-      RealDevice realDevice = (RealDevice) super.device;
+      RealDevice realDevice = (RealDevice) device;
       try {
         try {
           ConfigProfiles.removeProxyProfile(realDevice);
@@ -221,7 +391,7 @@ public abstract class SafariBrowser implements Browser {
     @Override
     void setHttpProxy(HostAndPort hostAndPort) throws BrowserException {
       try {
-        RealDevice realDevice = (RealDevice) super.device;
+        RealDevice realDevice = (RealDevice) device;
         ConfigProfiles.installProxyProfile(realDevice, hostAndPort);
       } catch (IosDeviceException e) {
         throw new BrowserException(e);
@@ -231,7 +401,7 @@ public abstract class SafariBrowser implements Browser {
     @Override
     void installHttpsCert(String certName, String certContentBase64) throws BrowserException {
       try {
-        RealDevice realDevice = (RealDevice) super.device;
+        RealDevice realDevice = (RealDevice) device;
         ConfigProfiles.installCertProfile(realDevice, certName, certContentBase64);
       } catch (IosDeviceException e) {
         throw new BrowserException(e);
@@ -240,25 +410,30 @@ public abstract class SafariBrowser implements Browser {
   }
 
   private static final class SimulatorSafariBrowser extends SafariBrowser {
-    private IosAppProcess safariProcess;
-
-    private SimulatorSafariBrowser(IosDevice device) throws BrowserException {
-      super(device);
+    private final SimulatorDevice sim;
+    private final IosAppProcess safariProcess;
+
+    private SimulatorSafariBrowser(
+        SimulatorDevice sim, IosAppProcess safariProcess, Optional<InspectorRecorder> recorder)
+        throws BrowserException {
+      super(sim.udid(), connectToSimulator(sim), recorder);
+      this.sim = sim;
+      this.safariProcess = safariProcess;
     }
 
-    @Override
-    WebInspector openSafari() throws BrowserException {
-      SimulatorDevice sim = (SimulatorDevice) super.device;
+    private static WebInspector connectToSimulator(SimulatorDevice sim) throws BrowserException {
       try {
-        safariProcess = sim.runApplication(new IosAppBundleId(SAFARI_BUNDLE_ID));
         return WebInspector.connectToSimulator();
       } catch (IOException e) {
         throw new BrowserException(new IosDeviceException(sim, e));
-      } catch (IosDeviceException e) {
-        throw new BrowserException(e);
       }
     }
 
+    @Override
+    byte[] takeDeviceScreenshot() throws BrowserException {
+      return screenshotOf(sim);
+    }
+
     @Override
     void closeSafari() throws BrowserException {
       safariProcess.kill();
@@ -274,4 +449,50 @@ public abstract class SafariBrowser implements Browser {
       // Installing certificates is not yet supported on simulator.
     }
   }
+
+  /**
+   * A browser on an in-process fake device or recorded session, for running the driver without
+   * Apple hardware.
+   */
+  private static final class FakeDeviceSafariBrowser extends SafariBrowser {
+    private final Supplier<byte[]> screenshot;
+
+    private FakeDeviceSafariBrowser(
+        String udid,
+        InspectorSocket socket,
+        Supplier<byte[]> screenshot,
+        Optional<InspectorRecorder> recorder)
+        throws BrowserException {
+      super(udid, new WebInspector(socket), recorder);
+      this.screenshot = screenshot;
+    }
+
+    @Override
+    byte[] takeDeviceScreenshot() {
+      return screenshot.get();
+    }
+
+    @Override
+    void closeSafari() {
+      // The fake device goes away with its inspector connection.
+    }
+
+    @Override
+    void setHttpProxy(HostAndPort hostAndPort) {
+      // The fake device makes no network requests.
+    }
+
+    @Override
+    void installHttpsCert(String certName, String certContentBase64) {
+      // The fake device makes no network requests.
+    }
+  }
+
+  private static byte[] screenshotOf(IosDevice device) throws BrowserException {
+    try {
+      return device.takeScreenshot();
+    } catch (IosDeviceException e) {
+      throw new BrowserException(e);
+    }
+  }
 }
@@ -14,23 +14,42 @@
 
 package com.google.devtoolsdriver.safari;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.net.HostAndPort;
 import com.google.devtoolsdriver.webdriver.BrowserException;
 import com.google.devtoolsdriver.webdriver.BrowserLauncher;
 import com.google.iosdevicecontrol.IosDevice;
 import com.google.iosdevicecontrol.IosDeviceException;
-import com.google.iosdevicecontrol.IosDeviceHost;
 import com.google.iosdevicecontrol.real.RealDeviceHost;
 import com.google.iosdevicecontrol.simulator.SimulatorDevice;
 import com.google.iosdevicecontrol.simulator.SimulatorDeviceHost;
+import com.google.iosdevicecontrol.util.FluentLogger;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import javax.annotation.concurrent.GuardedBy;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
 /** Launches and returns a Browser instance referencing a connected device. */
 public abstract class SafariBrowserLauncher implements BrowserLauncher {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** How long a launch waits by default for a device to be free, when all are in use. */
+  public static final Duration DEFAULT_DEVICE_WAIT_TIMEOUT = Duration.ofMinutes(5);
+
   private static final Supplier<SafariBrowserLauncher> REAL_DEVICE_LAUNCHER =
       Suppliers.memoize(
           () -> onRealDevice(RealDeviceHost.withDeveloperDiskImagesFromXcode().initialize()));
@@ -42,89 +61,390 @@ public abstract class SafariBrowserLauncher implements BrowserLauncher {
 
   /** Returns a launcher for Safari on a real device with a custom device host. */
   public static SafariBrowserLauncher onRealDevice(RealDeviceHost host) {
-    return new SafariBrowserLauncher(host) {
+    return onRealDevice(host, DEFAULT_DEVICE_WAIT_TIMEOUT);
+  }
+
+  /**
+   * Returns a launcher for Safari on the real devices of a custom device host, which runs one
+   * browser per device and waits up to {@code deviceWaitTimeout} for a device to be free.
+   */
+  public static SafariBrowserLauncher onRealDevice(
+      RealDeviceHost host, Duration deviceWaitTimeout) {
+    checkNotNull(host);
+    DevicePool pool = DevicePool.forHost(host, Integer.MAX_VALUE, deviceWaitTimeout);
+    return new SafariBrowserLauncher(pool) {
       @Override
       public SafariBrowser launch(String udid) throws BrowserException {
+        IosDevice device;
         try {
-          IosDevice device = super.deviceHost.connectedDevice(udid);
-          return SafariBrowser.startOnRealDevice(device);
+          device = host.connectedDevice(udid);
         } catch (IOException e) {
           throw new BrowserException(e);
         }
+        return startRecorded(udid, recorder -> SafariBrowser.startOnRealDevice(device, recorder));
       }
     };
   }
 
   /** Returns a launcher for Safari on the simulator. All crash logs are deleted before launch. */
   public static SafariBrowserLauncher onSimulator(boolean force) {
-    return new SafariBrowserLauncher(SimulatorDeviceHost.INSTANCE) {
+    return onSimulator(force, DEFAULT_DEVICE_WAIT_TIMEOUT);
+  }
+
+  /**
+   * Returns a launcher for Safari on the simulator, which waits up to {@code deviceWaitTimeout} for
+   * the running simulator to be free. If {@code force} is set, all simulators are shut down before
+   * each launch. All crash logs are deleted before launch.
+   */
+  public static SafariBrowserLauncher onSimulator(boolean force, Duration deviceWaitTimeout) {
+    return new SimulatorLauncher(force, false, deviceWaitTimeout);
+  }
+
+  /**
+   * Returns a launcher for Safari on the simulator that reuses the simulator already booted on the
+   * inspector port, if any, rather than rebooting it for each session. Without a "uuid" capability,
+   * the booted simulator is preferred; any other simulator is booted after shutting down the others.
+   */
+  public static SafariBrowserLauncher onReusedSimulator(Duration deviceWaitTimeout) {
+    return new SimulatorLauncher(true, true, deviceWaitTimeout);
+  }
+
+  /**
+   * Returns a launcher for Safari on {@code count} in-process fake devices, which answer the
+   * inspector protocol from a model of a blank page, for load testing the driver without Apple
+   * hardware. Every message from a device is delayed by {@code latency} and, unless {@code
+   * bytesPerSecond} is 0, by the time its payload takes at that bandwidth.
+   */
+  public static SafariBrowserLauncher onFakeDevices(
+      int count, Duration latency, long bytesPerSecond, Duration deviceWaitTimeout) {
+    checkArgument(count > 0);
+    ImmutableSet<String> udids =
+        IntStream.range(0, count)
+            .mapToObj(i -> "fake-" + i)
+            .collect(ImmutableSet.toImmutableSet());
+    DevicePool pool = new DevicePool(() -> udids, count, deviceWaitTimeout);
+    return new SafariBrowserLauncher(pool) {
       @Override
       public SafariBrowser launch(String udid) throws BrowserException {
-        try {
-          SimulatorDevice sim = (SimulatorDevice) super.deviceHost.connectedDevice(udid);
-          SimulatorDeviceHost simHost = (SimulatorDeviceHost) super.deviceHost;
-          if (force) {
-            simHost.shutdownAllDevices();
-            while (simHost.deviceOnInspectorPort().isPresent()) {
-              try {
-                Thread.sleep(100);
-              } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new BrowserException(e);
-              }
-            }
-          }
-          simHost.clearCrashLogs();
-          sim.startup();
-          while (!simHost.deviceOnInspectorPort().isPresent()) {
-            try {
-              Thread.sleep(100);
-            } catch (InterruptedException e) {
-              Thread.currentThread().interrupt();
-              throw new BrowserException(e);
-            }
-          }
-          return SafariBrowser.startOnSimulator(sim);
-        } catch (IOException | IosDeviceException e) {
-          throw new BrowserException(e);
-        }
+        checkArgument(udids.contains(udid), "no fake device %s", udid);
+        FakeInspectorDevice device = new FakeInspectorDevice(udid, latency, bytesPerSecond);
+        return startRecorded(udid, recorder -> SafariBrowser.startOnFakeDevice(device, recorder));
       }
     };
   }
 
-  private final IosDeviceHost deviceHost;
+  private final DevicePool devicePool;
+
+  private volatile boolean reuseBrowsers = false;
+  private volatile Optional<Path> recordingDirectory = Optional.empty();
 
-  private SafariBrowserLauncher(IosDeviceHost deviceHost) {
-    this.deviceHost = deviceHost;
+  private SafariBrowserLauncher(DevicePool devicePool) {
+    this.devicePool = devicePool;
   }
 
   /** Hook method to launch Safari on the specified device udid. */
   public abstract SafariBrowser launch(String udid) throws BrowserException;
 
-  /** Launches Safari on a connected devices. */
+  /** Launches Safari on a free connected device. */
   public final SafariBrowser launch() throws BrowserException {
-    try {
-      return launch(deviceHost.connectedDevices().iterator().next().udid());
-    } catch (IOException e) {
-      throw new BrowserException(e);
-    }
+    return launch(new DesiredCapabilities());
   }
 
+  /**
+   * Launches Safari on the device of the "uuid" capability, or on any free connected device if
+   * unset. The device is leased to the browser until it is closed.
+   */
   @Override
   public final SafariBrowser launch(DesiredCapabilities caps) throws BrowserException {
-    String udid = (String) caps.getCapability("uuid");
-    SafariBrowser browser = udid == null ? launch() : launch(udid);
+    Optional<String> udid = Optional.ofNullable((String) caps.getCapability("uuid"));
+    if (!udid.isPresent()) {
+      udid = preferredUdid();
+    }
+    DevicePool.Lease lease = devicePool.lease(udid);
+    SafariBrowser browser = launchOnLeasedDevice(lease);
+    boolean reusable = true;
     @SuppressWarnings("unchecked")
     Map<String, String> proxyDict = (Map<String, String>) caps.getCapability("proxy");
     if (proxyDict != null) {
       HostAndPort proxy = HostAndPort.fromString(proxyDict.get("httpProxy"));
       browser.setHttpProxy(proxy);
+      reusable = false;
     }
     @SuppressWarnings("unchecked")
     Map<String, String> cert = (Map<String, String>) caps.getCapability("httpsCert");
     if (cert != null) {
       browser.installHttpsCert(cert.get("certName"), cert.get("certContentBase64"));
+      reusable = false;
+    }
+    // The proxy and certificate profiles are only removed when Safari is shut down.
+    browser.setRecycler(reusable ? b -> recycle(b, lease) : b -> false);
+    return browser;
+  }
+
+  /** Hook method for the device to launch on when the capabilities do not name one. */
+  Optional<String> preferredUdid() {
+    return Optional.empty();
+  }
+
+  /** Takes over the idle browser of the lease, or launches one on its device. */
+  private SafariBrowser launchOnLeasedDevice(DevicePool.Lease lease) throws BrowserException {
+    SafariBrowser browser;
+    if (lease.idleBrowser().isPresent()) {
+      browser = lease.idleBrowser().get();
+    } else {
+      try {
+        browser = launch(lease.udid());
+      } catch (BrowserException | RuntimeException e) {
+        lease.close();
+        throw e;
+      }
     }
+    browser.setOnClose(lease);
     return browser;
   }
+
+  /**
+   * Keeps the browsers launched from now on running between sessions, resetting them in place when
+   * their session ends, and launches {@code count} browsers ahead of the first sessions; at most
+   * one per device that can be leased, since a second would wait for the first to be closed.
+   */
+  public final void startWarmPool(int count) throws BrowserException {
+    reuseBrowsers = true;
+    int capacity = devicePool.capacity();
+    if (count > capacity) {
+      logger.atWarning().log(
+          "Only %d of the %d warm browsers requested can run on the devices", capacity, count);
+      count = capacity;
+    }
+    List<SafariBrowser> browsers = new ArrayList<>();
+    try {
+      for (int i = 0; i < count; i++) {
+        browsers.add(launch());
+      }
+    } finally {
+      // Closing the browsers parks them as idle.
+      for (SafariBrowser browser : browsers) {
+        browser.close();
+      }
+    }
+  }
+
+  /**
+   * Records the inspector messages of the browsers launched from now on, to one log per browser in
+   * {@code directory}, which can be replayed without the device by {@link InspectorReplayer}.
+   */
+  public final void recordInspectorMessages(Path directory) {
+    recordingDirectory = Optional.of(directory);
+  }
+
+  /** Starts a browser, given the recorder of its inspector messages, if any. */
+  interface Starter {
+    SafariBrowser start(Optional<InspectorRecorder> recorder) throws BrowserException;
+  }
+
+  /**
+   * Starts a browser on the device with a recorder to a new log, if recording is on, which is
+   * closed if the browser fails to start.
+   */
+  final SafariBrowser startRecorded(String udid, Starter starter) throws BrowserException {
+    Optional<InspectorRecorder> recorder = newRecorder(udid);
+    try {
+      return starter.start(recorder);
+    } catch (BrowserException | RuntimeException e) {
+      if (recorder.isPresent()) {
+        try {
+          recorder.get().close();
+        } catch (IOException closeException) {
+          e.addSuppressed(closeException);
+        }
+      }
+      throw e;
+    }
+  }
+
+  /** Returns a recorder to a new log for a browser on the device, if recording is on. */
+  private Optional<InspectorRecorder> newRecorder(String udid) throws BrowserException {
+    Optional<Path> directory = recordingDirectory;
+    if (!directory.isPresent()) {
+      return Optional.empty();
+    }
+    Path log = directory.get().resolve(udid + "-" + System.currentTimeMillis() + ".wirlog");
+    try {
+      Files.createDirectories(directory.get());
+      logger.atInfo().log("Recording the inspector messages to %s", log);
+      return Optional.of(InspectorRecorder.toFile(log));
+    } catch (IOException e) {
+      throw new BrowserException(e);
+    }
+  }
+
+  /**
+   * Offered the browsers as they are closed; returns whether the browser was kept for reuse, in
+   * which case it is parked in the pool with its device, whose lease is given back.
+   */
+  private boolean recycle(SafariBrowser browser, DevicePool.Lease lease) {
+    if (!reuseBrowsers) {
+      return false;
+    }
+    try {
+      browser.reset();
+    } catch (BrowserException e) {
+      logger.atWarning().withCause(e).log("Failed to reset the browser, shutting it down");
+      return false;
+    }
+    // A session queued for the device is handed the browser at once.
+    lease.park(browser);
+    return true;
+  }
+
+  @Override
+  public ImmutableMap<String, Object> status() {
+    ImmutableMap<String, Object> stats = devicePool.stats();
+    return ImmutableMap.of("devices", stats, "idleBrowsers", stats.get("idleBrowsers"));
+  }
+
+  /** Shuts down the idle browsers, releasing their devices. */
+  @Override
+  public void shutdown() {
+    reuseBrowsers = false;
+    for (SafariBrowser browser : devicePool.takeIdleBrowsers()) {
+      try {
+        browser.shutdown();
+      } catch (BrowserException e) {
+        logger.atWarning().withCause(e).log("Failed to shut down an idle browser");
+      }
+    }
+  }
+
+  /** Launches Safari on the simulator, of which only one at a time can be on the inspector port. */
+  private static final class SimulatorLauncher extends SafariBrowserLauncher {
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofMinutes(1);
+    private static final Duration BOOT_TIMEOUT = Duration.ofMinutes(3);
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private final SimulatorDeviceHost simHost = SimulatorDeviceHost.INSTANCE;
+    private final boolean force;
+    private final boolean reuseBooted;
+
+    @GuardedBy("this")
+    private long boots;
+
+    @GuardedBy("this")
+    private long reuses;
+
+    @GuardedBy("this")
+    private long lastBootMillis;
+
+    @GuardedBy("this")
+    private long maxBootMillis;
+
+    @GuardedBy("this")
+    private long lastAttachMillis;
+
+    private SimulatorLauncher(boolean force, boolean reuseBooted, Duration deviceWaitTimeout) {
+      super(DevicePool.forHost(SimulatorDeviceHost.INSTANCE, 1, deviceWaitTimeout));
+      this.force = force;
+      this.reuseBooted = reuseBooted;
+    }
+
+    @Override
+    public SafariBrowser launch(String udid) throws BrowserException {
+      try {
+        SimulatorDevice sim = (SimulatorDevice) simHost.connectedDevice(udid);
+        Optional<String> booted = simHost.deviceOnInspectorPort().map(SimulatorDevice::udid);
+        boolean reuse = reuseBooted && booted.equals(Optional.of(udid));
+        simHost.clearCrashLogs();
+        if (reuse) {
+          logger.atInfo().log("Reusing the simulator %s booted on the inspector port", udid);
+        } else {
+          long bootStart = System.nanoTime();
+          if (force) {
+            simHost.shutdownAllDevices();
+            awaitInspectorPort(simHost, false, SHUTDOWN_TIMEOUT);
+          }
+          sim.startup();
+          awaitInspectorPort(simHost, true, BOOT_TIMEOUT);
+          long bootMillis = millisSince(bootStart);
+          logger.atInfo().log("Booted the simulator %s in %d ms", udid, bootMillis);
+          synchronized (this) {
+            boots++;
+            lastBootMillis = bootMillis;
+            maxBootMillis = Math.max(maxBootMillis, bootMillis);
+          }
+        }
+
+        long attachStart = System.nanoTime();
+        SafariBrowser browser =
+            startRecorded(udid, recorder -> SafariBrowser.startOnSimulator(sim, recorder));
+        long attachMillis = millisSince(attachStart);
+        logger.atInfo().log("Attached to Safari on the simulator %s in %d ms", udid, attachMillis);
+        synchronized (this) {
+          if (reuse) {
+            reuses++;
+          }
+          lastAttachMillis = attachMillis;
+        }
+        return browser;
+      } catch (IOException | IosDeviceException e) {
+        throw new BrowserException(e);
+      }
+    }
+
+    @Override
+    Optional<String> preferredUdid() {
+      if (!reuseBooted) {
+        return Optional.empty();
+      }
+      try {
+        return simHost.deviceOnInspectorPort().map(SimulatorDevice::udid);
+      } catch (IOException e) {
+        return Optional.empty();
+      }
+    }
+
+    @Override
+    public ImmutableMap<String, Object> status() {
+      ImmutableMap<String, Object> simulator;
+      synchronized (this) {
+        simulator =
+            ImmutableMap.<String, Object>builder()
+                .put("boots", boots)
+                .put("reuses", reuses)
+                .put("lastBootMillis", lastBootMillis)
+                .put("maxBootMillis", maxBootMillis)
+                .put("lastAttachMillis", lastAttachMillis)
+                .build();
+      }
+      return ImmutableMap.<String, Object>builder()
+          .putAll(super.status())
+          .put("simulator", simulator)
+          .build();
+    }
+
+    /** Waits, up to the timeout, until a simulator is on the inspector port or none is. */
+    private static void awaitInspectorPort(
+        SimulatorDeviceHost simHost, boolean present, Duration timeout)
+        throws BrowserException, IOException {
+      long deadline = System.nanoTime() + timeout.toNanos();
+      while (simHost.deviceOnInspectorPort().isPresent() != present) {
+        if (System.nanoTime() - deadline > 0) {
+          throw new BrowserException(
+              String.format(
+                  "no simulator %s the inspector port after %d s",
+                  present ? "came up on" : "left",
+                  timeout.getSeconds()));
+        }
+        try {
+          Thread.sleep(POLL_INTERVAL_MILLIS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new BrowserException(e);
+        }
+      }
+    }
+
+    private static long millisSince(long startNanos) {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+  }
 }
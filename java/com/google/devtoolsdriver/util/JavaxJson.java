@@ -15,9 +15,13 @@
 package com.google.devtoolsdriver.util;
 
 import com.google.common.base.VerifyException;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonPrimitive;
 import java.io.StringReader;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +36,8 @@ import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 import javax.json.JsonString;
 import javax.json.JsonValue;
+import javax.json.spi.JsonProvider;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -43,40 +49,164 @@ public final class JavaxJson {
   /** Empty JsonObject. */
   public static final JsonObject EMPTY_OBJECT = Json.createObjectBuilder().build();
 
-  private static final JsonParser GSON_PARSER = new JsonParser();
+  /**
+   * The JSON provider, looked up once: each of the static factory methods of {@link Json} looks it
+   * up through the service loader, which costs far more than the object it creates.
+   */
+  private static final JsonProvider PROVIDER = JsonProvider.provider();
+
+  /** Creates a {@link JsonObjectBuilder}, like {@link Json#createObjectBuilder}, but faster. */
+  public static JsonObjectBuilder createObjectBuilder() {
+    return PROVIDER.createObjectBuilder();
+  }
+
+  /** Creates a {@link JsonArrayBuilder}, like {@link Json#createArrayBuilder}, but faster. */
+  public static JsonArrayBuilder createArrayBuilder() {
+    return PROVIDER.createArrayBuilder();
+  }
 
   /** Parses a string to a {@link JsonArray}. */
   public static JsonArray parseArray(String jsonString) {
-    try (JsonReader reader = Json.createReader(new StringReader(jsonString))) {
+    try (JsonReader reader = PROVIDER.createReader(new StringReader(jsonString))) {
       return reader.readArray();
     }
   }
 
   /** Parses a string to a {@link JsonObject}. */
   public static JsonObject parseObject(String jsonString) {
-    try (JsonReader reader = Json.createReader(new StringReader(jsonString))) {
+    try (JsonReader reader = PROVIDER.createReader(new StringReader(jsonString))) {
       return reader.readObject();
     }
   }
 
   /** Converts a {@link com.google.gson.JsonArray} to a {@link JsonArray}. */
   public static JsonArray fromGson(com.google.gson.JsonArray gson) {
-    return parseArray(gson.toString());
+    JsonArrayBuilder builder = createArrayBuilder();
+    for (JsonElement element : gson) {
+      if (element.isJsonObject()) {
+        builder.add(fromGson(element.getAsJsonObject()));
+      } else if (element.isJsonArray()) {
+        builder.add(fromGson(element.getAsJsonArray()));
+      } else if (element.isJsonNull()) {
+        builder.addNull();
+      } else {
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+          builder.add(primitive.getAsBoolean());
+        } else if (primitive.isString()) {
+          builder.add(primitive.getAsString());
+        } else if (isIntegral(primitive.getAsNumber())) {
+          builder.add(primitive.getAsLong());
+        } else {
+          builder.add(primitive.getAsBigDecimal());
+        }
+      }
+    }
+    return builder.build();
   }
 
   /** Converts a {@link com.google.gson.JsonObject} to a {@link JsonObject}. */
   public static JsonObject fromGson(com.google.gson.JsonObject gson) {
-    return parseObject(gson.toString());
+    JsonObjectBuilder builder = createObjectBuilder();
+    for (Entry<String, JsonElement> e : gson.entrySet()) {
+      String name = e.getKey();
+      JsonElement element = e.getValue();
+      if (element.isJsonObject()) {
+        builder.add(name, fromGson(element.getAsJsonObject()));
+      } else if (element.isJsonArray()) {
+        builder.add(name, fromGson(element.getAsJsonArray()));
+      } else if (element.isJsonNull()) {
+        builder.addNull(name);
+      } else {
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+          builder.add(name, primitive.getAsBoolean());
+        } else if (primitive.isString()) {
+          builder.add(name, primitive.getAsString());
+        } else if (isIntegral(primitive.getAsNumber())) {
+          builder.add(name, primitive.getAsLong());
+        } else {
+          builder.add(name, primitive.getAsBigDecimal());
+        }
+      }
+    }
+    return builder.build();
   }
 
   /** Converts a {@link JSONObject} to a {@link JsonObject}. */
   public static JsonObject fromOrgJson(JSONObject json) {
-    return parseObject(json.toString());
+    JsonObjectBuilder builder = createObjectBuilder();
+    for (Iterator<String> keys = json.keys(); keys.hasNext(); ) {
+      String name = keys.next();
+      Object value = json.opt(name);
+      if (value instanceof JSONObject) {
+        builder.add(name, fromOrgJson((JSONObject) value));
+      } else if (value instanceof JSONArray) {
+        builder.add(name, fromOrgJson((JSONArray) value));
+      } else if (value == null || value == JSONObject.NULL) {
+        builder.addNull(name);
+      } else if (value instanceof String) {
+        builder.add(name, (String) value);
+      } else if (value instanceof Boolean) {
+        builder.add(name, (Boolean) value);
+      } else if (value instanceof Number && isIntegral((Number) value)) {
+        builder.add(name, ((Number) value).longValue());
+      } else if (value instanceof Number) {
+        builder.add(name, new BigDecimal(value.toString()));
+      } else {
+        builder.add(name, orgJsonValueToJavax(value));
+      }
+    }
+    return builder.build();
+  }
+
+  private static JsonArray fromOrgJson(JSONArray json) {
+    JsonArrayBuilder builder = createArrayBuilder();
+    for (int i = 0; i < json.length(); i++) {
+      Object value = json.opt(i);
+      if (value instanceof JSONObject) {
+        builder.add(fromOrgJson((JSONObject) value));
+      } else if (value instanceof JSONArray) {
+        builder.add(fromOrgJson((JSONArray) value));
+      } else if (value == null || value == JSONObject.NULL) {
+        builder.addNull();
+      } else if (value instanceof String) {
+        builder.add((String) value);
+      } else if (value instanceof Boolean) {
+        builder.add((Boolean) value);
+      } else if (value instanceof Number && isIntegral((Number) value)) {
+        builder.add(((Number) value).longValue());
+      } else if (value instanceof Number) {
+        builder.add(new BigDecimal(value.toString()));
+      } else {
+        builder.add(orgJsonValueToJavax(value));
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Converts a value of a type that org.json only knows how to write, such as a map or a bean, by
+   * writing and reparsing it.
+   */
+  private static JsonValue orgJsonValueToJavax(Object value) {
+    try {
+      return parseArray("[" + JSONObject.valueToString(value) + "]").get(0);
+    } catch (JSONException e) {
+      throw new VerifyException(e);
+    }
+  }
+
+  private static boolean isIntegral(Number number) {
+    return number instanceof Integer
+        || number instanceof Long
+        || number instanceof Short
+        || number instanceof Byte;
   }
 
   /** Converts a {@link JsonArray} to a {@JsonArrayBuilder}. */
   public static JsonArrayBuilder toBuilder(JsonArray array) {
-    JsonArrayBuilder builder = Json.createArrayBuilder();
+    JsonArrayBuilder builder = createArrayBuilder();
     for (JsonValue value : array) {
       builder.add(value);
     }
@@ -85,7 +215,7 @@ public final class JavaxJson {
 
   /** Converts a {@link JsonObject} to a {@JsonObjectBuilder}. */
   public static JsonObjectBuilder toBuilder(JsonObject object) {
-    JsonObjectBuilder builder = Json.createObjectBuilder();
+    JsonObjectBuilder builder = createObjectBuilder();
     for (Entry<String, JsonValue> e : object.entrySet()) {
       builder.add(e.getKey(), e.getValue());
     }
@@ -94,22 +224,110 @@ public final class JavaxJson {
 
   /** Converts a {@link JsonArray} to a {@link com.google.gson.JsonArray}. */
   public static com.google.gson.JsonArray toGson(JsonArray json) {
-    return GSON_PARSER.parse(json.toString()).getAsJsonArray();
+    com.google.gson.JsonArray gson = new com.google.gson.JsonArray();
+    for (JsonValue value : json) {
+      gson.add(toGson(value));
+    }
+    return gson;
   }
 
   /** Converts a {@link JsonObject} to a {@link com.google.gson.JsonObject}. */
   public static com.google.gson.JsonObject toGson(JsonObject json) {
-    return GSON_PARSER.parse(json.toString()).getAsJsonObject();
+    com.google.gson.JsonObject gson = new com.google.gson.JsonObject();
+    for (Entry<String, JsonValue> e : json.entrySet()) {
+      gson.add(e.getKey(), toGson(e.getValue()));
+    }
+    return gson;
+  }
+
+  /** Converts a {@link JsonValue} to a {@link JsonElement}. */
+  public static JsonElement toGson(JsonValue value) {
+    switch (value.getValueType()) {
+      case ARRAY:
+        return toGson((JsonArray) value);
+      case OBJECT:
+        return toGson((JsonObject) value);
+      case FALSE:
+        return new JsonPrimitive(false);
+      case TRUE:
+        return new JsonPrimitive(true);
+      case NULL:
+        return JsonNull.INSTANCE;
+      case NUMBER:
+        JsonNumber number = (JsonNumber) value;
+        Long longValue = longValueIfExact(number);
+        return longValue != null
+            ? new JsonPrimitive(longValue)
+            : new JsonPrimitive(number.bigDecimalValue());
+      case STRING:
+        return new JsonPrimitive(((JsonString) value).getString());
+      default:
+        throw new VerifyException("Json value with unknown type: " + value);
+    }
+  }
+
+  /** Returns the value of an integral number that fits in a long, or null for other numbers. */
+  @Nullable
+  private static Long longValueIfExact(JsonNumber number) {
+    if (!number.isIntegral()) {
+      return null;
+    }
+    try {
+      return number.longValueExact();
+    } catch (ArithmeticException e) {
+      return null;
+    }
   }
 
   /** Converts a {@link JsonObject} to a {@link JSONObject}. */
   public static JSONObject toOrgJson(JsonObject json) {
+    JSONObject orgJson = new JSONObject();
     try {
-      return new JSONObject(json.toString());
+      for (Entry<String, JsonValue> e : json.entrySet()) {
+        orgJson.put(e.getKey(), toOrgJson(e.getValue()));
+      }
     } catch (JSONException e) {
       // Should never happen, because we start from a valid JSON object.
       throw new VerifyException(e);
     }
+    return orgJson;
+  }
+
+  /**
+   * Converts a value to the object that org.json parses it to: an Integer, or a Long if too large,
+   * for integral numbers, a Double for the others, and JSONObject.NULL for null.
+   */
+  private static Object toOrgJson(JsonValue value) {
+    switch (value.getValueType()) {
+      case ARRAY:
+        JSONArray array = new JSONArray();
+        for (JsonValue element : (JsonArray) value) {
+          array.put(toOrgJson(element));
+        }
+        return array;
+      case OBJECT:
+        return toOrgJson((JsonObject) value);
+      case FALSE:
+        return Boolean.FALSE;
+      case TRUE:
+        return Boolean.TRUE;
+      case NULL:
+        return JSONObject.NULL;
+      case NUMBER:
+        JsonNumber number = (JsonNumber) value;
+        if (!number.isIntegral()) {
+          return number.doubleValue();
+        }
+        Long longValue = longValueIfExact(number);
+        if (longValue == null) {
+          return number.bigIntegerValue();
+        }
+        return longValue == longValue.intValue() ? (Object) longValue.intValue() : longValue;
+      case STRING:
+        return ((JsonString) value).getString();
+      default:
+        throw new VerifyException("Json value with unknown type: " + value);
+    }
   }
 
   /**
@@ -164,5 +382,60 @@ public final class JavaxJson {
     return list;
   }
 
+  /**
+   * Returns the length in UTF-8 bytes of the compact JSON text of the value, as written by {@link
+   * JsonValue#toString}, without writing it.
+   */
+  public static long encodedLength(JsonValue value) {
+    switch (value.getValueType()) {
+      case ARRAY:
+        JsonArray array = (JsonArray) value;
+        long arrayLength = 2 + Math.max(array.size() - 1, 0);
+        for (JsonValue v : array) {
+          arrayLength += encodedLength(v);
+        }
+        return arrayLength;
+      case FALSE:
+        return 5;
+      case NULL:
+      case TRUE:
+        return 4;
+      case NUMBER:
+        return value.toString().length();
+      case OBJECT:
+        JsonObject object = (JsonObject) value;
+        long objectLength = 2 + Math.max(object.size() - 1, 0);
+        for (Entry<String, JsonValue> e : object.entrySet()) {
+          objectLength += encodedLength(e.getKey()) + 1 + encodedLength(e.getValue());
+        }
+        return objectLength;
+      case STRING:
+        return encodedLength(((JsonString) value).getString());
+      default:
+        throw new VerifyException("Json value with unknown type: " + value);
+    }
+  }
+
+  /** Returns the length in UTF-8 bytes of the string quoted and escaped as a JSON string. */
+  private static long encodedLength(String string) {
+    long length = 2;
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if (c == '"' || c == '\\' || c == '\b' || c == '\f' || c == '\n' || c == '\r' || c == '\t') {
+        length += 2;
+      } else if (c < 0x20) {
+        length += 6;
+      } else if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800 || Character.isSurrogate(c)) {
+        // A surrogate pair is 4 bytes in all.
+        length += 2;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
   private JavaxJson() {}
 }
@@ -0,0 +1,123 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, with log-linear buckets in the manner of HdrHistogram: each
+ * power of two of nanoseconds is split into 16 linear sub-buckets, so a recorded value is known to
+ * within about 6%. Values of 2^41 ns, about 36 minutes, and above are counted in the last bucket.
+ *
+ * <p>Recording a value is a few arithmetic operations and two atomic increments, so it is cheap
+ * enough to do for every request.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder sumNanos = new LongAdder();
+
+  /** Records a duration. */
+  public void record(long duration, TimeUnit unit) {
+    recordNanos(unit.toNanos(duration));
+  }
+
+  /** Records a duration in nanoseconds; negative durations are recorded as 0. */
+  public void recordNanos(long nanos) {
+    nanos = Math.max(nanos, 0);
+    counts.incrementAndGet(bucketOf(nanos));
+    sumNanos.add(nanos);
+  }
+
+  /** Returns the number of durations recorded. */
+  public long count() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /** Returns the sum of the durations recorded, in nanoseconds. */
+  public long sumNanos() {
+    return sumNanos.sum();
+  }
+
+  /** Returns the number of durations recorded that are at most the bound, give or take 6%. */
+  public long countAtOrBelow(long nanos) {
+    long count = 0;
+    for (int i = 0; i <= Math.min(bucketOf(Math.max(nanos, 0)), BUCKETS - 1); i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Returns an upper bound on the duration, in nanoseconds, below which the given fraction of the
+   * recorded durations fall, or 0 if none were recorded.
+   */
+  public long quantileNanos(double quantile) {
+    checkArgument(quantile >= 0 && quantile <= 1, "bad quantile: %s", quantile);
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return upperBoundOf(i);
+      }
+    }
+    return upperBoundOf(BUCKETS - 1);
+  }
+
+  private static int bucketOf(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) nanos;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int shift = exponent - SUB_BUCKET_BITS + 1;
+    int subBucket = (int) (nanos >>> (shift - 1)) & (SUB_BUCKETS - 1);
+    return shift * SUB_BUCKETS + subBucket;
+  }
+
+  /** Returns the largest value counted in the bucket. */
+  private static long upperBoundOf(int bucket) {
+    int shift = bucket / SUB_BUCKETS;
+    int subBucket = bucket % SUB_BUCKETS;
+    if (shift == 0) {
+      return subBucket;
+    }
+    return ((long) (SUB_BUCKETS + subBucket + 1) << (shift - 1)) - 1;
+  }
+}
@@ -0,0 +1,180 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * A registry of counters, gauges and latency histograms, which it writes in the Prometheus text
+ * format. A metric may have one label, e.g. the command it measures; the metrics of a name with
+ * different label values form a family.
+ *
+ * <p>Looking up a metric is a map lookup, so callers on hot paths should hold on to the metrics
+ * they update.
+ */
+public final class Metrics {
+  private static final Metrics GLOBAL = new Metrics();
+  private static final Pattern NAME = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+  /** The bucket bounds, in seconds, at which histograms are written. */
+  private static final ImmutableList<Double> BUCKET_SECONDS =
+      ImmutableList.of(
+          0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0, 30.0, 60.0);
+
+  /** Returns the registry of the process. */
+  public static Metrics global() {
+    return GLOBAL;
+  }
+
+  private enum Type {
+    COUNTER,
+    GAUGE,
+    HISTOGRAM
+  }
+
+  private static final class Family {
+    private final Type type;
+    private final String help;
+    private final String labelName;
+    private final ConcurrentMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+    private Family(Type type, String help, String labelName) {
+      this.type = type;
+      this.help = help;
+      this.labelName = labelName;
+    }
+  }
+
+  private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<>();
+
+  @VisibleForTesting
+  Metrics() {}
+
+  /** Returns the counter of the name, registering it if need be. */
+  public LongAdder counter(String name, String help) {
+    return counter(name, help, "", "");
+  }
+
+  /** Returns the counter of the name and label value, registering it if need be. */
+  public LongAdder counter(String name, String help, String labelName, String labelValue) {
+    return (LongAdder)
+        family(name, Type.COUNTER, help, labelName)
+            .metrics
+            .computeIfAbsent(labelValue, v -> new LongAdder());
+  }
+
+  /** Registers a gauge of the name that reads the supplier, replacing any previous one. */
+  public void gauge(String name, String help, LongSupplier value) {
+    family(name, Type.GAUGE, help, "").metrics.put("", checkNotNull(value));
+  }
+
+  /** Returns the histogram of the name and label value, registering it if need be. */
+  public LatencyHistogram histogram(
+      String name, String help, String labelName, String labelValue) {
+    return (LatencyHistogram)
+        family(name, Type.HISTOGRAM, help, labelName)
+            .metrics
+            .computeIfAbsent(labelValue, v -> new LatencyHistogram());
+  }
+
+  private Family family(String name, Type type, String help, String labelName) {
+    Family family = families.get(name);
+    if (family == null) {
+      checkArgument(NAME.matcher(name).matches(), "bad metric name: %s", name);
+      checkArgument(
+          labelName.isEmpty() || NAME.matcher(labelName).matches(), "bad label: %s", labelName);
+      family = families.computeIfAbsent(name, n -> new Family(type, help, labelName));
+    }
+    checkArgument(
+        family.type == type && family.labelName.equals(labelName),
+        "metric %s is already registered as a %s labeled by '%s'",
+        name,
+        family.type,
+        family.labelName);
+    return family;
+  }
+
+  /** Writes all the metrics in the Prometheus text format, by name. */
+  public void writePrometheus(Appendable out) throws IOException {
+    for (Map.Entry<String, Family> e : new ConcurrentSkipListMap<>(families).entrySet()) {
+      String name = e.getKey();
+      Family family = e.getValue();
+      out.append("# HELP ").append(name).append(' ').append(escapeHelp(family.help)).append('\n');
+      out.append("# TYPE ").append(name).append(' ');
+      out.append(Ascii.toLowerCase(family.type.name())).append('\n');
+      for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+        String label = label(family.labelName, metric.getKey());
+        switch (family.type) {
+          case COUNTER:
+            sample(out, name, label, ((LongAdder) metric.getValue()).sum());
+            break;
+          case GAUGE:
+            sample(out, name, label, ((LongSupplier) metric.getValue()).getAsLong());
+            break;
+          case HISTOGRAM:
+            writeHistogram(out, name, family.labelName, metric.getKey(), metric.getValue());
+            break;
+        }
+      }
+    }
+  }
+
+  private static void writeHistogram(
+      Appendable out, String name, String labelName, String labelValue, Object metric)
+      throws IOException {
+    LatencyHistogram histogram = (LatencyHistogram) metric;
+    String prefix = labelName.isEmpty() ? "" : labelName + "=\"" + escape(labelValue) + "\",";
+    for (double bound : BUCKET_SECONDS) {
+      long count = histogram.countAtOrBelow((long) (bound * TimeUnit.SECONDS.toNanos(1)));
+      sample(out, name + "_bucket", "{" + prefix + "le=\"" + bound + "\"}", count);
+    }
+    long count = histogram.count();
+    sample(out, name + "_bucket", "{" + prefix + "le=\"+Inf\"}", count);
+    out.append(name).append("_sum").append(label(labelName, labelValue)).append(' ');
+    out.append(Double.toString(histogram.sumNanos() / 1e9)).append('\n');
+    sample(out, name + "_count", label(labelName, labelValue), count);
+  }
+
+  private static void sample(Appendable out, String name, String label, long value)
+      throws IOException {
+    out.append(name).append(label).append(' ').append(Long.toString(value)).append('\n');
+  }
+
+  private static String label(String labelName, String labelValue) {
+    return labelName.isEmpty() ? "" : "{" + labelName + "=\"" + escape(labelValue) + "\"}";
+  }
+
+  private static String escape(String labelValue) {
+    return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String escapeHelp(String help) {
+    return help.replace("\\", "\\\\").replace("\n", "\\n");
+  }
+}
@@ -0,0 +1,112 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, lock-free queue for many producers and consumers, after Dmitry Vyukov's bounded MPMC
+ * queue. Each slot has a sequence number that tells a producer whether the slot is free for its
+ * position and a consumer whether it is filled, so neither ever blocks the other.
+ *
+ * <p>When the buffer is full, offered elements are dropped rather than waited for, and counted in
+ * {@link #droppedCount}.
+ */
+public final class RingBuffer<E> {
+  private final int mask;
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+  private final LongAdder dropped = new LongAdder();
+
+  /** Creates a buffer of the given capacity, which must be a power of two. */
+  public RingBuffer(int capacity) {
+    checkArgument(
+        capacity > 0 && Integer.bitCount(capacity) == 1, "not a power of two: %s", capacity);
+    mask = capacity - 1;
+    elements = new AtomicReferenceArray<>(capacity);
+    sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /** Adds an element to the buffer, or drops it and returns false if the buffer is full. */
+  public boolean offer(E element) {
+    checkNotNull(element);
+    long position = tail.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.set(index, element);
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        dropped.increment();
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  /** Removes and returns the oldest element of the buffer, or null if it is empty. */
+  public E poll() {
+    long position = head.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          E element = elements.getAndSet(index, null);
+          sequences.set(index, position + mask + 1);
+          return element;
+        }
+        position = head.get();
+      } else if (difference < 0) {
+        return null;
+      } else {
+        position = head.get();
+      }
+    }
+  }
+
+  /** Removes and returns the elements of the buffer, oldest first. */
+  public List<E> drain() {
+    List<E> drained = new ArrayList<>();
+    for (E element = poll(); element != null; element = poll()) {
+      drained.add(element);
+    }
+    return drained;
+  }
+
+  /** Returns the number of elements dropped because the buffer was full. */
+  public long droppedCount() {
+    return dropped.sum();
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.concurrent.GuardedBy;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+
+/**
+ * The spans recorded for one request, from the request down to the messages it caused, which can
+ * be exported as JSON for analysis. A trace keeps at most {@value #MAX_SPANS} spans and counts the
+ * rest as dropped.
+ */
+public final class Trace {
+  static final int MAX_SPANS = 2000;
+
+  private final String id = String.format("%016x", ThreadLocalRandom.current().nextLong());
+  private final long startMillis = System.currentTimeMillis();
+  private final long startNanos = System.nanoTime();
+
+  @GuardedBy("this")
+  private final List<TraceSpan> spans = new ArrayList<>();
+
+  @GuardedBy("this")
+  private int droppedSpans;
+
+  private Trace() {}
+
+  /** Starts a new trace, returning its root span. */
+  public static TraceSpan start(String name) {
+    return new Trace().startSpan(-1, name);
+  }
+
+  /**
+   * Returns whether a request should be traced at the sample rate: the fraction, from 0 to 1, of
+   * requests to trace.
+   */
+  public static boolean sample(double rate) {
+    return rate > 0 && (rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate);
+  }
+
+  synchronized TraceSpan startSpan(int parentId, String name) {
+    if (spans.size() >= MAX_SPANS) {
+      droppedSpans++;
+      return TraceSpan.NOOP;
+    }
+    TraceSpan span = new TraceSpan(this, spans.size(), parentId, name, System.nanoTime());
+    spans.add(span);
+    return span;
+  }
+
+  public String id() {
+    return id;
+  }
+
+  /** Returns the trace as JSON, with the times of the spans relative to its start. */
+  public JsonObject toJson() {
+    List<TraceSpan> spansCopy;
+    int dropped;
+    synchronized (this) {
+      spansCopy = new ArrayList<>(spans);
+      dropped = droppedSpans;
+    }
+    JsonArrayBuilder spansJson = Json.createArrayBuilder();
+    for (TraceSpan span : spansCopy) {
+      spansJson.add(span.toJson(startNanos));
+    }
+    return Json.createObjectBuilder()
+        .add("id", id)
+        .add("startMillis", startMillis)
+        .add("droppedSpans", dropped)
+        .add("spans", spansJson)
+        .build();
+  }
+}
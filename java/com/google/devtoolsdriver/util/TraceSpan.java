@@ -0,0 +1,170 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.concurrent.GuardedBy;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * A timed unit of work in a {@link Trace}, such as a devtools command, with attributes and child
+ * spans. The span of the work that a thread is doing is its current span, so that work it starts,
+ * even in another layer, can be recorded as a child.
+ *
+ * <p>Work that is not traced has the {@link #NOOP} span, whose methods do nothing, so untraced code
+ * pays for little more than a thread-local lookup. Attributes that are costly to compute should be
+ * guarded by {@link #isRecording}.
+ */
+public final class TraceSpan {
+  /** The span of work that is not traced. */
+  public static final TraceSpan NOOP = new TraceSpan(null, -1, -1, "", 0);
+
+  private static final ThreadLocal<TraceSpan> current = new ThreadLocal<>();
+
+  private final Trace trace;
+  private final int id;
+  private final int parentId;
+  private final String name;
+  private final long startNanos;
+
+  @GuardedBy("this")
+  private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+  @GuardedBy("this")
+  private long endNanos = -1;
+
+  TraceSpan(Trace trace, int id, int parentId, String name, long startNanos) {
+    this.trace = trace;
+    this.id = id;
+    this.parentId = parentId;
+    this.name = checkNotNull(name);
+    this.startNanos = startNanos;
+  }
+
+  /** Returns the span of the current thread, or {@link #NOOP} if it is not tracing. */
+  public static TraceSpan current() {
+    TraceSpan span = current.get();
+    return span != null ? span : NOOP;
+  }
+
+  /** Returns whether this span is recorded, i.e. is not {@link #NOOP}. */
+  public boolean isRecording() {
+    return trace != null;
+  }
+
+  /** Starts a child of this span, or returns {@link #NOOP} if this span is not recorded. */
+  public TraceSpan startChild(String name) {
+    return isRecording() ? trace.startSpan(id, name) : NOOP;
+  }
+
+  /** Sets an attribute of the span. */
+  public TraceSpan put(String key, String value) {
+    return putAttribute(key, value);
+  }
+
+  /** Sets an attribute of the span. */
+  public TraceSpan put(String key, long value) {
+    return putAttribute(key, value);
+  }
+
+  /** Sets an attribute of the span. */
+  public TraceSpan put(String key, boolean value) {
+    return putAttribute(key, value);
+  }
+
+  private TraceSpan putAttribute(String key, Object value) {
+    if (isRecording()) {
+      synchronized (this) {
+        attributes.put(checkNotNull(key), checkNotNull(value));
+      }
+    }
+    return this;
+  }
+
+  /** Ends the span, if it has not already ended. */
+  public void end() {
+    if (isRecording()) {
+      synchronized (this) {
+        if (endNanos < 0) {
+          endNanos = System.nanoTime();
+        }
+      }
+    }
+  }
+
+  /** Returns the trace of the span, or null for {@link #NOOP}. */
+  public Trace trace() {
+    return trace;
+  }
+
+  /** Returns a task that runs the given one with this as the current span of the thread. */
+  public Runnable wrap(Runnable task) {
+    if (!isRecording()) {
+      return task;
+    }
+    return () -> {
+      TraceSpan previous = current.get();
+      current.set(this);
+      try {
+        task.run();
+      } finally {
+        current.set(previous);
+      }
+    };
+  }
+
+  /**
+   * Makes this the current span of the thread until the returned scope is closed, which restores
+   * the previous span.
+   */
+  public Scope makeCurrent() {
+    TraceSpan previous = current.get();
+    current.set(this);
+    return () -> current.set(previous);
+  }
+
+  /** Restores the previous current span when closed. */
+  public interface Scope extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  synchronized JsonObject toJson(long traceStartNanos) {
+    JsonObjectBuilder json =
+        Json.createObjectBuilder()
+            .add("id", id)
+            .add("parentId", parentId)
+            .add("name", name)
+            .add("startMicros", (startNanos - traceStartNanos) / 1000)
+            .add("durationMicros", endNanos < 0 ? -1 : (endNanos - startNanos) / 1000);
+    JsonObjectBuilder attributesJson = Json.createObjectBuilder();
+    for (Map.Entry<String, Object> e : attributes.entrySet()) {
+      Object value = e.getValue();
+      if (value instanceof Long) {
+        attributesJson.add(e.getKey(), (Long) value);
+      } else if (value instanceof Boolean) {
+        attributesJson.add(e.getKey(), (Boolean) value);
+      } else {
+        attributesJson.add(e.getKey(), (String) value);
+      }
+    }
+    return json.add("attributes", attributesJson).build();
+  }
+}
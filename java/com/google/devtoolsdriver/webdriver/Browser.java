@@ -15,6 +15,8 @@
 package com.google.devtoolsdriver.webdriver;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.devtoolsdriver.devtools.DevtoolsCommand;
 import com.google.devtoolsdriver.devtools.DevtoolsEvent;
 import com.google.devtoolsdriver.devtools.DevtoolsResult;
@@ -40,12 +42,39 @@ public interface Browser extends AutoCloseable {
   /** Send a devtools command to the browser. */
   DevtoolsResult sendCommand(DevtoolsCommand command, Duration timeout) throws BrowserException;
 
+  /**
+   * Send a devtools command to the browser, returning a future of the result that fails with a
+   * {@link BrowserException}. Implementations should not block the calling thread while awaiting
+   * the response; by default, the command is sent with the blocking {@link #sendCommand}.
+   */
+  default ListenableFuture<DevtoolsResult> sendCommandAsync(
+      DevtoolsCommand command, Duration timeout) {
+    try {
+      return Futures.immediateFuture(sendCommand(command, timeout));
+    } catch (BrowserException e) {
+      return Futures.immediateFailedFuture(e);
+    }
+  }
+
   /** Set a listener for devtools events */
   void addEventListener(Consumer<DevtoolsEvent> listener);
 
   /** Takes a screenshot in PNG format and returns it as a byte array. */
   byte[] takeScreenshot() throws BrowserException;
 
+  /**
+   * Takes a screenshot as {@link #takeScreenshot} does, returning a future of it that fails with a
+   * {@link BrowserException}. Implementations should not block the calling thread while the
+   * screenshot is taken; by default, it is taken with the blocking {@link #takeScreenshot}.
+   */
+  default ListenableFuture<byte[]> takeScreenshotAsync() {
+    try {
+      return Futures.immediateFuture(takeScreenshot());
+    } catch (BrowserException e) {
+      return Futures.immediateFailedFuture(e);
+    }
+  }
+
   /** Returns the WebDriver "browserName" capability for this browser. */
   String browserName();
 
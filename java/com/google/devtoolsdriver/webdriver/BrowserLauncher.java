@@ -14,10 +14,19 @@
 
 package com.google.devtoolsdriver.webdriver;
 
+import com.google.common.collect.ImmutableMap;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
 /** A tool for launching browser instances. */
 public interface BrowserLauncher {
   /** Launch a new browser instance. */
   Browser launch(DesiredCapabilities caps) throws BrowserException;
+
+  /** Returns the state of the launcher, such as its device usage, to report in server status. */
+  default ImmutableMap<String, Object> status() {
+    return ImmutableMap.of();
+  }
+
+  /** Releases the browsers the launcher keeps, if any, when the server stops. */
+  default void shutdown() {}
 }
@@ -0,0 +1,42 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.devtoolsdriver.webdriver;
+
+import java.util.Locale;
+
+/** How the browser cache is used by the navigations of a page. */
+public enum CachePolicy {
+  /** The cache is used as the browser normally does, so that repeated navigations run warm. */
+  WARM,
+  /** The cache is cleared before each navigation, so that every navigation runs cold. */
+  COLD,
+  /** The cache is disabled, so that no resource is ever served from it. */
+  DISABLED;
+
+  /**
+   * Returns the policy of the name, ignoring case.
+   *
+   * @throws IllegalArgumentException if no policy has the name
+   */
+  public static CachePolicy fromName(String name) {
+    return valueOf(name.toUpperCase(Locale.ROOT));
+  }
+
+  /** Returns the name of the policy as capabilities spell it. */
+  public String lowerCaseName() {
+    return name().toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,604 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.webdriver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.devtoolsdriver.devtools.DevtoolsCommand;
+import com.google.devtoolsdriver.devtools.DevtoolsEvent;
+import com.google.devtoolsdriver.devtools.DevtoolsResult;
+import com.google.devtoolsdriver.devtools.Network;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import javax.annotation.concurrent.GuardedBy;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+
+/**
+ * Records the network traffic of a page, from the events of the devtools Network domain, as an <a
+ * href="http://www.softwareishard.com/blog/har-12-spec/">HTTP Archive</a>.
+ *
+ * <p>The body of each response is fetched once it has finished loading, and spooled to a file
+ * rather than held on the heap, until the spooled bodies reach a cap. The archive is streamed to a
+ * writer, each body copied from its file as it is written, so it is never held whole either.
+ * Closing the recorder deletes the spooled bodies.
+ */
+public final class HarRecorder implements Consumer<DevtoolsEvent>, Closeable {
+  private static final Logger log = Logger.getLogger(HarRecorder.class.getName());
+
+  /** The default cap of the bytes of response bodies that a recorder spools. */
+  public static final long DEFAULT_MAX_BODY_BYTES = 64L << 20;
+  /** The number of requests a recorder keeps, dropping the oldest. */
+  static final int MAX_ENTRIES = 10_000;
+
+  private final Function<DevtoolsCommand, ListenableFuture<DevtoolsResult>> sender;
+  private final Executor executor;
+  private final Path spoolDirectory;
+  private final long maxBodyBytes;
+
+  @GuardedBy("this")
+  private final Deque<Entry> entries = new ArrayDeque<>();
+  /** The latest entry of each request id, which a redirect replaces. */
+  @GuardedBy("this")
+  private final Map<String, Entry> entriesByRequestId = new HashMap<>();
+  @GuardedBy("this")
+  private final WallTime wallTime;
+  @GuardedBy("this")
+  private long spooledBytes;
+  @GuardedBy("this")
+  private int nextEntryIndex;
+  @GuardedBy("this")
+  private long droppedEntries;
+  @GuardedBy("this")
+  private boolean closed;
+
+  /**
+   * Creates a recorder that sends the commands to fetch response bodies with the given sender,
+   * spooling up to {@code maxBodyBytes} of them to a new temporary directory. Bodies are not
+   * recorded if {@code maxBodyBytes} is 0.
+   */
+  public static HarRecorder create(
+      Function<DevtoolsCommand, ListenableFuture<DevtoolsResult>> sender,
+      Executor executor,
+      long maxBodyBytes)
+      throws IOException {
+    return new HarRecorder(
+        sender,
+        executor,
+        Files.createTempDirectory("har"),
+        maxBodyBytes,
+        Clock.systemUTC());
+  }
+
+  HarRecorder(
+      Function<DevtoolsCommand, ListenableFuture<DevtoolsResult>> sender,
+      Executor executor,
+      Path spoolDirectory,
+      long maxBodyBytes,
+      Clock clock) {
+    checkArgument(maxBodyBytes >= 0, "Negative body byte cap: %s", maxBodyBytes);
+    this.sender = checkNotNull(sender);
+    this.executor = checkNotNull(executor);
+    this.spoolDirectory = checkNotNull(spoolDirectory);
+    this.maxBodyBytes = maxBodyBytes;
+    this.wallTime = new WallTime(clock);
+  }
+
+  @Override
+  public void accept(DevtoolsEvent event) {
+    switch (event.method()) {
+      case Network.RequestWillBeSentEvent.METHOD:
+        requestWillBeSent(Network.RequestWillBeSentEvent.of(event));
+        break;
+      case Network.ResponseReceivedEvent.METHOD:
+        responseReceived(Network.ResponseReceivedEvent.of(event));
+        break;
+      case Network.DataReceivedEvent.METHOD:
+        dataReceived(Network.DataReceivedEvent.of(event));
+        break;
+      case Network.LoadingFinishedEvent.METHOD:
+        loadingFinished(Network.LoadingFinishedEvent.of(event));
+        break;
+      case Network.LoadingFailedEvent.METHOD:
+        loadingFailed(Network.LoadingFailedEvent.of(event));
+        break;
+      default:
+        break;
+    }
+  }
+
+  private synchronized void requestWillBeSent(Network.RequestWillBeSentEvent event) {
+    if (closed) {
+      return;
+    }
+    double timestamp = event.timestamp();
+    wallTime.observe(timestamp);
+    String requestId = event.requestId();
+    Entry redirected = entriesByRequestId.get(requestId);
+    Optional<Network.Response> redirectResponse = event.redirectResponse();
+    if (redirected != null && redirectResponse.isPresent()) {
+      redirected.response = redirectResponse.get().properties();
+      redirected.responseTimestamp = timestamp;
+      redirected.endTimestamp = timestamp;
+      redirected.redirectUrl = event.request().url();
+    }
+    if (entries.size() == MAX_ENTRIES) {
+      drop(entries.removeFirst());
+    }
+    Entry entry = new Entry(nextEntryIndex++, requestId, event.request().properties(), timestamp);
+    entry.resourceType = event.type().orElse("");
+    entries.addLast(entry);
+    entriesByRequestId.put(requestId, entry);
+  }
+
+  private synchronized void responseReceived(Network.ResponseReceivedEvent event) {
+    Entry entry = entriesByRequestId.get(event.requestId());
+    if (entry != null) {
+      entry.response = event.response().properties();
+      entry.responseTimestamp = event.timestamp();
+      entry.resourceType = event.type();
+    }
+  }
+
+  private synchronized void dataReceived(Network.DataReceivedEvent event) {
+    Entry entry = entriesByRequestId.get(event.requestId());
+    if (entry != null) {
+      entry.dataLength += event.dataLength();
+      entry.encodedDataLength += event.encodedDataLength();
+    }
+  }
+
+  private void loadingFinished(Network.LoadingFinishedEvent event) {
+    Entry entry;
+    synchronized (this) {
+      entry = entriesByRequestId.get(event.requestId());
+      if (entry == null) {
+        return;
+      }
+      entry.endTimestamp = event.timestamp();
+      if (closed || maxBodyBytes == 0 || spooledBytes >= maxBodyBytes) {
+        if (maxBodyBytes > 0) {
+          entry.bodyComment = "Body not recorded: over the cap of " + maxBodyBytes + " bytes";
+        }
+        return;
+      }
+    }
+    fetchBody(entry);
+  }
+
+  private synchronized void loadingFailed(Network.LoadingFailedEvent event) {
+    Entry entry = entriesByRequestId.get(event.requestId());
+    if (entry != null) {
+      entry.endTimestamp = event.timestamp();
+      entry.error = event.errorText();
+    }
+  }
+
+  private void fetchBody(Entry entry) {
+    Futures.addCallback(
+        sender.apply(Network.getResponseBody(entry.requestId)),
+        new FutureCallback<DevtoolsResult>() {
+          @Override
+          public void onSuccess(DevtoolsResult result) {
+            Network.GetResponseBodyResult body = Network.GetResponseBodyResult.of(result);
+            spool(entry, body.body(), body.base64Encoded());
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            synchronized (HarRecorder.this) {
+              entry.bodyComment = "Body not available: " + t.getMessage();
+            }
+          }
+        },
+        executor);
+  }
+
+  private void spool(Entry entry, String body, boolean base64Encoded) {
+    byte[] bytes = body.getBytes(UTF_8);
+    synchronized (this) {
+      if (closed || entry.dropped) {
+        return;
+      }
+      if (spooledBytes + bytes.length > maxBodyBytes) {
+        entry.bodyComment = "Body not recorded: over the cap of " + maxBodyBytes + " bytes";
+        return;
+      }
+      // Reserved before writing, so that concurrent writes cannot overrun the cap together.
+      spooledBytes += bytes.length;
+    }
+    Path file = spoolDirectory.resolve(entry.index + ".body");
+    try {
+      Files.write(file, bytes);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not spool a response body to " + file, e);
+      synchronized (this) {
+        spooledBytes -= bytes.length;
+        entry.bodyComment = "Body not recorded: " + e.getMessage();
+      }
+      return;
+    }
+    synchronized (this) {
+      if (closed || entry.dropped) {
+        spooledBytes -= bytes.length;
+        deleteQuietly(file);
+        return;
+      }
+      entry.body = file;
+      entry.bodyBytes = bytes.length;
+      entry.bodyBase64Encoded = base64Encoded;
+    }
+  }
+
+  @GuardedBy("this")
+  private void drop(Entry entry) {
+    entry.dropped = true;
+    droppedEntries++;
+    if (entriesByRequestId.get(entry.requestId) == entry) {
+      entriesByRequestId.remove(entry.requestId);
+    }
+    if (entry.body != null) {
+      spooledBytes -= entry.bodyBytes;
+      deleteQuietly(entry.body);
+    }
+  }
+
+  /**
+   * Writes the archive of the requests recorded so far, oldest first, as JSON. The spooled bodies
+   * are copied into it from their files. The writer is flushed but not closed. If a body can no
+   * longer be read once it is being copied, the exception leaves the archive incomplete.
+   */
+  public void writeHar(Writer out) throws IOException {
+    List<Entry> snapshot = new ArrayList<>();
+    double offset;
+    long dropped;
+    synchronized (this) {
+      for (Entry entry : entries) {
+        snapshot.add(entry.copy());
+      }
+      offset = wallTime.offset();
+      dropped = droppedEntries;
+    }
+    JsonGenerator har = Json.createGenerator(out);
+    har.writeStartObject()
+        .writeStartObject("log")
+        .write("version", "1.2")
+        .writeStartObject("creator")
+        .write("name", "DevTools Driver")
+        .write("version", "1.0.0")
+        .writeEnd()
+        .writeStartArray("pages")
+        .writeEnd()
+        .writeStartArray("entries");
+    for (Entry entry : snapshot) {
+      entry.writeHar(har, out, offset);
+    }
+    har.writeEnd();
+    if (dropped > 0) {
+      har.write("comment", dropped + " older entries were dropped");
+    }
+    har.writeEnd().writeEnd().flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    List<Path> bodies = new ArrayList<>();
+    synchronized (this) {
+      closed = true;
+      for (Entry entry : entries) {
+        if (entry.body != null) {
+          bodies.add(entry.body);
+        }
+        entry.dropped = true;
+      }
+      entries.clear();
+      entriesByRequestId.clear();
+      spooledBytes = 0;
+    }
+    for (Path body : bodies) {
+      Files.deleteIfExists(body);
+    }
+    try (Stream<Path> remaining = Files.list(spoolDirectory)) {
+      if (!remaining.findAny().isPresent()) {
+        Files.delete(spoolDirectory);
+      }
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not delete the spooled body " + file, e);
+    }
+  }
+
+  /** A request and its response, as far as they are known. */
+  private static final class Entry {
+    private final int index;
+    private final String requestId;
+    private final JsonObject request;
+    private final double startTimestamp;
+    private String resourceType = "";
+    private JsonObject response;
+    private double responseTimestamp = Double.NaN;
+    private double endTimestamp = Double.NaN;
+    private long dataLength;
+    private long encodedDataLength;
+    private String redirectUrl = "";
+    private String error;
+    private Path body;
+    private long bodyBytes;
+    private boolean bodyBase64Encoded;
+    private String bodyComment;
+    private boolean dropped;
+
+    private Entry(int index, String requestId, JsonObject request, double startTimestamp) {
+      this.index = index;
+      this.requestId = requestId;
+      this.request = request;
+      this.startTimestamp = startTimestamp;
+    }
+
+    private Entry copy() {
+      Entry copy = new Entry(index, requestId, request, startTimestamp);
+      copy.resourceType = resourceType;
+      copy.response = response;
+      copy.responseTimestamp = responseTimestamp;
+      copy.endTimestamp = endTimestamp;
+      copy.dataLength = dataLength;
+      copy.encodedDataLength = encodedDataLength;
+      copy.redirectUrl = redirectUrl;
+      copy.error = error;
+      copy.body = body;
+      copy.bodyBytes = bodyBytes;
+      copy.bodyBase64Encoded = bodyBase64Encoded;
+      copy.bodyComment = bodyComment;
+      return copy;
+    }
+
+    private void writeHar(JsonGenerator har, Writer out, double wallTimeOffset)
+        throws IOException {
+      double responseAt = Double.isNaN(responseTimestamp) ? startTimestamp : responseTimestamp;
+      double endAt = Double.isNaN(endTimestamp) ? responseAt : endTimestamp;
+      Timings timings = new Timings(response, (responseAt - startTimestamp) * 1000);
+      double receive = Math.max(0, (endAt - responseAt) * 1000);
+      har.writeStartObject()
+          .write("startedDateTime", WallTime.isoTime(startTimestamp + wallTimeOffset))
+          .write("time", round(timings.total() + receive));
+      writeRequest(har);
+      writeResponse(har, out);
+      har.writeStartObject("cache").writeEnd();
+      timings.writeHar(har, receive);
+      har.write("_resourceType", resourceType);
+      if (error != null) {
+        har.write("_error", error);
+      }
+      har.writeEnd();
+    }
+
+    private void writeRequest(JsonGenerator har) {
+      har.writeStartObject("request")
+          .write("method", request.getString("method", ""))
+          .write("url", request.getString("url", ""))
+          .write("httpVersion", "")
+          .writeStartArray("cookies")
+          .writeEnd();
+      writeHeaders(har, request.getJsonObject("headers"));
+      har.writeStartArray("queryString").writeEnd().write("headersSize", -1).write("bodySize", -1);
+      String postData = request.getString("postData", null);
+      if (postData != null) {
+        har.writeStartObject("postData")
+            .write("mimeType", header(request.getJsonObject("headers"), "Content-Type"))
+            .write("text", postData)
+            .writeEnd();
+      }
+      har.writeEnd();
+    }
+
+    private void writeResponse(JsonGenerator har, Writer out) throws IOException {
+      JsonObject known = response != null ? response : JsonValue.EMPTY_JSON_OBJECT;
+      har.writeStartObject("response")
+          .write(
+              "status", known.containsKey("status") ? known.getJsonNumber("status").intValue() : 0)
+          .write("statusText", known.getString("statusText", ""))
+          .write("httpVersion", "")
+          .writeStartArray("cookies")
+          .writeEnd();
+      writeHeaders(har, known.getJsonObject("headers"));
+      writeContent(har, out, known.getString("mimeType", ""));
+      har.write("redirectURL", redirectUrl)
+          .write("headersSize", -1)
+          .write("bodySize", response != null && encodedDataLength > 0 ? encodedDataLength : -1)
+          .writeEnd();
+    }
+
+    private void writeContent(JsonGenerator har, Writer out, String mimeType) throws IOException {
+      Reader text = null;
+      String comment = bodyComment;
+      if (body != null) {
+        try {
+          text = Files.newBufferedReader(body, UTF_8);
+        } catch (IOException e) {
+          comment = "Body no longer recorded: " + e.getMessage();
+        }
+      }
+      har.writeStartObject("content");
+      if (text != null) {
+        // A generator only writes strings it is given whole, so the body is copied into the stream
+        // by hand, as the first member of the content; the generator's members follow it.
+        try (Reader in = text) {
+          har.flush();
+          out.write("\"text\":\"");
+          copyEscaped(in, out);
+          out.write("\",");
+        }
+      }
+      har.write("size", dataLength).write("mimeType", mimeType);
+      if (text != null && bodyBase64Encoded) {
+        har.write("encoding", "base64");
+      } else if (text == null && comment != null) {
+        har.write("comment", comment);
+      }
+      har.writeEnd();
+    }
+  }
+
+  /** The phases of a request up to its response, in milliseconds; -1 where not known. */
+  private static final class Timings {
+    private final double dns;
+    private final double connect;
+    private final double ssl;
+    private final double wait;
+
+    private Timings(JsonObject response, double untilResponse) {
+      JsonObject timing = response != null ? response.getJsonObject("timing") : null;
+      if (timing == null) {
+        dns = -1;
+        connect = -1;
+        ssl = -1;
+        wait = Math.max(0, untilResponse);
+        return;
+      }
+      dns = span(timing, "domainLookupStart", "domainLookupEnd");
+      connect = span(timing, "connectStart", "connectEnd");
+      ssl = span(timing, "secureConnectionStart", "connectEnd");
+      double requestToResponse = span(timing, "requestStart", "responseStart");
+      wait =
+          requestToResponse >= 0
+              ? requestToResponse
+              : Math.max(0, untilResponse - Math.max(0, dns) - Math.max(0, connect));
+    }
+
+    private double total() {
+      return Math.max(0, dns) + Math.max(0, connect) + wait;
+    }
+
+    private void writeHar(JsonGenerator har, double receive) {
+      har.writeStartObject("timings")
+          .write("blocked", -1)
+          .write("dns", round(dns))
+          .write("connect", round(connect))
+          .write("send", 0)
+          .write("wait", round(wait))
+          .write("receive", round(receive))
+          .write("ssl", round(ssl))
+          .writeEnd();
+    }
+
+    private static double span(JsonObject timing, String start, String end) {
+      double startMillis = millis(timing, start);
+      double endMillis = millis(timing, end);
+      return startMillis >= 0 && endMillis >= startMillis ? endMillis - startMillis : -1;
+    }
+
+    private static double millis(JsonObject timing, String name) {
+      return timing.containsKey(name) ? timing.getJsonNumber(name).doubleValue() : -1;
+    }
+  }
+
+  private static void writeHeaders(JsonGenerator har, JsonObject headers) {
+    har.writeStartArray("headers");
+    if (headers != null) {
+      for (Map.Entry<String, JsonValue> header : headers.entrySet()) {
+        JsonValue value = header.getValue();
+        har.writeStartObject()
+            .write("name", header.getKey())
+            .write(
+                "value",
+                value instanceof JsonString ? ((JsonString) value).getString() : value.toString())
+            .writeEnd();
+      }
+    }
+    har.writeEnd();
+  }
+
+  /** Copies text into a JSON string, escaping what JSON requires to be escaped. */
+  private static void copyEscaped(Reader in, Writer out) throws IOException {
+    char[] buffer = new char[8192];
+    StringBuilder escaped = new StringBuilder(buffer.length + 64);
+    for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+      escaped.setLength(0);
+      for (int i = 0; i < read; i++) {
+        char c = buffer[i];
+        switch (c) {
+          case '"':
+            escaped.append("\\\"");
+            break;
+          case '\\':
+            escaped.append("\\\\");
+            break;
+          case '\n':
+            escaped.append("\\n");
+            break;
+          case '\r':
+            escaped.append("\\r");
+            break;
+          case '\t':
+            escaped.append("\\t");
+            break;
+          default:
+            if (c < 0x20) {
+              escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+              escaped.append(c);
+            }
+        }
+      }
+      out.append(escaped);
+    }
+  }
+
+  private static String header(JsonObject headers, String name) {
+    if (headers != null) {
+      for (String key : headers.keySet()) {
+        if (key.equalsIgnoreCase(name)) {
+          return headers.getString(key, "");
+        }
+      }
+    }
+    return "";
+  }
+
+  private static double round(double millis) {
+    return millis < 0 ? -1 : Math.round(millis * 1000) / 1000.0;
+  }
+}
@@ -0,0 +1,131 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.devtoolsdriver.webdriver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+import com.google.devtoolsdriver.devtools.DevtoolsCommand;
+import com.google.devtoolsdriver.devtools.Network;
+import java.util.Locale;
+import javax.json.Json;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+/**
+ * The conditions of the network that a page is throttled to, as emulated by the devtools Network
+ * domain. Throughputs are in bytes per second, where -1 leaves the throughput unthrottled.
+ */
+@AutoValue
+public abstract class NetworkConditions {
+  /** The conditions of an unthrottled network. */
+  public static final NetworkConditions NONE = create(false, 0, -1, -1);
+  /** The conditions of a disconnected network. */
+  public static final NetworkConditions OFFLINE = create(true, 0, 0, 0);
+
+  /** The named throttling profiles, after those of the Chrome devtools, keyed by lowercase name. */
+  private static final ImmutableMap<String, NetworkConditions> PROFILES =
+      ImmutableMap.<String, NetworkConditions>builder()
+          .put("none", NONE)
+          .put("offline", OFFLINE)
+          .put("gprs", create(false, 500, kilobits(50), kilobits(20)))
+          .put("regular2g", create(false, 300, kilobits(250), kilobits(50)))
+          .put("good2g", create(false, 150, kilobits(450), kilobits(150)))
+          .put("regular3g", create(false, 100, kilobits(750), kilobits(250)))
+          .put("good3g", create(false, 40, kilobits(1536), kilobits(750)))
+          .put("regular4g", create(false, 20, kilobits(4096), kilobits(3072)))
+          .put("dsl", create(false, 5, kilobits(2048), kilobits(1024)))
+          .put("wifi", create(false, 2, kilobits(30720), kilobits(15360)))
+          .build();
+
+  public static NetworkConditions create(
+      boolean offline, long latencyMillis, long downloadBytesPerSecond, long uploadBytesPerSecond) {
+    checkArgument(latencyMillis >= 0, "Negative latency: %s", latencyMillis);
+    checkArgument(downloadBytesPerSecond >= -1, "Invalid throughput: %s", downloadBytesPerSecond);
+    checkArgument(uploadBytesPerSecond >= -1, "Invalid throughput: %s", uploadBytesPerSecond);
+    return new AutoValue_NetworkConditions(
+        offline, latencyMillis, downloadBytesPerSecond, uploadBytesPerSecond);
+  }
+
+  /**
+   * Returns the conditions of the named profile, such as "Regular3G", ignoring case.
+   *
+   * @throws IllegalArgumentException if no profile has the name
+   */
+  public static NetworkConditions ofProfile(String name) {
+    NetworkConditions conditions = PROFILES.get(name.toLowerCase(Locale.ROOT));
+    checkArgument(
+        conditions != null,
+        "Unknown network profile %s; expected one of %s",
+        name,
+        PROFILES.keySet());
+    return conditions;
+  }
+
+  /**
+   * Parses conditions from either the name of a profile or an object with the parameters of the
+   * devtools emulateNetworkConditions command, of which those missing are not throttled.
+   *
+   * @throws IllegalArgumentException if the value is neither, or names no profile
+   */
+  public static NetworkConditions fromJson(JsonValue value) {
+    if (value instanceof JsonString) {
+      return ofProfile(((JsonString) value).getString());
+    }
+    checkArgument(value instanceof JsonObject, "Invalid network conditions: %s", value);
+    JsonObject object = (JsonObject) value;
+    return create(
+        object.getBoolean("offline", false),
+        longValue(object, "latency", 0),
+        longValue(object, "downloadThroughput", -1),
+        longValue(object, "uploadThroughput", -1));
+  }
+
+  public abstract boolean offline();
+
+  public abstract long latencyMillis();
+
+  public abstract long downloadBytesPerSecond();
+
+  public abstract long uploadBytesPerSecond();
+
+  /** Returns the command that throttles a page to these conditions. */
+  public DevtoolsCommand toCommand() {
+    return Network.emulateNetworkConditions(
+        offline(), latencyMillis(), downloadBytesPerSecond(), uploadBytesPerSecond());
+  }
+
+  public JsonObject toJson() {
+    return Json.createObjectBuilder()
+        .add("offline", offline())
+        .add("latency", latencyMillis())
+        .add("downloadThroughput", downloadBytesPerSecond())
+        .add("uploadThroughput", uploadBytesPerSecond())
+        .build();
+  }
+
+  private static long kilobits(long kilobitsPerSecond) {
+    return kilobitsPerSecond * 1024 / 8;
+  }
+
+  private static long longValue(JsonObject object, String name, long defaultValue) {
+    JsonNumber number = object.getJsonNumber(name);
+    return number != null ? number.longValue() : defaultValue;
+  }
+}
@@ -0,0 +1,408 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.webdriver;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.devtoolsdriver.devtools.DevtoolsEvent;
+import com.google.devtoolsdriver.devtools.Network;
+import com.google.devtoolsdriver.devtools.Page;
+import com.google.devtoolsdriver.devtools.Timeline;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import javax.annotation.concurrent.GuardedBy;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+
+/**
+ * Aggregates the events of the devtools Network, Page and Timeline domains into metrics of each
+ * navigation of the main frame: when its document responded and its DOMContentLoaded and load
+ * events fired, how many resources it loaded and how many bytes they took, and how long the page
+ * spent in layout, style, paint and script.
+ *
+ * <p>A navigation starts when the main frame requests a new document, and collects the events that
+ * arrive until the next one starts. Only the aggregates are kept, not the events.
+ */
+public final class PageMetricsRecorder implements Consumer<DevtoolsEvent> {
+  /** The number of navigations a recorder keeps, dropping the oldest. */
+  static final int MAX_NAVIGATIONS = 100;
+
+  /** The kinds of work in Timeline records that the recorder times. */
+  enum Activity {
+    LAYOUT("layout"),
+    STYLE("style"),
+    PAINT("paint"),
+    SCRIPT("script");
+
+    private final String key;
+
+    private Activity(String key) {
+      this.key = key;
+    }
+  }
+
+  private static final ImmutableMap<String, Activity> ACTIVITIES =
+      ImmutableMap.<String, Activity>builder()
+          .put("Layout", Activity.LAYOUT)
+          .put("RecalculateStyles", Activity.STYLE)
+          .put("Paint", Activity.PAINT)
+          .put("Composite", Activity.PAINT)
+          .put("EvaluateScript", Activity.SCRIPT)
+          .put("FunctionCall", Activity.SCRIPT)
+          .put("TimerFire", Activity.SCRIPT)
+          .put("EventDispatch", Activity.SCRIPT)
+          .put("FireAnimationFrame", Activity.SCRIPT)
+          .put("XHRReadyStateChange", Activity.SCRIPT)
+          .put("XHRLoad", Activity.SCRIPT)
+          .build();
+
+  @GuardedBy("this")
+  private final Deque<Navigation> navigations = new ArrayDeque<>();
+  /** The id of the main frame, once a navigation of it has been committed. */
+  @GuardedBy("this")
+  private String mainFrameId;
+  @GuardedBy("this")
+  private final WallTime wallTime;
+  @GuardedBy("this")
+  private long droppedNavigations;
+
+  public PageMetricsRecorder() {
+    this(Clock.systemUTC());
+  }
+
+  PageMetricsRecorder(Clock clock) {
+    this.wallTime = new WallTime(clock);
+  }
+
+  @Override
+  public void accept(DevtoolsEvent event) {
+    switch (event.method()) {
+      case Network.RequestWillBeSentEvent.METHOD:
+        requestWillBeSent(Network.RequestWillBeSentEvent.of(event));
+        break;
+      case Network.RequestServedFromMemoryCacheEvent.METHOD:
+        requestServedFromMemoryCache(Network.RequestServedFromMemoryCacheEvent.of(event));
+        break;
+      case Network.ResponseReceivedEvent.METHOD:
+        responseReceived(Network.ResponseReceivedEvent.of(event));
+        break;
+      case Network.DataReceivedEvent.METHOD:
+        dataReceived(Network.DataReceivedEvent.of(event));
+        break;
+      case Network.LoadingFinishedEvent.METHOD:
+        loadingFinished(Network.LoadingFinishedEvent.of(event));
+        break;
+      case Network.LoadingFailedEvent.METHOD:
+        loadingFailed(Network.LoadingFailedEvent.of(event));
+        break;
+      case Page.FrameNavigatedEvent.METHOD:
+        frameNavigated(Page.FrameNavigatedEvent.of(event));
+        break;
+      case Page.DomContentEventFiredEvent.METHOD:
+        domContentEventFired(Page.DomContentEventFiredEvent.of(event));
+        break;
+      case Page.LoadEventFiredEvent.METHOD:
+        loadEventFired(Page.LoadEventFiredEvent.of(event));
+        break;
+      case Timeline.EventRecordedEvent.METHOD:
+        eventRecorded(Timeline.EventRecordedEvent.of(event));
+        break;
+      default:
+        break;
+    }
+  }
+
+  private synchronized void requestWillBeSent(Network.RequestWillBeSentEvent event) {
+    double timestamp = event.timestamp();
+    wallTime.observe(timestamp);
+    String requestId = event.requestId();
+    Navigation current = navigations.peekLast();
+    if (current != null && current.resources.containsKey(requestId)) {
+      // A redirect, which continues the request rather than starting another.
+      return;
+    }
+    boolean isDocument = event.type().orElse("").equals("Document");
+    if (isDocument && (mainFrameId == null || mainFrameId.equals(event.frameId()))) {
+      if (navigations.size() == MAX_NAVIGATIONS) {
+        navigations.removeFirst();
+        droppedNavigations++;
+      }
+      current = new Navigation(event.request().url(), requestId, timestamp);
+      navigations.addLast(current);
+    }
+    if (current != null) {
+      current.resources.put(requestId, new Resource(event.type().orElse("Other")));
+    }
+  }
+
+  private synchronized void requestServedFromMemoryCache(
+      Network.RequestServedFromMemoryCacheEvent event) {
+    Navigation navigation = navigationOf(event.requestId());
+    if (navigation != null) {
+      // Announced by requestWillBeSent, and served from the cache rather than the network.
+      Resource resource = navigation.resources.get(event.requestId());
+      resource.cached = true;
+      resource.finished = true;
+      return;
+    }
+    Navigation current = navigations.peekLast();
+    if (current != null) {
+      Resource resource = new Resource(event.resource().getString("type", "Other"));
+      resource.cached = true;
+      resource.finished = true;
+      current.resources.put(event.requestId(), resource);
+    }
+  }
+
+  private synchronized void responseReceived(Network.ResponseReceivedEvent event) {
+    Navigation navigation = navigationOf(event.requestId());
+    if (navigation == null) {
+      return;
+    }
+    Resource resource = navigation.resources.get(event.requestId());
+    resource.type = event.type();
+    resource.cached |= event.response().fromDiskCache().orElse(false);
+    if (event.requestId().equals(navigation.documentRequestId)) {
+      navigation.responseStart = event.timestamp();
+    }
+  }
+
+  private synchronized void dataReceived(Network.DataReceivedEvent event) {
+    Navigation navigation = navigationOf(event.requestId());
+    if (navigation != null) {
+      Resource resource = navigation.resources.get(event.requestId());
+      resource.decodedBytes += event.dataLength();
+      resource.encodedBytes += event.encodedDataLength();
+    }
+  }
+
+  private synchronized void loadingFinished(Network.LoadingFinishedEvent event) {
+    Navigation navigation = navigationOf(event.requestId());
+    if (navigation != null) {
+      navigation.resources.get(event.requestId()).finished = true;
+      if (event.requestId().equals(navigation.documentRequestId)) {
+        navigation.responseEnd = event.timestamp();
+      }
+    }
+  }
+
+  private synchronized void loadingFailed(Network.LoadingFailedEvent event) {
+    Navigation navigation = navigationOf(event.requestId());
+    if (navigation != null) {
+      navigation.resources.get(event.requestId()).failed = true;
+    }
+  }
+
+  private synchronized void frameNavigated(Page.FrameNavigatedEvent event) {
+    Page.Frame frame = event.frame();
+    if (!frame.parentId().isPresent()) {
+      mainFrameId = frame.id();
+    }
+  }
+
+  private synchronized void domContentEventFired(Page.DomContentEventFiredEvent event) {
+    Navigation current = navigations.peekLast();
+    if (current != null && Double.isNaN(current.domContentLoaded)) {
+      current.domContentLoaded = event.timestamp();
+    }
+  }
+
+  private synchronized void loadEventFired(Page.LoadEventFiredEvent event) {
+    Navigation current = navigations.peekLast();
+    if (current != null && Double.isNaN(current.load)) {
+      current.load = event.timestamp();
+    }
+  }
+
+  private synchronized void eventRecorded(Timeline.EventRecordedEvent event) {
+    Navigation current = navigations.peekLast();
+    if (current != null) {
+      addActivity(current.activitySeconds, event.record().properties(), null);
+    }
+  }
+
+  /**
+   * Adds the self time of a record, that is its time less that of its children, to its activity,
+   * or to the activity of its closest ancestor if it is not one the recorder times. The records
+   * time themselves in seconds.
+   */
+  private static void addActivity(
+      Map<Activity, Double> activitySeconds, JsonObject record, Activity inherited) {
+    Activity activity = ACTIVITIES.getOrDefault(record.getString("type", ""), inherited);
+    double selfSeconds = duration(record);
+    JsonArray children = record.getJsonArray("children");
+    if (children != null) {
+      for (JsonValue child : children) {
+        if (child instanceof JsonObject) {
+          selfSeconds -= duration((JsonObject) child);
+          addActivity(activitySeconds, (JsonObject) child, activity);
+        }
+      }
+    }
+    if (activity != null && selfSeconds > 0) {
+      activitySeconds.merge(activity, selfSeconds, Double::sum);
+    }
+  }
+
+  private static double duration(JsonObject record) {
+    JsonNumber start = record.getJsonNumber("startTime");
+    JsonNumber end = record.getJsonNumber("endTime");
+    return start != null && end != null ? Math.max(0, end.doubleValue() - start.doubleValue()) : 0;
+  }
+
+  /** Returns the navigation of a request, searching the latest navigation first. */
+  @GuardedBy("this")
+  private Navigation navigationOf(String requestId) {
+    for (Iterator<Navigation> it = navigations.descendingIterator(); it.hasNext(); ) {
+      Navigation navigation = it.next();
+      if (navigation.resources.containsKey(requestId)) {
+        return navigation;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Forgets the main frame, for when the events start to come from another page, whose next
+   * document request starts a navigation.
+   */
+  public synchronized void pageChanged() {
+    mainFrameId = null;
+  }
+
+  /** Returns the metrics of the navigations recorded so far, oldest first. */
+  public synchronized JsonObject toJson() {
+    JsonArrayBuilder metrics = Json.createArrayBuilder();
+    for (Navigation navigation : navigations) {
+      metrics.add(navigation.toJson(wallTime.offset()));
+    }
+    return Json.createObjectBuilder()
+        .add("navigations", metrics)
+        .add("droppedNavigations", droppedNavigations)
+        .build();
+  }
+
+  /** The aggregates of one navigation of the main frame. */
+  private static final class Navigation {
+    private final String url;
+    private final String documentRequestId;
+    private final double start;
+    private double responseStart = Double.NaN;
+    private double responseEnd = Double.NaN;
+    private double domContentLoaded = Double.NaN;
+    private double load = Double.NaN;
+    private final Map<String, Resource> resources = new HashMap<>();
+    private final Map<Activity, Double> activitySeconds = new EnumMap<>(Activity.class);
+
+    private Navigation(String url, String documentRequestId, double start) {
+      this.url = url;
+      this.documentRequestId = documentRequestId;
+      this.start = start;
+    }
+
+    private JsonObject toJson(double wallTimeOffset) {
+      JsonObjectBuilder timing = Json.createObjectBuilder();
+      addMillisSinceStart(timing, "responseStart", responseStart);
+      addMillisSinceStart(timing, "responseEnd", responseEnd);
+      addMillisSinceStart(timing, "domContentLoaded", domContentLoaded);
+      addMillisSinceStart(timing, "load", load);
+
+      ResourceTotals total = new ResourceTotals();
+      Map<String, ResourceTotals> byType = new TreeMap<>();
+      for (Resource resource : resources.values()) {
+        total.add(resource);
+        byType.computeIfAbsent(resource.type, type -> new ResourceTotals()).add(resource);
+      }
+      JsonObjectBuilder types = Json.createObjectBuilder();
+      byType.forEach((type, totals) -> types.add(type, totals.toJson()));
+
+      JsonObjectBuilder timeline = Json.createObjectBuilder();
+      for (Activity activity : Activity.values()) {
+        timeline.add(activity.key, millis(activitySeconds.getOrDefault(activity, 0.0)));
+      }
+      return Json.createObjectBuilder()
+          .add("url", url)
+          .add("startedDateTime", WallTime.isoTime(start + wallTimeOffset))
+          .add("timing", timing)
+          .add("resources", total.toJson().add("byType", types))
+          .add("timeline", timeline)
+          .build();
+    }
+
+    private void addMillisSinceStart(JsonObjectBuilder timing, String name, double timestamp) {
+      if (!Double.isNaN(timestamp)) {
+        timing.add(name, millis(timestamp - start));
+      }
+    }
+  }
+
+  /** What the recorder knows of a request of a navigation. */
+  private static final class Resource {
+    private String type;
+    private long encodedBytes;
+    private long decodedBytes;
+    private boolean cached;
+    private boolean finished;
+    private boolean failed;
+
+    private Resource(String type) {
+      this.type = type;
+    }
+  }
+
+  /** The totals of some resources of a navigation. */
+  private static final class ResourceTotals {
+    private int count;
+    private int finished;
+    private int failed;
+    private int cached;
+    private long encodedBytes;
+    private long decodedBytes;
+
+    private void add(Resource resource) {
+      count++;
+      finished += resource.finished ? 1 : 0;
+      failed += resource.failed ? 1 : 0;
+      cached += resource.cached ? 1 : 0;
+      encodedBytes += resource.encodedBytes;
+      decodedBytes += resource.decodedBytes;
+    }
+
+    private JsonObjectBuilder toJson() {
+      return Json.createObjectBuilder()
+          .add("count", count)
+          .add("finished", finished)
+          .add("failed", failed)
+          .add("cached", cached)
+          .add("encodedBytes", encodedBytes)
+          .add("decodedBytes", decodedBytes);
+    }
+  }
+
+  private static double millis(double seconds) {
+    return Math.round(seconds * 1_000_000) / 1000.0;
+  }
+}
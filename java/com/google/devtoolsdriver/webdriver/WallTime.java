@@ -0,0 +1,53 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.webdriver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * Maps the timestamps of devtools events, which are seconds on a monotonic clock of the browser,
+ * to wall time. The offset between the two is taken from the first event observed. It is not
+ * thread-safe; its owner guards it.
+ */
+final class WallTime {
+  private final Clock clock;
+  private double offset = Double.NaN;
+
+  WallTime(Clock clock) {
+    this.clock = checkNotNull(clock);
+  }
+
+  /** Takes the offset from the timestamp of an event just received, unless it is already known. */
+  void observe(double timestamp) {
+    if (Double.isNaN(offset)) {
+      offset = clock.millis() / 1000.0 - timestamp;
+    }
+  }
+
+  /** Seconds to add to the event timestamps to get the wall time; NaN until one is observed. */
+  double offset() {
+    return offset;
+  }
+
+  /** Formats seconds since the epoch as an ISO-8601 instant, or the epoch itself if NaN. */
+  static String isoTime(double epochSeconds) {
+    return Double.isNaN(epochSeconds)
+        ? Instant.EPOCH.toString()
+        : Instant.ofEpochMilli(Math.round(epochSeconds * 1000)).toString();
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.devtools;
+
+import static com.google.devtoolsdriver.devtools.Runtime.callArgument;
+
+import com.google.common.collect.ImmutableList;
+import java.util.concurrent.TimeUnit;
+import javax.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures building devtools commands and serializing them to messages. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DevtoolsCommandBenchmark {
+  private final DevtoolsCommand evaluate = evaluateChain();
+  private final DevtoolsCommand callFunctionOn = callFunctionOnChain();
+  private final DevtoolsCommand noParams = Page.enable();
+  private final String atom = largeFunction();
+
+  @Benchmark
+  public DevtoolsCommand evaluateChain() {
+    return Runtime.evaluate("document.readyState")
+        .withObjectGroup("driver")
+        .withReturnByValue(true)
+        .withAwaitPromise(true);
+  }
+
+  @Benchmark
+  public DevtoolsCommand callFunctionOnChain() {
+    return Runtime.callFunctionOn("{\"injectedScriptId\":1,\"id\":42}", "function(a){return a;}")
+        .withArguments(
+            ImmutableList.of(
+                callArgument().withObjectId("{\"injectedScriptId\":1,\"id\":43}"),
+                callArgument().withValue("text"),
+                callArgument().withValue(true)))
+        .withReturnByValue(false);
+  }
+
+  /**
+   * Builds a command and serializes its message, as sending it does. Parameters may be built
+   * lazily, so this is the fair measure of the allocation of building a command; run with {@code
+   * -prof gc} to see it.
+   */
+  @Benchmark
+  public String callFunctionOnMessage() {
+    return callFunctionOnChain().toJson(1234).toString();
+  }
+
+  /** Sends a parameterless command, as polling for the page state does. */
+  @Benchmark
+  public String noParamsMessage() {
+    return Page.enable().toJson(1234).toString();
+  }
+
+  /** Sends a new command carrying a large function, as each call of an atom does. */
+  @Benchmark
+  public String atomMessage() {
+    return Runtime.callFunctionOn("{\"injectedScriptId\":1,\"id\":42}", atom)
+        .withReturnByValue(true)
+        .toJson(1234)
+        .toString();
+  }
+
+  @Benchmark
+  public JsonObject evaluateToJson() {
+    return evaluate.toJson(1234);
+  }
+
+  @Benchmark
+  public JsonObject callFunctionOnToJson() {
+    return callFunctionOn.toJson(1234);
+  }
+
+  @Benchmark
+  public JsonObject noParamsToJson() {
+    return noParams.toJson(1234);
+  }
+
+  private static String largeFunction() {
+    StringBuilder function = new StringBuilder("function(){\n");
+    while (function.length() < 20_000) {
+      function.append("  var s = \"a \\\"quoted\\\" string\";\tif (s) { return s; }\n");
+    }
+    return function.append('}').toString();
+  }
+}
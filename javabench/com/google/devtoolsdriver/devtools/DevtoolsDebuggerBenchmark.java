@@ -0,0 +1,98 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.devtools;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.json.Json;
+import javax.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the debugger's command round-trips and event dispatch against an in-memory transport
+ * that answers every command as soon as it is sent.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DevtoolsDebuggerBenchmark {
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+  private static final JsonObject RESULT =
+      Json.createObjectBuilder()
+          .add(
+              "result",
+              Json.createObjectBuilder()
+                  .add("type", "string")
+                  .add("value", "complete"))
+          .add("wasThrown", false)
+          .build();
+
+  @Param({"1", "4"})
+  public int listeners;
+
+  private final DevtoolsCommand command = Runtime.evaluate("document.readyState");
+  private final JsonObject event =
+      Json.createObjectBuilder()
+          .add("method", "DOM.childNodeRemoved")
+          .add("params", Json.createObjectBuilder().add("parentNodeId", 12).add("nodeId", 34))
+          .build();
+  private final InMemoryDebugger debugger = new InMemoryDebugger();
+
+  @Setup
+  public void addListeners(Blackhole blackhole) {
+    for (int i = 0; i < listeners; i++) {
+      debugger.addEventListener(blackhole::consume);
+    }
+  }
+
+  @Benchmark
+  public DevtoolsResult sendCommand() throws IOException, DevtoolsErrorException {
+    return debugger.sendCommand(command, TIMEOUT);
+  }
+
+  @Benchmark
+  public DevtoolsResult sendCommandAsync() throws InterruptedException, ExecutionException {
+    return debugger.sendCommandAsync(command, TIMEOUT).get();
+  }
+
+  @Benchmark
+  public void dispatchEvent() {
+    debugger.notifyMessageReceived(event);
+  }
+
+  private static final class InMemoryDebugger extends DevtoolsDebugger {
+    @Override
+    protected void sendMessage(JsonObject message) {
+      notifyMessageReceived(
+          Json.createObjectBuilder().add("id", message.getInt("id")).add("result", RESULT).build());
+    }
+  }
+}
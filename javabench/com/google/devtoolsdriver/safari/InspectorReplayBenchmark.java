@@ -0,0 +1,99 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.safari;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MoreCollectors;
+import com.google.devtoolsdriver.devtools.DOM;
+import com.google.devtoolsdriver.devtools.DevtoolsCommand;
+import com.google.devtoolsdriver.devtools.DevtoolsResult;
+import com.google.devtoolsdriver.devtools.Page;
+import com.google.devtoolsdriver.devtools.Runtime;
+import com.google.devtoolsdriver.webdriver.BrowserException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a whole browser session of the driver, by replaying a session recorded on a fake
+ * device: connecting to the inspector, a few commands and closing the browser. The time includes
+ * the messenger's fixed delay between polls of the inspector, so the allocation per session is the
+ * figure to compare.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InspectorReplayBenchmark {
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+  private static final String UDID = "fake-0";
+  private static final ImmutableList<DevtoolsCommand> SESSION =
+      ImmutableList.of(
+          Page.navigate("http://www.google.com/"),
+          Runtime.evaluate("document.readyState"),
+          DOM.getDocument(),
+          Runtime.evaluate("document.title"));
+
+  private InspectorReplayer replayer;
+
+  @Setup
+  public void recordSession() throws BrowserException, IOException {
+    Path directory = Files.createTempDirectory("replay-benchmark");
+    SafariBrowserLauncher launcher =
+        SafariBrowserLauncher.onFakeDevices(1, Duration.ZERO, 0, TIMEOUT);
+    launcher.recordInspectorMessages(directory);
+    run(launcher.launch(UDID));
+    try (Stream<Path> logs = Files.list(directory)) {
+      replayer = InspectorReplayer.fromFile(logs.collect(MoreCollectors.onlyElement()));
+    }
+  }
+
+  @Benchmark
+  public List<DevtoolsResult> replaySession() throws BrowserException {
+    InspectorReplayer replay = replayer.newReplay();
+    List<DevtoolsResult> results = run(SafariBrowser.startOnReplay(UDID, replay));
+    replay.verifyComplete();
+    return results;
+  }
+
+  private static List<DevtoolsResult> run(SafariBrowser browser) throws BrowserException {
+    List<DevtoolsResult> results = new ArrayList<>();
+    try {
+      for (DevtoolsCommand command : SESSION) {
+        results.add(browser.sendCommand(command, TIMEOUT));
+      }
+    } finally {
+      browser.close();
+    }
+    return results;
+  }
+}
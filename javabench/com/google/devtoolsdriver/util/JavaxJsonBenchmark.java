@@ -0,0 +1,158 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.util;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.json.Json;
+import javax.json.JsonObject;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures the conversions between javax.json and the other JSON libraries used by the driver. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JavaxJsonBenchmark {
+  /** A DOM node as returned by the debugger, with nested children and attributes. */
+  private final JsonObject node =
+      Json.createObjectBuilder()
+          .add("nodeId", 34)
+          .add("nodeType", 1)
+          .add("nodeName", "DIV")
+          .add("localName", "div")
+          .add("nodeValue", "")
+          .add("childNodeCount", 2)
+          .add("attributes", Json.createArrayBuilder().add("class").add("content main"))
+          .add(
+              "children",
+              Json.createArrayBuilder()
+                  .add(
+                      Json.createObjectBuilder()
+                          .add("nodeId", 35)
+                          .add("nodeType", 3)
+                          .add("nodeName", "#text")
+                          .add("nodeValue", "Hello, world"))
+                  .add(
+                      Json.createObjectBuilder()
+                          .add("nodeId", 36)
+                          .add("nodeType", 1)
+                          .add("nodeName", "A")
+                          .add("attributes", Json.createArrayBuilder().add("href").add("/next"))))
+          .build();
+  /** The params of a Network.responseReceived event, with headers and timing. */
+  private final JsonObject responseReceived =
+      Json.createObjectBuilder()
+          .add("requestId", "0.42")
+          .add("frameId", "0.1")
+          .add("loaderId", "0.7")
+          .add("timestamp", 1508411234.123456)
+          .add("type", "Script")
+          .add(
+              "response",
+              Json.createObjectBuilder()
+                  .add("url", "https://www.example.com/static/js/main.min.js?v=20171019")
+                  .add("status", 200)
+                  .add("statusText", "OK")
+                  .add(
+                      "headers",
+                      Json.createObjectBuilder()
+                          .add("Content-Type", "application/javascript; charset=utf-8")
+                          .add("Content-Encoding", "gzip")
+                          .add("Cache-Control", "public, max-age=31536000")
+                          .add("Date", "Thu, 19 Oct 2017 10:20:34 GMT")
+                          .add("Content-Length", "48213"))
+                  .add("mimeType", "application/javascript")
+                  .add("source", "network")
+                  .add(
+                      "timing",
+                      Json.createObjectBuilder()
+                          .add("startTime", 1508411234.001)
+                          .add("domainLookupStart", 0.412)
+                          .add("domainLookupEnd", 3.877)
+                          .add("connectStart", 3.877)
+                          .add("connectEnd", 41.02)
+                          .add("secureConnectionStart", 12.5)
+                          .add("requestStart", 41.3)
+                          .add("responseStart", 119.85)))
+          .build();
+  private final com.google.gson.JsonObject gsonNode = JavaxJson.toGson(node);
+  private final com.google.gson.JsonObject gsonResponseReceived =
+      JavaxJson.toGson(responseReceived);
+  private final JSONObject orgJsonResponseReceived = JavaxJson.toOrgJson(responseReceived);
+  private final JSONObject orgJsonNode = JavaxJson.toOrgJson(node);
+  private final String nodeString = node.toString();
+
+  @Benchmark
+  public com.google.gson.JsonObject toGson() {
+    return JavaxJson.toGson(node);
+  }
+
+  @Benchmark
+  public JsonObject fromGson() {
+    return JavaxJson.fromGson(gsonNode);
+  }
+
+  @Benchmark
+  public JSONObject toOrgJson() {
+    return JavaxJson.toOrgJson(node);
+  }
+
+  @Benchmark
+  public JsonObject fromOrgJson() {
+    return JavaxJson.fromOrgJson(orgJsonNode);
+  }
+
+  @Benchmark
+  public com.google.gson.JsonObject responseReceivedToGson() {
+    return JavaxJson.toGson(responseReceived);
+  }
+
+  @Benchmark
+  public JsonObject responseReceivedFromGson() {
+    return JavaxJson.fromGson(gsonResponseReceived);
+  }
+
+  @Benchmark
+  public JSONObject responseReceivedToOrgJson() {
+    return JavaxJson.toOrgJson(responseReceived);
+  }
+
+  @Benchmark
+  public JsonObject responseReceivedFromOrgJson() {
+    return JavaxJson.fromOrgJson(orgJsonResponseReceived);
+  }
+
+  @Benchmark
+  public Map<String, Object> toJavaMap() {
+    return JavaxJson.toJavaMap(node);
+  }
+
+  @Benchmark
+  public JsonObject parseObject() {
+    return JavaxJson.parseObject(nodeString);
+  }
+}
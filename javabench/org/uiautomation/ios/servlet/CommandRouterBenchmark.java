@@ -0,0 +1,59 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.servlet;
+
+import com.google.common.base.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures the resolution of WebDriver requests to commands. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandRouterBenchmark {
+  private final CommandRouter router = CommandRouter.getInstance();
+
+  @Benchmark
+  public Optional<CommandRouter.Route> newSession() {
+    return router.route("POST", "/session");
+  }
+
+  @Benchmark
+  public Optional<CommandRouter.Route> findElement() {
+    return router.route("POST", "/session/2c3f5b4e-e1b4-4d0e-a1c2-0b8a6c5d0f11/element");
+  }
+
+  @Benchmark
+  public Optional<CommandRouter.Route> elementAttribute() {
+    return router.route(
+        "GET", "/session/2c3f5b4e-e1b4-4d0e-a1c2-0b8a6c5d0f11/element/5123/attribute/href");
+  }
+
+  @Benchmark
+  public Optional<CommandRouter.Route> unknownCommand() {
+    return router.route("GET", "/session/2c3f5b4e-e1b4-4d0e-a1c2-0b8a6c5d0f11/orientation");
+  }
+}
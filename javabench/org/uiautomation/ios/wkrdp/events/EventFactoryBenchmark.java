@@ -0,0 +1,116 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.wkrdp.events;
+
+import com.google.common.base.Optional;
+import com.google.devtoolsdriver.devtools.DevtoolsEvent;
+import java.util.concurrent.TimeUnit;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures decoding of the devtools events received by the DOM context. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventFactoryBenchmark {
+  private final DevtoolsEvent nodeRemoved =
+      event(
+          "DOM.childNodeRemoved",
+          Json.createObjectBuilder().add("parentNodeId", 12).add("nodeId", 34));
+  private final DevtoolsEvent iframeInserted =
+      event(
+          "DOM.childNodeInserted",
+          Json.createObjectBuilder()
+              .add("parentNodeId", 12)
+              .add("previousNodeId", 33)
+              .add(
+                  "node",
+                  Json.createObjectBuilder()
+                      .add("nodeId", 34)
+                      .add("nodeType", 1)
+                      .add("nodeName", "IFRAME")
+                      .add("localName", "iframe")
+                      .add("nodeValue", "")
+                      .add("childNodeCount", 0)
+                      .add(
+                          "attributes",
+                          Json.createArrayBuilder().add("src").add("http://example.com/frame"))
+                      .add(
+                          "contentDocument",
+                          Json.createObjectBuilder()
+                              .add("nodeId", 35)
+                              .add("nodeType", 9)
+                              .add("nodeName", "#document"))));
+  private final DevtoolsEvent divInserted =
+      event(
+          "DOM.childNodeInserted",
+          Json.createObjectBuilder()
+              .add("parentNodeId", 12)
+              .add("previousNodeId", 33)
+              .add(
+                  "node",
+                  Json.createObjectBuilder()
+                      .add("nodeId", 36)
+                      .add("nodeType", 1)
+                      .add("nodeName", "DIV")
+                      .add("localName", "div")
+                      .add("nodeValue", "")
+                      .add("childNodeCount", 3)));
+  private final DevtoolsEvent networkEvent =
+      event(
+          "Network.dataReceived",
+          Json.createObjectBuilder()
+              .add("requestId", "1000.12")
+              .add("timestamp", 1234.5678)
+              .add("dataLength", 2048)
+              .add("encodedDataLength", 1024));
+
+  @Benchmark
+  public Optional<Event> nodeRemoved() {
+    return EventFactory.createEvent(nodeRemoved);
+  }
+
+  @Benchmark
+  public Optional<Event> iframeInserted() {
+    return EventFactory.createEvent(iframeInserted);
+  }
+
+  @Benchmark
+  public Optional<Event> nonFrameInserted() {
+    return EventFactory.createEvent(divInserted);
+  }
+
+  @Benchmark
+  public Optional<Event> untrackedEvent() {
+    return EventFactory.createEvent(networkEvent);
+  }
+
+  private static DevtoolsEvent event(String method, JsonObjectBuilder params) {
+    return DevtoolsEvent.fromJson(
+        Json.createObjectBuilder().add("method", method).add("params", params).build());
+  }
+}
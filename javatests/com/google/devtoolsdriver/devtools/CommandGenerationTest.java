@@ -15,8 +15,11 @@
 package com.google.devtoolsdriver.devtools;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.devtoolsdriver.util.JavaxJson;
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
@@ -66,6 +69,48 @@ public class CommandGenerationTest {
     assertThat(thirdJson.containsKey("params")).isFalse();
   }
 
+  @Test
+  public void testOptionalParamsShareButDoNotAffectEachOther() {
+    Runtime.EvaluateCommand base = Runtime.evaluate("2 + 2").withObjectGroup("group");
+    DevtoolsCommand byValue = base.withReturnByValue(true);
+    DevtoolsCommand byReference = base.withReturnByValue(false).withObjectGroup("other");
+
+    assertThat(base.params())
+        .isEqualTo(
+            Json.createObjectBuilder()
+                .add("expression", "2 + 2")
+                .add("objectGroup", "group")
+                .build());
+    assertThat(byValue.params().getBoolean("returnByValue")).isTrue();
+    assertThat(byValue.params().getString("objectGroup")).isEqualTo("group");
+    assertThat(byReference.params().getBoolean("returnByValue")).isFalse();
+    assertThat(byReference.params().getString("objectGroup")).isEqualTo("other");
+    assertThat(byReference.params().keySet())
+        .containsExactly("expression", "objectGroup", "returnByValue")
+        .inOrder();
+    assertThat(byReference.toJson(1).toString()).contains("\"objectGroup\":\"other\"");
+  }
+
+  @Test
+  public void testMessageTextParsesToTheMessage() {
+    String longScript = Strings.repeat("return \"a\\b\";\n\t\u0001", 100);
+    DevtoolsCommand command =
+        Runtime.callFunctionOn("{\"id\":1}", longScript)
+            .withArguments(ImmutableList.of(Runtime.callArgument().withValue(25L)))
+            .withReturnByValue(true);
+
+    JsonObject first = command.toJson(7);
+    JsonObject second = command.toJson(8);
+
+    assertThat(JavaxJson.parseObject(first.toString())).isEqualTo(first);
+    assertThat(JavaxJson.parseObject(second.toString())).isEqualTo(second);
+    assertThat(second.getInt("id")).isEqualTo(8);
+    assertThat(second.getJsonObject("params").getString("functionDeclaration"))
+        .isEqualTo(longScript);
+    assertThat(Page.enable().toJson(3).toString())
+        .isEqualTo("{\"method\":\"Page.enable\",\"id\":3}");
+  }
+
   @Test
   public void testGeneratedMessageWithParams() {
     DevtoolsCommand first = Runtime.compileScript("2 + 2", "www.twoplustwo.com", false, 9000);
@@ -75,8 +120,8 @@ public class CommandGenerationTest {
     DevtoolsCommand second =
         Runtime.runScript("2 * 2", 3000)
             .withObjectGroup("helloGroup")
-            .withIncludeCommandLineApi(true)
-            .withDoNotPauseOnExceptionAndMuteConsole(false);
+            .withIncludeCommandLineAPI(true)
+            .withDoNotPauseOnExceptionsAndMuteConsole(false);
     DevtoolsCommand third = Runtime.releaseObjectGroup("MyFavoriteGroup");
     DevtoolsCommand fourth =
         Runtime.evaluate("2 + 2")
@@ -104,7 +149,7 @@ public class CommandGenerationTest {
 
     assertThat(first.method()).isEqualTo("Runtime.compileScript");
     assertThat(firstParams.getString("expression")).isEqualTo("2 + 2");
-    assertThat(firstParams.getString("sourceUrl")).isEqualTo("www.twoplustwo.com");
+    assertThat(firstParams.getString("sourceURL")).isEqualTo("www.twoplustwo.com");
     assertThat(firstParams.getBoolean("persistScript")).isFalse();
     assertThat(firstParams.getInt("executionContextId")).isEqualTo(9000);
 
@@ -112,8 +157,8 @@ public class CommandGenerationTest {
     assertThat(secondParams.getString("scriptId")).isEqualTo("2 * 2");
     assertThat(secondParams.getInt("executionContextId")).isEqualTo(3000);
     assertThat(secondParams.getString("objectGroup")).isEqualTo("helloGroup");
-    assertThat(secondParams.getBoolean("includeCommandLineApi")).isTrue();
-    assertThat(secondParams.getBoolean("doNotPauseOnExceptionAndMuteConsole")).isFalse();
+    assertThat(secondParams.getBoolean("includeCommandLineAPI")).isTrue();
+    assertThat(secondParams.getBoolean("doNotPauseOnExceptionsAndMuteConsole")).isFalse();
 
     assertThat(third.method()).isEqualTo("Runtime.releaseObjectGroup");
     assertThat(thirdParams.getString("objectGroup")).isEqualTo("MyFavoriteGroup");
@@ -163,10 +208,73 @@ public class CommandGenerationTest {
     DevtoolsCommand first =
         Runtime.callFunctionOn("123", "function funky() { return 2; }")
             .withArguments(argumentsList)
-            .withDoNotPauseOnExceptionAndMuteConsole(true)
-            .withGeneratePreview(false);
+            .withDoNotPauseOnExceptionsAndMuteConsole(true)
+            .withGeneratePreview(false)
+            .withAwaitPromise(true);
 
     JsonObject firstParams = first.params();
     assertThat(firstParams.getJsonArray("arguments")).isEqualTo(canonicalArguments);
+    assertThat(firstParams.getBoolean("awaitPromise")).isTrue();
+  }
+
+  @Test
+  public void testGeneratedResultViews() {
+    Runtime.EvaluateResult evaluate =
+        Runtime.EvaluateResult.of(
+            JavaxJson.parseObject(
+                "{\"result\": {\"type\": \"string\", \"value\": \"Hello\"},"
+                    + " \"wasThrown\": false}"));
+    assertThat(evaluate.result().type()).isEqualTo("string");
+    assertThat(evaluate.result().value().get())
+        .isEqualTo(Json.createObjectBuilder().add("value", "Hello").build().get("value"));
+    assertThat(evaluate.result().objectId().isPresent()).isFalse();
+
+    DOM.GetDocumentResult document =
+        DOM.GetDocumentResult.of(
+            JavaxJson.parseObject(
+                "{\"root\": {\"nodeId\": 1, \"nodeType\": 9, \"nodeName\": \"#document\","
+                    + " \"localName\": \"\", \"nodeValue\": \"\", \"children\": [{\"nodeId\": 2,"
+                    + " \"nodeType\": 1, \"nodeName\": \"HTML\", \"localName\": \"html\","
+                    + " \"nodeValue\": \"\"}]}}"));
+    assertThat(document.root().nodeId()).isEqualTo(1);
+    assertThat(document.root().children().get()).hasSize(1);
+    assertThat(document.root().children().get().get(0).localName()).isEqualTo("html");
+    assertThat(document.root().children().get().get(0).children().isPresent()).isFalse();
+  }
+
+  @Test
+  public void testGeneratedEventViews() {
+    DevtoolsEvent navigated =
+        DevtoolsEvent.fromJson(
+            JavaxJson.parseObject(
+                "{\"method\": \"Page.frameNavigated\", \"params\": {\"frame\": {\"id\": \"7\","
+                    + " \"loaderId\": \"8\", \"url\": \"http://a/\", \"securityOrigin\": \"a\","
+                    + " \"mimeType\": \"text/html\"}}}"));
+    Page.Frame frame = Page.FrameNavigatedEvent.of(navigated).frame();
+    assertThat(frame.id()).isEqualTo("7");
+    assertThat(frame.parentId().isPresent()).isFalse();
+
+    try {
+      Page.LoadEventFiredEvent.of(navigated);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testGeneratedTypeFactories() {
+    DevtoolsCommand highlight =
+        DOM.highlightNode(DOM.highlightConfig().withContentColor(DOM.rgba(1, 2, 3).withA(0.5)))
+            .withNodeId(4);
+    JsonObject color =
+        highlight.params().getJsonObject("highlightConfig").getJsonObject("contentColor");
+    assertThat(highlight.method()).isEqualTo("DOM.highlightNode");
+    assertThat(color.getInt("r")).isEqualTo(1);
+    assertThat(color.getInt("g")).isEqualTo(2);
+    assertThat(color.getInt("b")).isEqualTo(3);
+    assertThat(color.getJsonNumber("a").doubleValue()).isEqualTo(0.5);
+    assertThat(highlight.params().getInt("nodeId")).isEqualTo(4);
+    assertThat(DOM.querySelector(1, "a").params())
+        .isEqualTo(JavaxJson.parseObject("{\"nodeId\": 1, \"selector\": \"a\"}"));
   }
 }
@@ -24,11 +24,19 @@ import static org.mockito.Mockito.when;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.devtoolsdriver.util.JavaxJson;
+import com.google.devtoolsdriver.util.Trace;
+import com.google.devtoolsdriver.util.TraceSpan;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import javax.json.Json;
+import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import org.junit.Before;
@@ -119,6 +127,89 @@ public class DevtoolsDebuggerTest {
     }
   }
 
+  @Test
+  public void testSendCommandAsyncConvertsResult() throws Exception {
+    when(idGen.nextId()).thenReturn(77);
+    DevtoolsCommand command = Network.setCacheDisabled(false);
+    Future<DevtoolsResult> resultFuture =
+        debugger.sendCommandAsync(command, Duration.ofMinutes(1));
+    assertThat(debugger.lastMessageSent().get()).isEqualTo(command.toJson(77));
+    assertThat(resultFuture.isDone()).isFalse();
+
+    JsonObject expectedResult = Json.createObjectBuilder().add("key1", "value1").build();
+    debugger.notifyMessageReceived(responseBuilder(77).add("result", expectedResult).build());
+    assertThat(resultFuture.isDone()).isTrue();
+    assertThat(resultFuture.get().json()).isEqualTo(expectedResult);
+  }
+
+  @Test
+  public void testSendCommandAsyncCausesError() throws Exception {
+    when(idGen.nextId()).thenReturn(77);
+    DevtoolsCommand command = Network.setCacheDisabled(false);
+    Future<DevtoolsResult> resultFuture =
+        debugger.sendCommandAsync(command, Duration.ofMinutes(1));
+
+    debugger.notifyMessageReceived(
+        responseBuilder(77).add("error", JavaxJson.EMPTY_OBJECT).build());
+    try {
+      resultFuture.get();
+      assert_().fail();
+    } catch (ExecutionException expected) {
+      assertThat(expected.getCause()).isInstanceOf(DevtoolsErrorException.class);
+    }
+  }
+
+  @Test
+  public void testSendCommandAsyncTimesOut() throws Exception {
+    when(idGen.nextId()).thenReturn(77);
+    Future<DevtoolsResult> resultFuture =
+        debugger.sendCommandAsync(Network.setCacheDisabled(false), Duration.ofMillis(10));
+    try {
+      resultFuture.get();
+      assert_().fail();
+    } catch (ExecutionException expected) {
+      assertThat(expected.getCause()).isInstanceOf(TimeoutException.class);
+    }
+  }
+
+  @Test
+  public void testCommandListener() throws Exception {
+    when(idGen.nextId()).thenReturn(77, 78);
+    DevtoolsCommand command = Network.setCacheDisabled(false);
+    List<DevtoolsCommand> sent = new ArrayList<>();
+
+    Duration timeout = Duration.ofMinutes(1);
+    DevtoolsDebugger.withCommandListener(
+            sent::add, () -> debugger.sendCommandAsync(command, timeout))
+        .run();
+    debugger.sendCommandAsync(command, timeout);
+
+    assertThat(sent).containsExactly(command);
+  }
+
+  @Test
+  public void testTracesCommand() throws Exception {
+    when(idGen.nextId()).thenReturn(77);
+    DevtoolsCommand command = Network.setCacheDisabled(false);
+    TraceSpan root = Trace.start("request");
+
+    root.wrap(() -> debugger.sendCommandAsync(command, Duration.ofMinutes(1))).run();
+    debugger.notifyMessageReceived(
+        responseBuilder(77).add("result", JavaxJson.EMPTY_OBJECT).build());
+
+    JsonArray spans = root.trace().toJson().getJsonArray("spans");
+    assertThat(spans).hasSize(2);
+    JsonObject span = spans.getJsonObject(1);
+    assertThat(span.getString("name")).isEqualTo("devtools " + command.method());
+    assertThat(span.getInt("parentId")).isEqualTo(0);
+    assertThat(span.getInt("durationMicros")).isAtLeast(0);
+    JsonObject attributes = span.getJsonObject("attributes");
+    assertThat(attributes.getInt("id")).isEqualTo(77);
+    assertThat(attributes.getInt("requestBytes")).isGreaterThan(0);
+    assertThat(attributes.getBoolean("responseReceived")).isTrue();
+    assertThat(attributes.getBoolean("error")).isFalse();
+  }
+
   @Test
   public void testReceiveEvents() {
     final JsonObject firstParams = Json.createObjectBuilder().add("first", "param").build();
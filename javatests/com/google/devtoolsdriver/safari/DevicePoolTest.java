@@ -0,0 +1,165 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.safari;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.devtoolsdriver.webdriver.BrowserException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DevicePoolTest {
+  private static final ImmutableSet<String> UDIDS = ImmutableSet.of("device1", "device2");
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testLeasesEachDeviceOnce() throws Exception {
+    DevicePool pool = new DevicePool(() -> UDIDS, Integer.MAX_VALUE, Duration.ZERO);
+    DevicePool.Lease first = pool.lease(Optional.empty());
+    DevicePool.Lease second = pool.lease(Optional.empty());
+    assertThat(ImmutableSet.of(first.udid(), second.udid())).isEqualTo(UDIDS);
+    try {
+      pool.lease(Optional.empty());
+      fail();
+    } catch (BrowserException expected) {
+    }
+    assertThat(pool.stats()).containsEntry("timeouts", 1L);
+
+    second.close();
+    assertThat(pool.lease(Optional.empty()).udid()).isEqualTo(second.udid());
+  }
+
+  @Test
+  public void testLeasesRequestedDevice() throws Exception {
+    DevicePool pool = new DevicePool(() -> UDIDS, Integer.MAX_VALUE, Duration.ZERO);
+    assertThat(pool.lease(Optional.of("device2")).udid()).isEqualTo("device2");
+    assertThat(pool.lease(Optional.empty()).udid()).isEqualTo("device1");
+  }
+
+  @Test
+  public void testRejectsUnknownDevice() throws Exception {
+    DevicePool pool = new DevicePool(() -> UDIDS, Integer.MAX_VALUE, Duration.ofMinutes(1));
+    try {
+      pool.lease(Optional.of("device3"));
+      fail();
+    } catch (BrowserException expected) {
+    }
+  }
+
+  @Test
+  public void testLimitsLeases() throws Exception {
+    DevicePool pool = new DevicePool(() -> UDIDS, 1, Duration.ZERO);
+    pool.lease(Optional.empty());
+    try {
+      pool.lease(Optional.of("device2"));
+      fail();
+    } catch (BrowserException expected) {
+    }
+  }
+
+  @Test
+  public void testQueuedRequestsAreServedInOrder() throws Exception {
+    DevicePool pool = new DevicePool(() -> UDIDS, 1, Duration.ofMinutes(1));
+    DevicePool.Lease lease = pool.lease(Optional.empty());
+
+    Future<DevicePool.Lease> first = executor.submit(() -> pool.lease(Optional.empty()));
+    awaitQueueLength(pool, 1);
+    Future<DevicePool.Lease> second = executor.submit(() -> pool.lease(Optional.empty()));
+    awaitQueueLength(pool, 2);
+
+    lease.close();
+    first.get(10, TimeUnit.SECONDS).close();
+    second.get(10, TimeUnit.SECONDS);
+    assertThat(pool.stats()).containsEntry("queueLength", 0);
+    assertThat(pool.stats()).containsEntry("leasedDevices", 1);
+  }
+
+  private static void awaitQueueLength(DevicePool pool, int length) throws InterruptedException {
+    while (!pool.stats().get("queueLength").equals(length)) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testListsDevicesOutsideTheLock() throws Exception {
+    CountDownLatch listing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    DevicePool pool =
+        new DevicePool(
+            () -> {
+              listing.countDown();
+              Uninterruptibles.awaitUninterruptibly(release);
+              return UDIDS;
+            },
+            Integer.MAX_VALUE,
+            Duration.ofMinutes(1));
+    Future<DevicePool.Lease> lease = executor.submit(() -> pool.lease(Optional.empty()));
+    listing.await();
+
+    // The pool answers while the host is slow to list its devices.
+    assertThat(executor.submit(pool::stats).get(5, TimeUnit.SECONDS))
+        .containsEntry("connectedDevices", 0);
+    release.countDown();
+    assertThat(UDIDS).contains(lease.get(5, TimeUnit.SECONDS).udid());
+  }
+
+  @Test
+  public void testParkedBrowserGoesToQueuedRequest() throws Exception {
+    DevicePool pool = new DevicePool(() -> UDIDS, 1, Duration.ofMinutes(1));
+    DevicePool.Lease lease = pool.lease(Optional.of("device1"));
+    Future<DevicePool.Lease> queued = executor.submit(() -> pool.lease(Optional.empty()));
+    awaitQueueLength(pool, 1);
+
+    SafariBrowser browser =
+        SafariBrowser.startOnFakeDevice(
+            new FakeInspectorDevice("device1", Duration.ZERO, 0), Optional.empty());
+    lease.park(browser);
+    DevicePool.Lease next = queued.get(10, TimeUnit.SECONDS);
+    assertThat(next.udid()).isEqualTo("device1");
+    assertThat(next.idleBrowser()).isEqualTo(Optional.of(browser));
+    assertThat(pool.stats()).containsEntry("idleBrowsers", 0);
+
+    next.park(browser);
+    assertThat(pool.stats()).containsEntry("idleBrowsers", 1);
+    assertThat(pool.takeIdleBrowsers()).containsExactly(browser);
+    assertThat(pool.lease(Optional.empty()).idleBrowser()).isEqualTo(Optional.empty());
+    browser.shutdown();
+  }
+
+  @Test
+  public void testCapacityIsBoundByDevices() throws Exception {
+    assertThat(new DevicePool(() -> UDIDS, 5, Duration.ZERO).capacity()).isEqualTo(2);
+    assertThat(new DevicePool(() -> UDIDS, 1, Duration.ZERO).capacity()).isEqualTo(1);
+  }
+}
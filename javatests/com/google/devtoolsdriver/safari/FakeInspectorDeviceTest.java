@@ -0,0 +1,213 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.safari;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.devtoolsdriver.devtools.DOM;
+import com.google.devtoolsdriver.devtools.DevtoolsEvent;
+import com.google.devtoolsdriver.devtools.DevtoolsResult;
+import com.google.devtoolsdriver.devtools.Page;
+import com.google.devtoolsdriver.devtools.Runtime;
+import com.google.devtoolsdriver.webdriver.BrowserException;
+import com.google.devtoolsdriver.webdriver.JsAtoms;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.json.Json;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FakeInspectorDeviceTest {
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  private SafariBrowser browser;
+
+  @After
+  public void tearDown() throws Exception {
+    if (browser != null) {
+      browser.close();
+    }
+  }
+
+  @Test
+  public void testNavigate() throws Exception {
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+    List<String> events = new CopyOnWriteArrayList<>();
+    browser.addEventListener(event -> events.add(event.method()));
+
+    browser.sendCommand(Page.navigate("http://www.google.com/"), TIMEOUT);
+    DevtoolsResult result = browser.sendCommand(Runtime.evaluate("document.URL"), TIMEOUT);
+
+    assertThat(result.json().getJsonObject("result").getString("value"))
+        .isEqualTo("http://www.google.com/");
+    assertThat(events).containsAllOf("DOM.documentUpdated", "Page.loadEventFired").inOrder();
+  }
+
+  @Test
+  public void testScriptedResponse() throws Exception {
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    device.respondTo(
+        "Page.reload", (params, d) -> Json.createObjectBuilder().add("reloaded", true).build());
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+
+    DevtoolsResult result = browser.sendCommand(Page.reload(), TIMEOUT);
+
+    assertThat(result.json().getBoolean("reloaded")).isTrue();
+  }
+
+  @Test
+  public void testLatency() throws Exception {
+    Duration latency = Duration.ofMillis(100);
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", latency, 0);
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+
+    long start = System.nanoTime();
+    browser.sendCommand(Runtime.evaluate("document.readyState"), TIMEOUT);
+
+    assertThat(System.nanoTime() - start).isAtLeast(latency.toNanos());
+  }
+
+  @Test
+  public void testEvent() throws Exception {
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+    List<DevtoolsEvent> events = new CopyOnWriteArrayList<>();
+    browser.addEventListener(events::add);
+
+    device.sendEvent("Inspector.detached", Json.createObjectBuilder().build());
+    // Sync on a command reply, which the device sends after the event.
+    browser.sendCommand(Runtime.evaluate("document.readyState"), TIMEOUT);
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).method()).isEqualTo("Inspector.detached");
+  }
+
+  @Test
+  public void testQuerySelector() throws Exception {
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+    int form =
+        device.addElement(device.bodyNodeId(), "form", ImmutableMap.of("id", "login"), "");
+    int name =
+        device.addElement(form, "input", ImmutableMap.of("name", "user", "class", "a b"), "");
+    int button = device.addElement(form, "button", ImmutableMap.of("class", "b"), "Sign in");
+    JsonObject root = browser.sendCommand(DOM.getDocument(), TIMEOUT).json().getJsonObject("root");
+    int document = root.getInt("nodeId");
+
+    assertThat(querySelector(document, "#login input[name=user]")).isEqualTo(name);
+    assertThat(querySelector(document, "form .b")).isEqualTo(name);
+    assertThat(querySelector(document, "div")).isEqualTo(0);
+    assertThat(
+            browser
+                .sendCommand(DOM.querySelectorAll(form, ".b, span"), TIMEOUT)
+                .json()
+                .getJsonArray("nodeIds")
+                .getValuesAs(JsonNumber.class)
+                .stream()
+                .map(JsonNumber::intValue)
+                .collect(ImmutableList.toImmutableList()))
+        .containsExactly(name, button)
+        .inOrder();
+  }
+
+  @Test
+  public void testNavigateReplacesDocument() throws Exception {
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+    int link = device.addElement(device.bodyNodeId(), "a", ImmutableMap.of(), "");
+
+    browser.sendCommand(Page.navigate("http://www.google.com/"), TIMEOUT);
+
+    try {
+      browser.sendCommand(DOM.resolveNode(link), TIMEOUT);
+      fail();
+    } catch (BrowserException expected) {
+      assertThat(expected).hasMessageThat().contains("No node with given id found");
+    }
+  }
+
+  @Test
+  public void testCallFunctionOnNode() throws Exception {
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+    int link =
+        device.addElement(device.bodyNodeId(), "a", ImmutableMap.of("href", "/next"), "Next");
+    String objectId = objectId(link);
+
+    JsonObject href =
+        callFunctionOn(
+            objectId,
+            "(function(arg) { var res = this.getAttribute('href'); return res;})",
+            ImmutableList.of());
+    JsonObject text =
+        callFunctionOn(
+            objectId,
+            "(function(arg) { var text = " + JsAtoms.getVisibleText("arg") + "; return text;})",
+            ImmutableList.of(Runtime.callArgument().withObjectId(objectId)));
+    callFunctionOn(
+        objectId,
+        "(function(arg) { var text = " + JsAtoms.tap("arg") + "; return text;})",
+        ImmutableList.of(Runtime.callArgument().withObjectId(objectId)));
+
+    assertThat(href.getString("value")).isEqualTo("/next");
+    assertThat(text.getString("value")).isEqualTo("Next");
+    assertThat(device.tappedNodes()).containsExactly(link);
+  }
+
+  @Test
+  public void testUnknownScriptIsUndefined() throws Exception {
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+
+    DevtoolsResult result =
+        browser.sendCommand(Runtime.evaluate("'document.title'.length"), TIMEOUT);
+
+    assertThat(result.json().getJsonObject("result").getString("type")).isEqualTo("undefined");
+  }
+
+  private int querySelector(int nodeId, String selector) throws Exception {
+    return browser
+        .sendCommand(DOM.querySelector(nodeId, selector), TIMEOUT)
+        .json()
+        .getInt("nodeId");
+  }
+
+  private String objectId(int nodeId) throws Exception {
+    return browser
+        .sendCommand(DOM.resolveNode(nodeId), TIMEOUT)
+        .json()
+        .getJsonObject("object")
+        .getString("objectId");
+  }
+
+  private JsonObject callFunctionOn(
+      String objectId, String function, List<Runtime.CallArgument> arguments) throws Exception {
+    return browser
+        .sendCommand(Runtime.callFunctionOn(objectId, function).withArguments(arguments), TIMEOUT)
+        .json()
+        .getJsonObject("result");
+  }
+}
@@ -0,0 +1,74 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.safari;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtoolsdriver.util.JavaxJson;
+import com.google.devtoolsdriver.webdriver.BrowserException;
+import com.google.devtoolsdriver.webdriver.BrowserLauncher;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.json.JsonObject;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+/**
+ * Launches Safari on a {@link FakeInspectorDevice}, for the tests of the driver outside this
+ * package, and records the devtools commands the device receives.
+ */
+public final class FakeSafariLauncher implements BrowserLauncher {
+  private final List<JsonObject> commands = new CopyOnWriteArrayList<>();
+  private volatile FakeInspectorDevice device;
+
+  @Override
+  public SafariBrowser launch(DesiredCapabilities caps) throws BrowserException {
+    FakeInspectorDevice launched = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    launched.setCommandListener(commands::add);
+    device = launched;
+    return SafariBrowser.startOnFakeDevice(launched, Optional.empty());
+  }
+
+  /** Opens another page on the device last launched, returning its page id. */
+  public int openPage() {
+    checkState(device != null, "no device launched");
+    return device.openPage();
+  }
+
+  /** Returns the methods of the commands received so far, in order. */
+  public ImmutableList<String> methods() {
+    return commands
+        .stream()
+        .map(command -> command.getString("method"))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /** Returns the params of the commands of the method received so far, in order. */
+  public ImmutableList<JsonObject> params(String method) {
+    return commands
+        .stream()
+        .filter(command -> command.getString("method").equals(method))
+        .map(command -> command.getJsonObject("params"))
+        .map(params -> params != null ? params : JavaxJson.EMPTY_OBJECT)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /** Forgets the commands received so far. */
+  public void clear() {
+    commands.clear();
+  }
+}
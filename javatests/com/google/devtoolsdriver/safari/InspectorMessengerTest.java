@@ -21,8 +21,11 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.devtoolsdriver.safari.InspectorMessenger.AppListing;
 import com.google.devtoolsdriver.util.JavaxJson;
+import com.google.devtoolsdriver.util.Trace;
+import com.google.devtoolsdriver.util.TraceSpan;
 import com.google.iosdevicecontrol.testing.FakeInspectorSocket;
 import com.google.iosdevicecontrol.webinspector.ApplicationDisconnectedMessage;
+import com.google.iosdevicecontrol.webinspector.ApplicationSentDataMessage;
 import com.google.iosdevicecontrol.webinspector.ApplicationSentListingMessage;
 import com.google.iosdevicecontrol.webinspector.ForwardGetListingMessage;
 import com.google.iosdevicecontrol.webinspector.ForwardSocketDataMessage;
@@ -34,6 +37,11 @@ import com.google.iosdevicecontrol.webinspector.ReportConnectedApplicationListMe
 import com.google.iosdevicecontrol.webinspector.ReportIdentifierMessage;
 import com.google.iosdevicecontrol.webinspector.WebInspector;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -235,6 +243,39 @@ public class InspectorMessengerTest {
     assertThat(messenger.awaitPages()).isEqualTo(newPages);
   }
 
+  @Test
+  public void testTracesReceive() throws IOException {
+    List<TraceSpan> listenerSpans = new ArrayList<>();
+    messenger.setEventListener(data -> listenerSpans.add(TraceSpan.current()));
+    messenger.sendSwitchTo(CONTENT_APP_ID, CONTENT_PAGE_ID);
+    TraceSpan commandSpan = Trace.start("devtools Page.reload");
+    try (TraceSpan.Scope scope = commandSpan.makeCurrent()) {
+      messenger.sendCommand(
+          Json.createObjectBuilder().add("id", 7).add("method", "Page.reload").build());
+    }
+
+    receiveData(Json.createObjectBuilder().add("method", "Page.loadEventFired").build());
+    receiveData(
+        Json.createObjectBuilder().add("id", 7).add("result", JavaxJson.EMPTY_OBJECT).build());
+    receiveData(Json.createObjectBuilder().add("method", "Page.frameNavigated").build());
+
+    JsonArray spans = commandSpan.trace().toJson().getJsonArray("spans");
+    assertThat(spans).hasSize(4);
+    JsonObject eventSpan = spans.getJsonObject(2);
+    JsonObject replySpan = spans.getJsonObject(3);
+    assertThat(eventSpan.getString("name")).isEqualTo("inspector.receive");
+    assertThat(eventSpan.getInt("parentId")).isEqualTo(0);
+    assertThat(eventSpan.getJsonObject("attributes").getString("event"))
+        .isEqualTo("Page.loadEventFired");
+    assertThat(replySpan.getString("name")).isEqualTo("inspector.receive");
+    assertThat(replySpan.getInt("parentId")).isEqualTo(0);
+    assertThat(replySpan.getJsonObject("attributes").getInt("bytes")).isGreaterThan(0);
+    assertThat(listenerSpans.get(0).isRecording()).isTrue();
+    assertThat(listenerSpans.get(1).isRecording()).isTrue();
+    // The command is answered, so later events are not traced.
+    assertThat(listenerSpans.get(2).isRecording()).isFalse();
+  }
+
   @Test
   public void testClose() throws IOException {
     assertThat(fakeExecutor.isShutdown()).isFalse();
@@ -251,6 +292,15 @@ public class InspectorMessengerTest {
     fakeExecutor.simulateSleepExecutingAtMostOneTask();
   }
 
+  private void receiveData(JsonObject data) {
+    receiveMessage(
+        ApplicationSentDataMessage.builder()
+            .applicationId(CONTENT_APP_ID)
+            .destination(CONNECTION_ID)
+            .messageData(data)
+            .build());
+  }
+
   private InspectorMessage onlyMessageSent() {
     return Iterables.getOnlyElement(fakeInspectorSocket.dequeueMessagesSent());
   }
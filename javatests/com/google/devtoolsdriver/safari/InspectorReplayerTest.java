@@ -0,0 +1,150 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.safari;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.VerifyException;
+import com.google.common.collect.ImmutableList;
+import com.google.devtoolsdriver.devtools.DevtoolsCommand;
+import com.google.devtoolsdriver.devtools.DevtoolsResult;
+import com.google.devtoolsdriver.devtools.Page;
+import com.google.devtoolsdriver.devtools.Runtime;
+import com.google.devtoolsdriver.safari.InspectorRecorder.Direction;
+import com.google.devtoolsdriver.safari.InspectorRecorder.Record;
+import com.google.devtoolsdriver.webdriver.BrowserException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class InspectorReplayerTest {
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+  private static final ImmutableList<DevtoolsCommand> SESSION =
+      ImmutableList.of(
+          Page.navigate("http://www.google.com/"),
+          Runtime.evaluate("document.readyState"),
+          Runtime.evaluate("document.URL"));
+
+  private ImmutableList<Record> records;
+  private List<DevtoolsResult> recordedResults;
+
+  @Before
+  public void setup() throws Exception {
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    SafariBrowser browser =
+        SafariBrowser.startOnFakeDevice(device, Optional.of(new InspectorRecorder(log)));
+    recordedResults = run(browser, SESSION);
+    browser.shutdown();
+    records = InspectorRecorder.read(new ByteArrayInputStream(log.toByteArray()));
+  }
+
+  @Test
+  public void testRecord() {
+    assertThat(records.get(0).direction).isEqualTo(Direction.SENT);
+    assertThat(records.stream().filter(r -> r.direction == Direction.RECEIVED).count())
+        .isGreaterThan(0L);
+    for (int i = 1; i < records.size(); i++) {
+      assertThat(records.get(i).nanos).isAtLeast(records.get(i - 1).nanos);
+    }
+  }
+
+  @Test
+  public void testReplay() throws Exception {
+    InspectorReplayer replayer = new InspectorReplayer(records);
+    SafariBrowser browser = SafariBrowser.startOnReplay("fake-0", replayer);
+    List<DevtoolsResult> results = run(browser, SESSION);
+    browser.shutdown();
+
+    assertThat(results).isEqualTo(recordedResults);
+    replayer.verifyComplete();
+  }
+
+  @Test
+  public void testReplayRepliesBeforeLaterSends() throws Exception {
+    // Record the last command as sent right after the one before it, as if they were concurrent.
+    List<Record> concurrent = new ArrayList<>(records);
+    Record last = concurrent.remove(indexOfCommand(concurrent, "document.URL"));
+    concurrent.add(indexOfCommand(concurrent, "document.readyState") + 1, last);
+    InspectorReplayer replayer = new InspectorReplayer(concurrent);
+    SafariBrowser browser = SafariBrowser.startOnReplay("fake-0", replayer);
+    List<DevtoolsResult> results = run(browser, SESSION);
+    browser.shutdown();
+
+    assertThat(results).isEqualTo(recordedResults);
+    replayer.verifyComplete();
+  }
+
+  @Test
+  public void testNewReplay() throws Exception {
+    InspectorReplayer replayer = new InspectorReplayer(records);
+    run(SafariBrowser.startOnReplay("fake-0", replayer), SESSION);
+    InspectorReplayer replay = replayer.newReplay();
+    SafariBrowser browser = SafariBrowser.startOnReplay("fake-0", replay);
+    List<DevtoolsResult> results = run(browser, SESSION);
+    browser.shutdown();
+
+    assertThat(results).isEqualTo(recordedResults);
+    replay.verifyComplete();
+    replayer.close();
+  }
+
+  @Test
+  public void testReplayDiverges() throws Exception {
+    InspectorReplayer replayer = new InspectorReplayer(records);
+    SafariBrowser browser = SafariBrowser.startOnReplay("fake-0", replayer);
+    try {
+      browser.sendCommand(Page.reload(), TIMEOUT);
+      fail();
+    } catch (BrowserException expected) {
+    }
+
+    try {
+      replayer.verifyComplete();
+      fail();
+    } catch (VerifyException expected) {
+      assertThat(expected).hasMessageThat().contains("Page.reload");
+    }
+    replayer.close();
+  }
+
+  private static int indexOfCommand(List<Record> records, String expression) {
+    for (int i = 0; i < records.size(); i++) {
+      Record record = records.get(i);
+      if (record.direction == Direction.SENT && record.toString().contains(expression)) {
+        return i;
+      }
+    }
+    throw new AssertionError("no command evaluating " + expression);
+  }
+
+  private static List<DevtoolsResult> run(SafariBrowser browser, List<DevtoolsCommand> commands)
+      throws BrowserException {
+    List<DevtoolsResult> results = new ArrayList<>();
+    for (DevtoolsCommand command : commands) {
+      results.add(browser.sendCommand(command, TIMEOUT));
+    }
+    return results;
+  }
+}
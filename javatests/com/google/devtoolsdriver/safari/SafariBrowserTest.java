@@ -0,0 +1,127 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.safari;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
+
+import com.google.devtoolsdriver.devtools.Network;
+import com.google.devtoolsdriver.devtools.Page;
+import com.google.devtoolsdriver.devtools.Timeline;
+import com.google.devtoolsdriver.webdriver.NetworkConditions;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.json.JsonObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SafariBrowserTest {
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  private SafariBrowser browser;
+
+  @After
+  public void tearDown() throws Exception {
+    if (browser != null) {
+      browser.close();
+    }
+  }
+
+  @Test
+  public void testResetTurnsOffNetworkSettings() throws Exception {
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    List<JsonObject> commands = new CopyOnWriteArrayList<>();
+    device.setCommandListener(commands::add);
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+    browser.sendCommand(NetworkConditions.OFFLINE.toCommand(), TIMEOUT);
+    browser.sendCommand(Network.setCacheDisabled(true), TIMEOUT);
+    browser.sendCommand(Network.setBypassServiceWorker(true), TIMEOUT);
+    commands.clear();
+
+    browser.reset();
+
+    assertThat(params(commands, "Network.emulateNetworkConditions"))
+        .isEqualTo(NetworkConditions.NONE.toCommand().params());
+    assertThat(params(commands, "Network.setCacheDisabled").getBoolean("cacheDisabled")).isFalse();
+    assertThat(params(commands, "Network.setBypassServiceWorker").getBoolean("bypass")).isFalse();
+  }
+
+  @Test
+  public void testResetStopsTimelineAndDisablesDomains() throws Exception {
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    List<JsonObject> commands = new CopyOnWriteArrayList<>();
+    device.setCommandListener(commands::add);
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+    browser.sendCommand(Page.enable(), TIMEOUT);
+    browser.sendCommand(Network.enable(), TIMEOUT);
+    browser.sendCommand(Timeline.start(), TIMEOUT);
+    commands.clear();
+
+    browser.reset();
+
+    assertThat(methods(commands))
+        .containsAllOf("Timeline.stop", "Network.disable", "Page.disable")
+        .inOrder();
+    assertThat(methods(commands))
+        .containsNoneOf("DOM.disable", "Runtime.disable", "Console.disable");
+  }
+
+  @Test
+  public void testResetDisablesOnlyOnce() throws Exception {
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    List<JsonObject> commands = new CopyOnWriteArrayList<>();
+    device.setCommandListener(commands::add);
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+    browser.sendCommand(Page.enable(), TIMEOUT);
+    browser.reset();
+    commands.clear();
+
+    browser.reset();
+
+    assertThat(methods(commands)).doesNotContain("Page.disable");
+  }
+
+  @Test
+  public void testResetRemovesEventListeners() throws Exception {
+    FakeInspectorDevice device = new FakeInspectorDevice("fake-0", Duration.ZERO, 0);
+    browser = SafariBrowser.startOnFakeDevice(device, Optional.empty());
+    List<String> events = new CopyOnWriteArrayList<>();
+    browser.addEventListener(event -> events.add(event.method()));
+
+    browser.reset();
+    events.clear();
+    browser.sendCommand(Page.navigate("http://www.google.com/"), TIMEOUT);
+
+    assertThat(events).isEmpty();
+  }
+
+  private static JsonObject params(List<JsonObject> commands, String method) {
+    return commands
+        .stream()
+        .filter(command -> command.getString("method").equals(method))
+        .findFirst()
+        .get()
+        .getJsonObject("params");
+  }
+
+  private static List<String> methods(List<JsonObject> commands) {
+    return commands.stream().map(command -> command.getString("method")).collect(toList());
+  }
+}
@@ -0,0 +1,101 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Utf8;
+import com.google.gson.JsonParser;
+import java.math.BigDecimal;
+import javax.json.Json;
+import javax.json.JsonObject;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JavaxJsonTest {
+  private static final JsonObject OBJECT =
+      Json.createObjectBuilder()
+          .add("string", "a \"quoted\" \u00e9")
+          .add("int", 42)
+          .add("long", 1L << 40)
+          .add("huge", new BigDecimal("123456789012345678901234567890"))
+          .add("double", 1.5)
+          .add("true", true)
+          .add("false", false)
+          .addNull("null")
+          .add("empty", Json.createObjectBuilder())
+          .add(
+              "array",
+              Json.createArrayBuilder()
+                  .add(1)
+                  .add("two")
+                  .addNull()
+                  .add(Json.createObjectBuilder().add("nested", Json.createArrayBuilder())))
+          .build();
+
+  @Test
+  public void testGsonRoundTrip() {
+    com.google.gson.JsonObject gson = JavaxJson.toGson(OBJECT);
+
+    assertThat(gson).isEqualTo(new JsonParser().parse(OBJECT.toString()));
+    assertThat(JavaxJson.fromGson(gson)).isEqualTo(OBJECT);
+  }
+
+  @Test
+  public void testFromParsedGson() {
+    com.google.gson.JsonObject gson = new JsonParser().parse(OBJECT.toString()).getAsJsonObject();
+
+    assertThat(JavaxJson.fromGson(gson)).isEqualTo(OBJECT);
+  }
+
+  @Test
+  public void testOrgJsonRoundTrip() throws Exception {
+    JSONObject orgJson = JavaxJson.toOrgJson(OBJECT);
+
+    assertThat(orgJson.get("int")).isEqualTo(42);
+    assertThat(orgJson.get("long")).isEqualTo(1L << 40);
+    assertThat(orgJson.get("double")).isEqualTo(1.5);
+    assertThat(orgJson.get("null")).isEqualTo(JSONObject.NULL);
+    assertThat(orgJson.getJSONArray("array").getJSONObject(3).getJSONArray("nested").length())
+        .isEqualTo(0);
+    assertThat(JavaxJson.fromOrgJson(orgJson)).isEqualTo(OBJECT);
+  }
+
+  @Test
+  public void testFromParsedOrgJson() throws Exception {
+    JSONObject orgJson = new JSONObject(OBJECT.toString());
+
+    assertThat(JavaxJson.fromOrgJson(orgJson))
+        .isEqualTo(JavaxJson.parseObject(orgJson.toString()));
+  }
+
+  @Test
+  public void testEncodedLength() {
+    JsonObject escapes =
+        Json.createObjectBuilder()
+            .add("control", "tab\t newline\n bell\u0007 backslash\\")
+            .add("wide", "\u20ac \ud83d\ude00")
+            .add("object", OBJECT)
+            .build();
+
+    assertThat(JavaxJson.encodedLength(OBJECT)).isEqualTo(Utf8.encodedLength(OBJECT.toString()));
+    assertThat(JavaxJson.encodedLength(escapes))
+        .isEqualTo(Utf8.encodedLength(escapes.toString()));
+    assertThat(JavaxJson.encodedLength(JavaxJson.EMPTY_ARRAY)).isEqualTo(2);
+  }
+}
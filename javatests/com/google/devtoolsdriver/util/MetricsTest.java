@@ -0,0 +1,85 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MetricsTest {
+  @Test
+  public void testHistogramQuantiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int millis = 1; millis <= 100; millis++) {
+      histogram.record(millis, MILLISECONDS);
+    }
+
+    assertThat(histogram.count()).isEqualTo(100);
+    assertThat(histogram.sumNanos()).isEqualTo(MILLISECONDS.toNanos(5050));
+    assertThat((double) histogram.quantileNanos(0.5)).isWithin(0.07 * 50e6).of(50e6);
+    assertThat((double) histogram.quantileNanos(0.99)).isWithin(0.07 * 99e6).of(99e6);
+    assertThat(histogram.quantileNanos(1)).isAtLeast(MILLISECONDS.toNanos(100));
+    assertThat(histogram.countAtOrBelow(MILLISECONDS.toNanos(10))).isEqualTo(10);
+  }
+
+  @Test
+  public void testHistogramSmallAndLargeValues() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordNanos(-5);
+    histogram.recordNanos(7);
+    histogram.record(Long.MAX_VALUE, NANOSECONDS);
+
+    assertThat(histogram.count()).isEqualTo(3);
+    assertThat(histogram.quantileNanos(0.3)).isEqualTo(0);
+    assertThat(histogram.quantileNanos(0.6)).isEqualTo(7);
+  }
+
+  @Test
+  public void testWritePrometheus() throws IOException {
+    Metrics metrics = new Metrics();
+    metrics.counter("requests_total", "Requests.", "command", "GET").add(3);
+    metrics.gauge("sessions", "Sessions.", () -> 2);
+    metrics.histogram("latency_seconds", "Latency.", "command", "GET").record(2, MILLISECONDS);
+
+    StringBuilder out = new StringBuilder();
+    metrics.writePrometheus(out);
+
+    assertThat(out.toString())
+        .contains("# TYPE requests_total counter\nrequests_total{command=\"GET\"} 3\n");
+    assertThat(out.toString()).contains("# TYPE sessions gauge\nsessions 2\n");
+    assertThat(out.toString()).contains("latency_seconds_bucket{command=\"GET\",le=\"0.001\"} 0\n");
+    assertThat(out.toString())
+        .contains("latency_seconds_bucket{command=\"GET\",le=\"0.0025\"} 1\n");
+    assertThat(out.toString()).contains("latency_seconds_count{command=\"GET\"} 1\n");
+  }
+
+  @Test
+  public void testConflictingRegistration() {
+    Metrics metrics = new Metrics();
+    metrics.counter("requests_total", "Requests.");
+    try {
+      metrics.histogram("requests_total", "Requests.", "command", "GET");
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,95 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RingBufferTest {
+  @Test
+  public void testFirstInFirstOut() {
+    RingBuffer<Integer> buffer = new RingBuffer<>(4);
+    assertThat(buffer.poll()).isNull();
+    for (int round = 0; round < 3; round++) {
+      assertThat(buffer.offer(1)).isTrue();
+      assertThat(buffer.offer(2)).isTrue();
+      assertThat(buffer.poll()).isEqualTo(1);
+      assertThat(buffer.offer(3)).isTrue();
+      assertThat(buffer.drain()).containsExactly(2, 3).inOrder();
+    }
+    assertThat(buffer.droppedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDropsWhenFull() {
+    RingBuffer<Integer> buffer = new RingBuffer<>(2);
+    assertThat(buffer.offer(1)).isTrue();
+    assertThat(buffer.offer(2)).isTrue();
+    assertThat(buffer.offer(3)).isFalse();
+    assertThat(buffer.offer(4)).isFalse();
+
+    assertThat(buffer.droppedCount()).isEqualTo(2);
+    assertThat(buffer.drain()).containsExactly(1, 2).inOrder();
+    assertThat(buffer.offer(5)).isTrue();
+    assertThat(buffer.drain()).containsExactly(5);
+  }
+
+  @Test
+  public void testConcurrentProducers() throws Exception {
+    int producers = 4;
+    int perProducer = 10000;
+    RingBuffer<Integer> buffer = new RingBuffer<>(1 << 10);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      int first = p * perProducer;
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  throw new AssertionError(e);
+                }
+                for (int i = first; i < first + perProducer; i++) {
+                  buffer.offer(i);
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+
+    List<Integer> received = new ArrayList<>();
+    start.countDown();
+    boolean producing = true;
+    while (producing) {
+      producing = threads.stream().anyMatch(Thread::isAlive);
+      received.addAll(buffer.drain());
+    }
+
+    Set<Integer> distinct = new HashSet<>(received);
+    assertThat(distinct).hasSize(received.size());
+    assertThat(received.size() + buffer.droppedCount()).isEqualTo(producers * perProducer);
+  }
+}
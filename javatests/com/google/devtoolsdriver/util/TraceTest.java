@@ -0,0 +1,71 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TraceTest {
+  @Test
+  public void testNoopSpan() {
+    assertThat(TraceSpan.current()).isSameAs(TraceSpan.NOOP);
+    assertThat(TraceSpan.NOOP.isRecording()).isFalse();
+    assertThat(TraceSpan.NOOP.startChild("child")).isSameAs(TraceSpan.NOOP);
+  }
+
+  @Test
+  public void testCurrentSpan() {
+    TraceSpan root = Trace.start("root");
+    root.wrap(
+            () -> {
+              assertThat(TraceSpan.current()).isSameAs(root);
+              TraceSpan.current().startChild("child").put("key", "value").end();
+            })
+        .run();
+    root.end();
+
+    assertThat(TraceSpan.current()).isSameAs(TraceSpan.NOOP);
+    JsonArray spans = root.trace().toJson().getJsonArray("spans");
+    assertThat(spans).hasSize(2);
+    JsonObject child = spans.getJsonObject(1);
+    assertThat(child.getString("name")).isEqualTo("child");
+    assertThat(child.getInt("parentId")).isEqualTo(0);
+    assertThat(child.getJsonObject("attributes").getString("key")).isEqualTo("value");
+  }
+
+  @Test
+  public void testDropsSpansOverLimit() {
+    TraceSpan root = Trace.start("root");
+    for (int i = 0; i < Trace.MAX_SPANS; i++) {
+      root.startChild("child").end();
+    }
+
+    JsonObject json = root.trace().toJson();
+    assertThat(json.getJsonArray("spans")).hasSize(Trace.MAX_SPANS);
+    assertThat(json.getInt("droppedSpans")).isEqualTo(1);
+  }
+
+  @Test
+  public void testSample() {
+    assertThat(Trace.sample(0)).isFalse();
+    assertThat(Trace.sample(1)).isTrue();
+  }
+}
@@ -0,0 +1,245 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.webdriver;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.devtoolsdriver.devtools.DevtoolsCommand;
+import com.google.devtoolsdriver.devtools.DevtoolsEvent;
+import com.google.devtoolsdriver.devtools.DevtoolsResult;
+import com.google.devtoolsdriver.util.JavaxJson;
+import java.io.StringWriter;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class HarRecorderTest {
+  private static final Clock CLOCK = Clock.fixed(Instant.ofEpochSecond(1000), ZoneOffset.UTC);
+
+  private final List<DevtoolsCommand> sent = new ArrayList<>();
+  private final Map<String, String> bodies = new HashMap<>();
+  private Path spool;
+
+  @Before
+  public void setup() throws Exception {
+    FileSystem fileSystem = Jimfs.newFileSystem(Configuration.unix());
+    spool = Files.createDirectory(fileSystem.getPath("/spool"));
+  }
+
+  @Test
+  public void testRecordsRequestResponseAndBody() throws Exception {
+    HarRecorder recorder = recorder(1000);
+
+    load(recorder, "1", "http://www.google.com/", "hello");
+    JsonObject entry = entries(har(recorder)).getJsonObject(0);
+
+    assertThat(sent.get(0).method()).isEqualTo("Network.getResponseBody");
+    assertThat(entry.getString("startedDateTime")).isEqualTo("1970-01-01T00:16:40Z");
+    assertThat(entry.getJsonNumber("time").doubleValue()).isWithin(0.01).of(500);
+    assertThat(entry.getJsonObject("request").getString("url")).isEqualTo("http://www.google.com/");
+    assertThat(entry.getJsonObject("request").getJsonArray("headers").getJsonObject(0))
+        .isEqualTo(Json.createObjectBuilder().add("name", "Accept").add("value", "*/*").build());
+    JsonObject response = entry.getJsonObject("response");
+    assertThat(response.getInt("status")).isEqualTo(200);
+    assertThat(response.getInt("bodySize")).isEqualTo(3);
+    assertThat(response.getJsonObject("content").getString("text")).isEqualTo("hello");
+    assertThat(response.getJsonObject("content").getInt("size")).isEqualTo(5);
+    assertThat(entry.getJsonObject("timings").getJsonNumber("wait").doubleValue())
+        .isWithin(0.01)
+        .of(200);
+  }
+
+  @Test
+  public void testBodyIsEscapedAsItIsCopied() throws Exception {
+    HarRecorder recorder = recorder(1000);
+    String body = "{\"a\": \"\\\u00e9\"}\r\n\t\u0001";
+
+    load(recorder, "1", "http://www.google.com/", body);
+    JsonObject content =
+        entries(har(recorder)).getJsonObject(0).getJsonObject("response").getJsonObject("content");
+
+    assertThat(content.getString("text")).isEqualTo(body);
+    assertThat(content.getInt("size")).isEqualTo(body.length());
+    assertThat(content.getString("mimeType")).isEqualTo("text/html");
+  }
+
+  @Test
+  public void testBodiesOverTheCapAreNotSpooled() throws Exception {
+    HarRecorder recorder = recorder(8);
+
+    load(recorder, "1", "http://www.google.com/a", "small");
+    load(recorder, "2", "http://www.google.com/b", "too large");
+    JsonObject second = entries(har(recorder)).getJsonObject(1);
+
+    assertThat(second.getJsonObject("response").getJsonObject("content").containsKey("text"))
+        .isFalse();
+    assertThat(second.getJsonObject("response").getJsonObject("content").getString("comment"))
+        .contains("cap");
+    assertThat(spooledFiles()).hasSize(1);
+  }
+
+  @Test
+  public void testRedirectIsItsOwnEntry() throws Exception {
+    HarRecorder recorder = recorder(0);
+
+    recorder.accept(requestWillBeSent("1", "http://google.com/", 100, null));
+    recorder.accept(
+        requestWillBeSent(
+            "1", "http://www.google.com/", 100.1, response(301, "http://google.com/")));
+    JsonObject har = har(recorder);
+
+    assertThat(entries(har)).hasSize(2);
+    JsonObject redirect = entries(har).getJsonObject(0).getJsonObject("response");
+    assertThat(redirect.getInt("status")).isEqualTo(301);
+    assertThat(redirect.getString("redirectURL")).isEqualTo("http://www.google.com/");
+    assertThat(sent).isEmpty();
+  }
+
+  @Test
+  public void testCloseDeletesSpooledBodies() throws Exception {
+    HarRecorder recorder = recorder(1000);
+    load(recorder, "1", "http://www.google.com/", "hello");
+
+    recorder.close();
+
+    assertThat(Files.exists(spool)).isFalse();
+  }
+
+  private HarRecorder recorder(long maxBodyBytes) {
+    return new HarRecorder(this::send, directExecutor(), spool, maxBodyBytes, CLOCK);
+  }
+
+  private ListenableFuture<DevtoolsResult> send(DevtoolsCommand command) {
+    sent.add(command);
+    String requestId = command.params().getString("requestId");
+    JsonObject body =
+        Json.createObjectBuilder()
+            .add("body", bodies.get(requestId))
+            .add("base64Encoded", false)
+            .build();
+    return Futures.immediateFuture(
+        new DevtoolsResult() {
+          @Override
+          public JsonObject json() {
+            return body;
+          }
+        });
+  }
+
+  /** Sends the events of a request whose response starts 200ms and ends 500ms after it. */
+  private void load(HarRecorder recorder, String requestId, String url, String body) {
+    bodies.put(requestId, body);
+    recorder.accept(requestWillBeSent(requestId, url, 100, null));
+    recorder.accept(
+        event(
+            "Network.responseReceived",
+            Json.createObjectBuilder()
+                .add("requestId", requestId)
+                .add("frameId", "f")
+                .add("loaderId", "l")
+                .add("timestamp", 100.2)
+                .add("type", "Document")
+                .add("response", response(200, url))));
+    recorder.accept(
+        event(
+            "Network.dataReceived",
+            Json.createObjectBuilder()
+                .add("requestId", requestId)
+                .add("timestamp", 100.3)
+                .add("dataLength", body.length())
+                .add("encodedDataLength", 3)));
+    recorder.accept(
+        event(
+            "Network.loadingFinished",
+            Json.createObjectBuilder().add("requestId", requestId).add("timestamp", 100.5)));
+  }
+
+  private static DevtoolsEvent requestWillBeSent(
+      String requestId, String url, double timestamp, JsonObject redirectResponse) {
+    JsonObjectBuilder params =
+        Json.createObjectBuilder()
+            .add("requestId", requestId)
+            .add("frameId", "f")
+            .add("loaderId", "l")
+            .add("documentURL", url)
+            .add(
+                "request",
+                Json.createObjectBuilder()
+                    .add("url", url)
+                    .add("method", "GET")
+                    .add("headers", Json.createObjectBuilder().add("Accept", "*/*")))
+            .add("timestamp", timestamp)
+            .add("initiator", Json.createObjectBuilder().add("type", "other"));
+    if (redirectResponse != null) {
+      params.add("redirectResponse", redirectResponse);
+    }
+    return event("Network.requestWillBeSent", params);
+  }
+
+  private static JsonObject response(int status, String url) {
+    return Json.createObjectBuilder()
+        .add("url", url)
+        .add("status", status)
+        .add("statusText", "")
+        .add("headers", Json.createObjectBuilder().add("Content-Type", "text/html"))
+        .add("mimeType", "text/html")
+        .build();
+  }
+
+  private static DevtoolsEvent event(String method, JsonObjectBuilder params) {
+    return DevtoolsEvent.fromJson(
+        Json.createObjectBuilder().add("method", method).add("params", params).build());
+  }
+
+  private static JsonObject har(HarRecorder recorder) throws Exception {
+    StringWriter out = new StringWriter();
+    recorder.writeHar(out);
+    return JavaxJson.parseObject(out.toString());
+  }
+
+  private static JsonArray entries(JsonObject har) {
+    return har.getJsonObject("log").getJsonArray("entries");
+  }
+
+  private List<Path> spooledFiles() throws Exception {
+    List<Path> files = new ArrayList<>();
+    try (Stream<Path> listing = Files.list(spool)) {
+      listing.forEach(files::add);
+    }
+    return files;
+  }
+}
@@ -0,0 +1,62 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.devtoolsdriver.webdriver;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.devtoolsdriver.devtools.DevtoolsCommand;
+import javax.json.Json;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class NetworkConditionsTest {
+  @Test
+  public void testProfileNamesIgnoreCase() {
+    assertThat(NetworkConditions.ofProfile("Regular3G"))
+        .isEqualTo(NetworkConditions.create(false, 100, 96000, 32000));
+    assertThat(NetworkConditions.ofProfile("OFFLINE")).isEqualTo(NetworkConditions.OFFLINE);
+  }
+
+  @Test
+  public void testUnknownProfileIsRejected() {
+    try {
+      NetworkConditions.fromJson(Json.createArrayBuilder().add("Dialup").build().get(0));
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessageThat().contains("Dialup");
+    }
+  }
+
+  @Test
+  public void testMissingParametersAreNotThrottled() {
+    NetworkConditions conditions =
+        NetworkConditions.fromJson(Json.createObjectBuilder().add("latency", 200).build());
+
+    assertThat(conditions).isEqualTo(NetworkConditions.create(false, 200, -1, -1));
+  }
+
+  @Test
+  public void testCommandHasTheProtocolParameters() {
+    DevtoolsCommand command = NetworkConditions.ofProfile("gprs").toCommand();
+
+    assertThat(command.method()).isEqualTo("Network.emulateNetworkConditions");
+    assertThat(command.params()).isEqualTo(NetworkConditions.ofProfile("gprs").toJson());
+    assertThat(command.params().getInt("downloadThroughput")).isEqualTo(6400);
+  }
+}
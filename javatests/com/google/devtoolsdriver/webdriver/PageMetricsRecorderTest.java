@@ -0,0 +1,209 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtoolsdriver.webdriver;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.devtoolsdriver.devtools.DevtoolsEvent;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PageMetricsRecorderTest {
+  private final PageMetricsRecorder recorder =
+      new PageMetricsRecorder(Clock.fixed(Instant.ofEpochSecond(1000), ZoneOffset.UTC));
+
+  @Test
+  public void testAggregatesNavigation() {
+    request("1", "main", "Document", "http://www.google.com/", 100);
+    event(
+        "Page.frameNavigated",
+        Json.createObjectBuilder().add("frame", Json.createObjectBuilder().add("id", "main")));
+    response("1", "Document", 100.1);
+    load("1", 1000, 400, 100.2);
+    request("2", "main", "Script", "http://www.google.com/a.js", 100.3);
+    response("2", "Script", 100.35);
+    load("2", 3000, 1000, 100.4);
+    request("3", "main", "Image", "http://www.google.com/a.png", 100.3);
+    event(
+        "Network.loadingFailed",
+        Json.createObjectBuilder()
+            .add("requestId", "3")
+            .add("timestamp", 100.4)
+            .add("errorText", "Cancelled"));
+    event("Page.domContentEventFired", Json.createObjectBuilder().add("timestamp", 100.5));
+    event("Page.loadEventFired", Json.createObjectBuilder().add("timestamp", 101));
+
+    JsonObject navigation = navigations().getJsonObject(0);
+
+    assertThat(navigation.getString("url")).isEqualTo("http://www.google.com/");
+    assertThat(navigation.getString("startedDateTime")).isEqualTo("1970-01-01T00:16:40Z");
+    JsonObject timing = navigation.getJsonObject("timing");
+    assertThat(millis(timing, "responseStart")).isWithin(0.01).of(100);
+    assertThat(millis(timing, "responseEnd")).isWithin(0.01).of(200);
+    assertThat(millis(timing, "domContentLoaded")).isWithin(0.01).of(500);
+    assertThat(millis(timing, "load")).isWithin(0.01).of(1000);
+    JsonObject resources = navigation.getJsonObject("resources");
+    assertThat(resources.getInt("count")).isEqualTo(3);
+    assertThat(resources.getInt("finished")).isEqualTo(2);
+    assertThat(resources.getInt("failed")).isEqualTo(1);
+    assertThat(resources.getInt("encodedBytes")).isEqualTo(1400);
+    assertThat(resources.getInt("decodedBytes")).isEqualTo(4000);
+    JsonObject script = resources.getJsonObject("byType").getJsonObject("Script");
+    assertThat(script.getInt("count")).isEqualTo(1);
+    assertThat(script.getInt("encodedBytes")).isEqualTo(1000);
+  }
+
+  @Test
+  public void testTimelineCountsSelfTimeOfEachActivity() {
+    request("1", "main", "Document", "http://www.google.com/", 100);
+    event(
+        "Timeline.eventRecorded",
+        Json.createObjectBuilder()
+            .add(
+                "record",
+                record("EvaluateScript", 10, 10.1)
+                    .add(
+                        "children",
+                        Json.createArrayBuilder()
+                            .add(record("Layout", 10.02, 10.05))
+                            .add(record("GCEvent", 10.06, 10.07)))));
+    event(
+        "Timeline.eventRecorded",
+        Json.createObjectBuilder().add("record", record("Paint", 11, 11.01)));
+
+    JsonObject timeline = navigations().getJsonObject(0).getJsonObject("timeline");
+
+    assertThat(millis(timeline, "script")).isWithin(0.01).of(70);
+    assertThat(millis(timeline, "layout")).isWithin(0.01).of(30);
+    assertThat(millis(timeline, "paint")).isWithin(0.01).of(10);
+    assertThat(millis(timeline, "style")).isWithin(0.01).of(0);
+  }
+
+  @Test
+  public void testOnlyMainFrameDocumentsStartNavigations() {
+    request("1", "main", "Document", "http://www.google.com/", 100);
+    event(
+        "Page.frameNavigated",
+        Json.createObjectBuilder().add("frame", Json.createObjectBuilder().add("id", "main")));
+    request("2", "child", "Document", "http://www.google.com/frame", 100.1);
+    request("1", "main", "Document", "http://www.google.com/redirected", 100.2);
+    request("3", "main", "Document", "http://www.google.com/next", 101);
+
+    JsonArray navigations = navigations();
+
+    assertThat(navigations).hasSize(2);
+    assertThat(navigations.getJsonObject(0).getJsonObject("resources").getInt("count"))
+        .isEqualTo(2);
+    assertThat(navigations.getJsonObject(1).getString("url"))
+        .isEqualTo("http://www.google.com/next");
+  }
+
+  @Test
+  public void testMemoryCacheKeepsAnnouncedRequest() {
+    request("1", "main", "Document", "http://www.google.com/", 100);
+    request("2", "main", "Script", "http://www.google.com/a.js", 100.1);
+    load("2", 3000, 1000, 100.2);
+    event(
+        "Network.requestServedFromMemoryCache",
+        Json.createObjectBuilder()
+            .add("requestId", "2")
+            .add("resource", Json.createObjectBuilder().add("type", "Other")));
+    event(
+        "Network.requestServedFromMemoryCache",
+        Json.createObjectBuilder()
+            .add("requestId", "3")
+            .add("resource", Json.createObjectBuilder().add("type", "Image")));
+
+    JsonObject resources = navigations().getJsonObject(0).getJsonObject("resources");
+
+    assertThat(resources.getInt("count")).isEqualTo(3);
+    assertThat(resources.getInt("cached")).isEqualTo(2);
+    assertThat(resources.getInt("decodedBytes")).isEqualTo(3000);
+    JsonObject byType = resources.getJsonObject("byType");
+    assertThat(byType.getJsonObject("Script").getInt("cached")).isEqualTo(1);
+    assertThat(byType.getJsonObject("Image").getInt("cached")).isEqualTo(1);
+    assertThat(byType.containsKey("Other")).isFalse();
+  }
+
+  private void request(String requestId, String frameId, String type, String url, double time) {
+    event(
+        "Network.requestWillBeSent",
+        Json.createObjectBuilder()
+            .add("requestId", requestId)
+            .add("frameId", frameId)
+            .add("loaderId", "l")
+            .add("documentURL", url)
+            .add("request", Json.createObjectBuilder().add("url", url).add("method", "GET"))
+            .add("timestamp", time)
+            .add("initiator", Json.createObjectBuilder().add("type", "other"))
+            .add("type", type));
+  }
+
+  private void response(String requestId, String type, double time) {
+    event(
+        "Network.responseReceived",
+        Json.createObjectBuilder()
+            .add("requestId", requestId)
+            .add("frameId", "main")
+            .add("loaderId", "l")
+            .add("timestamp", time)
+            .add("type", type)
+            .add("response", Json.createObjectBuilder().add("status", 200)));
+  }
+
+  private void load(String requestId, int dataLength, int encodedDataLength, double time) {
+    event(
+        "Network.dataReceived",
+        Json.createObjectBuilder()
+            .add("requestId", requestId)
+            .add("timestamp", time)
+            .add("dataLength", dataLength)
+            .add("encodedDataLength", encodedDataLength));
+    event(
+        "Network.loadingFinished",
+        Json.createObjectBuilder().add("requestId", requestId).add("timestamp", time));
+  }
+
+  private static JsonObjectBuilder record(String type, double startTime, double endTime) {
+    return Json.createObjectBuilder()
+        .add("type", type)
+        .add("data", Json.createObjectBuilder())
+        .add("startTime", startTime)
+        .add("endTime", endTime);
+  }
+
+  private void event(String method, JsonObjectBuilder params) {
+    recorder.accept(
+        DevtoolsEvent.fromJson(
+            Json.createObjectBuilder().add("method", method).add("params", params).build()));
+  }
+
+  private JsonArray navigations() {
+    return recorder.toJson().getJsonArray("navigations");
+  }
+
+  private static double millis(JsonObject object, String name) {
+    return object.getJsonNumber(name).doubleValue();
+  }
+}
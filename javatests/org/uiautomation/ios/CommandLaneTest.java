@@ -0,0 +1,160 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CommandLaneTest {
+  private static final boolean READ = true;
+  private static final boolean WRITE = false;
+
+  private final CommandLane lane = new CommandLane();
+  private final List<String> started = new ArrayList<>();
+
+  /** Submits a command that records its start and completes when the returned future is set. */
+  private SettableFuture<String> submit(boolean readOnly, String name) {
+    SettableFuture<String> completion = SettableFuture.create();
+    lane.submit(
+        readOnly,
+        () -> {
+          started.add(name);
+          return completion;
+        });
+    return completion;
+  }
+
+  @Test
+  public void testWriteWaitsForEarlierReadsAndLaterReadsWaitForIt() {
+    SettableFuture<String> read = submit(READ, "read");
+    SettableFuture<String> write = submit(WRITE, "write");
+    submit(READ, "later read");
+    assertThat(started).containsExactly("read");
+
+    read.set("done");
+    assertThat(started).containsExactly("read", "write").inOrder();
+
+    write.set("done");
+    assertThat(started).containsExactly("read", "write", "later read").inOrder();
+  }
+
+  @Test
+  public void testReadsOverlapOnlyWithReads() {
+    SettableFuture<String> write = submit(WRITE, "write");
+    SettableFuture<String> first = submit(READ, "first read");
+    SettableFuture<String> second = submit(READ, "second read");
+    assertThat(started).containsExactly("write");
+
+    write.set("done");
+    assertThat(started).containsExactly("write", "first read", "second read").inOrder();
+    assertThat(lane.stats().get("runningCommands")).isEqualTo(2);
+    assertThat(lane.stats().get("overlappedReads")).isEqualTo(1L);
+
+    submit(WRITE, "second write");
+    first.set("done");
+    assertThat(started).doesNotContain("second write");
+    second.set("done");
+    assertThat(started).contains("second write");
+  }
+
+  @Test
+  public void testCommandsCompletingAsTheyStartDoNotRecurse() throws Exception {
+    SettableFuture<String> write = submit(WRITE, "write");
+    List<ListenableFuture<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      int value = i;
+      results.add(lane.submit(WRITE, () -> Futures.immediateFuture(value)));
+    }
+
+    write.set("done");
+
+    assertThat(Futures.allAsList(results).get()).hasSize(100_000);
+    assertThat(results.get(99_999).get()).isEqualTo(99_999);
+    assertThat(lane.stats().get("queueLength")).isEqualTo(0);
+    assertThat(lane.stats().get("runningCommands")).isEqualTo(0);
+  }
+
+  @Test
+  public void testThrowingCommandFailsItsFutureAndFreesTheLane() throws Exception {
+    IllegalStateException failure = new IllegalStateException("no page");
+    ListenableFuture<String> result =
+        lane.submit(
+            WRITE,
+            () -> {
+              throw failure;
+            });
+    submit(WRITE, "next");
+
+    try {
+      result.get();
+      fail("expected the command to fail");
+    } catch (ExecutionException expected) {
+      assertThat(expected.getCause()).isSameAs(failure);
+    }
+    assertThat(started).containsExactly("next");
+  }
+
+  @Test
+  public void testResultIsTheCommandResult() throws Exception {
+    SettableFuture<String> completion = SettableFuture.create();
+    ListenableFuture<String> result = lane.submit(READ, () -> completion);
+    assertThat(result.isDone()).isFalse();
+
+    completion.set("value");
+
+    assertThat(result.get()).isEqualTo("value");
+  }
+
+  @Test
+  public void testStats() {
+    assertThat(lane.stats())
+        .containsExactly(
+            "queueLength", 0,
+            "maxQueueLength", 0,
+            "runningCommands", 0,
+            "commands", 0L,
+            "overlappedReads", 0L,
+            "averageWaitMillis", 0L,
+            "maxWaitMillis", 0L);
+
+    SettableFuture<String> write = submit(WRITE, "write");
+    submit(READ, "first read");
+    submit(READ, "second read");
+    assertThat(lane.stats().get("queueLength")).isEqualTo(2);
+    assertThat(lane.stats().get("runningCommands")).isEqualTo(1);
+    assertThat(lane.stats().get("commands")).isEqualTo(1L);
+
+    write.set("done");
+
+    assertThat(lane.stats().get("queueLength")).isEqualTo(0);
+    assertThat(lane.stats().get("maxQueueLength")).isEqualTo(2);
+    assertThat(lane.stats().get("runningCommands")).isEqualTo(2);
+    assertThat(lane.stats().get("commands")).isEqualTo(3L);
+    assertThat(lane.stats().get("overlappedReads")).isEqualTo(1L);
+    assertThat((Long) lane.stats().get("maxWaitMillis"))
+        .isAtLeast((Long) lane.stats().get("averageWaitMillis"));
+  }
+}
@@ -0,0 +1,77 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Iterables;
+import com.google.devtoolsdriver.safari.FakeSafariLauncher;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests the scripts executed without blocking a command thread. */
+@RunWith(JUnit4.class)
+public class ExecuteScriptTest {
+  private final FakeSafariLauncher launcher = new FakeSafariLauncher();
+  private TestServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = TestServer.start(launcher);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.close();
+  }
+
+  @Test
+  public void testScriptIsCalledOnTheDocumentWithItsArguments() throws Exception {
+    String session = server.newSession();
+    launcher.clear();
+
+    JsonObject response =
+        server.post(
+            "/session/" + session + "/execute",
+            "{\"script\": \"return arguments[0];\", \"args\": [true, 3, \"text\"]}");
+
+    assertThat(response.getInt("status")).isEqualTo(0);
+    assertThat(launcher.methods()).containsAllOf("DOM.getDocument", "Runtime.callFunctionOn");
+    JsonObject call = Iterables.getLast(launcher.params("Runtime.callFunctionOn"));
+    assertThat(call.getString("functionDeclaration")).contains("return arguments[0];");
+    JsonArray arguments = call.getJsonArray("arguments");
+    assertThat(arguments.getJsonObject(0).getBoolean("value")).isTrue();
+    assertThat(arguments.getJsonObject(1).getInt("value")).isEqualTo(3);
+    assertThat(arguments.getJsonObject(2).getString("value")).isEqualTo("text");
+  }
+
+  @Test
+  public void testUnsupportedArgumentFails() throws Exception {
+    String session = server.newSession();
+
+    JsonObject response =
+        server.post(
+            "/session/" + session + "/execute", "{\"script\": \"return 1;\", \"args\": [null]}");
+
+    assertThat(response.getInt("status")).isNotEqualTo(0);
+    assertThat(response.getJsonObject("value").getString("message"))
+        .contains("Unsupported argument type");
+  }
+}
@@ -0,0 +1,151 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.fail;
+
+import com.google.devtoolsdriver.safari.FakeSafariLauncher;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.uiautomation.ios.ServerSideSession.SessionState;
+
+@RunWith(JUnit4.class)
+public class IOSServerManagerTest {
+  private static final int SESSIONS = 16;
+
+  private final IOSServerManager manager = new IOSServerManager(new FakeSafariLauncher());
+  private TestServer server;
+
+  @After
+  public void tearDown() throws Exception {
+    manager.stop();
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void testConcurrentSessions() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(SESSIONS / 2);
+    try {
+      List<Future<ServerSideSession>> created = new ArrayList<>();
+      for (int i = 0; i < SESSIONS; i++) {
+        created.add(executor.submit(startSession()));
+      }
+      Set<String> ids = new HashSet<>();
+      for (Future<ServerSideSession> session : created) {
+        ids.add(session.get(30, SECONDS).getSessionId());
+      }
+      assertThat(ids).hasSize(SESSIONS);
+      assertThat(manager.getSessions()).hasSize(SESSIONS);
+      for (String id : ids) {
+        assertThat(manager.getSession(id).getSessionState()).isEqualTo(SessionState.RUNNING);
+      }
+
+      List<Future<?>> stopped = new ArrayList<>();
+      for (String id : ids) {
+        ServerSideSession session = manager.getSession(id);
+        stopped.add(executor.submit(session::stop));
+      }
+      for (Future<?> stop : stopped) {
+        stop.get(30, SECONDS);
+      }
+      assertThat(manager.getSessions()).isEmpty();
+      for (String id : ids) {
+        assertLookupFails(id, "Session " + id + " stopped");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testSessionsStopIndependently() throws Exception {
+    ServerSideSession first = startSession().call();
+    ServerSideSession second = startSession().call();
+
+    first.stop();
+
+    assertLookupFails(first.getSessionId(), "Session " + first.getSessionId() + " stopped");
+    assertThat(manager.getSession(second.getSessionId())).isSameAs(second);
+    assertThat(manager.getSessions()).containsExactly(second);
+  }
+
+  @Test
+  public void testStoppedSessionIsToldApartFromUnknownSession() throws Exception {
+    ServerSideSession session = startSession().call();
+    session.stop();
+
+    assertLookupFails(session.getSessionId(), "Session " + session.getSessionId() + " stopped");
+    assertLookupFails("unknown", "Cannot find session unknown on the server.");
+  }
+
+  @Test
+  public void testStatusListsEverySession() throws Exception {
+    server = TestServer.start(new FakeSafariLauncher());
+    String first = server.newSession();
+    String second = server.newSession();
+
+    JsonObject status = server.get("/status");
+
+    assertThat(status.isNull("sessionId")).isTrue();
+    JsonArray sessions = status.getJsonObject("value").getJsonArray("sessions");
+    Set<String> ids = new HashSet<>();
+    for (JsonObject session : sessions.getValuesAs(JsonObject.class)) {
+      ids.add(session.getString("id"));
+      assertThat(session.getString("state")).isEqualTo("RUNNING");
+      assertThat(session.getJsonObject("commands").containsKey("queueLength")).isTrue();
+    }
+    assertThat(ids).containsExactly(first, second);
+
+    server.deleteSession(second);
+    status = server.get("/status");
+    assertThat(status.getString("sessionId")).isEqualTo(first);
+    assertThat(status.getJsonObject("value").getJsonArray("sessions")).hasSize(1);
+  }
+
+  private Callable<ServerSideSession> startSession() {
+    return () -> {
+      ServerSideSession session = manager.createSession(new DesiredCapabilities());
+      session.start();
+      return session;
+    };
+  }
+
+  private void assertLookupFails(String sessionId, String message) {
+    try {
+      manager.getSession(sessionId);
+      fail();
+    } catch (WebDriverException expected) {
+      assertThat(expected.getMessage()).startsWith(message);
+    }
+  }
+}
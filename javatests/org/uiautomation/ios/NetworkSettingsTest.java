@@ -0,0 +1,143 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtoolsdriver.safari.FakeSafariLauncher;
+import com.google.devtoolsdriver.util.JavaxJson;
+import com.google.devtoolsdriver.webdriver.NetworkConditions;
+import com.google.devtoolsdriver.webdriver.PageId;
+import javax.json.JsonObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.uiautomation.ios.drivers.RemoteIOSWebDriver;
+
+/** Tests the network settings of sessions, driving a fake device. */
+@RunWith(JUnit4.class)
+public class NetworkSettingsTest {
+  private final FakeSafariLauncher launcher = new FakeSafariLauncher();
+  private IOSServerManager manager;
+  private TestServer server;
+
+  @After
+  public void tearDown() throws Exception {
+    if (manager != null) {
+      manager.stop();
+    }
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void testSettingsAreReappliedOnSwitchTo() {
+    DesiredCapabilities caps = new DesiredCapabilities();
+    caps.setCapability(ServerSideSession.NETWORK_CONDITIONS, "offline");
+    caps.setCapability(ServerSideSession.CACHE_POLICY, "disabled");
+    caps.setCapability(ServerSideSession.BYPASS_SERVICE_WORKER, true);
+    RemoteIOSWebDriver driver = start(caps);
+    int page = launcher.openPage();
+    launcher.clear();
+
+    driver.switchTo(PageId.of(Integer.toString(page)));
+
+    assertThat(launcher.params("Network.emulateNetworkConditions"))
+        .containsExactly(NetworkConditions.OFFLINE.toCommand().params());
+    assertThat(launcher.params("Network.setCacheDisabled"))
+        .containsExactly(JavaxJson.parseObject("{\"cacheDisabled\": true}"));
+    assertThat(launcher.params("Network.setBypassServiceWorker"))
+        .containsExactly(JavaxJson.parseObject("{\"bypass\": true}"));
+  }
+
+  @Test
+  public void testColdCacheIsClearedBeforeEachNavigation() {
+    DesiredCapabilities caps = new DesiredCapabilities();
+    caps.setCapability(ServerSideSession.CACHE_POLICY, "cold");
+    RemoteIOSWebDriver driver = start(caps);
+    launcher.clear();
+
+    driver.get("http://www.google.com/");
+    driver.refresh();
+
+    ImmutableList<String> methods = launcher.methods();
+    assertThat(methods)
+        .containsAllOf(
+            "Network.clearBrowserCache",
+            "Page.navigate",
+            "Network.clearBrowserCache",
+            "Page.reload")
+        .inOrder();
+  }
+
+  @Test
+  public void testWarmCacheIsNotCleared() {
+    DesiredCapabilities caps = new DesiredCapabilities();
+    caps.setCapability(ServerSideSession.CACHE_POLICY, "warm");
+    RemoteIOSWebDriver driver = start(caps);
+    launcher.clear();
+
+    driver.get("http://www.google.com/");
+
+    assertThat(launcher.methods()).doesNotContain("Network.clearBrowserCache");
+  }
+
+  @Test
+  public void testNetworkEndpoint() throws Exception {
+    server = TestServer.start(launcher);
+    String session = server.newSession();
+
+    JsonObject set =
+        server.post(
+            "/session/" + session + "/ios-driver/network",
+            "{\"cachePolicy\": \"disabled\", \"bypassServiceWorker\": true, \"clearCache\": true}");
+
+    assertThat(set.getInt("status")).isEqualTo(0);
+    JsonObject settings = set.getJsonObject("value");
+    assertThat(settings.getString(ServerSideSession.CACHE_POLICY)).isEqualTo("disabled");
+    assertThat(settings.getBoolean(ServerSideSession.BYPASS_SERVICE_WORKER)).isTrue();
+    assertThat(launcher.params("Network.setCacheDisabled"))
+        .containsExactly(JavaxJson.parseObject("{\"cacheDisabled\": true}"));
+    assertThat(launcher.params("Network.setBypassServiceWorker"))
+        .containsExactly(JavaxJson.parseObject("{\"bypass\": true}"));
+    assertThat(launcher.methods()).contains("Network.clearBrowserCache");
+  }
+
+  @Test
+  public void testNetworkEndpointAppliesNothingOfAnInvalidPayload() throws Exception {
+    server = TestServer.start(launcher);
+    String session = server.newSession();
+    launcher.clear();
+
+    JsonObject set =
+        server.post(
+            "/session/" + session + "/ios-driver/network",
+            "{\"networkConditions\": \"offline\", \"bypassServiceWorker\": \"yes\"}");
+
+    assertThat(set.getInt("status")).isNotEqualTo(0);
+    assertThat(launcher.methods()).isEmpty();
+  }
+
+  private RemoteIOSWebDriver start(DesiredCapabilities caps) {
+    manager = new IOSServerManager(launcher);
+    ServerSideSession session = manager.createSession(caps);
+    session.start();
+    return session.getWebDriver();
+  }
+}
@@ -0,0 +1,92 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Strings;
+import com.google.devtoolsdriver.safari.FakeSafariLauncher;
+import java.net.HttpURLConnection;
+import javax.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests the size limit of request payloads. */
+@RunWith(JUnit4.class)
+public class PayloadLimitTest {
+  private static final int MAX_PAYLOAD_BYTES = 256;
+  private static final String TOO_LARGE =
+      "{\"url\": \"http://www.google.com/?q=" + Strings.repeat("x", MAX_PAYLOAD_BYTES) + "\"}";
+
+  private final FakeSafariLauncher launcher = new FakeSafariLauncher();
+  private TestServer server;
+  private String session;
+
+  @Before
+  public void setUp() throws Exception {
+    server = TestServer.start(launcher, "-max_payload_bytes", "" + MAX_PAYLOAD_BYTES);
+    session = server.newSession();
+    launcher.clear();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.close();
+  }
+
+  @Test
+  public void testDeclaredLengthOverLimitIsRefused() throws Exception {
+    HttpURLConnection connection = server.connect("POST", "/session/" + session + "/url");
+    TestServer.write(connection, TOO_LARGE);
+
+    assertThat(connection.getResponseCode()).isEqualTo(413);
+    assertThat(TestServer.read(connection).getString("message"))
+        .contains("exceeds the maximum of " + MAX_PAYLOAD_BYTES + " bytes");
+    assertThat(launcher.methods()).doesNotContain("Page.navigate");
+  }
+
+  @Test
+  public void testUndeclaredLengthOverLimitFails() throws Exception {
+    HttpURLConnection connection = server.connect("POST", "/session/" + session + "/url");
+    connection.setChunkedStreamingMode(64);
+    TestServer.write(connection, TOO_LARGE);
+
+    JsonObject response = TestServer.read(connection);
+    assertThat(response.getInt("status")).isNotEqualTo(0);
+    assertThat(response.getJsonObject("value").getString("message"))
+        .contains("exceeds the maximum of " + MAX_PAYLOAD_BYTES + " bytes");
+    assertThat(launcher.methods()).doesNotContain("Page.navigate");
+  }
+
+  @Test
+  public void testPayloadWithinLimit() throws Exception {
+    JsonObject response =
+        server.post("/session/" + session + "/url", "{\"url\": \"http://www.google.com/\"}");
+
+    assertThat(response.getInt("status")).isEqualTo(0);
+    assertThat(launcher.methods()).contains("Page.navigate");
+  }
+
+  @Test
+  public void testEmptyBody() throws Exception {
+    JsonObject response = server.post("/session/" + session + "/refresh", "");
+
+    assertThat(response.getInt("status")).isEqualTo(0);
+    assertThat(launcher.methods()).contains("Page.reload");
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.io.ByteStreams;
+import com.google.devtoolsdriver.safari.FakeSafariLauncher;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import javax.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests the screenshots of sessions re-encoded as set by their capabilities. */
+@RunWith(JUnit4.class)
+public class ScreenshotTest {
+  private TestServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = TestServer.start(new FakeSafariLauncher());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.close();
+  }
+
+  @Test
+  public void testInvalidCapabilityFailsNewSession() throws Exception {
+    JsonObject response =
+        server.post("/session", "{\"desiredCapabilities\": {\"screenshotJpegQuality\": 500}}");
+
+    assertThat(response.getInt("status")).isNotEqualTo(0);
+    assertThat(response.getJsonObject("value").getString("message"))
+        .contains("screenshotJpegQuality");
+    assertThat(server.get("/sessions").getJsonArray("value")).isEmpty();
+  }
+
+  @Test
+  public void testScreenshotIsEncodedAsSet() throws Exception {
+    String session =
+        server.newSession("{\"screenshotScale\": 0.5, \"screenshotJpegQuality\": 80}");
+
+    HttpURLConnection connection =
+        server.connect("GET", "/session/" + session + "/ios-driver/screenshot");
+
+    assertThat(connection.getResponseCode()).isEqualTo(200);
+    assertThat(connection.getContentType()).isEqualTo("image/jpeg");
+    try (InputStream in = connection.getInputStream()) {
+      assertThat(ByteStreams.toByteArray(in)).isNotEmpty();
+    }
+  }
+
+  @Test
+  public void testScreenshotsOfASessionReuseItsEncoder() throws Exception {
+    String session = server.newSession("{\"screenshotGrayscale\": true}");
+
+    for (int i = 0; i < 2; i++) {
+      JsonObject response = server.get("/session/" + session + "/screenshot");
+      assertThat(response.getInt("status")).isEqualTo(0);
+      assertThat(response.getString("value")).isNotEmpty();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.beust.jcommander.JCommander;
+import com.google.common.io.CharStreams;
+import com.google.devtoolsdriver.util.JavaxJson;
+import com.google.devtoolsdriver.webdriver.BrowserLauncher;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import javax.json.JsonObject;
+
+/** An ios-driver server on a free local port, with a client to send it WebDriver requests. */
+final class TestServer implements AutoCloseable {
+  private final IOSServer server;
+  private final int port;
+  private final List<String> sessions = new ArrayList<>();
+
+  /** Starts a server with the given command line flags, e.g. "-max_payload_bytes", "64". */
+  static TestServer start(BrowserLauncher launcher, String... flags) throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    IOSServerConfiguration options = new IOSServerConfiguration() {};
+    new JCommander(options).parse(flags);
+    options.setPort(port);
+    IOSServer server = new IOSServer(options, launcher);
+    server.start();
+    return new TestServer(server, port);
+  }
+
+  private TestServer(IOSServer server, int port) {
+    this.server = server;
+    this.port = port;
+  }
+
+  /** Creates a session, returning its id; the session is deleted when the server is closed. */
+  String newSession() throws IOException {
+    return newSession("{}");
+  }
+
+  /** Creates a session with the capabilities, given as a JSON object, returning its id. */
+  String newSession(String capabilities) throws IOException {
+    HttpURLConnection connection = connect("POST", "/session");
+    connection.setInstanceFollowRedirects(false);
+    write(connection, "{\"desiredCapabilities\": " + capabilities + "}");
+    assertThat(connection.getResponseCode()).isEqualTo(301);
+    String location = connection.getHeaderField("location");
+    String session = location.substring(location.lastIndexOf('/') + 1);
+    sessions.add(session);
+    return session;
+  }
+
+  void deleteSession(String session) throws IOException {
+    read(connect("DELETE", "/session/" + session));
+    sessions.remove(session);
+  }
+
+  JsonObject post(String path, String payload) throws IOException {
+    HttpURLConnection connection = connect("POST", path);
+    write(connection, payload);
+    return read(connection);
+  }
+
+  JsonObject get(String path) throws IOException {
+    return read(connect("GET", path));
+  }
+
+  /** Opens a connection to the path under /wd/hub. */
+  HttpURLConnection connect(String method, String path) throws IOException {
+    URL url = new URL("http://localhost:" + port + "/wd/hub" + path);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod(method);
+    return connection;
+  }
+
+  static void write(HttpURLConnection connection, String payload) throws IOException {
+    connection.setDoOutput(true);
+    connection.setRequestProperty("Content-Type", "application/json;charset=UTF-8");
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(payload.getBytes(UTF_8));
+    }
+  }
+
+  /** Reads the JSON body of the response, whatever its HTTP status. */
+  static JsonObject read(HttpURLConnection connection) throws IOException {
+    InputStream body =
+        connection.getResponseCode() < 400
+            ? connection.getInputStream()
+            : connection.getErrorStream();
+    try (Reader in = new InputStreamReader(body, UTF_8)) {
+      return JavaxJson.parseObject(CharStreams.toString(in));
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    for (String session : new ArrayList<>(sessions)) {
+      deleteSession(session);
+    }
+    server.stopGracefully();
+  }
+}
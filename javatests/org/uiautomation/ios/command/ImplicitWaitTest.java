@@ -0,0 +1,187 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.command;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Futures;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import javax.json.Json;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.uiautomation.ios.command.ImplicitWait.Locator;
+import org.uiautomation.ios.wkrdp.model.RemoteWebElement;
+
+@RunWith(JUnit4.class)
+public class ImplicitWaitTest {
+  private static final Locator LOCATOR =
+      Locator.fromPayload(
+          Json.createObjectBuilder().add("using", "xpath").add("value", "//div").build());
+  private static final Optional<String> FOUND = Optional.of("element");
+  private static final Optional<String> MISSING = Optional.absent();
+
+  private final RemoteWebElement root = mock(RemoteWebElement.class);
+
+  @Test
+  public void testFoundWithoutWaiting() throws Exception {
+    Lookups lookups = new Lookups(FOUND);
+
+    assertThat(ImplicitWait.await(root, LOCATOR, 1000, lookups)).isEqualTo(FOUND);
+    verify(root, never()).waitForLocator(anyString(), anyString(), any(Duration.class));
+  }
+
+  @Test
+  public void testMatchInPage() throws Exception {
+    pageWaitReturns(Optional.of(true));
+    Lookups lookups = new Lookups(MISSING, FOUND);
+
+    assertThat(ImplicitWait.await(root, LOCATOR, 1000, lookups)).isEqualTo(FOUND);
+    assertThat(lookups.count).isEqualTo(2);
+  }
+
+  @Test
+  public void testMatchInPageThenMissedLookupPolls() throws Exception {
+    pageWaitReturns(Optional.of(true));
+    Lookups lookups = new Lookups(MISSING, MISSING, FOUND);
+
+    assertThat(ImplicitWait.await(root, LOCATOR, 1000, lookups)).isEqualTo(FOUND);
+    assertThat(lookups.count).isEqualTo(3);
+  }
+
+  @Test
+  public void testNoMatchInPage() throws Exception {
+    pageWaitReturns(Optional.of(false));
+    Lookups lookups = new Lookups(MISSING, FOUND);
+
+    assertThat(ImplicitWait.await(root, LOCATOR, 1000, lookups)).isEqualTo(MISSING);
+    assertThat(lookups.count).isEqualTo(1);
+  }
+
+  @Test
+  public void testPollsWherePageCannotWait() throws Exception {
+    pageWaitReturns(Optional.absent());
+    Lookups lookups = new Lookups(MISSING, MISSING, FOUND);
+
+    assertThat(ImplicitWait.await(root, LOCATOR, 1000, lookups)).isEqualTo(FOUND);
+    assertThat(lookups.count).isEqualTo(3);
+  }
+
+  @Test
+  public void testPollingTimesOut() throws Exception {
+    pageWaitReturns(Optional.absent());
+    Lookups lookups = new Lookups(MISSING);
+
+    long start = System.currentTimeMillis();
+    assertThat(ImplicitWait.await(root, LOCATOR, 100, lookups)).isEqualTo(MISSING);
+    assertThat(System.currentTimeMillis() - start).isAtLeast(100L);
+    assertThat(lookups.count).isGreaterThan(1);
+  }
+
+  @Test
+  public void testNoTimeoutLooksUpOnce() throws Exception {
+    Lookups lookups = new Lookups(MISSING, FOUND);
+
+    assertThat(ImplicitWait.await(root, LOCATOR, 0, lookups)).isEqualTo(MISSING);
+    assertThat(lookups.count).isEqualTo(1);
+    verify(root, never()).waitForLocator(anyString(), anyString(), any(Duration.class));
+  }
+
+  @Test
+  public void testAsyncMatchInPage() throws Exception {
+    pageWaitAsyncReturns(Optional.of(true));
+    Lookups lookups = new Lookups(MISSING, FOUND);
+
+    assertThat(awaitAsync(1000, lookups)).isEqualTo(FOUND);
+    assertThat(lookups.count).isEqualTo(2);
+  }
+
+  @Test
+  public void testAsyncMatchInPageThenMissedLookupPolls() throws Exception {
+    pageWaitAsyncReturns(Optional.of(true));
+    Lookups lookups = new Lookups(MISSING, MISSING, FOUND);
+
+    assertThat(awaitAsync(1000, lookups)).isEqualTo(FOUND);
+    assertThat(lookups.count).isEqualTo(3);
+  }
+
+  @Test
+  public void testAsyncNoMatchInPage() throws Exception {
+    pageWaitAsyncReturns(Optional.of(false));
+    Lookups lookups = new Lookups(MISSING, FOUND);
+
+    assertThat(awaitAsync(1000, lookups)).isEqualTo(MISSING);
+    assertThat(lookups.count).isEqualTo(1);
+  }
+
+  @Test
+  public void testAsyncPollingTimesOut() throws Exception {
+    pageWaitAsyncReturns(Optional.absent());
+    Lookups lookups = new Lookups(MISSING);
+
+    assertThat(awaitAsync(100, lookups)).isEqualTo(MISSING);
+    assertThat(lookups.count).isGreaterThan(1);
+  }
+
+  private void pageWaitReturns(Optional<Boolean> matched) {
+    when(root.waitForLocator(anyString(), anyString(), any(Duration.class))).thenReturn(matched);
+  }
+
+  private void pageWaitAsyncReturns(Optional<Boolean> matched) {
+    when(root.waitForLocatorAsync(
+            anyString(), anyString(), any(Duration.class), any(Executor.class)))
+        .thenReturn(Futures.immediateFuture(matched));
+  }
+
+  private Optional<String> awaitAsync(int timeoutMillis, Lookups lookups) throws Exception {
+    return ImplicitWait.awaitAsync(
+            root,
+            LOCATOR,
+            timeoutMillis,
+            () -> Futures.immediateFuture(lookups.find()),
+            lookups,
+            directExecutor())
+        .get();
+  }
+
+  /** Answers the lookups in turn, repeating the last answer once they run out. */
+  private static final class Lookups implements ImplicitWait.Finder<String> {
+    private final Deque<Optional<String>> answers;
+    int count;
+
+    @SafeVarargs
+    Lookups(Optional<String>... answers) {
+      this.answers = new ArrayDeque<>(Arrays.asList(answers));
+    }
+
+    @Override
+    public Optional<String> find() {
+      count++;
+      return answers.size() > 1 ? answers.removeFirst() : answers.getFirst();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.command;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.uiautomation.ios.servlet.BinaryValue;
+
+@RunWith(JUnit4.class)
+public class ScreenshotEncoderTest {
+  @Test
+  public void testDefaultReturnsThePngAsIs() throws Exception {
+    byte[] png = png(20, 10);
+
+    BinaryValue encoded = ScreenshotEncoder.fromCapabilities(new DesiredCapabilities()).encode(png);
+
+    assertThat(encoded.mimeType()).isEqualTo("image/png");
+    assertThat(encoded.bytes()).isSameAs(png);
+  }
+
+  @Test
+  public void testScale() throws Exception {
+    BinaryValue encoded = encoder(ScreenshotEncoder.SCALE, 0.5).encode(png(20, 10));
+
+    assertThat(encoded.mimeType()).isEqualTo("image/png");
+    BufferedImage image = decode(encoded);
+    assertThat(image.getWidth()).isEqualTo(10);
+    assertThat(image.getHeight()).isEqualTo(5);
+  }
+
+  @Test
+  public void testGrayscale() throws Exception {
+    BinaryValue encoded = encoder(ScreenshotEncoder.GRAYSCALE, true).encode(png(20, 10));
+
+    assertThat(encoded.mimeType()).isEqualTo("image/png");
+    assertThat(decode(encoded).getColorModel().getNumComponents()).isEqualTo(1);
+  }
+
+  @Test
+  public void testJpeg() throws Exception {
+    BinaryValue encoded = encoder(ScreenshotEncoder.JPEG_QUALITY, 80).encode(png(20, 10));
+
+    assertThat(encoded.mimeType()).isEqualTo("image/jpeg");
+    assertThat(decode(encoded).getWidth()).isEqualTo(20);
+  }
+
+  @Test
+  public void testInvalidCapabilities() {
+    assertInvalid(ScreenshotEncoder.SCALE, 0);
+    assertInvalid(ScreenshotEncoder.SCALE, 1.5);
+    assertInvalid(ScreenshotEncoder.SCALE, "0.5");
+    assertInvalid(ScreenshotEncoder.GRAYSCALE, "yes");
+    assertInvalid(ScreenshotEncoder.JPEG_QUALITY, 0);
+    assertInvalid(ScreenshotEncoder.JPEG_QUALITY, 101);
+    assertInvalid(ScreenshotEncoder.JPEG_QUALITY, 50.5);
+    assertInvalid(ScreenshotEncoder.JPEG_QUALITY, "high");
+  }
+
+  private static ScreenshotEncoder encoder(String capability, Object value) {
+    DesiredCapabilities caps = new DesiredCapabilities();
+    caps.setCapability(capability, value);
+    return ScreenshotEncoder.fromCapabilities(caps);
+  }
+
+  private static void assertInvalid(String capability, Object value) {
+    try {
+      encoder(capability, value);
+      fail(capability + ": " + value);
+    } catch (WebDriverException expected) {
+      assertThat(expected.getMessage()).startsWith(capability);
+    }
+  }
+
+  private static byte[] png(int width, int height) throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    image.setRGB(0, 0, 0xffff0000);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", bytes);
+    return bytes.toByteArray();
+  }
+
+  private static BufferedImage decode(BinaryValue value) throws IOException {
+    return ImageIO.read(new ByteArrayInputStream(value.bytes()));
+  }
+}
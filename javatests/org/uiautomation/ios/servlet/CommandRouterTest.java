@@ -0,0 +1,143 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.uiautomation.ios.servlet.CommandRouter.Route;
+
+@RunWith(JUnit4.class)
+public class CommandRouterTest {
+  private final CommandRouter router = CommandRouter.getInstance();
+
+  @Test
+  public void testEveryCommandResolvesFromItsTemplate() {
+    for (WebDriverLikeCommand command : WebDriverLikeCommand.values()) {
+      assertThat(WebDriverLikeCommand.getCommand(command.method(), command.path()))
+          .named(command.name())
+          .isEqualTo(command);
+    }
+  }
+
+  @Test
+  public void testEveryCommandResolvesFromAConcretePath() {
+    for (WebDriverLikeCommand command : WebDriverLikeCommand.values()) {
+      ImmutableMap.Builder<String, String> variables = ImmutableMap.builder();
+      StringBuilder path = new StringBuilder();
+      for (String segment : command.path().substring(1).split("/")) {
+        String value = segment;
+        if (segment.startsWith(":")) {
+          value = "value-of-" + segment.substring(1);
+          variables.put(segment, value);
+        }
+        path.append('/').append(value);
+      }
+      Route route = router.resolve(command.method(), path.toString());
+      assertThat(route.command()).named(path.toString()).isEqualTo(command);
+      assertThat(route.variables()).named(path.toString()).isEqualTo(variables.build());
+    }
+  }
+
+  @Test
+  public void testVariables() {
+    Route route = router.resolve("GET", "/session/1234/element/5/attribute/href");
+    assertThat(route.command()).isEqualTo(WebDriverLikeCommand.ATTRIBUTE);
+    assertThat(route.variables())
+        .containsExactly(":sessionId", "1234", ":reference", "5", ":name", "href")
+        .inOrder();
+  }
+
+  @Test
+  public void testLiteralSegmentsWinOverVariables() {
+    CommandRouter router =
+        new CommandRouter()
+            .add("GET", "/session/:sessionId/element/:reference", WebDriverLikeCommand.TEXT)
+            .add("GET", "/session/:sessionId/element/active", WebDriverLikeCommand.TITLE);
+
+    assertThat(router.resolve("GET", "/session/1/element/active").command())
+        .isEqualTo(WebDriverLikeCommand.TITLE);
+    assertThat(router.resolve("GET", "/session/1/element/5").command())
+        .isEqualTo(WebDriverLikeCommand.TEXT);
+    assertThat(router.resolve("GET", "/session/1/element/5").variables())
+        .containsExactly(":sessionId", "1", ":reference", "5");
+  }
+
+  @Test
+  public void testVariableMatchesWhereTheLiteralPathDeadEnds() {
+    CommandRouter router =
+        new CommandRouter()
+            .add("GET", "/session/:sessionId/element/:reference/text", WebDriverLikeCommand.TEXT)
+            .add("GET", "/session/:sessionId/element/active", WebDriverLikeCommand.TITLE);
+
+    assertThat(router.resolve("GET", "/session/1/element/active/text").command())
+        .isEqualTo(WebDriverLikeCommand.TEXT);
+  }
+
+  @Test
+  public void testFirstCommandForATemplateWins() {
+    CommandRouter router =
+        new CommandRouter()
+            .add("GET", "/session/:sessionId/title", WebDriverLikeCommand.TITLE)
+            .add("GET", "/session/:id/title", WebDriverLikeCommand.TEXT);
+
+    assertThat(router.resolve("GET", "/session/1/title").command())
+        .isEqualTo(WebDriverLikeCommand.TITLE);
+  }
+
+  @Test
+  public void testTrailingSlash() {
+    assertThat(router.resolve("GET", "/session/1234/url/").command())
+        .isEqualTo(WebDriverLikeCommand.CURRENT_URL);
+    assertThat(router.resolve("GET", "/status/").command())
+        .isEqualTo(WebDriverLikeCommand.STATUS);
+  }
+
+  @Test
+  public void testMethodSelectsTheCommand() {
+    assertThat(router.resolve("GET", "/session/1234/url").command())
+        .isEqualTo(WebDriverLikeCommand.CURRENT_URL);
+    assertThat(router.resolve("POST", "/session/1234/url").command())
+        .isEqualTo(WebDriverLikeCommand.URL);
+  }
+
+  @Test
+  public void testUnknownMethod() {
+    assertThat(router.route("PATCH", "/session/1234/url")).isEqualTo(Optional.absent());
+  }
+
+  @Test
+  public void testUnknownPath() {
+    assertThat(router.route("GET", "/session/1234/unknown")).isEqualTo(Optional.absent());
+    assertThat(router.route("GET", "/session/1234/url/extra")).isEqualTo(Optional.absent());
+    assertThat(router.route("GET", "/unknown")).isEqualTo(Optional.absent());
+    assertThat(router.route("GET", null)).isEqualTo(Optional.absent());
+  }
+
+  @Test
+  public void testResolveThrowsOnUnknownCommand() {
+    try {
+      WebDriverLikeCommand.getCommand("GET", "/session/1234/unknown");
+      fail();
+    } catch (UnsupportedCommandException expected) {
+    }
+  }
+}
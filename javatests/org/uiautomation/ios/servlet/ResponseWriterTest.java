@@ -0,0 +1,212 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
+import com.google.devtoolsdriver.util.JavaxJson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.openqa.selenium.remote.BeanToJsonConverter;
+import org.openqa.selenium.remote.Response;
+
+@RunWith(JUnit4.class)
+public class ResponseWriterTest {
+  private static final String NON_ASCII = "caf\u00e9 \u2603 \ud83d\ude00 \"quoted\"\n\t\\";
+  private static final String STREAMED = "{\"log\": {\"entries\": [\"caf\u00e9 \\\"quoted\\\"\"]}}";
+
+  /** A value that the bean converter serializes from its getters. */
+  public static final class Bean {
+    public String getName() {
+      return "bean";
+    }
+
+    public int getCount() {
+      return 3;
+    }
+
+    public ImmutableList<String> getTags() {
+      return ImmutableList.of("a", "b");
+    }
+  }
+
+  private enum Color {
+    RED
+  }
+
+  @Test
+  public void testMembers() throws Exception {
+    Response response = response("value");
+    response.setState("success");
+
+    JsonElement written = parse(write(response));
+
+    assertThat(written)
+        .isEqualTo(
+            parse("{\"sessionId\": \"1234\", \"status\": 0, \"state\": \"success\","
+                + " \"value\": \"value\"}"));
+  }
+
+  @Test
+  public void testMatchesBeanConverter() throws Exception {
+    ImmutableList<Object> values =
+        ImmutableList.of(
+            "string",
+            NON_ASCII,
+            12,
+            12345678901L,
+            2.5,
+            true,
+            parse("{\"a\": 1, \"b\": [\"x\", null, 2.5, true], \"c\": {\"d\": \"e\"}}"),
+            new JSONObject("{\"a\": 1, \"b\": [\"x\", null, 2.5, true], \"c\": {\"d\": null}}"),
+            ImmutableMap.of("k", ImmutableList.of(1, "two"), "m", ImmutableMap.of("n", false)),
+            ImmutableList.of("a", 1, ImmutableList.of(true)),
+            new int[] {1, 2, 3},
+            new String[] {"a", "b"},
+            Color.RED,
+            new Bean());
+    for (Object value : values) {
+      assertThat(writtenValue(value)).named(value.toString()).isEqualTo(convertedValue(value));
+    }
+  }
+
+  @Test
+  public void testNull() throws Exception {
+    assertThat(writtenValue(null)).isEqualTo(convertedValue(null));
+  }
+
+  @Test
+  public void testOrgJsonNull() throws Exception {
+    // The bean converter serialized JSONObject.NULL as a bean; it is written as null.
+    assertThat(writtenValue(JSONObject.NULL)).isEqualTo(parse("null"));
+    assertThat(writtenValue(new JSONArray("[null]"))).isEqualTo(parse("[null]"));
+  }
+
+  @Test
+  public void testJavaxJsonMatchesOrgJsonConversion() throws Exception {
+    // The bean converter serialized javax.json values as beans, so they are compared with the
+    // conversion of the same JSON in org.json instead.
+    String json =
+        "{\"a\": 1, \"b\": [\"x\", null, 2.5, true, false], \"c\": {\"d\": \"caf\u00e9\"}}";
+    assertThat(writtenValue(JavaxJson.parseObject(json)))
+        .isEqualTo(convertedValue(new JSONObject(json)));
+  }
+
+  @Test
+  public void testOrgJsonArrayMatchesGsonConversion() throws Exception {
+    // The bean converter serialized a JSONArray that is the value itself as a bean.
+    String json = "[1, \"two\", {\"three\": 3}, null]";
+    assertThat(writtenValue(new JSONArray(json))).isEqualTo(convertedValue(parse(json)));
+  }
+
+  @Test
+  public void testNonAsciiIsWrittenAsUtf8() throws Exception {
+    String written = new String(write(response(NON_ASCII)), UTF_8);
+
+    assertThat(written).contains("caf\u00e9 \u2603 \ud83d\ude00");
+    assertThat(parse(written).getAsJsonObject().get("value").getAsString()).isEqualTo(NON_ASCII);
+  }
+
+  @Test
+  public void testBinaryValue() throws Exception {
+    byte[] bytes = new byte[1000];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+
+    JsonElement written = parse(write(response(new BinaryValue(bytes, "image/png"))));
+
+    assertThat(written)
+        .isEqualTo(
+            parse("{\"sessionId\": \"1234\", \"status\": 0, \"state\": null, \"value\": \""
+                + BaseEncoding.base64().encode(bytes)
+                + "\"}"));
+  }
+
+  @Test
+  public void testNestedBinaryValue() throws Exception {
+    byte[] bytes = {1, 2, 3};
+
+    assertThat(writtenValue(ImmutableMap.of("image", new BinaryValue(bytes, "image/png"))))
+        .isEqualTo(parse("{\"image\": \"" + BaseEncoding.base64().encode(bytes) + "\"}"));
+  }
+
+  @Test
+  public void testStreamedValue() throws Exception {
+    StreamedValue value = out -> out.write(STREAMED);
+
+    String written = new String(write(response(value)), UTF_8);
+
+    assertThat(parse(written))
+        .isEqualTo(
+            parse("{\"sessionId\": \"1234\", \"status\": 0, \"state\": null, \"value\": "
+                + STREAMED
+                + "}"));
+  }
+
+  @Test
+  public void testPretty() throws Exception {
+    String written = new String(write(response(ImmutableMap.of("a", 1)), true), UTF_8);
+
+    assertThat(written).contains("\n  \"status\": 0");
+    assertThat(parse(written)).isEqualTo(parse(write(response(ImmutableMap.of("a", 1)))));
+  }
+
+  private static Response response(Object value) {
+    Response response = new Response();
+    response.setSessionId("1234");
+    response.setStatus(0);
+    response.setValue(value);
+    return response;
+  }
+
+  private static byte[] write(Response response) throws IOException {
+    return write(response, false);
+  }
+
+  private static byte[] write(Response response, boolean pretty) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new ResponseWriter(out, pretty).write(response);
+    return out.toByteArray();
+  }
+
+  private static JsonElement writtenValue(Object value) throws IOException {
+    return parse(write(response(value))).getAsJsonObject().get("value");
+  }
+
+  /** Returns the value as the bean converter, which ResponseWriter replaces, serialized it. */
+  private static JsonElement convertedValue(Object value) {
+    return parse(new BeanToJsonConverter().convert(response(value))).getAsJsonObject().get("value");
+  }
+
+  private static JsonElement parse(byte[] json) {
+    return parse(new String(json, UTF_8));
+  }
+
+  private static JsonElement parse(String json) {
+    return new JsonParser().parse(json);
+  }
+}
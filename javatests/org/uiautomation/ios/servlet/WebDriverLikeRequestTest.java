@@ -0,0 +1,112 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.devtoolsdriver.util.JavaxJson;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.openqa.selenium.WebDriverException;
+
+@RunWith(JUnit4.class)
+public class WebDriverLikeRequestTest {
+  @Test
+  public void testPayloadIsParsedOnceWhenFirstAskedFor() throws Exception {
+    HttpServletRequest servletRequest = post("{\"url\": \"http://www.google.com/\"}");
+
+    WebDriverLikeRequest request = new WebDriverLikeRequest(servletRequest, 1024);
+    verify(servletRequest, never()).getInputStream();
+
+    assertThat(request.getPayload())
+        .isEqualTo(JavaxJson.parseObject("{\"url\": \"http://www.google.com/\"}"));
+    assertThat(request.getPayload()).isSameAs(request.getPayload());
+    verify(servletRequest, times(1)).getInputStream();
+  }
+
+  @Test
+  public void testEmptyBodyIsAnEmptyPayload() throws Exception {
+    WebDriverLikeRequest request = new WebDriverLikeRequest(post(""), 1024);
+
+    assertThat(request.getPayload()).isEqualTo(JavaxJson.EMPTY_OBJECT);
+  }
+
+  @Test
+  public void testPayloadAtLimit() throws Exception {
+    String payload = "{\"url\": \"http://www.google.com/\"}";
+    WebDriverLikeRequest request = new WebDriverLikeRequest(post(payload), payload.length());
+
+    assertThat(request.getPayload()).isEqualTo(JavaxJson.parseObject(payload));
+  }
+
+  @Test
+  public void testPayloadOverLimit() throws Exception {
+    String payload = "{\"url\": \"http://www.google.com/\"}";
+    WebDriverLikeRequest request = new WebDriverLikeRequest(post(payload), payload.length() - 1);
+
+    try {
+      request.getPayload();
+      fail();
+    } catch (WebDriverException expected) {
+      assertThat(expected.getMessage())
+          .startsWith(WebDriverLikeRequest.payloadTooLarge(payload.length() - 1).getMessage());
+    }
+  }
+
+  private static HttpServletRequest post(String body) throws IOException {
+    ByteArrayInputStream in = new ByteArrayInputStream(body.getBytes(UTF_8));
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getMethod()).thenReturn("POST");
+    when(request.getPathInfo()).thenReturn("/session/1234/url");
+    when(request.getContentLengthLong()).thenReturn(-1L);
+    when(request.getInputStream())
+        .thenReturn(
+            new ServletInputStream() {
+              @Override
+              public int read() {
+                return in.read();
+              }
+
+              @Override
+              public boolean isFinished() {
+                return in.available() == 0;
+              }
+
+              @Override
+              public boolean isReady() {
+                return true;
+              }
+
+              @Override
+              public void setReadListener(ReadListener listener) {
+                throw new UnsupportedOperationException();
+              }
+            });
+    return request;
+  }
+}
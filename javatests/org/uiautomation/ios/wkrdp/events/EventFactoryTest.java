@@ -0,0 +1,115 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.wkrdp.events;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.devtoolsdriver.devtools.DevtoolsEvent;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.openqa.selenium.WebDriverException;
+import org.uiautomation.ios.wkrdp.model.NodeId;
+
+@RunWith(JUnit4.class)
+public class EventFactoryTest {
+  private static final DevtoolsEvent NODE_REMOVED =
+      event(
+          "DOM.childNodeRemoved",
+          Json.createObjectBuilder().add("parentNodeId", 12).add("nodeId", 34));
+  private static final DevtoolsEvent IFRAME_INSERTED =
+      event(
+          "DOM.childNodeInserted",
+          Json.createObjectBuilder()
+              .add("parentNodeId", 12)
+              .add("previousNodeId", 33)
+              .add(
+                  "node",
+                  Json.createObjectBuilder()
+                      .add("nodeId", 34)
+                      .add("nodeName", "IFRAME")
+                      .add("contentDocument", Json.createObjectBuilder().add("nodeId", 35))));
+
+  /** A sample event for each method in the decoder table. */
+  private static final ImmutableMap<String, DevtoolsEvent> SAMPLES =
+      ImmutableMap.of(
+          NODE_REMOVED.method(), NODE_REMOVED,
+          IFRAME_INSERTED.method(), IFRAME_INSERTED);
+
+  @Test
+  public void testEveryDecoderDecodesItsSample() {
+    assertThat(SAMPLES.keySet()).containsExactlyElementsIn(EventFactory.DECODERS.keySet());
+    for (DevtoolsEvent sample : SAMPLES.values()) {
+      assertThat(EventFactory.createEvent(sample).isPresent()).named(sample.method()).isTrue();
+    }
+  }
+
+  @Test
+  public void testNodeRemoved() {
+    Event event = EventFactory.createEvent(NODE_REMOVED).get();
+    assertThat(event).isInstanceOf(ChildNodeRemoved.class);
+    assertThat(((ChildNodeRemoved) event).getNode()).isEqualTo(new NodeId(34));
+    assertThat(((ChildNodeRemoved) event).getParent()).isEqualTo(new NodeId(12));
+  }
+
+  @Test
+  public void testIframeInserted() {
+    Event event = EventFactory.createEvent(IFRAME_INSERTED).get();
+    assertThat(event).isInstanceOf(ChildIframeInserted.class);
+    ChildIframeInserted inserted = (ChildIframeInserted) event;
+    assertThat(inserted.getNode()).isEqualTo(new NodeId(34));
+    assertThat(inserted.getParent()).isEqualTo(new NodeId(12));
+    assertThat(inserted.getContentDocument()).isEqualTo(new NodeId(35));
+  }
+
+  @Test
+  public void testNonFrameInsertedIsNotDecoded() {
+    DevtoolsEvent divInserted =
+        event(
+            "DOM.childNodeInserted",
+            Json.createObjectBuilder()
+                .add("parentNodeId", 12)
+                .add("node", Json.createObjectBuilder().add("nodeId", 36).add("nodeName", "DIV")));
+    assertThat(EventFactory.createEvent(divInserted)).isEqualTo(Optional.absent());
+  }
+
+  @Test
+  public void testUnknownMethodIsNotDecoded() {
+    DevtoolsEvent dataReceived =
+        event("Network.dataReceived", Json.createObjectBuilder().add("requestId", "1000.12"));
+    assertThat(EventFactory.createEvent(dataReceived)).isEqualTo(Optional.absent());
+  }
+
+  @Test
+  public void testMalformedEventFails() {
+    DevtoolsEvent malformed =
+        event("DOM.childNodeRemoved", Json.createObjectBuilder().add("nodeId", 34));
+    try {
+      EventFactory.createEvent(malformed);
+      fail();
+    } catch (WebDriverException expected) {
+    }
+  }
+
+  private static DevtoolsEvent event(String method, JsonObjectBuilder params) {
+    return DevtoolsEvent.fromJson(
+        Json.createObjectBuilder().add("method", method).add("params", params).build());
+  }
+}
@@ -0,0 +1,185 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Orders the commands of a session. Commands that change the state of the session or of the page
+ * run one at a time, in the order they were submitted. Consecutive read-only commands may run
+ * alongside each other, their devtools commands pipelined on the session's connection, but never
+ * alongside a command that changes state.
+ */
+public final class CommandLane {
+  private static final class Task {
+    private final boolean readOnly;
+    private final Runnable start;
+    private final long submittedNanos = System.nanoTime();
+
+    private Task(boolean readOnly, Runnable start) {
+      this.readOnly = readOnly;
+      this.start = start;
+    }
+  }
+
+  @GuardedBy("this")
+  private final Deque<Task> queue = new ArrayDeque<>();
+
+  @GuardedBy("this")
+  private int runningReads;
+
+  @GuardedBy("this")
+  private boolean runningWrite;
+
+  /** Whether a thread is starting commands, in which case it also starts any that become ready. */
+  @GuardedBy("this")
+  private boolean draining;
+
+  @GuardedBy("this")
+  private int maxQueueLength;
+
+  @GuardedBy("this")
+  private long commandCount;
+
+  @GuardedBy("this")
+  private long overlappedReadCount;
+
+  @GuardedBy("this")
+  private long totalWaitNanos;
+
+  @GuardedBy("this")
+  private long maxWaitNanos;
+
+  /**
+   * Submits a command to the lane. The command is started once all the commands submitted before
+   * it have completed, or, for a read-only command, once all the commands submitted before it
+   * that change state have completed. The lane moves on when the future the command returns
+   * completes.
+   */
+  public <T> ListenableFuture<T> submit(boolean readOnly, Supplier<ListenableFuture<T>> command) {
+    SettableFuture<T> result = SettableFuture.create();
+    Task task =
+        new Task(
+            readOnly,
+            () -> {
+              ListenableFuture<T> started;
+              try {
+                started = command.get();
+              } catch (RuntimeException e) {
+                started = Futures.immediateFailedFuture(e);
+              }
+              result.setFuture(started);
+              started.addListener(() -> finished(readOnly), directExecutor());
+            });
+    synchronized (this) {
+      queue.add(task);
+      maxQueueLength = Math.max(maxQueueLength, queue.size());
+    }
+    drain();
+    return result;
+  }
+
+  /** Returns the queue length, wait times and the number of commands that overlapped. */
+  public synchronized ImmutableMap<String, Object> stats() {
+    return ImmutableMap.<String, Object>builder()
+        .put("queueLength", queue.size())
+        .put("maxQueueLength", maxQueueLength)
+        .put("runningCommands", runningWrite ? 1 : runningReads)
+        .put("commands", commandCount)
+        .put("overlappedReads", overlappedReadCount)
+        .put(
+            "averageWaitMillis",
+            commandCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / commandCount))
+        .put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos))
+        .build();
+  }
+
+  private void finished(boolean readOnly) {
+    synchronized (this) {
+      if (readOnly) {
+        runningReads--;
+      } else {
+        runningWrite = false;
+      }
+    }
+    drain();
+  }
+
+  /**
+   * Starts the commands at the head of the queue that may run now, outside of the lock. A command
+   * that completes as it starts makes the next ones ready; rather than recurse, the thread already
+   * draining the lane loops to start them.
+   */
+  private void drain() {
+    synchronized (this) {
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    while (true) {
+      List<Task> ready = takeReady();
+      if (ready.isEmpty()) {
+        return;
+      }
+      for (Task task : ready) {
+        task.start.run();
+      }
+    }
+  }
+
+  /**
+   * Takes the commands that may run now off the queue, or, if there are none, ends the drain in
+   * the same critical section, so that no command made ready concurrently is left behind.
+   */
+  private synchronized List<Task> takeReady() {
+    List<Task> ready = new ArrayList<>();
+    while (!queue.isEmpty() && !runningWrite) {
+      Task next = queue.peek();
+      if (next.readOnly) {
+        if (runningReads > 0) {
+          overlappedReadCount++;
+        }
+        runningReads++;
+      } else if (runningReads == 0) {
+        runningWrite = true;
+      } else {
+        break;
+      }
+      queue.poll();
+      long waitNanos = System.nanoTime() - next.submittedNanos;
+      commandCount++;
+      totalWaitNanos += waitNanos;
+      maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+      ready.add(next);
+    }
+    if (ready.isEmpty()) {
+      draining = false;
+    }
+    return ready;
+  }
+}
@@ -14,6 +14,7 @@
 
 package org.uiautomation.ios;
 
+import com.google.devtoolsdriver.util.Metrics;
 import com.google.devtoolsdriver.webdriver.BrowserLauncher;
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -28,11 +29,18 @@ import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.uiautomation.ios.servlet.IOSServlet;
+import org.uiautomation.ios.servlet.MetricsServlet;
 
 /** The entry point for the ios-driver server. */
 public final class IOSServer {
   public static final String DRIVER = IOSServerManager.class.getName();
   public static final String SERVER = "serverInstance";
+  public static final String MAX_PAYLOAD_BYTES = "maxPayloadBytes";
+  public static final long DEFAULT_MAX_PAYLOAD_BYTES = 64L * 1024 * 1024;
+  public static final String TRACE_SAMPLE_RATE = "traceSampleRate";
+  public static final String COMMAND_THREADS = "commandThreads";
+  /** As many as the default thread pool of Jetty, which ran the command handlers before. */
+  public static final int DEFAULT_COMMAND_THREADS = 200;
 
   private static final Logger log = Logger.getLogger(IOSServer.class.getName());
 
@@ -52,6 +60,7 @@ public final class IOSServer {
     p(String.format("Inspector: http://0.0.0.0:%d/inspector/", options.getPort()));
     p(String.format("Tests can access the server at http://0.0.0.0:%d/wd/hub", options.getPort()));
     p(String.format("Server status: http://0.0.0.0:%d/wd/hub/status", options.getPort()));
+    p(String.format("Metrics: http://0.0.0.0:%d/wd/hub/metrics", options.getPort()));
     p(String.format("Connected devices: http://0.0.0.0:%d/wd/hub/devices/all", options.getPort()));
     p(String.format("Applications: http://0.0.0.0:%d/wd/hub/applications/all", options.getPort()));
     p(String.format("Capabilities: http://0.0.0.0:%d/wd/hub/capabilities/all", options.getPort()));
@@ -97,11 +106,18 @@ public final class IOSServer {
           }
         }),
         "/shutdown");
-    wd.addServlet(IOSServlet.class, "/*");
+    wd.addServlet(MetricsServlet.class, "/metrics");
+    wd.addServlet(IOSServlet.class, "/*").setAsyncSupported(true);
+    Metrics.global()
+        .gauge(
+            "webdriver_sessions", "WebDriver sessions running.", () -> driver.getSessions().size());
 
     wd.getServletContext().getContextHandler().setMaxFormContentSize(500000);
     wd.setAttribute(DRIVER, driver);
     wd.setAttribute(SERVER, this);
+    wd.setAttribute(MAX_PAYLOAD_BYTES, options.getMaxPayloadBytes());
+    wd.setAttribute(TRACE_SAMPLE_RATE, options.getTraceSampleRate());
+    wd.setAttribute(COMMAND_THREADS, options.getCommandThreads());
 
     ServletContextHandler extra = new ServletContextHandler(server, "/", true, false);
     extra.setAttribute(DRIVER, driver);
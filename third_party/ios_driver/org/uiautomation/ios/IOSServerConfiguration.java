@@ -24,6 +24,28 @@ public abstract class IOSServerConfiguration {
   @Parameter(description = "port the server will listen on.", names = "-port")
   private int port = 5555;
 
+  @Parameter(
+    description = "maximum size in bytes of a request payload.",
+    names = "-max_payload_bytes"
+  )
+  private long maxPayloadBytes = IOSServer.DEFAULT_MAX_PAYLOAD_BYTES;
+
+  @Parameter(
+    description =
+        "fraction, from 0 to 1, of the commands on a session to trace, unless the session sets"
+            + " the traceSampleRate capability.",
+    names = "-trace_sample_rate"
+  )
+  private double traceSampleRate = 0;
+
+  @Parameter(
+    description =
+        "threads handling the WebDriver commands; once they are all busy, further commands wait"
+            + " for one of them.",
+    names = "-command_threads"
+  )
+  private int commandThreads = IOSServer.DEFAULT_COMMAND_THREADS;
+
   /**
    * ***********************************************************************************************
    * ****** DO NOT DELETE THIS METHOD. IF YOU DELETE IT, JCOMMANDER CANNOT SET THE PORT FLAG! ******
@@ -36,4 +58,16 @@ public abstract class IOSServerConfiguration {
   public int getPort() {
     return port;
   }
+
+  public long getMaxPayloadBytes() {
+    return maxPayloadBytes;
+  }
+
+  public double getTraceSampleRate() {
+    return traceSampleRate;
+  }
+
+  public int getCommandThreads() {
+    return commandThreads;
+  }
 }
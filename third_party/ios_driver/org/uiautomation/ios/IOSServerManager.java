@@ -13,10 +13,17 @@
  */
 package org.uiautomation.ios;
 
-import com.google.common.collect.Sets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.devtoolsdriver.util.Metrics;
 import com.google.devtoolsdriver.webdriver.BrowserLauncher;
 import java.io.File;
-import java.util.Set;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.FileHandler;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
@@ -28,8 +35,17 @@ import org.uiautomation.ios.ServerSideSession.SessionState;
 public final class IOSServerManager {
   private static final Logger log = Logger.getLogger(IOSServerManager.class.getName());
 
-  private final Set<ServerSideSession> sessions = Sets.newConcurrentHashSet();
-  private final Set<String> stoppedSessionIds = Sets.newConcurrentHashSet();
+  // Stopped sessions are remembered for a while, to tell requests to them apart from requests to
+  // sessions that never existed.
+  private static final int MAX_STOPPED_SESSIONS = 1000;
+  private static final long STOPPED_SESSION_EXPIRY_HOURS = 1;
+
+  private final ConcurrentMap<String, ServerSideSession> sessions = new ConcurrentHashMap<>();
+  private final Cache<String, Boolean> stoppedSessionIds =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_STOPPED_SESSIONS)
+          .expireAfterWrite(STOPPED_SESSION_EXPIRY_HOURS, TimeUnit.HOURS)
+          .build();
   private final BrowserLauncher launcher;
   private final Object lock = new Object();
   private State state = State.stopped;
@@ -77,10 +93,11 @@ public final class IOSServerManager {
         ((FileHandler) h).close();
       }
     }
-    for (ServerSideSession session : sessions) {
+    for (ServerSideSession session : sessions.values()) {
       session.stop();
     }
     sessions.clear();
+    launcher.shutdown();
   }
 
   public ServerSideSession createSession(DesiredCapabilities cap) {
@@ -88,36 +105,41 @@ public final class IOSServerManager {
       return null;
     }
     ServerSideSession session = new ServerSideSession(this, cap, launcher);
-    sessions.add(session);
+    sessions.put(session.getSessionId(), session);
+    Metrics.global()
+        .counter("webdriver_sessions_created_total", "WebDriver sessions created.")
+        .increment();
     return session;
   }
 
   void registerSessionHasStop(ServerSideSession session) {
-    stoppedSessionIds.add(session.getSessionId());
-    sessions.remove(session);
+    stoppedSessionIds.put(session.getSessionId(), true);
+    sessions.remove(session.getSessionId());
   }
 
-  public Set<ServerSideSession> getSessions() {
-    return sessions;
+  /** Returns the state of the browser launcher, such as its device usage. */
+  public ImmutableMap<String, Object> getLauncherStatus() {
+    return launcher.status();
   }
 
-  public ServerSideSession getSession(String sessionId) {
-    // first, check if the session stopped already
-    if (stoppedSessionIds.contains(sessionId)) {
-      throw newSessionStoppedException(sessionId);
-    }
+  /** Returns a live, unmodifiable view of the sessions that have not stopped. */
+  public Collection<ServerSideSession> getSessions() {
+    return Collections.unmodifiableCollection(sessions.values());
+  }
 
-    // check if the session is in the process of stopping
-    for (ServerSideSession session : sessions) {
-      if (session.getSessionId().equals(sessionId)) {
-        if (session.getSessionState() == SessionState.STOPPED) {
-          throw newSessionStoppedException(sessionId);
-        } else {
-          return session;
-        }
+  public ServerSideSession getSession(String sessionId) {
+    ServerSideSession session = sessions.get(sessionId);
+    if (session != null) {
+      // check if the session is in the process of stopping
+      if (session.getSessionState() == SessionState.STOPPED) {
+        throw newSessionStoppedException(sessionId);
       }
+      return session;
     }
 
+    if (stoppedSessionIds.getIfPresent(sessionId) != null) {
+      throw newSessionStoppedException(sessionId);
+    }
     throw new WebDriverException("Cannot find session " + sessionId + " on the server.");
   }
 
@@ -129,7 +151,7 @@ public final class IOSServerManager {
     // refuse further requests
     setState(State.stopping);
     // wait for requests to be processed
-    while (getSessions().size() != 0) {
+    while (!sessions.isEmpty()) {
       Thread.sleep(250);
     }
     // stops
@@ -19,6 +19,7 @@ import com.beust.jcommander.Parameter;
 import com.google.devtoolsdriver.safari.SafariBrowserLauncher;
 import com.google.iosdevicecontrol.real.RealDeviceHost;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -33,8 +34,18 @@ public final class SafariDriver {
     new JCommander(options).parse(args);
 
     SafariBrowserLauncher launcher;
-    if (options.getIsSimulator()) {
-      launcher = SafariBrowserLauncher.onSimulator(true);
+    if (options.fakeDevices > 0) {
+      launcher =
+          SafariBrowserLauncher.onFakeDevices(
+              options.fakeDevices,
+              Duration.ofMillis(options.fakeLatencyMillis),
+              options.fakeBytesPerSecond,
+              options.getDeviceWaitTimeout());
+    } else if (options.getIsSimulator()) {
+      launcher =
+          options.reuseSimulator
+              ? SafariBrowserLauncher.onReusedSimulator(options.getDeviceWaitTimeout())
+              : SafariBrowserLauncher.onSimulator(true, options.getDeviceWaitTimeout());
     } else {
       RealDeviceHost.Configuration hostConf = RealDeviceHost.withDeveloperDiskImagesFromXcode();
       if (!options.supervisionCert.isEmpty() && !options.supervisionKey.isEmpty()) {
@@ -44,9 +55,17 @@ public final class SafariDriver {
       } else if (options.supervisionCert.isEmpty() != options.supervisionKey.isEmpty()) {
         throw new IllegalArgumentException("Supervision cert passed without key, or vice-versa");
       }
-      launcher = SafariBrowserLauncher.onRealDevice(hostConf.initialize());
+      launcher =
+          SafariBrowserLauncher.onRealDevice(
+              hostConf.initialize(), options.getDeviceWaitTimeout());
     }
 
+    if (!options.recordInspectorDir.isEmpty()) {
+      launcher.recordInspectorMessages(Paths.get(options.recordInspectorDir));
+    }
+    if (options.warmBrowsers > 0) {
+      launcher.startWarmPool(options.warmBrowsers);
+    }
     WebDriverMain.run(options, launcher);
   }
 
@@ -60,6 +79,14 @@ public final class SafariDriver {
     )
     private boolean isSimulator = false;
 
+    @Parameter(
+      description =
+          "optional set true to keep the simulator already booted on the inspector port between"
+              + " sessions, rather than shutting down all simulators at each launch",
+      names = "-reuse_simulator"
+    )
+    private boolean reuseSimulator = false;
+
     @Parameter(
       description = "path to the supervision certificate for real devices.",
       names = "-supervision_cert"
@@ -72,8 +99,56 @@ public final class SafariDriver {
     )
     private String supervisionKey = "";
 
+    @Parameter(
+      description = "seconds a new session waits for a device to be free, when all are in use.",
+      names = "-device_wait_seconds"
+    )
+    private long deviceWaitSeconds = SafariBrowserLauncher.DEFAULT_DEVICE_WAIT_TIMEOUT.getSeconds();
+
+    @Parameter(
+      description =
+          "number of browsers to launch at startup and keep running between sessions; if 0,"
+              + " browsers are shut down when their session ends.",
+      names = "-warm_browsers"
+    )
+    private int warmBrowsers = 0;
+
+    @Parameter(
+      description =
+          "number of in-process fake devices to run Safari sessions on instead of real devices or"
+              + " the simulator, for load testing the server without Apple hardware.",
+      names = "-fake_devices"
+    )
+    private int fakeDevices = 0;
+
+    @Parameter(
+      description = "milliseconds by which the fake devices delay each message they send.",
+      names = "-fake_latency_millis"
+    )
+    private long fakeLatencyMillis = 0;
+
+    @Parameter(
+      description =
+          "bandwidth, in bytes per second, at which the fake devices send devtools messages;"
+              + " if 0, it is unlimited.",
+      names = "-fake_bytes_per_second"
+    )
+    private long fakeBytesPerSecond = 0;
+
+    @Parameter(
+      description =
+          "optional directory to record the web inspector messages of each browser to, for"
+              + " replaying the sessions without a device.",
+      names = "-record_inspector_dir"
+    )
+    private String recordInspectorDir = "";
+
     private SafariIOSServerConfiguration() {}
 
+    Duration getDeviceWaitTimeout() {
+      return Duration.ofSeconds(deviceWaitSeconds);
+    }
+
     public Set<String> getUuidWhitelist() {
       return Collections.unmodifiableSet(new HashSet<>(uuidWhitelist));
     }
@@ -16,14 +16,28 @@ package org.uiautomation.ios;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.openqa.selenium.remote.CapabilityType.LOGGING_PREFS;
 
+import com.google.common.base.Optional;
+import com.google.devtoolsdriver.util.JavaxJson;
+import com.google.devtoolsdriver.util.Trace;
 import com.google.devtoolsdriver.webdriver.BrowserLauncher;
+import com.google.devtoolsdriver.webdriver.CachePolicy;
+import com.google.devtoolsdriver.webdriver.HarRecorder;
+import com.google.devtoolsdriver.webdriver.NetworkConditions;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.concurrent.GuardedBy;
+import org.json.JSONObject;
 import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.logging.LoggingPreferences;
 import org.openqa.selenium.remote.DesiredCapabilities;
+import org.uiautomation.ios.command.ScreenshotEncoder;
 import org.uiautomation.ios.command.configuration.DriverConfigurationStore;
 import org.uiautomation.ios.drivers.RemoteIOSWebDriver;
 import org.uiautomation.ios.logging.IOSLogManager;
@@ -41,6 +55,22 @@ public final class ServerSideSession {
   }
 
   private static final Logger log = Logger.getLogger(ServerSideSession.class.getName());
+  /** The capability of the fraction, from 0 to 1, of the commands on the session to trace. */
+  public static final String TRACE_SAMPLE_RATE = "traceSampleRate";
+  /** The capability of whether to record the network traffic of the session as a HAR. */
+  public static final String RECORD_HAR = "recordHar";
+  /** The capability of the bytes of response bodies to record in the HAR; 0 records none. */
+  public static final String HAR_MAX_BODY_BYTES = "harMaxBodyBytes";
+  /** The capability of whether to aggregate the performance metrics of each navigation. */
+  public static final String PAGE_METRICS = "pageMetrics";
+  /** The capability of the network conditions, a profile name or their parameters, to emulate. */
+  public static final String NETWORK_CONDITIONS = "networkConditions";
+  /** The capability of the cache policy of the session: warm, cold or disabled. */
+  public static final String CACHE_POLICY = "cachePolicy";
+  /** The capability of whether requests bypass service workers. */
+  public static final String BYPASS_SERVICE_WORKER = "bypassServiceWorker";
+  /** The number of traces a session keeps, dropping the oldest. */
+  private static final int MAX_TRACES = 100;
 
   private final String sessionId;
   private final IOSServerManager server;
@@ -48,6 +78,12 @@ public final class ServerSideSession {
   private final RemoteIOSWebDriver driver;
   private final DriverConfiguration configuration;
   private final IOSLogManager logManager;
+  private final ScreenshotEncoder screenshotEncoder;
+  private final Optional<Double> traceSampleRate;
+  private final CommandLane commandLane = new CommandLane();
+
+  @GuardedBy("traces")
+  private final Deque<Trace> traces = new ArrayDeque<>();
 
   @GuardedBy("this")
   private SessionState state = SessionState.CREATED;
@@ -59,6 +95,8 @@ public final class ServerSideSession {
     this.capabilities = checkNotNull(desiredCapabilities);
 
     logManager = createLogManager(desiredCapabilities);
+    screenshotEncoder = createScreenshotEncoder(desiredCapabilities);
+    traceSampleRate = parseTraceSampleRate(desiredCapabilities);
     driver = new RemoteIOSWebDriver(this, launcher);
     configuration = new DriverConfigurationStore();
   }
@@ -76,6 +114,35 @@ public final class ServerSideSession {
     }
   }
 
+  private static ScreenshotEncoder createScreenshotEncoder(DesiredCapabilities caps) {
+    try {
+      return ScreenshotEncoder.fromCapabilities(caps);
+    } catch (WebDriverException e) {
+      throw new SessionNotCreatedException(e.getMessage(), e);
+    }
+  }
+
+  private static Optional<Double> parseTraceSampleRate(DesiredCapabilities caps) {
+    Object rate = caps.getCapability(TRACE_SAMPLE_RATE);
+    if (rate == null) {
+      return Optional.absent();
+    }
+    double value;
+    try {
+      value =
+          rate instanceof Number
+              ? ((Number) rate).doubleValue()
+              : Double.parseDouble(rate.toString());
+    } catch (NumberFormatException e) {
+      throw new SessionNotCreatedException("Invalid " + TRACE_SAMPLE_RATE + " capability", e);
+    }
+    if (!(value >= 0 && value <= 1)) {
+      throw new SessionNotCreatedException(
+          "Invalid " + TRACE_SAMPLE_RATE + " capability, not between 0 and 1: " + rate);
+    }
+    return Optional.of(value);
+  }
+
   public String getSessionId() {
     return sessionId;
   }
@@ -92,6 +159,11 @@ public final class ServerSideSession {
     return configuration.configure(command);
   }
 
+  /** Returns the encoder of the screenshots of the session, as set by its capabilities. */
+  public ScreenshotEncoder getScreenshotEncoder() {
+    return screenshotEncoder;
+  }
+
   public RemoteIOSWebDriver getWebDriver() {
     return driver;
   }
@@ -109,6 +181,97 @@ public final class ServerSideSession {
     }
   }
 
+  /** Returns the lane that orders the commands sent to this session. */
+  public CommandLane getCommandLane() {
+    return commandLane;
+  }
+
+  /**
+   * Returns the fraction of the commands on the session to trace: the traceSampleRate capability,
+   * if set, else the given default of the server.
+   */
+  public double getTraceSampleRate(double serverDefault) {
+    return traceSampleRate.or(serverDefault);
+  }
+
+  /** Returns whether the network traffic of the session is recorded as a HAR. */
+  public boolean isRecordingHar() {
+    return capabilities.is(RECORD_HAR);
+  }
+
+  /** Returns whether the performance metrics of each navigation of the session are aggregated. */
+  public boolean isRecordingPageMetrics() {
+    return capabilities.is(PAGE_METRICS);
+  }
+
+  /**
+   * Returns the bytes of response bodies to record in the HAR of the session: the harMaxBodyBytes
+   * capability, if set, else the default of {@link HarRecorder}.
+   */
+  public long getHarMaxBodyBytes() {
+    Object bytes = capabilities.getCapability(HAR_MAX_BODY_BYTES);
+    if (bytes == null) {
+      return HarRecorder.DEFAULT_MAX_BODY_BYTES;
+    }
+    return bytes instanceof Number
+        ? ((Number) bytes).longValue()
+        : Long.parseLong(bytes.toString());
+  }
+
+  /** Returns the network conditions the session is created with, if any. */
+  public Optional<NetworkConditions> getNetworkConditions() {
+    Object conditions = capabilities.getCapability(NETWORK_CONDITIONS);
+    if (conditions == null) {
+      return Optional.absent();
+    }
+    try {
+      return Optional.of(
+          conditions instanceof Map
+              ? NetworkConditions.fromJson(
+                  JavaxJson.fromOrgJson(new JSONObject((Map<?, ?>) conditions)))
+              : NetworkConditions.ofProfile(conditions.toString()));
+    } catch (IllegalArgumentException e) {
+      throw new SessionNotCreatedException("Invalid " + NETWORK_CONDITIONS + " capability", e);
+    }
+  }
+
+  /** Returns the cache policy the session is created with, if any. */
+  public Optional<CachePolicy> getCachePolicy() {
+    Object policy = capabilities.getCapability(CACHE_POLICY);
+    if (policy == null) {
+      return Optional.absent();
+    }
+    try {
+      return Optional.of(CachePolicy.fromName(policy.toString()));
+    } catch (IllegalArgumentException e) {
+      throw new SessionNotCreatedException("Invalid " + CACHE_POLICY + " capability", e);
+    }
+  }
+
+  /** Returns whether the requests of the session bypass service workers, if it is set. */
+  public Optional<Boolean> getBypassServiceWorker() {
+    return capabilities.getCapability(BYPASS_SERVICE_WORKER) == null
+        ? Optional.<Boolean>absent()
+        : Optional.of(capabilities.is(BYPASS_SERVICE_WORKER));
+  }
+
+  /** Adds the trace of a command, dropping the oldest trace if the session has too many. */
+  public void addTrace(Trace trace) {
+    synchronized (traces) {
+      if (traces.size() == MAX_TRACES) {
+        traces.removeFirst();
+      }
+      traces.addLast(trace);
+    }
+  }
+
+  /** Returns the traces of the recent commands on the session, oldest first. */
+  public List<Trace> getTraces() {
+    synchronized (traces) {
+      return new ArrayList<>(traces);
+    }
+  }
+
   public IOSLogManager getLogManager() {
     return logManager;
   }
@@ -13,6 +13,9 @@
  */
 package org.uiautomation.ios.command;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.Executor;
 import org.json.JSONObject;
 import org.openqa.selenium.remote.Response;
 import org.uiautomation.ios.IOSServerManager;
@@ -36,4 +39,16 @@ public class ClickHandler extends CommandHandler {
     resp.setValue(new JSONObject());
     return resp;
   }
+
+  @Override
+  public ListenableFuture<Response> handleAsync(Executor executor) {
+    return startAsync(
+        executor,
+        () -> {
+          String reference = getRequest().getVariableValue(":reference");
+          RemoteWebElement element = getWebDriver().createElement(reference);
+          return Futures.transform(
+              element.clickAsync(executor), v -> createResponse(new JSONObject()), executor);
+        });
+  }
 }
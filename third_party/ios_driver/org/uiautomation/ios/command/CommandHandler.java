@@ -14,6 +14,11 @@
 
 package org.uiautomation.ios.command;
 
+import com.google.common.util.concurrent.AsyncCallable;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import java.util.concurrent.Executor;
 import org.openqa.selenium.remote.Response;
 import org.uiautomation.ios.IOSServerManager;
 import org.uiautomation.ios.ServerSideSession;
@@ -40,6 +45,30 @@ public abstract class CommandHandler {
 
   public abstract Response handle() throws Exception;
 
+  /**
+   * Handles the request on the given executor, returning a future of the response. By default the
+   * request is handled by {@link #handle} on an executor thread; handlers that wait on the browser
+   * override this to release the thread while the browser is busy, continuing on the executor once
+   * it responds.
+   */
+  public ListenableFuture<Response> handleAsync(Executor executor) {
+    ListenableFutureTask<Response> task = ListenableFutureTask.create(this::handle);
+    executor.execute(task);
+    return task;
+  }
+
+  /**
+   * Starts handling the request asynchronously on the executor, so that the calling thread does no
+   * work, and returns the future the started handling returns.
+   */
+  final ListenableFuture<Response> startAsync(
+      Executor executor, AsyncCallable<Response> handling) {
+    ListenableFutureTask<ListenableFuture<Response>> task =
+        ListenableFutureTask.create(handling::call);
+    executor.execute(task);
+    return Futures.dereference(task);
+  }
+
   final RemoteIOSWebDriver getWebDriver() {
     return getSession().getWebDriver();
   }
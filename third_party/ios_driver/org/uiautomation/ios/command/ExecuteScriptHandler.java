@@ -13,9 +13,12 @@
  */
 package org.uiautomation.ios.command;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
 import javax.json.JsonArray;
 import org.json.JSONObject;
 import org.openqa.selenium.remote.Response;
@@ -33,8 +36,24 @@ public class ExecuteScriptHandler extends CommandHandler {
   public Response handle() throws Exception {
     String script = getRequest().getPayload().getString("script");
     JsonArray args = getRequest().getPayload().getJsonArray("args");
-    Object res = getWebDriver().executeScript(script, args);
+    return toResponse(getWebDriver().executeScript(script, args));
+  }
+
+  @Override
+  public ListenableFuture<Response> handleAsync(Executor executor) {
+    return startAsync(
+        executor,
+        () -> {
+          String script = getRequest().getPayload().getString("script");
+          JsonArray args = getRequest().getPayload().getJsonArray("args");
+          return Futures.transformAsync(
+              getWebDriver().executeScriptAsync(script, args, executor),
+              res -> Futures.immediateFuture(toResponse(res)),
+              executor);
+        });
+  }
 
+  private Response toResponse(Object res) throws Exception {
     Response resp = new Response();
     resp.setSessionId(getSession().getSessionId());
     resp.setStatus(0);
@@ -13,11 +13,17 @@
  */
 package org.uiautomation.ios.command;
 
-import javax.json.JsonObject;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.Executor;
 import org.json.JSONObject;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.remote.Response;
 import org.uiautomation.ios.IOSServerManager;
+import org.uiautomation.ios.command.ImplicitWait.Locator;
 import org.uiautomation.ios.servlet.WebDriverLikeRequest;
 import org.uiautomation.ios.wkrdp.model.RemoteWebElement;
 
@@ -31,24 +37,46 @@ public class FindElementHandler extends CommandHandler {
     waitForPageToLoad();
 
     int implicitWait = getConf("implicit_wait", 0);
-    long deadline = System.currentTimeMillis() + implicitWait;
-    RemoteWebElement rwe = null;
-    do {
-      try {
-        rwe = findElement();
-        break;
-      } catch (NoSuchElementException e) {
-        // Ignore and try again.
-      }
-    } while (System.currentTimeMillis() < deadline);
+    Locator locator = Locator.fromPayload(getRequest().getPayload());
+    RemoteWebElement root = getSearchRoot();
+    Optional<RemoteWebElement> rwe =
+        ImplicitWait.await(root, locator, implicitWait, () -> findElement(root, locator));
+
+    return toResponse(rwe, implicitWait);
+  }
+
+  @Override
+  public ListenableFuture<Response> handleAsync(Executor executor) {
+    return startAsync(
+        executor,
+        () -> {
+          int implicitWait = getConf("implicit_wait", 0);
+          Locator locator = Locator.fromPayload(getRequest().getPayload());
+          ListenableFuture<Optional<RemoteWebElement>> rwe =
+              Futures.transformAsync(
+                  getSearchRootAsync(executor),
+                  root ->
+                      ImplicitWait.awaitAsync(
+                          root,
+                          locator,
+                          implicitWait,
+                          () -> findElementAsync(root, locator, executor),
+                          () -> findElement(root, locator),
+                          executor),
+                  executor);
+          return Futures.transformAsync(
+              rwe, found -> Futures.immediateFuture(toResponse(found, implicitWait)), executor);
+        });
+  }
 
-    if (rwe == null) {
+  private Response toResponse(Optional<RemoteWebElement> rwe, int implicitWait) throws Exception {
+    if (!rwe.isPresent()) {
       throw new NoSuchElementException(
           "No element found for " + getRequest().getPayload() + " after waiting for " + implicitWait
           + " ms.");
     } else {
       JSONObject res = new JSONObject();
-      res.put("ELEMENT", rwe.getReference());
+      res.put("ELEMENT", rwe.get().getReference());
       Response resp = new Response();
       resp.setSessionId(getSession().getSessionId());
       resp.setStatus(0);
@@ -57,30 +85,54 @@ public class FindElementHandler extends CommandHandler {
     }
   }
 
-  private RemoteWebElement findElement() throws Exception {
-    JsonObject payload = getRequest().getPayload();
-    String type = payload.getString("using");
-    String value = payload.getString("value");
-
-    RemoteWebElement element = null;
-
+  private RemoteWebElement getSearchRoot() {
     if (getRequest().hasVariable(":reference")) {
       String reference = getRequest().getVariableValue(":reference");
-      element = getWebDriver().createElement(reference);
+      return getWebDriver().createElement(reference);
+    } else {
+      return getWebDriver().getDocument();
+    }
+  }
+
+  private ListenableFuture<RemoteWebElement> getSearchRootAsync(Executor executor) {
+    if (getRequest().hasVariable(":reference")) {
+      return Futures.immediateFuture(getSearchRoot());
     } else {
-      element = getWebDriver().getDocument();
+      return getWebDriver().getDocumentAsync(executor);
     }
-    RemoteWebElement rwe;
-    if ("link text".equals(type)) {
-      rwe = element.findElementByLinkText(value, false);
-    } else if ("partial link text".equals(type)) {
-      rwe = element.findElementByLinkText(value, true);
-    } else if ("xpath".equals(type)) {
-      rwe = element.findElementByXpath(value);
+  }
+
+  private static ListenableFuture<Optional<RemoteWebElement>> findElementAsync(
+      RemoteWebElement element, Locator locator, Executor executor) {
+    ListenableFuture<RemoteWebElement> rwe;
+    if ("link text".equals(locator.using)) {
+      rwe = element.findElementByLinkTextAsync(locator.value, false, executor);
+    } else if ("partial link text".equals(locator.using)) {
+      rwe = element.findElementByLinkTextAsync(locator.value, true, executor);
+    } else if ("xpath".equals(locator.using)) {
+      rwe = element.findElementByXpathAsync(locator.value, executor);
     } else {
-      String cssSelector = ToCSSSelectorConverter.convertToCSSSelector(type, value);
-      rwe = element.findElementByCSSSelector(cssSelector);
+      rwe = element.findElementByCSSSelectorAsync(locator.value);
+    }
+    return Futures.transform(rwe, Optional::fromNullable, directExecutor());
+  }
+
+  private static Optional<RemoteWebElement> findElement(RemoteWebElement element, Locator locator)
+      throws Exception {
+    try {
+      RemoteWebElement rwe;
+      if ("link text".equals(locator.using)) {
+        rwe = element.findElementByLinkText(locator.value, false);
+      } else if ("partial link text".equals(locator.using)) {
+        rwe = element.findElementByLinkText(locator.value, true);
+      } else if ("xpath".equals(locator.using)) {
+        rwe = element.findElementByXpath(locator.value);
+      } else {
+        rwe = element.findElementByCSSSelector(locator.value);
+      }
+      return Optional.fromNullable(rwe);
+    } catch (NoSuchElementException e) {
+      return Optional.absent();
     }
-    return rwe;
   }
 }
@@ -13,12 +13,14 @@
  */
 package org.uiautomation.ios.command;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.List;
-import javax.json.JsonObject;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.remote.Response;
 import org.uiautomation.ios.IOSServerManager;
+import org.uiautomation.ios.command.ImplicitWait.Locator;
 import org.uiautomation.ios.servlet.WebDriverLikeRequest;
 import org.uiautomation.ios.wkrdp.model.RemoteWebElement;
 
@@ -32,18 +34,11 @@ public class FindElementsHandler extends CommandHandler {
     waitForPageToLoad();
 
     int implicitWait = getConf("implicit_wait", 0);
-    long deadline = System.currentTimeMillis() + implicitWait;
-    List<RemoteWebElement> elements = null;
-    do {
-      try {
-        elements = findElements();
-        if (elements.size() != 0) {
-          break;
-        }
-      } catch (NoSuchElementException e) {
-        // Ignore and try again.
-      }
-    } while (System.currentTimeMillis() < deadline);
+    Locator locator = Locator.fromPayload(getRequest().getPayload());
+    RemoteWebElement root = getSearchRoot();
+    List<RemoteWebElement> elements =
+        ImplicitWait.await(root, locator, implicitWait, () -> findElements(root, locator))
+            .or(ImmutableList.<RemoteWebElement>of());
 
     List<com.google.gson.JsonObject> list = new ArrayList<>();
     for (RemoteWebElement el : elements) {
@@ -59,31 +54,31 @@ public class FindElementsHandler extends CommandHandler {
     return resp;
   }
 
-  private List<RemoteWebElement> findElements() throws Exception {
-    JsonObject payload = getRequest().getPayload();
-    String type = payload.getString("using");
-    String value = payload.getString("value");
-
-    RemoteWebElement element = null;
-
+  private RemoteWebElement getSearchRoot() {
     if (getRequest().hasVariable(":reference")) {
       String ref = getRequest().getVariableValue(":reference");
-      element = getWebDriver().createElement(ref);
+      return getWebDriver().createElement(ref);
     } else {
-      element = getWebDriver().getDocument();
+      return getWebDriver().getDocument();
     }
+  }
 
-    List<RemoteWebElement> res;
-    if ("link text".equals(type)) {
-      res = element.findElementsByLinkText(value, false);
-    } else if ("partial link text".equals(type)) {
-      res = element.findElementsByLinkText(value, true);
-    } else if ("xpath".equals(type)) {
-      res = element.findElementsByXpath(value);
-    } else {
-      String cssSelector = ToCSSSelectorConverter.convertToCSSSelector(type, value);
-      res = element.findElementsByCSSSelector(cssSelector);
+  private static Optional<List<RemoteWebElement>> findElements(
+      RemoteWebElement element, Locator locator) throws Exception {
+    try {
+      List<RemoteWebElement> res;
+      if ("link text".equals(locator.using)) {
+        res = element.findElementsByLinkText(locator.value, false);
+      } else if ("partial link text".equals(locator.using)) {
+        res = element.findElementsByLinkText(locator.value, true);
+      } else if ("xpath".equals(locator.using)) {
+        res = element.findElementsByXpath(locator.value);
+      } else {
+        res = element.findElementsByCSSSelector(locator.value);
+      }
+      return res.isEmpty() ? Optional.absent() : Optional.of(res);
+    } catch (NoSuchElementException e) {
+      return Optional.absent();
     }
-    return res;
   }
 }
@@ -13,6 +13,9 @@
  */
 package org.uiautomation.ios.command;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.Executor;
 import org.json.JSONObject;
 import org.openqa.selenium.remote.Response;
 import org.uiautomation.ios.IOSServerManager;
@@ -36,4 +39,17 @@ public class GetHandler extends CommandHandler {
     res.setValue(new JSONObject());
     return res;
   }
+
+  @Override
+  public ListenableFuture<Response> handleAsync(Executor executor) {
+    return startAsync(
+        executor,
+        () -> {
+          String url = getRequest().getPayload().getString("url");
+          return Futures.transform(
+              getWebDriver().getAsync(url, executor),
+              v -> createResponse(new JSONObject()),
+              executor);
+        });
+  }
 }
@@ -16,7 +16,6 @@ package org.uiautomation.ios.command;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.Response;
 import org.uiautomation.ios.IOSServerManager;
 import org.uiautomation.ios.ServerSideSession;
@@ -33,14 +32,14 @@ public class GetSessionsHandler extends CommandHandler {
     for (ServerSideSession s : getServer().getSessions()) {
       JSONObject session = new JSONObject();
       session.put("id", s.getSessionId());
-      session.put("capabilities", new DesiredCapabilities());
+      session.put("capabilities", new JSONObject(s.getCapabilities().asMap()));
       res.put(session);
     }
 
     Response resp = new Response();
     resp.setSessionId("dummy one");
     resp.setStatus(0);
-    resp.setValue(res.toString());
+    resp.setValue(res);
     return resp;
   }
 }
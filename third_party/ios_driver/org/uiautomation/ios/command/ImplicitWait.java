@@ -0,0 +1,165 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.command;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import javax.json.JsonObject;
+import org.uiautomation.ios.wkrdp.model.RemoteWebElement;
+
+/**
+ * The implicit wait of the find element commands. Where the page supports it, the wait happens
+ * inside the page, so a single debugger call returns as soon as the locator matches; otherwise the
+ * locator is polled with exponential backoff.
+ */
+final class ImplicitWait {
+  private static final long INITIAL_BACKOFF_MILLIS = 20;
+  private static final long MAX_BACKOFF_MILLIS = 500;
+
+  /** Looks up the elements matching a locator, returning absent if there are none. */
+  interface Finder<T> {
+    Optional<T> find() throws Exception;
+  }
+
+  /** Looks up the elements matching a locator without blocking. */
+  interface AsyncFinder<T> {
+    ListenableFuture<Optional<T>> find();
+  }
+
+  /** A locator, with every strategy the page cannot evaluate directly converted to CSS. */
+  static final class Locator {
+    private static final ImmutableSet<String> DIRECT_STRATEGIES =
+        ImmutableSet.of("link text", "partial link text", "xpath");
+
+    final String using;
+    final String value;
+
+    private Locator(String using, String value) {
+      if (DIRECT_STRATEGIES.contains(using)) {
+        this.using = using;
+        this.value = value;
+      } else {
+        this.using = "css selector";
+        this.value = ToCSSSelectorConverter.convertToCSSSelector(using, value);
+      }
+    }
+
+    static Locator fromPayload(JsonObject payload) {
+      return new Locator(payload.getString("using"), payload.getString("value"));
+    }
+  }
+
+  /**
+   * Finds the elements matching the locator under the root, waiting up to the timeout for them to
+   * appear.
+   */
+  static <T> Optional<T> await(
+      RemoteWebElement root, Locator locator, int timeoutMillis, Finder<T> finder)
+      throws Exception {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    Optional<T> found = finder.find();
+    if (found.isPresent() || timeoutMillis <= 0) {
+      return found;
+    }
+
+    Optional<Boolean> matched =
+        root.waitForLocator(locator.using, locator.value, Duration.ofMillis(timeoutMillis));
+    if (matched.isPresent()) {
+      if (!matched.get()) {
+        return found;
+      }
+      // The node that matched in the page may be gone by the time it is looked up, in which case
+      // the rest of the timeout is spent polling.
+      found = finder.find();
+      if (found.isPresent()) {
+        return found;
+      }
+    }
+    return poll(deadline, found, finder);
+  }
+
+  /**
+   * Waits as {@link #await} does, without blocking while the page waits for the locator. Only
+   * where the page cannot wait is the locator polled, with the blocking finder on the executor.
+   */
+  static <T> ListenableFuture<Optional<T>> awaitAsync(
+      RemoteWebElement root,
+      Locator locator,
+      int timeoutMillis,
+      AsyncFinder<T> asyncFinder,
+      Finder<T> finder,
+      Executor executor) {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    return Futures.transformAsync(
+        asyncFinder.find(),
+        found -> {
+          if (found.isPresent() || timeoutMillis <= 0) {
+            return Futures.immediateFuture(found);
+          }
+          return Futures.transformAsync(
+              root.waitForLocatorAsync(
+                  locator.using, locator.value, Duration.ofMillis(timeoutMillis), executor),
+              matched -> {
+                if (!matched.isPresent()) {
+                  return pollAsync(deadline, found, finder, executor);
+                }
+                if (!matched.get()) {
+                  return Futures.immediateFuture(found);
+                }
+                return Futures.transformAsync(
+                    asyncFinder.find(),
+                    refound ->
+                        refound.isPresent()
+                            ? Futures.immediateFuture(refound)
+                            : pollAsync(deadline, refound, finder, executor),
+                    executor);
+              },
+              executor);
+        },
+        executor);
+  }
+
+  private static <T> ListenableFuture<Optional<T>> pollAsync(
+      long deadline, Optional<T> found, Finder<T> finder, Executor executor) {
+    ListenableFutureTask<Optional<T>> polling =
+        ListenableFutureTask.create(() -> poll(deadline, found, finder));
+    executor.execute(polling);
+    return polling;
+  }
+
+  /** Polls the locator with exponential backoff until it matches or the deadline passes. */
+  private static <T> Optional<T> poll(long deadline, Optional<T> found, Finder<T> finder)
+      throws Exception {
+    long backoff = INITIAL_BACKOFF_MILLIS;
+    long remaining = deadline - System.currentTimeMillis();
+    while (remaining > 0) {
+      Thread.sleep(Math.min(backoff, remaining));
+      found = finder.find();
+      if (found.isPresent()) {
+        return found;
+      }
+      backoff = Math.min(2 * backoff, MAX_BACKOFF_MILLIS);
+      remaining = deadline - System.currentTimeMillis();
+    }
+    return found;
+  }
+
+  private ImplicitWait() {}
+}
@@ -0,0 +1,145 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.command;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriverException;
+import org.uiautomation.ios.servlet.BinaryValue;
+
+/**
+ * Re-encodes device screenshots as requested by the session capabilities:
+ *
+ * <ul>
+ *   <li>{@code screenshotScale}: a factor in (0, 1] to downscale the screenshot by.
+ *   <li>{@code screenshotGrayscale}: whether to drop the colors of the screenshot.
+ *   <li>{@code screenshotJpegQuality}: a quality in [1, 100] to encode the screenshot as JPEG
+ *       instead of PNG.
+ * </ul>
+ *
+ * <p>Without any of them, the PNG from the device is returned as is, without being decoded.
+ */
+public final class ScreenshotEncoder {
+  static final String SCALE = "screenshotScale";
+  static final String GRAYSCALE = "screenshotGrayscale";
+  static final String JPEG_QUALITY = "screenshotJpegQuality";
+
+  private final double scale;
+  private final boolean grayscale;
+  private final int jpegQuality;
+
+  private ScreenshotEncoder(double scale, boolean grayscale, int jpegQuality) {
+    this.scale = scale;
+    this.grayscale = grayscale;
+    this.jpegQuality = jpegQuality;
+  }
+
+  /**
+   * Creates the encoder set by the capabilities of a session. The session validates them once,
+   * when it is created, so that an invalid capability fails the session rather than each
+   * screenshot.
+   *
+   * @throws WebDriverException if a capability is invalid
+   */
+  public static ScreenshotEncoder fromCapabilities(Capabilities caps) {
+    Number scaleValue = number(caps, SCALE);
+    double scale = scaleValue == null ? 1 : scaleValue.doubleValue();
+    if (!(scale > 0 && scale <= 1)) {
+      throw new WebDriverException(SCALE + " must be in (0, 1], got " + scaleValue);
+    }
+    Object grayscale = caps.getCapability(GRAYSCALE);
+    if (grayscale != null && !(grayscale instanceof Boolean)) {
+      throw new WebDriverException(GRAYSCALE + " must be a boolean, got " + grayscale);
+    }
+    // A quality of 0 stands for PNG, and is not accepted from the capabilities.
+    Number quality = number(caps, JPEG_QUALITY);
+    int jpegQuality = 0;
+    if (quality != null) {
+      jpegQuality = quality.intValue();
+      if (jpegQuality != quality.doubleValue() || jpegQuality < 1 || jpegQuality > 100) {
+        throw new WebDriverException(
+            JPEG_QUALITY + " must be an integer in [1, 100], got " + quality);
+      }
+    }
+    return new ScreenshotEncoder(scale, Boolean.TRUE.equals(grayscale), jpegQuality);
+  }
+
+  private static Number number(Capabilities caps, String name) {
+    Object value = caps.getCapability(name);
+    if (value != null && !(value instanceof Number)) {
+      throw new WebDriverException(name + " must be a number, got " + value);
+    }
+    return (Number) value;
+  }
+
+  public BinaryValue encode(byte[] png) throws IOException {
+    if (scale == 1 && !grayscale && jpegQuality == 0) {
+      return new BinaryValue(png, "image/png");
+    }
+
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+    if (image == null) {
+      throw new WebDriverException("cannot decode the screenshot");
+    }
+    int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+    int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+    // JPEG has no alpha channel, and a gray image only needs one.
+    int type =
+        grayscale
+            ? BufferedImage.TYPE_BYTE_GRAY
+            : jpegQuality > 0 ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+    BufferedImage output = new BufferedImage(width, height, type);
+    Graphics2D g = output.createGraphics();
+    try {
+      g.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.drawImage(image, 0, 0, width, height, null);
+    } finally {
+      g.dispose();
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(png.length / 2);
+    if (jpegQuality > 0) {
+      writeJpeg(output, bytes);
+      return new BinaryValue(bytes.toByteArray(), "image/jpeg");
+    } else {
+      ImageIO.write(output, "png", bytes);
+      return new BinaryValue(bytes.toByteArray(), "image/png");
+    }
+  }
+
+  private void writeJpeg(BufferedImage image, ByteArrayOutputStream bytes) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+      writer.setOutput(out);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(jpegQuality / 100f);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+  }
+}
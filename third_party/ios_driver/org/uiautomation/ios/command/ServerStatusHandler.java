@@ -14,10 +14,11 @@
 
 package org.uiautomation.ios.command;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.remote.Response;
 import org.uiautomation.ios.IOSServerManager;
 import org.uiautomation.ios.ServerSideSession;
@@ -32,18 +33,23 @@ public class ServerStatusHandler extends CommandHandler {
   public Response handle() throws Exception {
     JSONObject res = generateStatus();
 
-    Set<ServerSideSession> sessions = getServer().getSessions();
-    Response resp = new Response();
+    List<ServerSideSession> sessions = new ArrayList<>(getServer().getSessions());
+    JSONArray sessionsJson = new JSONArray();
+    for (ServerSideSession session : sessions) {
+      sessionsJson.put(
+          new JSONObject()
+              .put("id", session.getSessionId())
+              .put("state", String.valueOf(session.getSessionState()))
+              .put("commands", new JSONObject(session.getCommandLane().stats())));
+    }
+    res.put("sessions", sessionsJson);
+    res.put("launcher", new JSONObject(getServer().getLauncherStatus()));
 
+    Response resp = new Response();
     resp.setStatus(0);
     resp.setValue(res);
-    if (sessions.size() == 0) {
-      resp.setSessionId(null);
-    } else if (sessions.size() == 1) {
-      resp.setSessionId(sessions.iterator().next().getSessionId());
-    } else {
-      throw new WebDriverException("NI multi sessions per server.");
-    }
+    // The status is not tied to a session, unless there is only one to tie it to.
+    resp.setSessionId(sessions.size() == 1 ? sessions.get(0).getSessionId() : null);
     return resp;
   }
 
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2013 eBay Software Foundation and ios-driver committers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.uiautomation.ios.command;
+
+import com.google.devtoolsdriver.webdriver.CachePolicy;
+import com.google.devtoolsdriver.webdriver.NetworkConditions;
+import javax.json.JsonObject;
+import org.openqa.selenium.InvalidArgumentException;
+import org.openqa.selenium.remote.Response;
+import org.uiautomation.ios.IOSServerManager;
+import org.uiautomation.ios.ServerSideSession;
+import org.uiautomation.ios.drivers.RemoteIOSWebDriver;
+import org.uiautomation.ios.servlet.WebDriverLikeRequest;
+
+/**
+ * Sets the network conditions, cache policy and service worker bypass of the session, taking the
+ * same values as their capabilities, and clears the browser cache if clearCache is true. Settings
+ * missing from the payload are left as they are. Returns the settings of the session.
+ */
+public class SetNetworkHandler extends CommandHandler {
+  private static final String CLEAR_CACHE = "clearCache";
+
+  public SetNetworkHandler(IOSServerManager driver, WebDriverLikeRequest request) {
+    super(driver, request);
+  }
+
+  @Override
+  public Response handle() throws Exception {
+    JsonObject payload = getRequest().getPayload();
+    // The whole payload is validated before any of it is applied, so that a bad value leaves the
+    // session as it was.
+    NetworkConditions conditions = null;
+    CachePolicy policy = null;
+    Boolean bypassServiceWorker = null;
+    boolean clearCache;
+    try {
+      if (payload.containsKey(ServerSideSession.NETWORK_CONDITIONS)) {
+        conditions = NetworkConditions.fromJson(payload.get(ServerSideSession.NETWORK_CONDITIONS));
+      }
+      if (payload.containsKey(ServerSideSession.CACHE_POLICY)) {
+        policy = CachePolicy.fromName(payload.getString(ServerSideSession.CACHE_POLICY));
+      }
+      if (payload.containsKey(ServerSideSession.BYPASS_SERVICE_WORKER)) {
+        bypassServiceWorker = payload.getBoolean(ServerSideSession.BYPASS_SERVICE_WORKER);
+      }
+      clearCache = payload.containsKey(CLEAR_CACHE) && payload.getBoolean(CLEAR_CACHE);
+    } catch (IllegalArgumentException | ClassCastException e) {
+      throw new InvalidArgumentException(e.getMessage());
+    }
+    RemoteIOSWebDriver driver = getWebDriver();
+    if (conditions != null) {
+      driver.setNetworkConditions(conditions);
+    }
+    if (policy != null) {
+      driver.setCachePolicy(policy);
+    }
+    if (bypassServiceWorker != null) {
+      driver.setBypassServiceWorker(bypassServiceWorker);
+    }
+    if (clearCache) {
+      driver.clearBrowserCache();
+    }
+    return createResponse(driver.getNetworkSettings());
+  }
+}
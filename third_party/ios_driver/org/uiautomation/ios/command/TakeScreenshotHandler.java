@@ -14,11 +14,17 @@
 
 package org.uiautomation.ios.command;
 
-import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.Executor;
 import org.openqa.selenium.remote.Response;
 import org.uiautomation.ios.IOSServerManager;
 import org.uiautomation.ios.servlet.WebDriverLikeRequest;
 
+/**
+ * Handles the screenshot commands. The screenshot is returned as a {@link
+ * org.uiautomation.ios.servlet.BinaryValue}, re-encoded as set by the session capabilities.
+ */
 public class TakeScreenshotHandler extends CommandHandler {
   public TakeScreenshotHandler(IOSServerManager driver, WebDriverLikeRequest request) {
     super(driver, request);
@@ -26,6 +32,20 @@ public class TakeScreenshotHandler extends CommandHandler {
 
   @Override
   public Response handle() throws Exception {
-    return createResponse(BaseEncoding.base64().encode(getWebDriver().takeScreenshot()));
+    ScreenshotEncoder encoder = getSession().getScreenshotEncoder();
+    return createResponse(encoder.encode(getWebDriver().takeScreenshot()));
+  }
+
+  @Override
+  public ListenableFuture<Response> handleAsync(Executor executor) {
+    return startAsync(
+        executor,
+        () -> {
+          ScreenshotEncoder encoder = getSession().getScreenshotEncoder();
+          return Futures.transformAsync(
+              getWebDriver().takeScreenshotAsync(),
+              screenshot -> Futures.immediateFuture(createResponse(encoder.encode(screenshot))),
+              executor);
+        });
   }
 }
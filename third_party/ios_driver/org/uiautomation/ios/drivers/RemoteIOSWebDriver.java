@@ -21,6 +21,8 @@ import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.devtoolsdriver.devtools.DevtoolsCommand;
 import com.google.devtoolsdriver.devtools.DevtoolsEvent;
@@ -31,21 +33,30 @@ import com.google.devtoolsdriver.devtools.Timeline;
 import com.google.devtoolsdriver.webdriver.Browser;
 import com.google.devtoolsdriver.webdriver.BrowserException;
 import com.google.devtoolsdriver.webdriver.BrowserLauncher;
+import com.google.devtoolsdriver.webdriver.CachePolicy;
+import com.google.devtoolsdriver.webdriver.HarRecorder;
 import com.google.devtoolsdriver.webdriver.JsAtoms;
+import com.google.devtoolsdriver.webdriver.NetworkConditions;
 import com.google.devtoolsdriver.webdriver.PageId;
+import com.google.devtoolsdriver.webdriver.PageMetricsRecorder;
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
 import org.openqa.selenium.Cookie;
 import org.openqa.selenium.Dimension;
 import org.openqa.selenium.StaleElementReferenceException;
@@ -61,6 +72,7 @@ import org.uiautomation.ios.wkrdp.model.RemoteWebElement;
 public final class RemoteIOSWebDriver implements AutoCloseable {
   private static final Logger log = Logger.getLogger(RemoteIOSWebDriver.class.getName());
 
+  private static final Duration HAR_BODY_TIMEOUT = Duration.ofSeconds(30);
   private static final DateTimeFormatter HTTP_DATE_TIME =
       DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss O").withZone(ZoneOffset.UTC);
 
@@ -71,6 +83,13 @@ public final class RemoteIOSWebDriver implements AutoCloseable {
 
   private Browser browser;
   private WebInspectorHelper inspector;
+  private Optional<HarRecorder> harRecorder = Optional.absent();
+  private Optional<PageMetricsRecorder> pageMetrics = Optional.absent();
+  // The network settings that have been set, which are applied to every page that is switched to;
+  // those absent are left to the browser.
+  private Optional<NetworkConditions> networkConditions = Optional.absent();
+  private Optional<CachePolicy> cachePolicy = Optional.absent();
+  private Optional<Boolean> bypassServiceWorker = Optional.absent();
 
   public RemoteIOSWebDriver(ServerSideSession session, BrowserLauncher launcher) {
     this.session = checkNotNull(session);
@@ -97,15 +116,134 @@ public final class RemoteIOSWebDriver implements AutoCloseable {
     if (perfListener.isPresent()) {
       addEventListener(perfListener.get());
     }
+    if (session.isRecordingHar()) {
+      try {
+        harRecorder =
+            Optional.of(
+                HarRecorder.create(
+                    command -> browser.sendCommandAsync(command, HAR_BODY_TIMEOUT),
+                    executor,
+                    session.getHarMaxBodyBytes()));
+      } catch (IOException e) {
+        throw new WebDriverException(e);
+      }
+      addEventListener(harRecorder.get());
+    }
+    if (session.isRecordingPageMetrics()) {
+      pageMetrics = Optional.of(new PageMetricsRecorder());
+      addEventListener(pageMetrics.get());
+    }
+    networkConditions = session.getNetworkConditions();
+    cachePolicy = session.getCachePolicy();
+    bypassServiceWorker = session.getBypassServiceWorker();
     enablePageEvents();
   }
 
   private void enablePageEvents() {
     inspector.sendCommand(Page.enable());
-    if (perfListener.isPresent()) {
+    if (needsNetworkEvents()) {
       inspector.sendCommand(Network.enable());
+    }
+    if (perfListener.isPresent() || pageMetrics.isPresent()) {
       inspector.sendCommand(Timeline.start());
     }
+    if (networkConditions.isPresent()) {
+      inspector.sendCommand(networkConditions.get().toCommand());
+    }
+    if (cachePolicy.isPresent()) {
+      inspector.sendCommand(Network.setCacheDisabled(cachePolicy.get() == CachePolicy.DISABLED));
+    }
+    if (bypassServiceWorker.isPresent()) {
+      inspector.sendCommand(Network.setBypassServiceWorker(bypassServiceWorker.get()));
+    }
+  }
+
+  private boolean needsNetworkEvents() {
+    return perfListener.isPresent()
+        || harRecorder.isPresent()
+        || pageMetrics.isPresent()
+        || networkConditions.isPresent()
+        || cachePolicy.isPresent()
+        || bypassServiceWorker.isPresent();
+  }
+
+  /** Enables the Network domain before the first network setting is applied, if it is not yet. */
+  private void enableNetworkForSettings() {
+    if (!needsNetworkEvents()) {
+      inspector.sendCommand(Network.enable());
+    }
+  }
+
+  /** Throttles the current page, and those switched to later, to the network conditions. */
+  public void setNetworkConditions(NetworkConditions conditions) {
+    enableNetworkForSettings();
+    inspector.sendCommand(conditions.toCommand());
+    networkConditions = Optional.of(conditions);
+  }
+
+  /** Sets the cache policy of the current page, and of those switched to later. */
+  public void setCachePolicy(CachePolicy policy) {
+    enableNetworkForSettings();
+    inspector.sendCommand(Network.setCacheDisabled(policy == CachePolicy.DISABLED));
+    cachePolicy = Optional.of(policy);
+  }
+
+  /**
+   * Sets whether the requests of the current page, and of those switched to later, bypass service
+   * workers.
+   */
+  public void setBypassServiceWorker(boolean bypass) {
+    enableNetworkForSettings();
+    inspector.sendCommand(Network.setBypassServiceWorker(bypass));
+    bypassServiceWorker = Optional.of(bypass);
+  }
+
+  public void clearBrowserCache() {
+    inspector.sendCommand(Network.clearBrowserCache());
+  }
+
+  /** Returns the network settings that have been set, which are those applied to each page. */
+  public JsonObject getNetworkSettings() {
+    JsonObjectBuilder settings = Json.createObjectBuilder();
+    if (networkConditions.isPresent()) {
+      settings.add(ServerSideSession.NETWORK_CONDITIONS, networkConditions.get().toJson());
+    }
+    if (cachePolicy.isPresent()) {
+      settings.add(ServerSideSession.CACHE_POLICY, cachePolicy.get().lowerCaseName());
+    }
+    if (bypassServiceWorker.isPresent()) {
+      settings.add(ServerSideSession.BYPASS_SERVICE_WORKER, bypassServiceWorker.get());
+    }
+    return settings.build();
+  }
+
+  /** Clears the browser cache before a navigation, if every navigation should run cold. */
+  private void prepareNavigation() {
+    if (cachePolicy.or(CachePolicy.WARM) == CachePolicy.COLD) {
+      clearBrowserCache();
+    }
+  }
+
+  /** Returns the recorder of the HTTP Archive of the session, if it is recording one. */
+  public HarRecorder getHarRecorder() {
+    if (!harRecorder.isPresent()) {
+      throw new WebDriverException(
+          "The session is not recording a HAR; create it with the "
+              + ServerSideSession.RECORD_HAR
+              + " capability");
+    }
+    return harRecorder.get();
+  }
+
+  /** Returns the performance metrics of each navigation, if the session is aggregating them. */
+  public JsonObject getPageMetrics() {
+    if (!pageMetrics.isPresent()) {
+      throw new WebDriverException(
+          "The session is not aggregating page metrics; create it with the "
+              + ServerSideSession.PAGE_METRICS
+              + " capability");
+    }
+    return pageMetrics.get().toJson();
   }
 
   public ImmutableMap<String, Object> capabilities() {
@@ -129,6 +267,13 @@ public final class RemoteIOSWebDriver implements AutoCloseable {
     if (!MoreExecutors.shutdownAndAwaitTermination(executor, 5, SECONDS)) {
       log.severe("Executor did not terminate successfully");
     }
+    if (harRecorder.isPresent()) {
+      try {
+        harRecorder.get().close();
+      } catch (IOException e) {
+        log.log(Level.WARNING, "Could not delete the spooled HAR bodies", e);
+      }
+    }
     if (browser != null) {
       try {
         browser.close();
@@ -155,6 +300,9 @@ public final class RemoteIOSWebDriver implements AutoCloseable {
   public void switchTo(PageId pageId) {
     try {
       if (browser.switchTo(pageId)) {
+        if (pageMetrics.isPresent()) {
+          pageMetrics.get().pageChanged();
+        }
         enablePageEvents();
       }
     } catch (BrowserException e) {
@@ -166,6 +314,10 @@ public final class RemoteIOSWebDriver implements AutoCloseable {
     // TODO(user): Figure out why these have to be executed asynchronously.
     browser.addEventListener(
         event -> {
+          // Events still arrive while the browser is reset on close; nobody listens anymore.
+          if (executor.isShutdown()) {
+            return;
+          }
           executor.execute(
               () -> {
                 try {
@@ -182,9 +334,19 @@ public final class RemoteIOSWebDriver implements AutoCloseable {
   }
 
   public void get(String url) {
+    prepareNavigation();
     inspector.get(url);
   }
 
+  /** Navigates as {@link #get} does, without blocking while the page loads. */
+  public ListenableFuture<Void> getAsync(String url, Executor executor) {
+    ListenableFuture<?> prepared =
+        cachePolicy.or(CachePolicy.WARM) == CachePolicy.COLD
+            ? inspector.sendCommandAsync(Network.clearBrowserCache())
+            : Futures.immediateFuture(null);
+    return Futures.transformAsync(prepared, r -> inspector.getAsync(url, executor), executor);
+  }
+
   public void addCookie(String name,
       String value,
       String path,
@@ -296,6 +458,7 @@ public final class RemoteIOSWebDriver implements AutoCloseable {
 
   public void refresh() {
     try {
+      prepareNavigation();
       inspector.sendCommand(Page.reload());
     } catch (Exception e) {
       log.log(Level.SEVERE, "refresh error", e);
@@ -306,6 +469,11 @@ public final class RemoteIOSWebDriver implements AutoCloseable {
     return inspector.executeScript(script, args);
   }
 
+  public ListenableFuture<Object> executeScriptAsync(
+      String script, JsonArray args, Executor executor) {
+    return inspector.executeScriptAsync(script, args, executor);
+  }
+
   public Object executeAsyncScript(String script, JsonArray args) {
     return inspector.executeAsyncScript(script, args);
   }
@@ -314,6 +482,10 @@ public final class RemoteIOSWebDriver implements AutoCloseable {
     return inspector.getDocument();
   }
 
+  public ListenableFuture<RemoteWebElement> getDocumentAsync(Executor executor) {
+    return inspector.getDocumentAsync(executor);
+  }
+
   public DOMContext getContext() {
     return inspector.getContext();
   }
@@ -325,4 +497,13 @@ public final class RemoteIOSWebDriver implements AutoCloseable {
       throw new WebDriverException(e);
     }
   }
+
+  /** Takes a screenshot without blocking; the future fails with a WebDriverException. */
+  public ListenableFuture<byte[]> takeScreenshotAsync() {
+    return Futures.catchingAsync(
+        browser.takeScreenshotAsync(),
+        BrowserException.class,
+        e -> Futures.immediateFailedFuture(new WebDriverException(e)),
+        MoreExecutors.directExecutor());
+  }
 }
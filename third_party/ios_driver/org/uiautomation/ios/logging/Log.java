@@ -13,6 +13,7 @@
  */
 package org.uiautomation.ios.logging;
 
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 /*
@@ -24,4 +25,7 @@ public interface Log {
 
   public void addEntryTimestamped(long timestamp, Level level, String message);
 
+  /** Adds an entry whose message is only formatted if the log keeps it and is read. */
+  public void addEntry(Level level, Supplier<String> message);
+
 }
@@ -47,18 +47,20 @@ public class PerformanceListener implements Consumer<DevtoolsEvent> {
     if (!shouldLog(event)) {
       return;
     }
-    // The remote performance log clients expect the events to be formatted in
-    // the following specific JSON format.
-    // See: https://sites.google.com/a/chromium.org/chromedriver/logging/performance-log
+    // Formatting is deferred until the log is read, which it may never be.
+    log.addEntry(Level.INFO, () -> toPerformanceLogMessage(event));
+  }
+
+  /**
+   * Formats an event in the JSON that remote performance log clients expect. See:
+   * https://sites.google.com/a/chromium.org/chromedriver/logging/performance-log
+   */
+  private static String toPerformanceLogMessage(DevtoolsEvent event) {
     JsonObject messageJson =
         Json.createObjectBuilder()
             .add("method", event.method())
             .add("params", event.params())
             .build();
-    JsonObject eventJson =
-        Json.createObjectBuilder()
-            .add("message", messageJson.toString())
-            .build();
-    log.addEntry(Level.INFO, eventJson.toString());
+    return Json.createObjectBuilder().add("message", messageJson).build().toString();
   }
 }
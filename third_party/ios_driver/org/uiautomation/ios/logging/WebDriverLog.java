@@ -13,26 +13,53 @@
  */
 package org.uiautomation.ios.logging;
 
-import org.openqa.selenium.logging.LogEntry;
-
+import com.google.devtoolsdriver.util.Metrics;
+import com.google.devtoolsdriver.util.RingBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+import org.openqa.selenium.logging.LogEntry;
 
 /*
- * Stores an Array of LogEntry from Webdriver Logging API.  LogEntries are of a specific
- * type and have a minimum level.
+ * Stores the LogEntries of a specific type and minimum level from the Webdriver Logging API, until
+ * they are read. Entries are added without locking from the threads that produce them, and the
+ * messages are only formatted when read. If more than CAPACITY entries are unread, later entries
+ * are dropped and counted.
  */
 public class WebDriverLog implements Log {
+  static final int CAPACITY = 1 << 14;
 
-  private final List<LogEntry> logEntries = new ArrayList<LogEntry>();
+  private static final Logger log = Logger.getLogger(WebDriverLog.class.getName());
 
+  private final RingBuffer<PendingEntry> entries;
+  private final int capacity;
+  private final LongAdder droppedEntries;
   private final Level minLogLevel;
   private final String type;
 
+  @GuardedBy("this")
+  private long droppedReported;
+
   public WebDriverLog(String type, Level minLogLevel) {
+    this(type, minLogLevel, CAPACITY);
+  }
+
+  WebDriverLog(String type, Level minLogLevel, int capacity) {
     this.type = type;
     this.minLogLevel = minLogLevel;
+    this.capacity = capacity;
+    entries = new RingBuffer<>(capacity);
+    droppedEntries =
+        Metrics.global()
+            .counter(
+                "webdriver_log_entries_dropped_total",
+                "Log entries dropped because too many were unread.",
+                "type",
+                type);
   }
 
   public String getType() {
@@ -46,15 +73,51 @@ public class WebDriverLog implements Log {
 
   @Override
   public void addEntryTimestamped(long timestamp, Level level, String message) {
-    if (level.intValue() >= minLogLevel.intValue()) {
-      logEntries.add(new LogEntry(level, timestamp, message));
+    add(timestamp, level, () -> message);
+  }
+
+  @Override
+  public void addEntry(Level level, Supplier<String> message) {
+    add(System.currentTimeMillis(), level, message);
+  }
+
+  private void add(long timestamp, Level level, Supplier<String> message) {
+    if (level.intValue() >= minLogLevel.intValue()
+        && !entries.offer(new PendingEntry(level, timestamp, message))) {
+      droppedEntries.increment();
     }
   }
 
-  public List<LogEntry> getAndClearEntries() {
-    List<LogEntry> ret = new ArrayList<LogEntry>(logEntries);
-    logEntries.clear();
+  /** Returns the number of entries dropped because too many were unread. */
+  public long droppedCount() {
+    return entries.droppedCount();
+  }
+
+  public synchronized List<LogEntry> getAndClearEntries() {
+    List<LogEntry> ret = new ArrayList<>();
+    for (PendingEntry entry : entries.drain()) {
+      ret.add(new LogEntry(entry.level, entry.timestamp, entry.message.get()));
+    }
+    long dropped = entries.droppedCount();
+    if (dropped > droppedReported) {
+      log.warning(
+          String.format(
+              "%d %s log entries were dropped, as more than %d were unread",
+              dropped - droppedReported, type, capacity));
+      droppedReported = dropped;
+    }
     return ret;
   }
 
+  private static final class PendingEntry {
+    private final Level level;
+    private final long timestamp;
+    private final Supplier<String> message;
+
+    private PendingEntry(Level level, long timestamp, Supplier<String> message) {
+      this.level = level;
+      this.timestamp = timestamp;
+      this.message = message;
+    }
+  }
 }
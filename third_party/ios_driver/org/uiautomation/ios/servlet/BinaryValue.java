@@ -0,0 +1,40 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.servlet;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A binary response value, such as an image. It is written base64-encoded in JSON responses, and
+ * as is by the commands that serve raw content.
+ */
+public final class BinaryValue {
+  private final byte[] bytes;
+  private final String mimeType;
+
+  public BinaryValue(byte[] bytes, String mimeType) {
+    this.bytes = checkNotNull(bytes);
+    this.mimeType = checkNotNull(mimeType);
+  }
+
+  /** The content. The array is not copied and must not be modified. */
+  public byte[] bytes() {
+    return bytes;
+  }
+
+  public String mimeType() {
+    return mimeType;
+  }
+}
@@ -0,0 +1,139 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.servlet;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.Map;
+import org.openqa.selenium.UnsupportedCommandException;
+
+/**
+ * Resolves a request method and path to a {@link WebDriverLikeCommand}. The path templates of all
+ * commands are compiled once into a trie, keyed first by method and then by path segment, so a
+ * request is matched in a single walk of its segments.
+ */
+final class CommandRouter {
+  /** A command resolved from a request, with the values of the variables in its path. */
+  static final class Route {
+    private final WebDriverLikeCommand command;
+    private final ImmutableMap<String, String> variables;
+
+    private Route(WebDriverLikeCommand command, ImmutableMap<String, String> variables) {
+      this.command = command;
+      this.variables = variables;
+    }
+
+    WebDriverLikeCommand command() {
+      return command;
+    }
+
+    /** The path variables, keyed by their name in the template, e.g. ":sessionId". */
+    ImmutableMap<String, String> variables() {
+      return variables;
+    }
+  }
+
+  private static final CommandRouter INSTANCE = new CommandRouter(WebDriverLikeCommand.values());
+
+  static CommandRouter getInstance() {
+    return INSTANCE;
+  }
+
+  private static final class Node {
+    private final Map<String, Node> literals = new HashMap<>();
+    private Node variable;
+    private WebDriverLikeCommand command;
+    private String[] template;
+  }
+
+  private final Map<String, Node> roots = new HashMap<>();
+
+  CommandRouter(WebDriverLikeCommand... commands) {
+    for (WebDriverLikeCommand command : commands) {
+      add(command.method(), command.path(), command);
+    }
+  }
+
+  /**
+   * Routes the requests matching the method and path template to the command. As with a linear
+   * scan of the commands, the first command added for a template wins.
+   */
+  @VisibleForTesting
+  CommandRouter add(String method, String path, WebDriverLikeCommand command) {
+    Node node = roots.computeIfAbsent(method, m -> new Node());
+    String[] template = path.split("/");
+    for (String segment : template) {
+      if (segment.startsWith(":")) {
+        if (node.variable == null) {
+          node.variable = new Node();
+        }
+        node = node.variable;
+      } else {
+        node = node.literals.computeIfAbsent(segment, s -> new Node());
+      }
+    }
+    if (node.command == null) {
+      node.command = command;
+      node.template = template;
+    }
+    return this;
+  }
+
+  /** Returns the route of the request, or absent if no command matches it. */
+  Optional<Route> route(String method, String path) {
+    Node root = roots.get(method);
+    if (root == null || path == null) {
+      return Optional.absent();
+    }
+    String[] segments = path.split("/");
+    Node leaf = match(root, segments, 0);
+    if (leaf == null) {
+      return Optional.absent();
+    }
+    ImmutableMap.Builder<String, String> variables = ImmutableMap.builder();
+    for (int i = 0; i < segments.length; i++) {
+      if (leaf.template[i].startsWith(":")) {
+        variables.put(leaf.template[i], segments[i]);
+      }
+    }
+    return Optional.of(new Route(leaf.command, variables.build()));
+  }
+
+  /** Returns the route of the request, throwing if no command matches it. */
+  Route resolve(String method, String path) {
+    Optional<Route> route = route(method, path);
+    if (!route.isPresent()) {
+      throw new UnsupportedCommandException("cannot find command for " + method + ", " + path);
+    }
+    return route.get();
+  }
+
+  /** Matches the segments from the given index, preferring literal segments over variables. */
+  private static Node match(Node node, String[] segments, int index) {
+    if (index == segments.length) {
+      return node.command != null ? node : null;
+    }
+    Node literal = node.literals.get(segments[index]);
+    if (literal != null) {
+      Node leaf = match(literal, segments, index + 1);
+      if (leaf != null) {
+        return leaf;
+      }
+    }
+    return node.variable != null ? match(node.variable, segments, index + 1) : null;
+  }
+}
@@ -13,28 +13,109 @@
  */
 package org.uiautomation.ios.servlet;
 
-import com.google.devtoolsdriver.util.JavaxJson;
-import com.google.gson.JsonParser;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.devtoolsdriver.devtools.DevtoolsDebugger;
+import com.google.devtoolsdriver.util.LatencyHistogram;
+import com.google.devtoolsdriver.util.Metrics;
+import com.google.devtoolsdriver.util.Trace;
+import com.google.devtoolsdriver.util.TraceSpan;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.json.JsonObject;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.openqa.selenium.WebDriverException;
-import org.openqa.selenium.remote.BeanToJsonConverter;
 import org.openqa.selenium.remote.ErrorCodes;
 import org.openqa.selenium.remote.Response;
+import org.uiautomation.ios.IOSServer;
+import org.uiautomation.ios.ServerSideSession;
 import org.uiautomation.ios.command.CommandHandler;
 
 public class IOSServlet extends DriverBasedServlet {
   private static final Logger log = Logger.getLogger(IOSServlet.class.getName());
   private static final long serialVersionUID = -1190162363756488569L;
+  private static final AtomicInteger pendingRequests = new AtomicInteger();
+
+  static {
+    Metrics.global()
+        .gauge(
+            "webdriver_requests_pending",
+            "WebDriver requests received and not yet answered.",
+            pendingRequests::get);
+  }
+
   private final ErrorCodes errorCodes = new ErrorCodes();
+  private long maxPayloadBytes = IOSServer.DEFAULT_MAX_PAYLOAD_BYTES;
+  private double traceSampleRate = 0;
+  private transient ListeningExecutorService executor;
+  private transient ExecutorService responseExecutor;
+
+  @Override
+  public void init() throws ServletException {
+    Long max = (Long) getServletContext().getAttribute(IOSServer.MAX_PAYLOAD_BYTES);
+    if (max != null) {
+      maxPayloadBytes = max;
+    }
+    Double rate = (Double) getServletContext().getAttribute(IOSServer.TRACE_SAMPLE_RATE);
+    if (rate != null) {
+      traceSampleRate = rate;
+    }
+    Integer commandThreads = (Integer) getServletContext().getAttribute(IOSServer.COMMAND_THREADS);
+    int threads = commandThreads != null ? commandThreads : IOSServer.DEFAULT_COMMAND_THREADS;
+    // Runs the command handlers; a thread is only held while a handler is working, not while it
+    // awaits the browser. The commands beyond the threads queue, as they did for the threads of
+    // the container that used to run the handlers, rather than being refused.
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat("webdriver-command-%d")
+                .setDaemon(true)
+                .build());
+    pool.allowCoreThreadTimeOut(true);
+    executor = MoreExecutors.listeningDecorator(pool);
+    // Responses are written on their own threads, so that a slow client never holds a command
+    // thread, nor the thread reading the browser that completes a command.
+    responseExecutor =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                .setNameFormat("webdriver-response-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+    responseExecutor.shutdownNow();
+  }
 
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
@@ -67,14 +148,83 @@ public class IOSServlet extends DriverBasedServlet {
   }
 
   private void process(HttpServletRequest request, HttpServletResponse response) throws Exception {
-    WebDriverLikeRequest req = new WebDriverLikeRequest(request);
+    WebDriverLikeRequest req = new WebDriverLikeRequest(request, maxPayloadBytes);
 
     response.setContentType("application/json;charset=UTF-8");
     response.setCharacterEncoding("UTF-8");
 
+    // Refuse a payload that is declared too large before reading any of it.
+    if (request.getContentLengthLong() > maxPayloadBytes) {
+      WebDriverException e = WebDriverLikeRequest.payloadTooLarge(maxPayloadBytes);
+      log.warning(req + ": " + e.getMessage());
+      writeError(response, 413, e);
+      return;
+    }
+
+    // Release the container thread; the response is completed once the command handler is done.
+    AsyncContext async = request.startAsync();
+    pendingRequests.incrementAndGet();
+    // Commands enforce their own timeouts, some of them set by the client.
+    async.setTimeout(0);
+    ListenableFuture<Response> futureResponse;
+    try {
+      futureResponse = getResponse(req);
+    } catch (Exception e) {
+      futureResponse = Futures.immediateFailedFuture(e);
+    }
+    Futures.addCallback(
+        futureResponse,
+        new FutureCallback<Response>() {
+          @Override
+          public void onSuccess(Response resp) {
+            try {
+              writeResponse(request, response, req, resp);
+            } catch (Exception e) {
+              log.log(Level.WARNING, "error processing request", e);
+            } finally {
+              pendingRequests.decrementAndGet();
+              async.complete();
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            try {
+              log.log(Level.WARNING, "error processing request ", t);
+              writeError(response, t instanceof WebDriverException ? 400 : 500, t);
+            } catch (Exception e) {
+              log.log(Level.WARNING, "error processing request", e);
+            } finally {
+              pendingRequests.decrementAndGet();
+              async.complete();
+            }
+          }
+        },
+        responseExecutor);
+  }
+
+  private void writeResponse(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      WebDriverLikeRequest req,
+      Response resp)
+      throws Exception {
+    // Everything, errors included, goes through the output stream: once it is used, the writer of
+    // the response can no longer be.
     try {
       response.setStatus(200);
-      Response resp = getResponse(req);
+
+      // Binary content is served as is rather than wrapped in JSON, unless the command failed.
+      if (req.getGenericCommand() == WebDriverLikeCommand.SCREENSHOT_BINARY
+          && resp.getStatus() == 0) {
+        BinaryValue value = (BinaryValue) resp.getValue();
+        // Binary content has no charset; clear the one set for JSON before setting the type.
+        response.setCharacterEncoding(null);
+        response.setContentType(value.mimeType());
+        response.setContentLength(value.bytes().length);
+        response.getOutputStream().write(value.bytes());
+        return;
+      }
 
       // TODO implement the json protocol properly.
       if (req.getGenericCommand() == WebDriverLikeCommand.NEW_SESSION && resp.getStatus() == 0) {
@@ -95,39 +245,48 @@ public class IOSServlet extends DriverBasedServlet {
         response.setHeader("location", url + "/session/" + session);
       }
 
-      // Translate org.json.JSONObject instances to com.google.gson.JsonElement instances, the
-      // latter being the only Java JSON objects supported by newer versions of selenium.
-      if (resp.getValue() instanceof JsonObject) {
-        resp.setValue(JavaxJson.toGson((JsonObject) resp.getValue()));
-      }
-      if (resp.getValue() instanceof JSONObject) {
-        resp.setValue(new JsonParser().parse(resp.getValue().toString()));
-      }
-
-      BeanToJsonConverter converter = new BeanToJsonConverter();
-      String s = converter.convert(resp);
-
-      // status is also used for debugging, it's worth formatting it nice.
-      if (req.getGenericCommand() == WebDriverLikeCommand.STATUS) {
-        JSONObject o = new JSONObject(s);
-        response.getWriter().print(o.toString(2));
+      // Status is also used for debugging, it's worth formatting it nice.
+      boolean pretty = req.getGenericCommand() == WebDriverLikeCommand.STATUS;
+      new ResponseWriter(response.getOutputStream(), pretty).write(resp);
+    } catch (Exception e) {
+      log.log(Level.WARNING, req + ": error writing the response", e);
+      if (response.isCommitted()) {
+        // Part of the body has been sent, so any error appended to it would reach the client as
+        // invalid JSON under a 200 status; break the connection instead.
+        abort(request, e);
       } else {
-        response.getWriter().print(s);
+        // Nothing has been sent yet: discard the partly written body and send the error alone.
+        response.reset();
+        response.setContentType("application/json;charset=UTF-8");
+        response.setCharacterEncoding("UTF-8");
+        writeError(response, e instanceof WebDriverException ? 400 : 500, e);
       }
-    } catch (WebDriverException e) {
-      log.log(Level.WARNING, "error processing request ", e);
-      response.setStatus(400);
-      response.getWriter().print(serializeException(e));
-    } catch (Exception e) {
-      response.setStatus(500);
-      response.getWriter().print(serializeException(e));
-      throw new WebDriverException("Error processing response." + e.getMessage(), e);
     } finally {
-      response.getWriter().close();
+      response.getOutputStream().close();
     }
   }
 
-  private Response getResponse(WebDriverLikeRequest request) throws JSONException {
+  private void writeError(HttpServletResponse response, int status, Throwable e)
+      throws IOException, JSONException {
+    response.setStatus(status);
+    try (OutputStream out = response.getOutputStream()) {
+      out.write(serializeException(e).toString().getBytes(UTF_8));
+    }
+  }
+
+  /**
+   * Aborts the connection of a request whose response is partly sent, so that the client sees the
+   * response fail rather than receiving a truncated body.
+   */
+  private static void abort(HttpServletRequest request, Throwable cause) {
+    Request baseRequest = Request.getBaseRequest(request);
+    if (baseRequest != null) {
+      baseRequest.getHttpChannel().abort(cause);
+    }
+  }
+
+  private ListenableFuture<Response> getResponse(WebDriverLikeRequest request)
+      throws JSONException {
     if (request.hasSession()) {
       try {
         getDriver().getSession(request.getSession());
@@ -135,42 +294,112 @@ public class IOSServlet extends DriverBasedServlet {
         Response response = new Response();
         response.setStatus(13);
         response.setValue(serializeException(e));
-        return response;
+        return Futures.immediateFuture(response);
       }
     }
 
     // otherwise,forward to the driver to get the response.
-    Level level = Level.FINE;
-    long startTime = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
     WebDriverLikeCommand wdlc = null;
+    ServerSideSession session = null;
+    TraceSpan span = TraceSpan.NOOP;
+    ListenableFuture<Response> response;
     try {
       wdlc = request.getGenericCommand();
       CommandHandler h = wdlc.createHandler(getDriver(), request);
-      return h.handle();
-    } catch (Exception we) {
-      Response response = new Response();
-
-      response.setStatus(errorCodes.toStatusCode(we));
-
-      if (wdlc != null && wdlc.isSessionLess()) {
-        response.setSessionId("");
+      if (!wdlc.isSessionLess()) {
+        session = getDriver().getSession(request.getSession());
+        // Reading the traces is not traced, so that it does not push the traces out.
+        if (wdlc != WebDriverLikeCommand.TRACES
+            && Trace.sample(session.getTraceSampleRate(traceSampleRate))) {
+          span = Trace.start(wdlc.name());
+          span.put("request", request.toString());
+        }
+      }
+      // Count the devtools commands that the handler sends, on whichever thread it runs.
+      LongAdder devtoolsCommands =
+          Metrics.global()
+              .counter(
+                  "webdriver_devtools_commands_total",
+                  "Devtools commands sent to handle WebDriver commands.",
+                  "command",
+                  wdlc.name());
+      // The handler runs in the span of the request, so its devtools commands join the trace.
+      TraceSpan requestSpan = span;
+      Executor commandExecutor =
+          task ->
+              executor.execute(
+                  requestSpan.wrap(
+                      DevtoolsDebugger.withCommandListener(
+                          c -> devtoolsCommands.increment(), task)));
+      if (session == null) {
+        response = h.handleAsync(commandExecutor);
       } else {
-        response.setSessionId(request.getSession());
+        // Commands on a session run in the order they arrive, apart from overlapping reads.
+        response =
+            session
+                .getCommandLane()
+                .submit(wdlc.isReadOnly(), () -> h.handleAsync(commandExecutor));
       }
+    } catch (Exception e) {
+      response = Futures.immediateFailedFuture(e);
+    }
+    WebDriverLikeCommand command = wdlc;
+    ServerSideSession tracedSession = session;
+    TraceSpan requestSpan = span;
+    ListenableFuture<Response> result =
+        Futures.catching(
+            response,
+            Exception.class,
+            e -> createErrorResponse(request, command, e),
+            responseExecutor);
+    result.addListener(
+        () -> {
+          long nanos = System.nanoTime() - startNanos;
+          if (command != null) {
+            latencyOf(command).recordNanos(nanos);
+          }
+          if (requestSpan.isRecording()) {
+            requestSpan.end();
+            tracedSession.addTrace(requestSpan.trace());
+          }
+          if (log.isLoggable(Level.FINE)) {
+            log.fine(
+                String.format("%s  in %dms", request, TimeUnit.NANOSECONDS.toMillis(nanos)));
+          }
+        },
+        directExecutor());
+    return result;
+  }
 
-      try {
-        JSONObject o = serializeException(we);
-        response.setValue(o);
-      } catch (JSONException e) {
-        level = Level.SEVERE;
-        log.warning(e.toString());
-      }
-      return response;
-    } finally {
-      String message =
-          String.format("%s  in %dms", request.toString(), System.currentTimeMillis() - startTime);
-      log.log(level, message);
+  private static LatencyHistogram latencyOf(WebDriverLikeCommand command) {
+    return Metrics.global()
+        .histogram(
+            "webdriver_command_seconds",
+            "Time to answer WebDriver commands, from receipt to response.",
+            "command",
+            command.name());
+  }
+
+  private Response createErrorResponse(
+      WebDriverLikeRequest request, WebDriverLikeCommand wdlc, Exception we) {
+    Response response = new Response();
+
+    response.setStatus(errorCodes.toStatusCode(we));
+
+    if (wdlc != null && wdlc.isSessionLess()) {
+      response.setSessionId("");
+    } else {
+      response.setSessionId(request.getSession());
+    }
+
+    try {
+      JSONObject o = serializeException(we);
+      response.setValue(o);
+    } catch (JSONException e) {
+      log.severe(request + ": " + e);
     }
+    return response;
   }
 
   private JSONObject serializeException(Throwable e) throws JSONException {
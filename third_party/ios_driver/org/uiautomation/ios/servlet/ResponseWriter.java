@@ -0,0 +1,256 @@
+// Copyright 2017 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.uiautomation.ios.servlet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.BaseEncoding;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.Map;
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openqa.selenium.remote.BeanToJsonConverter;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * Writes a {@link Response} as UTF-8 JSON directly to an output stream. The javax.json, org.json
+ * and Gson values returned by the command handlers, as well as strings, numbers, maps and
+ * collections, are streamed as they are walked, so a large value such as a page source is never
+ * copied into an intermediate string. A {@link BinaryValue} that is the value of the response, such
+ * as a screenshot, is base64-encoded straight into the stream, and a {@link StreamedValue} writes
+ * itself into it. Any other value is converted as a bean.
+ */
+final class ResponseWriter {
+  private final Writer out;
+  private final JsonWriter writer;
+  private final BeanToJsonConverter beanConverter = new BeanToJsonConverter();
+
+  /** Creates a writer to the given stream, indenting the output when {@code pretty} is set. */
+  ResponseWriter(OutputStream stream, boolean pretty) {
+    out = new BufferedWriter(new OutputStreamWriter(stream, UTF_8));
+    writer = new JsonWriter(out);
+    // Leniency lets non-finite numbers through, as the bean converter did.
+    writer.setLenient(true);
+    if (pretty) {
+      writer.setIndent("  ");
+    }
+  }
+
+  /** Writes the response and flushes the underlying stream. */
+  void write(Response response) throws IOException {
+    if (response.getValue() instanceof BinaryValue) {
+      writeBinary(response, (BinaryValue) response.getValue());
+      return;
+    }
+    if (response.getValue() instanceof StreamedValue) {
+      writeStreamed(response, (StreamedValue) response.getValue());
+      return;
+    }
+    writer.beginObject();
+    writer.name("sessionId").value(response.getSessionId());
+    writer.name("status").value(response.getStatus());
+    writer.name("state").value(response.getState());
+    writer.name("value");
+    writeValue(response.getValue());
+    writer.endObject();
+    writer.flush();
+  }
+
+  /**
+   * Writes a response whose value is binary. A JsonWriter only writes strings that it is given
+   * whole, so the members of the response are written here instead, and the bytes are encoded into
+   * the stream between the quotes of the value. Base64 needs no escaping.
+   */
+  private void writeBinary(Response response, BinaryValue value) throws IOException {
+    out.write("{\"sessionId\":");
+    out.write(quote(response.getSessionId()));
+    out.write(",\"status\":");
+    out.write(Integer.toString(response.getStatus()));
+    out.write(",\"state\":");
+    out.write(quote(response.getState()));
+    out.write(",\"value\":\"");
+    try (OutputStream encoder = BaseEncoding.base64().encodingStream(new NonClosingWriter(out))) {
+      encoder.write(value.bytes());
+    }
+    out.write("\"}");
+    out.flush();
+  }
+
+  /** Writes a response whose value writes itself, between members written here as for binary. */
+  private void writeStreamed(Response response, StreamedValue value) throws IOException {
+    out.write("{\"sessionId\":");
+    out.write(quote(response.getSessionId()));
+    out.write(",\"status\":");
+    out.write(Integer.toString(response.getStatus()));
+    out.write(",\"state\":");
+    out.write(quote(response.getState()));
+    out.write(",\"value\":");
+    value.writeTo(new NonClosingWriter(out));
+    out.write("}");
+    out.flush();
+  }
+
+  private static String quote(String value) {
+    return value == null ? "null" : new JsonPrimitive(value).toString();
+  }
+
+  private void writeValue(Object value) throws IOException {
+    if (value == null || value == JSONObject.NULL) {
+      writer.nullValue();
+    } else if (value instanceof String) {
+      writer.value((String) value);
+    } else if (value instanceof Boolean) {
+      writer.value((Boolean) value);
+    } else if (value instanceof Number) {
+      writer.value((Number) value);
+    } else if (value instanceof BinaryValue) {
+      // Only the value of a response is streamed; a nested one is rare enough to encode whole.
+      writer.value(BaseEncoding.base64().encode(((BinaryValue) value).bytes()));
+    } else if (value instanceof JsonValue) {
+      writeJavax((JsonValue) value);
+    } else if (value instanceof JsonElement) {
+      writeGson((JsonElement) value);
+    } else if (value instanceof JSONObject) {
+      JSONObject object = (JSONObject) value;
+      writer.beginObject();
+      for (Iterator<String> keys = object.keys(); keys.hasNext(); ) {
+        String key = keys.next();
+        writer.name(key);
+        writeValue(object.opt(key));
+      }
+      writer.endObject();
+    } else if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      writer.beginArray();
+      for (int i = 0; i < array.length(); i++) {
+        writeValue(array.opt(i));
+      }
+      writer.endArray();
+    } else if (value instanceof Map) {
+      writer.beginObject();
+      for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+        writer.name(String.valueOf(e.getKey()));
+        writeValue(e.getValue());
+      }
+      writer.endObject();
+    } else if (value instanceof Iterable) {
+      writer.beginArray();
+      for (Object element : (Iterable<?>) value) {
+        writeValue(element);
+      }
+      writer.endArray();
+    } else if (value.getClass().isArray()) {
+      writer.beginArray();
+      for (int i = 0; i < Array.getLength(value); i++) {
+        writeValue(Array.get(value, i));
+      }
+      writer.endArray();
+    } else if (value instanceof Enum) {
+      writer.value(((Enum<?>) value).name());
+    } else {
+      writer.jsonValue(beanConverter.convert(value));
+    }
+  }
+
+  private void writeJavax(JsonValue value) throws IOException {
+    switch (value.getValueType()) {
+      case OBJECT:
+        writer.beginObject();
+        for (Map.Entry<String, JsonValue> e : ((JsonObject) value).entrySet()) {
+          writer.name(e.getKey());
+          writeJavax(e.getValue());
+        }
+        writer.endObject();
+        break;
+      case ARRAY:
+        writer.beginArray();
+        for (JsonValue element : (JsonArray) value) {
+          writeJavax(element);
+        }
+        writer.endArray();
+        break;
+      case STRING:
+        writer.value(((JsonString) value).getString());
+        break;
+      case NUMBER:
+        writer.value(((JsonNumber) value).bigDecimalValue());
+        break;
+      case TRUE:
+        writer.value(true);
+        break;
+      case FALSE:
+        writer.value(false);
+        break;
+      case NULL:
+        writer.nullValue();
+        break;
+    }
+  }
+
+  private void writeGson(JsonElement value) throws IOException {
+    if (value.isJsonObject()) {
+      writer.beginObject();
+      for (Map.Entry<String, JsonElement> e : value.getAsJsonObject().entrySet()) {
+        writer.name(e.getKey());
+        writeGson(e.getValue());
+      }
+      writer.endObject();
+    } else if (value.isJsonArray()) {
+      writer.beginArray();
+      for (JsonElement element : value.getAsJsonArray()) {
+        writeGson(element);
+      }
+      writer.endArray();
+    } else if (value.isJsonPrimitive()) {
+      JsonPrimitive primitive = value.getAsJsonPrimitive();
+      if (primitive.isString()) {
+        writer.value(primitive.getAsString());
+      } else if (primitive.isBoolean()) {
+        writer.value(primitive.getAsBoolean());
+      } else {
+        writer.value(primitive.getAsNumber());
+      }
+    } else {
+      writer.nullValue();
+    }
+  }
+
+  /** Passes writes through to the response stream, leaving it open when closed. */
+  private static final class NonClosingWriter extends FilterWriter {
+    NonClosingWriter(Writer out) {
+      super(out);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
@@ -12,24 +12,17 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-package com.google.devtoolsdriver.devtools;
+package org.uiautomation.ios.servlet;
 
-/** An enumeration and utility for generating qualified names of methods in the devtools protocol */
-enum DevtoolsDomain {
-  CONSOLE("Console"),
-  DOM("DOM"),
-  NETWORK("Network"),
-  PAGE("Page"),
-  RUNTIME("Runtime"),
-  TIMELINE("Timeline");
+import java.io.IOException;
+import java.io.Writer;
 
-  private final String name;
-
-  private DevtoolsDomain(String name) {
-    this.name = name;
-  }
-
-  String methodName(String methodSuffix) {
-    return name + "." + methodSuffix;
-  }
+/**
+ * A response value that writes its own JSON into the response, for values too large to build in
+ * memory first, such as an HTTP Archive with its bodies.
+ */
+@FunctionalInterface
+public interface StreamedValue {
+  /** Writes the value as a single JSON value. The writer must not be closed. */
+  void writeTo(Writer out) throws IOException;
 }
@@ -13,8 +13,9 @@
  */
 package org.uiautomation.ios.servlet;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import java.util.function.BiFunction;
-import org.openqa.selenium.UnsupportedCommandException;
 import org.uiautomation.ios.IOSServerManager;
 import org.uiautomation.ios.command.AddCookieHandler;
 import org.uiautomation.ios.command.AlertHandler;
@@ -37,13 +38,16 @@ import org.uiautomation.ios.command.GetCookiesHandler;
 import org.uiautomation.ios.command.GetCurrentContextHandler;
 import org.uiautomation.ios.command.GetElementSizeHandler;
 import org.uiautomation.ios.command.GetHandler;
+import org.uiautomation.ios.command.GetHarHandler;
 import org.uiautomation.ios.command.GetLocationHandler;
+import org.uiautomation.ios.command.GetPageMetricsHandler;
 import org.uiautomation.ios.command.GetPageSizeHandler;
 import org.uiautomation.ios.command.GetPageSourceHandler;
 import org.uiautomation.ios.command.GetSessionsHandler;
 import org.uiautomation.ios.command.GetTagNameHandler;
 import org.uiautomation.ios.command.GetTextHandler;
 import org.uiautomation.ios.command.GetTitleHandler;
+import org.uiautomation.ios.command.GetTracesHandler;
 import org.uiautomation.ios.command.GetURL;
 import org.uiautomation.ios.command.GetWindowHandlesHandler;
 import org.uiautomation.ios.command.IsDisplayedHandler;
@@ -61,6 +65,7 @@ import org.uiautomation.ios.command.SetConfigurationHandler;
 import org.uiautomation.ios.command.SetCurrentContextHandler;
 import org.uiautomation.ios.command.SetFrameHandler;
 import org.uiautomation.ios.command.SetImplicitWaitTimeoutHandler;
+import org.uiautomation.ios.command.SetNetworkHandler;
 import org.uiautomation.ios.command.SetScriptTimeoutHandler;
 import org.uiautomation.ios.command.SetTimeoutHandler;
 import org.uiautomation.ios.command.SetValueHandler;
@@ -106,15 +111,19 @@ public enum WebDriverLikeCommand {
   GET_COOKIE("GET", "/session/:sessionId/cookie", GetCookiesHandler::new),
   GET_SESSION("GET", "/session/:sessionId", GetCapabilitiesHandler::new),
   GET_WINDOW_HANDLE("GET", "/session/:sessionId/window_handle", GetCurrentContextHandler::new),
+  HAR("GET", "/session/:sessionId/ios-driver/har", GetHarHandler::new),
   IMPLICIT_WAIT(
       "POST", "/session/:sessionId/timeouts/implicit_wait", SetImplicitWaitTimeoutHandler::new),
   LOCATION("GET", "/session/:sessionId/element/:reference/location", GetLocationHandler::new),
   LOG("POST", "/session/:sessionId/log", LogHandler::new),
   LOG_TYPES("GET", "/session/:sessionId/log/types", LogTypesHandler::new),
   MOVE_TO("POST", "/session/:sessionId/moveto", MoveToHandler::new),
+  NETWORK("POST", "/session/:sessionId/ios-driver/network", SetNetworkHandler::new),
   NEW_SESSION("POST", "/session", NewSessionHandler::new),
+  PAGE_METRICS("GET", "/session/:sessionId/ios-driver/pagemetrics", GetPageMetricsHandler::new),
   REFRESH("POST", "/session/:sessionId/refresh", RefreshHandler::new),
   SCREENSHOT("GET", "/session/:sessionId/screenshot", TakeScreenshotHandler::new),
+  SCREENSHOT_BINARY("GET", "/session/:sessionId/ios-driver/screenshot", TakeScreenshotHandler::new),
   SELECTED("GET", "/session/:sessionId/element/:reference/selected", IsSelectedHandler::new),
   SESSIONS("GET", "/sessions", GetSessionsHandler::new),
   SET_ALERT_TEXT("POST", "/session/:sessionId/alert_text", AlertHandler::new),
@@ -128,18 +137,37 @@ public enum WebDriverLikeCommand {
   TAG_NAME("GET", "/session/:sessionId/element/:reference/name", GetTagNameHandler::new),
   TEXT("GET", "/session/:sessionId/element/:reference/text", GetTextHandler::new),
   TITLE("GET", "/session/:sessionId/title", GetTitleHandler::new),
+  TRACES("GET", "/session/:sessionId/ios-driver/traces", GetTracesHandler::new),
   URL("POST", "/session/:sessionId/url", GetHandler::new),
   WINDOW("POST", "/session/:sessionId/window", SetCurrentContextHandler::new),
   WINDOW_HANDLES("GET", "/session/:sessionId/window_handles", GetWindowHandlesHandler::new),
   WINDOW_SIZE("GET", "/session/:sessionId/window/:windowHandle/size", GetPageSizeHandler::new);
 
+  /**
+   * The commands that have no side effects on the session or the page, which may run alongside
+   * each other.
+   */
+  private static final ImmutableSet<WebDriverLikeCommand> READ_ONLY =
+      Sets.immutableEnumSet(
+          ATTRIBUTE,
+          CSS,
+          CURRENT_URL,
+          DISPLAYED,
+          ELEMENT_SIZE,
+          ENABLED,
+          EQUAL,
+          HAR,
+          LOCATION,
+          PAGE_METRICS,
+          SELECTED,
+          SOURCE,
+          TAG_NAME,
+          TEXT,
+          TITLE,
+          TRACES);
+
   public static WebDriverLikeCommand getCommand(String method, String path) {
-    for (WebDriverLikeCommand command : values()) {
-      if (command.isGenericFormOf(method, path)) {
-        return command;
-      }
-    }
-    throw new UnsupportedCommandException("cannot find command for " + method + ", " + path);
+    return CommandRouter.getInstance().resolve(method, path).command();
   }
 
   private final String method;
@@ -157,6 +185,10 @@ public enum WebDriverLikeCommand {
     this.handlerFactory = handlerFactory;
   }
 
+  String method() {
+    return method;
+  }
+
   String path() {
     return path;
   }
@@ -165,43 +197,12 @@ public enum WebDriverLikeCommand {
     return handlerFactory.apply(driver, request);
   }
 
-  private boolean isGenericFormOf(String method, String path) {
-    String genericPath = this.path;
-    String genericMethod = this.method;
-    if (!genericMethod.equals(method)) {
-      return false;
-    }
-    String[] genericPieces = genericPath.split("/");
-    String[] pieces = path.split("/");
-    if (genericPieces.length != pieces.length) {
-      return false;
-    } else {
-      for (int i = 0; i < pieces.length; i++) {
-        String genericPiece = genericPieces[i];
-        if (genericPiece.startsWith(":")) {
-          continue;
-        } else {
-          if (!genericPiece.equals(pieces[i])) {
-            return false;
-          }
-        }
-      }
-      return true;
-    }
-  }
-
-  int getIndex(String variable) {
-    String[] pieces = path.split("/");
-    for (int i = 0; i < pieces.length; i++) {
-      String piece = pieces[i];
-      if (piece.startsWith(":") && piece.equals(variable)) {
-        return i;
-      }
-    }
-    throw new UnsupportedCommandException("cannot find the variable " + variable + " in " + path);
-  }
-
   public boolean isSessionLess() {
     return !path.contains(":sessionId");
   }
+
+  /** Returns whether the command only reads from the session and the page. */
+  public boolean isReadOnly() {
+    return READ_ONLY.contains(this);
+  }
 }
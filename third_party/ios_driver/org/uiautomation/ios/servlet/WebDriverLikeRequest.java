@@ -15,58 +15,95 @@ package org.uiautomation.ios.servlet;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import com.google.common.io.ByteStreams;
+import com.google.common.base.Optional;
 import com.google.devtoolsdriver.util.JavaxJson;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import javax.json.Json;
 import javax.json.JsonObject;
+import javax.json.JsonReader;
 import javax.servlet.http.HttpServletRequest;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriverException;
 
 public class WebDriverLikeRequest {
   private final String method;
   private final String path;
-  private final JsonObject payload;
+  private final HttpServletRequest request;
+  private final long maxPayloadBytes;
+  private final Optional<CommandRouter.Route> route;
+  private JsonObject payload;
 
-  WebDriverLikeRequest(HttpServletRequest request) throws IOException {
-    method = request.getMethod();
-    path = request.getPathInfo();
-    payload = readPayloadFromRequest(request);
+  /**
+   * Creates a request whose payload is parsed from the body of the servlet request when first
+   * asked for, failing once more than {@code maxPayloadBytes} bytes of it have been read.
+   */
+  WebDriverLikeRequest(HttpServletRequest request, long maxPayloadBytes) {
+    this.method = request.getMethod();
+    this.path = request.getPathInfo();
+    this.request = request;
+    this.maxPayloadBytes = maxPayloadBytes;
+    this.route = CommandRouter.getInstance().route(method, path);
   }
 
-  private static JsonObject readPayloadFromRequest(HttpServletRequest request) throws IOException {
-    byte[] payloadBytes = ByteStreams.toByteArray(request.getInputStream());
-    return payloadBytes.length == 0
-        ? JavaxJson.EMPTY_OBJECT
-        : JavaxJson.parseObject(new String(payloadBytes, UTF_8));
+  private JsonObject readPayloadFromRequest() throws IOException {
+    PushbackInputStream in =
+        new PushbackInputStream(
+            new BoundedInputStream(request.getInputStream(), maxPayloadBytes));
+    int first = in.read();
+    if (first == -1) {
+      return JavaxJson.EMPTY_OBJECT;
+    }
+    in.unread(first);
+    try (JsonReader reader = Json.createReader(new InputStreamReader(in, UTF_8))) {
+      return reader.readObject();
+    }
+  }
+
+  /** Returns the error of a request whose payload is larger than the maximum. */
+  static WebDriverException payloadTooLarge(long maxPayloadBytes) {
+    return new WebDriverException(
+        "the request payload exceeds the maximum of " + maxPayloadBytes + " bytes");
   }
 
   @Override
   public String toString() {
     String res = method + ":" + path;
-    if (!payload.isEmpty()) {
+    if (payload != null && !payload.isEmpty()) {
       res += "\n\tbody:" + payload;
     }
     return res;
   }
 
   public JsonObject getPayload() {
+    if (payload == null) {
+      try {
+        payload = readPayloadFromRequest();
+      } catch (IOException e) {
+        throw new WebDriverException("cannot read the request payload", e);
+      }
+    }
     return payload;
   }
 
   public WebDriverLikeCommand getGenericCommand() {
-    return WebDriverLikeCommand.getCommand(method, path);
+    return getRoute().command();
   }
 
   public String getVariableValue(String variable) {
-    WebDriverLikeCommand genericCommand = getGenericCommand();
-    int i = genericCommand.getIndex(variable);
-    String[] pieces = path.split("/");
-    return pieces[i];
+    String value = getRoute().variables().get(variable);
+    if (value == null) {
+      throw new UnsupportedCommandException(
+          "cannot find the variable " + variable + " in " + getGenericCommand().path());
+    }
+    return value;
   }
 
   public boolean hasVariable(String variable) {
-    WebDriverLikeCommand genericCommand = getGenericCommand();
-    boolean ok = genericCommand.path().contains(variable);
-    return ok;
+    return getRoute().variables().containsKey(variable);
   }
 
   public String getSession() {
@@ -76,4 +113,63 @@ public class WebDriverLikeRequest {
   public boolean hasSession() {
     return hasVariable(":sessionId");
   }
+
+  /**
+   * Returns the route the request was resolved to when it was created. An unknown command only fails
+   * here, so that it is reported like any other error of the command.
+   */
+  private CommandRouter.Route getRoute() {
+    if (!route.isPresent()) {
+      throw new UnsupportedCommandException("cannot find command for " + method + ", " + path);
+    }
+    return route.get();
+  }
+
+  /** An input stream that fails once more than a maximum number of bytes have been read. */
+  private static final class BoundedInputStream extends FilterInputStream {
+    private final long maxBytes;
+    private long count;
+
+    BoundedInputStream(InputStream in, long maxBytes) {
+      super(in);
+      this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        count(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count(n);
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count(skipped);
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    private void count(long n) {
+      count += n;
+      if (count > maxBytes) {
+        throw payloadTooLarge(maxBytes);
+      }
+    }
+  }
 }
@@ -13,6 +13,9 @@
  */
 package org.uiautomation.ios.wkrdp;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
@@ -36,18 +39,42 @@ public final class DOMContext {
 
   private final WebInspectorHelper inspector;
 
-  private RemoteWebElement window;
-  private RemoteWebElement document;
-  private RemoteWebElement iframe;
+  /**
+   * The frame the commands work on, and the main frame to return to. Immutable, so that the
+   * concurrent read-only commands, which read it without the lock, see a consistent frame.
+   */
+  private static final class Frames {
+    static final Frames NONE = new Frames(null, null, null, null, null);
 
-  private boolean isOnMainFrame = true;
-  private RemoteWebElement mainDocument;
-  private RemoteWebElement mainWindow;
+    final RemoteWebElement iframe;
+    final RemoteWebElement document;
+    final RemoteWebElement window;
+    final RemoteWebElement mainDocument;
+    final RemoteWebElement mainWindow;
+
+    Frames(
+        RemoteWebElement iframe,
+        RemoteWebElement document,
+        RemoteWebElement window,
+        RemoteWebElement mainDocument,
+        RemoteWebElement mainWindow) {
+      this.iframe = iframe;
+      this.document = document;
+      this.window = window;
+      this.mainDocument = mainDocument;
+      this.mainWindow = mainWindow;
+    }
+  }
+
+  // Replaced as a whole under the lock.
+  private volatile Frames frames = Frames.NONE;
 
   private final EventHistory eventHistory = new EventHistory();
 
   private final Lock eventsLock = new ReentrantLock();
   private final Condition pageLoadEvent = eventsLock.newCondition();
+  // Guarded by eventsLock.
+  private final List<SettableFuture<Void>> pageLoadFutures = new ArrayList<>();
 
   DOMContext(WebInspectorHelper inspector) {
     this.inspector = inspector;
@@ -67,27 +94,30 @@ public final class DOMContext {
         log.log(Level.FINE, "", e);
       }
     }
-    return document;
+    return frames.document;
+  }
+
+  boolean isReady() {
+    return isReady;
   }
 
   RemoteWebElement getWindow() {
-    return window;
+    return frames.window;
   }
 
-  public void newContext() {
-    window = null;
-    document = null;
-    iframe = null;
-    mainDocument = null;
+  public synchronized void newContext() {
+    // The main window is kept, as it was when the fields were cleared one by one.
+    frames = new Frames(null, null, null, null, frames.mainWindow);
   }
 
   @Override
   public String toString() {
+    Frames current = frames;
     StringBuilder b = new StringBuilder();
-    b.append("window " + window);
-    b.append("document " + document);
-    b.append("iframe " + iframe);
-    b.append("mainDocument " + mainDocument);
+    b.append("window " + current.window);
+    b.append("document " + current.document);
+    b.append("iframe " + current.iframe);
+    b.append("mainDocument " + current.mainDocument);
     return b.toString();
   }
 
@@ -96,6 +126,7 @@ public final class DOMContext {
     RemoteWebElement newWindow = null;
 
     // check is what changed was the context for the current frame.
+    RemoteWebElement iframe = frames.iframe;
     if (iframe != null) {
       log.info("iframe was null");
       try {
@@ -112,37 +143,33 @@ public final class DOMContext {
 
   // TODO: Cleanup. A reference to the main document of the page needs to be kept. Calling
   // getDocument again after switching to an iframe breaks the nodeId reference.
-  public void setCurrentFrame(
+  public synchronized void setCurrentFrame(
       RemoteWebElement iframe, RemoteWebElement document, RemoteWebElement window) {
-    this.iframe = iframe;
-    this.document = document;
-    this.window = window;
-
-    if (iframe != null) {
-      isOnMainFrame = false;
-    } else {
-      isOnMainFrame = true;
-    }
-
-    // switchToDefaultContent. revert to main document if it was set.
+    Frames current = frames;
     if (iframe == null && document == null) {
-      this.document = mainDocument;
-      this.window = mainWindow;
-    }
-
-    // setting the main document for the first time
-    if (iframe == null && document != null) {
-      mainDocument = document;
-      mainWindow = window;
+      // switchToDefaultContent. revert to main document if it was set.
+      frames =
+          new Frames(
+              null,
+              current.mainDocument,
+              current.mainWindow,
+              current.mainDocument,
+              current.mainWindow);
+    } else if (iframe == null) {
+      // setting the main document for the first time
+      frames = new Frames(null, document, window, document, window);
+    } else {
+      frames = new Frames(iframe, document, window, current.mainDocument, current.mainWindow);
     }
     isReady = true;
   }
 
   boolean isOnMainFrame() {
-    return isOnMainFrame;
+    return frames.iframe == null;
   }
 
   synchronized void domHasChanged(Event e) {
+    RemoteWebElement iframe = frames.iframe;
     try {
       if (e instanceof ChildNodeRemoved) {
         ChildNodeRemoved removed = (ChildNodeRemoved) e;
@@ -197,6 +224,7 @@ public final class DOMContext {
 
   void frameDied() {
     // if that's the one we're working on, deselect it.
+    RemoteWebElement iframe = frames.iframe;
     if (iframe != null) {
       if (!iframe.exists()) {
         isReady = true;
@@ -215,17 +243,35 @@ public final class DOMContext {
     }
   }
 
+  /** Returns a future completed by the next page load event. */
+  ListenableFuture<Void> nextLoadEvent() {
+    SettableFuture<Void> loaded = SettableFuture.create();
+    eventsLock.lock();
+    try {
+      pageLoadFutures.add(loaded);
+    } finally {
+      eventsLock.unlock();
+    }
+    return loaded;
+  }
+
   Lock eventsLock() {
     return eventsLock;
   }
 
   void signalNewPageLoadReceived() {
+    List<SettableFuture<Void>> loaded;
     eventsLock.lock();
     try {
       reset();
       pageLoadEvent.signalAll();
+      loaded = new ArrayList<>(pageLoadFutures);
+      pageLoadFutures.clear();
     } finally {
       eventsLock.unlock();
     }
+    for (SettableFuture<Void> future : loaded) {
+      future.set(null);
+    }
   }
 }
@@ -14,10 +14,16 @@
 
 package org.uiautomation.ios.wkrdp;
 
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.devtoolsdriver.devtools.Runtime.callArgument;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.devtoolsdriver.devtools.DOM;
 import com.google.devtoolsdriver.devtools.DevtoolsCommand;
 import com.google.devtoolsdriver.devtools.DevtoolsEvent;
@@ -28,10 +34,13 @@ import com.google.devtoolsdriver.util.JavaxJson;
 import com.google.devtoolsdriver.webdriver.Browser;
 import com.google.devtoolsdriver.webdriver.BrowserException;
 import com.google.devtoolsdriver.webdriver.PageId;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 import javax.json.JsonArray;
@@ -45,8 +54,6 @@ import org.openqa.selenium.WebDriverException;
 import org.uiautomation.ios.ServerSideSession;
 import org.uiautomation.ios.command.SetScriptTimeoutHandler;
 import org.uiautomation.ios.servlet.WebDriverLikeCommand;
-import org.uiautomation.ios.wkrdp.events.ChildIframeInserted;
-import org.uiautomation.ios.wkrdp.events.ChildNodeRemoved;
 import org.uiautomation.ios.wkrdp.events.Event;
 import org.uiautomation.ios.wkrdp.events.EventFactory;
 import org.uiautomation.ios.wkrdp.model.NodeId;
@@ -61,12 +68,22 @@ public final class WebInspectorHelper implements Consumer<DevtoolsEvent> {
   private static final Duration DEFAULT_COMMAND_TIMEOUT = Duration.ofSeconds(60);
   private static final Duration DEFAULT_SCRIPT_TIMEOUT = Duration.ofSeconds(30);
   private static final Duration DEFAULT_PAGE_LOAD_TIMEOUT = Duration.ofSeconds(300);
+  private static final Duration LOAD_EVENT_TIMEOUT = Duration.ofSeconds(30);
   private static final ImmutableSet<String> PRIMITIVE_TYPES =
       ImmutableSet.of("boolean", "number", "string");
 
+  /** Stops the navigations waiting for a load event that does not come. */
+  private static final ScheduledExecutorService LOAD_EVENT_TIMEOUT_EXECUTOR =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("load-event-timeout-%d")
+              .setDaemon(true)
+              .build());
+
   private final ServerSideSession session;
   private final DOMContext context;
   private final Browser browser;
+  private volatile boolean canAwaitPromises = true;
 
   public WebInspectorHelper(Browser browser, ServerSideSession session) {
     this.session = session;
@@ -86,6 +103,36 @@ public final class WebInspectorHelper implements Consumer<DevtoolsEvent> {
     }
   }
 
+  /**
+   * Sends the command without blocking the calling thread, returning a future of the response that
+   * fails with a {@link WebDriverException}.
+   */
+  public ListenableFuture<JsonObject> sendCommandAsync(DevtoolsCommand command, Duration timeout) {
+    ListenableFuture<JsonObject> response =
+        Futures.transform(
+            browser.sendCommandAsync(command, timeout), result -> result.json(), directExecutor());
+    return Futures.catchingAsync(
+        response,
+        BrowserException.class,
+        e -> Futures.immediateFailedFuture(new WebDriverException(e)),
+        directExecutor());
+  }
+
+  /** Sends the command as {@link #sendCommandAsync(DevtoolsCommand, Duration)} does. */
+  public ListenableFuture<JsonObject> sendCommandAsync(DevtoolsCommand command) {
+    return sendCommandAsync(command, DEFAULT_COMMAND_TIMEOUT);
+  }
+
+  /** Returns whether the debugger has not yet been seen to ignore requests to await promises. */
+  public boolean canAwaitPromises() {
+    return canAwaitPromises;
+  }
+
+  /** Records that the debugger returns promises without awaiting them. */
+  public void setCannotAwaitPromises() {
+    canAwaitPromises = false;
+  }
+
   public PageId getPageIdentifier() {
     return browser.activePage();
   }
@@ -105,6 +152,75 @@ public final class WebInspectorHelper implements Consumer<DevtoolsEvent> {
     return result;
   }
 
+  /**
+   * Returns the document as {@link #getDocument()} does, without blocking while it is retrieved
+   * and loads; the document is polled for its ready state from the executor.
+   */
+  public ListenableFuture<RemoteWebElement> getDocumentAsync(Executor executor) {
+    if (!context.isReady()) {
+      // A frame is being replaced; wait for it as the blocking call does, rare as it is.
+      ListenableFutureTask<RemoteWebElement> task = ListenableFutureTask.create(this::getDocument);
+      executor.execute(task);
+      return task;
+    }
+    RemoteWebElement document = context.getDocument();
+    if (document != null) {
+      return Futures.immediateFuture(document);
+    }
+    long deadline = System.currentTimeMillis() + DEFAULT_PAGE_LOAD_TIMEOUT.toMillis();
+    return Futures.transform(
+        retrieveDocumentAndCheckReadyAsync(null, deadline, executor),
+        result -> {
+          context.setCurrentFrame(null, result, getMainWindow());
+          return result;
+        },
+        executor);
+  }
+
+  private ListenableFuture<RemoteWebElement> retrieveDocumentAndCheckReadyAsync(
+      RemoteWebElement element, long deadline, Executor executor) {
+    if (deadline > 0 && System.currentTimeMillis() > deadline) {
+      return Futures.immediateFailedFuture(
+          new TimeoutException("Timeout waiting to get the document."));
+    }
+    ListenableFuture<RemoteWebElement> document =
+        element != null
+            ? Futures.immediateFuture(element)
+            : Futures.transform(
+                sendCommandAsync(DOM.getDocument()),
+                result ->
+                    new RemoteWebElement(
+                        new NodeId(result.getJsonObject("root").getInt("nodeId")), this),
+                directExecutor());
+    ListenableFuture<RemoteWebElement> ready =
+        Futures.transformAsync(
+            document,
+            doc ->
+                Futures.transformAsync(
+                    doc.getRemoteObjectAsync(executor),
+                    remoteObject ->
+                        Futures.transformAsync(
+                            remoteObject.<String>callAsync(".readyState", executor),
+                            readyState ->
+                                "complete".equals(readyState)
+                                    ? Futures.immediateFuture(doc)
+                                    : retrieveDocumentAndCheckReadyAsync(doc, deadline, executor),
+                            executor),
+                    directExecutor()),
+            directExecutor());
+    return Futures.catchingAsync(
+        ready,
+        WebDriverException.class,
+        e -> {
+          if (e instanceof TimeoutException) {
+            throw e;
+          }
+          log.info("Caught exception waiting for document to be ready. Retrying...: " + e);
+          return retrieveDocumentAndCheckReadyAsync(null, deadline, executor);
+        },
+        executor);
+  }
+
   private RemoteWebElement getMainWindow() {
     return new RemoteWebElement(new NodeId(0), this);
   }
@@ -151,6 +267,37 @@ public final class WebInspectorHelper implements Consumer<DevtoolsEvent> {
     }
   }
 
+  /**
+   * Navigates as {@link #get} does, without blocking while the page loads. The load event is
+   * awaited for at most {@link #LOAD_EVENT_TIMEOUT}, after which the document is fetched anyway.
+   */
+  public ListenableFuture<Void> getAsync(String url, Executor executor) {
+    // Listen for the load event before navigating, so that it cannot be missed.
+    ListenableFuture<Void> loaded = context.nextLoadEvent();
+    return Futures.transformAsync(
+        sendCommandAsync(Page.navigate(url)),
+        response -> {
+          context.newContext();
+          checkForPageLoad();
+          ListenableFuture<Void> waited =
+              Futures.catching(
+                  Futures.withTimeout(
+                      loaded,
+                      LOAD_EVENT_TIMEOUT.toMillis(),
+                      TimeUnit.MILLISECONDS,
+                      LOAD_EVENT_TIMEOUT_EXECUTOR),
+                  java.util.concurrent.TimeoutException.class,
+                  e -> null,
+                  directExecutor());
+          // wait for everything to be ready by fetching the doc.
+          return Futures.transformAsync(
+              waited,
+              v -> Futures.transform(getDocumentAsync(executor), d -> null, directExecutor()),
+              executor);
+        },
+        executor);
+  }
+
   public String getCurrentUrl() {
     RemoteWebElement document = getDocument();
     String f = "(function(arg) { var url=this.URL;return url;})";
@@ -171,6 +318,27 @@ public final class WebInspectorHelper implements Consumer<DevtoolsEvent> {
     }
   }
 
+  /**
+   * Executes the script without holding a thread while the document loads, the arguments are
+   * resolved or the script runs in the page; the result is cast on the given executor.
+   */
+  public ListenableFuture<Object> executeScriptAsync(
+      String script, JsonArray args, Executor executor) {
+    ListenableFuture<ImmutableList<CallArgument>> arguments =
+        Futures.catchingAsync(
+            processScriptArgumentsAsync(args, executor),
+            Exception.class,
+            e ->
+                Futures.immediateFailedFuture(
+                    e instanceof WebDriverException ? e : new WebDriverException(e)),
+            directExecutor());
+    return Futures.transform(
+        Futures.transformAsync(
+            arguments, a -> getScriptResponseAsync(script, a, executor), directExecutor()),
+        this::cast,
+        executor);
+  }
+
   private ImmutableList.Builder<CallArgument> toBuilder(ImmutableList<CallArgument> args) {
     return ImmutableList.<CallArgument>builder().addAll(args);
   }
@@ -180,12 +348,80 @@ public final class WebInspectorHelper implements Consumer<DevtoolsEvent> {
   }
 
   private JsonObject getScriptResponse(String script, ImmutableList<CallArgument> arguments) {
+    JsonObject response = sendCommand(getScriptCommand(script, arguments), getScriptTimeout());
+    checkForJSErrors(response);
+    return response;
+  }
+
+  private ListenableFuture<JsonObject> getScriptResponseAsync(
+      String script, ImmutableList<CallArgument> arguments, Executor executor) {
+    return Futures.transform(
+        Futures.transformAsync(
+            getScriptCommandAsync(script, arguments, executor),
+            cmd -> sendCommandAsync(cmd, getScriptTimeout()),
+            directExecutor()),
+        response -> {
+          checkForJSErrors(response);
+          return response;
+        },
+        directExecutor());
+  }
+
+  private DevtoolsCommand getScriptCommand(String script, ImmutableList<CallArgument> arguments) {
     RemoteWebElement document = getDocument();
-    if (!context.isOnMainFrame()) {
+    if (context.isOnMainFrame()) {
+      return getScriptCommand(script, arguments, document.getRemoteObject(), null);
+    }
+    return getScriptCommand(
+        script, arguments, document.getRemoteObject(), context.getWindow().getRemoteObject());
+  }
+
+  /**
+   * Returns the command as {@link #getScriptCommand(String, ImmutableList)} does, without blocking
+   * while the document loads or the objects of the document and window are resolved.
+   */
+  private ListenableFuture<DevtoolsCommand> getScriptCommandAsync(
+      String script, ImmutableList<CallArgument> arguments, Executor executor) {
+    return Futures.transformAsync(
+        getDocumentAsync(executor),
+        document -> {
+          ListenableFuture<RemoteObject> documentObject = document.getRemoteObjectAsync(executor);
+          if (context.isOnMainFrame()) {
+            return Futures.transform(
+                documentObject,
+                d -> getScriptCommand(script, arguments, d, null),
+                directExecutor());
+          }
+          ListenableFuture<RemoteObject> windowObject =
+              context.getWindow().getRemoteObjectAsync(executor);
+          return Futures.whenAllSucceed(documentObject, windowObject)
+              .call(
+                  () ->
+                      getScriptCommand(
+                          script,
+                          arguments,
+                          Futures.getDone(documentObject),
+                          Futures.getDone(windowObject)),
+                  directExecutor());
+        },
+        directExecutor());
+  }
+
+  /**
+   * Returns the command calling the script on the document; outside of the main frame, the script
+   * sees the document and window of the frame, which are passed as the last arguments.
+   */
+  private static DevtoolsCommand getScriptCommand(
+      String script,
+      ImmutableList<CallArgument> arguments,
+      RemoteObject document,
+      RemoteObject window) {
+    if (window != null) {
       arguments =
-          toBuilder(arguments)
-              .add(callArgument().withObjectId(document.getRemoteObject().getId()))
-              .add(callArgument().withObjectId(context.getWindow().getRemoteObject().getId()))
+          ImmutableList.<CallArgument>builder()
+              .addAll(arguments)
+              .add(callArgument().withObjectId(document.getId()))
+              .add(callArgument().withObjectId(window.getId()))
               .build();
       String contextObject =
           "{'document': arguments["
@@ -197,13 +433,9 @@ public final class WebInspectorHelper implements Consumer<DevtoolsEvent> {
     }
 
     String funcDec = "(function() { " + script + "})";
-    DevtoolsCommand cmd =
-        Runtime.callFunctionOn(document.getRemoteObject().getId(), funcDec)
-            .withArguments(arguments)
-            .withReturnByValue(false);
-    JsonObject response = sendCommand(cmd, getScriptTimeout());
-    checkForJSErrors(response);
-    return response;
+    return Runtime.callFunctionOn(document.getId(), funcDec)
+        .withArguments(arguments)
+        .withReturnByValue(false);
   }
 
   public void checkForJSErrors(JsonObject response) {
@@ -229,21 +461,67 @@ public final class WebInspectorHelper implements Consumer<DevtoolsEvent> {
       } else if (ValueType.ARRAY.equals(arg.getValueType())) {
         JsonObject array = getScriptResponse("return " + arg + ";");
         argsBuilder.add(callArgument().withObjectId(getResponseBody(array).getString("objectId")));
-      } else if (ValueType.FALSE.equals(arg.getValueType())) {
-        argsBuilder.add(callArgument().withValue(false));
-      } else if (ValueType.TRUE.equals(arg.getValueType())) {
-        argsBuilder.add(callArgument().withValue(true));
-      } else if (ValueType.NUMBER.equals(arg.getValueType())) {
-        argsBuilder.add(callArgument().withValue(((JsonNumber) arg).longValue()));
-      } else if (ValueType.STRING.equals(arg.getValueType())) {
-        argsBuilder.add(callArgument().withValue(((JsonString) arg).getString()));
       } else {
-        throw new WebDriverException("Unsupported argument type: " + arg.getValueType());
+        argsBuilder.add(toCallArgument(arg));
       }
     }
     return argsBuilder.build();
   }
 
+  /** Returns the argument passing a value that is neither an element nor an array. */
+  private static CallArgument toCallArgument(JsonValue arg) {
+    if (ValueType.FALSE.equals(arg.getValueType())) {
+      return callArgument().withValue(false);
+    } else if (ValueType.TRUE.equals(arg.getValueType())) {
+      return callArgument().withValue(true);
+    } else if (ValueType.NUMBER.equals(arg.getValueType())) {
+      return callArgument().withValue(((JsonNumber) arg).longValue());
+    } else if (ValueType.STRING.equals(arg.getValueType())) {
+      return callArgument().withValue(((JsonString) arg).getString());
+    } else {
+      throw new WebDriverException("Unsupported argument type: " + arg.getValueType());
+    }
+  }
+  /**
+   * Resolves the arguments as {@link #processScriptArguments} does, without blocking while the
+   * elements and arrays among them are resolved in the page.
+   */
+  private ListenableFuture<ImmutableList<CallArgument>> processScriptArgumentsAsync(
+      JsonArray args, Executor executor) {
+    List<ListenableFuture<CallArgument>> arguments = new ArrayList<>();
+    for (JsonValue arg : args) {
+      if (ValueType.OBJECT.equals(arg.getValueType())) {
+        JsonObject jsonArg = (JsonObject) arg;
+        if (jsonArg.containsKey("ELEMENT")) {
+          NodeId n = new NodeId(Integer.parseInt(jsonArg.getString("ELEMENT").split("_")[1]));
+          RemoteWebElement rwep = new RemoteWebElement(n, this);
+          arguments.add(
+              Futures.transform(
+                  rwep.getRemoteObjectAsync(executor),
+                  o -> callArgument().withObjectId(o.getId()),
+                  directExecutor()));
+        } else {
+          log.info("JsonObject without ELEMENT tag" + jsonArg);
+        }
+      } else if (ValueType.ARRAY.equals(arg.getValueType())) {
+        arguments.add(
+            Futures.transform(
+                getScriptResponseAsync("return " + arg + ";", ImmutableList.of(), executor),
+                array -> callArgument().withObjectId(getResponseBody(array).getString("objectId")),
+                directExecutor()));
+      } else {
+        try {
+          arguments.add(Futures.immediateFuture(toCallArgument(arg)));
+        } catch (WebDriverException e) {
+          return Futures.immediateFailedFuture(e);
+        }
+      }
+    }
+    return Futures.transform(
+        Futures.allAsList(arguments), ImmutableList::copyOf, directExecutor());
+  }
+
+
   private JsonObject getResponseBody(JsonObject response) {
     JsonObject body = null;
     try {
@@ -312,9 +590,7 @@ public final class WebInspectorHelper implements Consumer<DevtoolsEvent> {
           return (T) new RemoteObject(body.getString("objectId"), this);
         } else {
           RemoteObject ro = new RemoteObject(body.getString("objectId"), this);
-
-          JsonElement o = new JsonParser().parse(ro.stringify());
-          return (T) o;
+          return (T) JavaxJson.toGson(ro.toJsonValue());
         }
       }
       return (T) new RemoteObject(body.getString("objectId"), this);
@@ -429,14 +705,14 @@ public final class WebInspectorHelper implements Consumer<DevtoolsEvent> {
 
   @Override
   public void accept(DevtoolsEvent event) {
-    Event e = EventFactory.createEvent(event);
-    if ((e instanceof ChildIframeInserted || e instanceof ChildNodeRemoved)) {
-      context.domHasChanged(e);
+    Optional<Event> e = EventFactory.createEvent(event);
+    if (e.isPresent()) {
+      context.domHasChanged(e.get());
     }
-    if ("Page.frameDetached".equals(event.method())) {
+    if (Page.FrameDetachedEvent.METHOD.equals(event.method())) {
       context.frameDied();
     }
-    if ("Page.loadEventFired".equals(event.method())) {
+    if (Page.LoadEventFiredEvent.METHOD.equals(event.method())) {
       context.signalNewPageLoadReceived();
     }
   }
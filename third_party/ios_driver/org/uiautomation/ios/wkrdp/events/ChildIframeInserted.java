@@ -13,17 +13,17 @@
  */
 package org.uiautomation.ios.wkrdp.events;
 
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.google.devtoolsdriver.devtools.DevtoolsEvent;
+import javax.json.JsonObject;
 import org.uiautomation.ios.wkrdp.model.NodeId;
 
 public final class ChildIframeInserted extends NodeEvent {
   private final NodeId contentDocument;
 
-  public ChildIframeInserted(JSONObject message) throws JSONException {
+  public ChildIframeInserted(DevtoolsEvent message) {
     super(message);
-    JSONObject params = message.optJSONObject("params").getJSONObject("node");
-    JSONObject json = params.getJSONObject("contentDocument");
+    JsonObject node = message.params().getJsonObject("node");
+    JsonObject json = node.getJsonObject("contentDocument");
     contentDocument = new NodeId(json.getInt("nodeId"));
   }
 
@@ -13,11 +13,10 @@
  */
 package org.uiautomation.ios.wkrdp.events;
 
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.google.devtoolsdriver.devtools.DevtoolsEvent;
 
 public class ChildNodeRemoved extends NodeEvent {
-  public ChildNodeRemoved(JSONObject message) throws JSONException {
+  public ChildNodeRemoved(DevtoolsEvent message) {
     super(message);
   }
 }
@@ -13,13 +13,13 @@
  */
 package org.uiautomation.ios.wkrdp.events;
 
-import org.json.JSONObject;
+import com.google.devtoolsdriver.devtools.DevtoolsEvent;
 
 public class Event {
-  private final JSONObject raw;
+  private final DevtoolsEvent raw;
   private final long timestamp;
 
-  public Event(JSONObject raw) {
+  public Event(DevtoolsEvent raw) {
     this.raw = raw;
     timestamp = System.currentTimeMillis();
   }
@@ -30,6 +30,6 @@ public class Event {
 
   @Override
   public String toString() {
-    return raw.optString("method") + " " + raw;
+    return raw.method() + " " + raw.params();
   }
 }
@@ -13,70 +13,56 @@
  */
 package org.uiautomation.ios.wkrdp.events;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
 import com.google.devtoolsdriver.devtools.DevtoolsEvent;
-import com.google.devtoolsdriver.util.JavaxJson;
-import java.lang.reflect.Constructor;
-import javax.json.Json;
+import java.util.function.Function;
 import javax.json.JsonObject;
-import org.json.JSONObject;
 import org.openqa.selenium.WebDriverException;
 
-public class EventFactory {
+/**
+ * Decodes the devtools events that the DOM context tracks. Decoders are looked up by method name,
+ * so events with any other method are never decoded.
+ */
+public final class EventFactory {
   private static final String NODE_REMOVED = "DOM.childNodeRemoved";
   private static final String NODE_INSERTED = "DOM.childNodeInserted";
 
-  public static Event createEvent(DevtoolsEvent event) {
-    JsonObject obj =
-        Json.createObjectBuilder()
-            .add("method", event.method())
-            .add("params", event.params())
-            .build();
+  @VisibleForTesting
+  static final ImmutableMap<String, Function<DevtoolsEvent, Optional<Event>>> DECODERS =
+      ImmutableMap.of(
+          NODE_REMOVED, event -> Optional.of(new ChildNodeRemoved(event)),
+          NODE_INSERTED, EventFactory::decodeNodeInserted);
+
+  /**
+   * Decodes the event into its {@link Event} subclass, or returns absent if the event is not one
+   * the DOM context tracks.
+   */
+  public static Optional<Event> createEvent(DevtoolsEvent event) {
+    Function<DevtoolsEvent, Optional<Event>> decoder = DECODERS.get(event.method());
+    if (decoder == null) {
+      return Optional.absent();
+    }
     try {
-      return createObject(JavaxJson.toOrgJson(obj));
-    } catch (Exception e) {
+      return decoder.apply(event);
+    } catch (RuntimeException e) {
       throw new WebDriverException(
           "Error creating an event generated by the webview: " + event, e);
     }
   }
 
-  private static Event createObject(JSONObject message) throws Exception {
-    Class<? extends Event> clazz = getAssociatedEvent(message);
-
-    Class<?>[] parameterTypes = new Class<?>[] {JSONObject.class};
-    Object[] parameters = new JSONObject[] {message};
-
-    Constructor<? extends Event> constructor = clazz.getConstructor(parameterTypes);
-    return constructor.newInstance(parameters);
-  }
-
-  private static Class<? extends Event> getAssociatedEvent(JSONObject message) {
-    String method = message.optString("method");
-
-    if (NODE_REMOVED.equals(method)) {
-      return ChildNodeRemoved.class;
+  private static Optional<Event> decodeNodeInserted(DevtoolsEvent event) {
+    JsonObject node = event.params().getJsonObject("node");
+    if (node == null) {
+      return Optional.absent();
     }
-
-    if (isFrameOrIFrame(message)) {
-      return ChildIframeInserted.class;
+    String nodeName = node.getString("nodeName", "");
+    if ("IFRAME".equals(nodeName) || "FRAME".equals(nodeName)) {
+      return Optional.of(new ChildIframeInserted(event));
     }
-
-    return Event.class;
+    return Optional.absent();
   }
 
-  private static boolean isFrameOrIFrame(JSONObject message) {
-    String method = message.optString("method");
-    JSONObject params = message.optJSONObject("params");
-
-    if (NODE_INSERTED.equals(method)
-        && params != null
-        && "IFRAME".equals(params.optJSONObject("node").optString("nodeName"))) {
-      return true;
-    }
-    if (NODE_INSERTED.equals(method)
-        && params != null
-        && "FRAME".equals(params.optJSONObject("node").optString("nodeName"))) {
-      return true;
-    }
-    return false;
-  }
+  private EventFactory() {}
 }
@@ -14,9 +14,9 @@
 
 package org.uiautomation.ios.wkrdp.events;
 
+import com.google.devtoolsdriver.devtools.DevtoolsEvent;
 import java.util.logging.Logger;
-import org.json.JSONException;
-import org.json.JSONObject;
+import javax.json.JsonObject;
 import org.uiautomation.ios.wkrdp.model.NodeId;
 
 abstract class NodeEvent extends Event {
@@ -25,16 +25,16 @@ abstract class NodeEvent extends Event {
   private final NodeId node;
   private final NodeId parent;
 
-  NodeEvent(JSONObject message) throws JSONException {
+  NodeEvent(DevtoolsEvent message) {
     super(message);
-    JSONObject params = message.optJSONObject("params");
-    if (params == null) {
+    JsonObject params = message.params();
+    if (params.isEmpty()) {
       log.severe("Cannot parse " + message);
     }
     int parentNodeId = params.getInt("parentNodeId");
 
-    if (params.has("node")) {
-      params = params.getJSONObject("node");
+    if (params.containsKey("node")) {
+      params = params.getJsonObject("node");
     }
     int nodeId = params.getInt("nodeId");
 
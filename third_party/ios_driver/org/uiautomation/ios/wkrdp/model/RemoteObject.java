@@ -14,11 +14,15 @@
 package org.uiautomation.ios.wkrdp.model;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.devtoolsdriver.devtools.DOM;
 import com.google.devtoolsdriver.devtools.DevtoolsCommand;
 import com.google.devtoolsdriver.devtools.Runtime;
 import com.google.devtoolsdriver.webdriver.JsAtoms;
+import java.util.concurrent.Executor;
 import javax.json.JsonObject;
+import javax.json.JsonValue;
 import org.json.JSONException;
 import org.uiautomation.ios.wkrdp.WebInspectorHelper;
 
@@ -38,30 +42,56 @@ public final class RemoteObject {
 
   public RemoteWebElement getWebElement() throws JSONException, Exception {
     JsonObject result = inspector.sendCommand(DOM.requestNode(objectId));
-    int id = result.getInt("nodeId");
+    int id = DOM.RequestNodeResult.of(result).nodeId();
     NodeId nodeId = new NodeId(id);
     return new RemoteWebElement(nodeId, this, inspector);
   }
 
+  /** Returns the element of the object without blocking, as {@link #getWebElement} does. */
+  public ListenableFuture<RemoteWebElement> getWebElementAsync(Executor executor) {
+    return Futures.transformAsync(
+        inspector.sendCommandAsync(DOM.requestNode(objectId)),
+        result -> {
+          int id = DOM.RequestNodeResult.of(result).nodeId();
+          return Futures.immediateFuture(new RemoteWebElement(new NodeId(id), this, inspector));
+        },
+        executor);
+  }
+
   @Override
   public String toString() {
     return objectId;
   }
 
   public <T> T call(String function) {
-    String f = "(function(arg) { var res = this" + function + "; return res;})";
-    DevtoolsCommand cmd =
-        Runtime.callFunctionOn(getId(), f)
-            .withReturnByValue(false)
-            .withArguments(ImmutableList.of(Runtime.callArgument().withValue("")));
-    JsonObject response = inspector.sendCommand(cmd);
+    JsonObject response = inspector.sendCommand(callCommand(function));
     return inspector.cast(response);
   }
 
-  public String stringify() {
-    String f = "(function() { var res = " + JsAtoms.stringify("this") + "; return res;})";
-    DevtoolsCommand cmd = Runtime.callFunctionOn(getId(), f).withReturnByValue(false);
-    JsonObject response = inspector.sendCommand(cmd);
-    return inspector.cast(response);
+  /** Reads the property without blocking, casting the result on the executor. */
+  public <T> ListenableFuture<T> callAsync(String function, Executor executor) {
+    return Futures.transform(
+        inspector.sendCommandAsync(callCommand(function)),
+        response -> inspector.<T>cast(response),
+        executor);
+  }
+
+  private DevtoolsCommand callCommand(String function) {
+    String f = "(function(arg) { var res = this" + function + "; return res;})";
+    return Runtime.callFunctionOn(getId(), f)
+        .withReturnByValue(false)
+        .withArguments(ImmutableList.of(Runtime.callArgument().withValue("")));
+  }
+
+  /**
+   * Returns the JSON value of the object, as serialized by the stringify atom. The value is
+   * returned as part of the response, rather than as a string to parse again.
+   */
+  public JsonValue toJsonValue() {
+    String f = "(function() { return JSON.parse(" + JsAtoms.stringify("this") + ");})";
+    DevtoolsCommand cmd = Runtime.callFunctionOn(getId(), f).withReturnByValue(true);
+    JsonObject result = inspector.sendCommand(cmd).getJsonObject("result");
+    JsonValue value = result.get("value");
+    return value != null ? value : JsonValue.NULL;
   }
 }
@@ -13,17 +13,26 @@
  */
 package org.uiautomation.ios.wkrdp.model;
 
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.devtoolsdriver.devtools.Runtime.callArgument;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.devtoolsdriver.devtools.DOM;
 import com.google.devtoolsdriver.devtools.DevtoolsCommand;
 import com.google.devtoolsdriver.devtools.Runtime;
 import com.google.devtoolsdriver.devtools.Runtime.CallArgument;
 import com.google.devtoolsdriver.util.JavaxJson;
 import com.google.devtoolsdriver.webdriver.JsAtoms;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
 import org.openqa.selenium.Dimension;
@@ -35,6 +44,20 @@ import org.openqa.selenium.WebDriverException;
 import org.uiautomation.ios.wkrdp.WebInspectorHelper;
 
 public class RemoteWebElement {
+  private static final Logger log = Logger.getLogger(RemoteWebElement.class.getName());
+
+  /** Extra time the debugger is given to answer beyond the in-page wait for a locator. */
+  private static final Duration LOCATOR_WAIT_SLACK = Duration.ofSeconds(10);
+
+  private static final String XPATH_FUNCTION =
+      "(function(xpath, element) { var result = "
+          + JsAtoms.xpath("xpath", "element")
+          + ";"
+          + "return result;})";
+
+  private static final String CLICK_FUNCTION =
+      "(function(arg) { var text = " + JsAtoms.tap("arg") + "; return text;})";
+
   private final WebInspectorHelper inspector;
   private final NodeId nodeId;
   private RemoteObject remoteObject;
@@ -64,15 +87,33 @@ public class RemoteWebElement {
 
   private void clickAtom() {
     try {
-      String f = "(function(arg) { var text = " + JsAtoms.tap("arg") + "; return text;})";
       JsonObject response =
-          getInspectorResponse(f, true, callArgument().withObjectId(getRemoteObject().getId()));
+          getInspectorResponse(
+              CLICK_FUNCTION, true, callArgument().withObjectId(getRemoteObject().getId()));
       inspector.cast(response);
     } catch (Exception e) {
       throw new WebDriverException(e);
     }
   }
 
+  /** Clicks the element as {@link #click} does, without blocking while the page handles it. */
+  public ListenableFuture<Void> clickAsync(Executor executor) {
+    ListenableFuture<JsonObject> response =
+        getInspectorResponseAsync(
+            CLICK_FUNCTION,
+            true,
+            remoteObject -> ImmutableList.of(callArgument().withObjectId(remoteObject.getId())),
+            executor);
+    return Futures.transform(
+        response,
+        r -> {
+          inspector.cast(r);
+          inspector.checkForPageLoad();
+          return null;
+        },
+        executor);
+  }
+
   public void moveTo() {
     String f = "(function(arg) { var text = " + JsAtoms.moveMouse("arg") + "; return text;})";
     JsonObject response =
@@ -104,6 +145,20 @@ public class RemoteWebElement {
     return remoteObject;
   }
 
+  /** Resolves the remote object of the element without blocking, as {@link #getRemoteObject}. */
+  public ListenableFuture<RemoteObject> getRemoteObjectAsync(Executor executor) {
+    if (remoteObject != null) {
+      return Futures.immediateFuture(remoteObject);
+    }
+    return Futures.transform(
+        inspector.sendCommandAsync(DOM.resolveNode(nodeId.getId())),
+        response -> {
+          remoteObject = inspector.cast(response);
+          return remoteObject;
+        },
+        executor);
+  }
+
   public String getText() throws Exception {
     String f =
         "(function(arg) { "
@@ -218,24 +273,8 @@ public class RemoteWebElement {
 
   public RemoteWebElement findElementByLinkText(String text, boolean partialMatch)
       throws Exception {
-    String ifStatement;
-    if (partialMatch) {
-      ifStatement = "if ( elements[i].innerText.indexOf(text) != -1 ){";
-    } else {
-      ifStatement = "if (text === elements[i].innerText ){";
-    }
-    String f =
-        "(function(text) { "
-            + "var elements = this.querySelectorAll('a');"
-            + "for ( var i =0;i<elements.length;i++){"
-            + ifStatement
-            + "  return elements[i];"
-            + "}" // end
-            // if
-            + "}" // end for
-            + "return null;"
-            + "})"; // end function
-    JsonObject response = getInspectorResponse(f, false, callArgument().withValue(text));
+    JsonObject response =
+        getInspectorResponse(linkTextFunction(partialMatch), false, callArgument().withValue(text));
     RemoteObject ro = inspector.cast(response);
     if (ro == null) {
       return null;
@@ -244,6 +283,54 @@ public class RemoteWebElement {
     }
   }
 
+  /**
+   * Finds the element by its link text as {@link #findElementByLinkText} does, without blocking;
+   * the future holds null if there is none.
+   */
+  public ListenableFuture<RemoteWebElement> findElementByLinkTextAsync(
+      String text, boolean partialMatch, Executor executor) {
+    ListenableFuture<JsonObject> response =
+        getInspectorResponseAsync(
+            linkTextFunction(partialMatch),
+            false,
+            remoteObject -> ImmutableList.of(callArgument().withValue(text)),
+            executor);
+    return toWebElementAsync(response, executor);
+  }
+
+  private static String linkTextFunction(boolean partialMatch) {
+    String ifStatement;
+    if (partialMatch) {
+      ifStatement = "if ( elements[i].innerText.indexOf(text) != -1 ){";
+    } else {
+      ifStatement = "if (text === elements[i].innerText ){";
+    }
+    return "(function(text) { "
+        + "var elements = this.querySelectorAll('a');"
+        + "for ( var i =0;i<elements.length;i++){"
+        + ifStatement
+        + "  return elements[i];"
+        + "}" // end
+        // if
+        + "}" // end for
+        + "return null;"
+        + "})"; // end function
+  }
+
+  /** Casts the response to an element on the executor, holding null if no node was returned. */
+  private ListenableFuture<RemoteWebElement> toWebElementAsync(
+      ListenableFuture<JsonObject> response, Executor executor) {
+    return Futures.transformAsync(
+        response,
+        r -> {
+          RemoteObject ro = inspector.cast(r);
+          return ro == null
+              ? Futures.immediateFuture(null)
+              : ro.getWebElementAsync(executor);
+        },
+        executor);
+  }
+
   public List<RemoteWebElement> findElementsByLinkText(String text, boolean partialMatch)
       throws Exception {
     String ifStatement;
@@ -277,7 +364,7 @@ public class RemoteWebElement {
   public RemoteWebElement findElementByCSSSelector(String selector) {
     JsonObject response = inspector.sendCommand(DOM.querySelector(nodeId.getId(), selector));
     // TODO freynaud
-    NodeId id = new NodeId(response.getInt("nodeId"));
+    NodeId id = new NodeId(DOM.QuerySelectorResult.of(response).nodeId());
     if (!id.exist()) {
       throw new NoSuchElementException("no element matching " + selector);
     }
@@ -285,9 +372,23 @@ public class RemoteWebElement {
     return res;
   }
 
+  /**
+   * Finds the element by CSS selector as {@link #findElementByCSSSelector} does, without blocking;
+   * the future holds null if there is none.
+   */
+  public ListenableFuture<RemoteWebElement> findElementByCSSSelectorAsync(String selector) {
+    return Futures.transform(
+        inspector.sendCommandAsync(DOM.querySelector(nodeId.getId(), selector)),
+        response -> {
+          NodeId id = new NodeId(DOM.QuerySelectorResult.of(response).nodeId());
+          return id.exist() ? new RemoteWebElement(id, inspector) : null;
+        },
+        directExecutor());
+  }
+
   public List<RemoteWebElement> findElementsByCSSSelector(String selector) {
     JsonObject response = inspector.sendCommand(DOM.querySelectorAll(nodeId.getId(), selector));
-    JsonArray nodeIds = response.getJsonArray("nodeIds");
+    JsonArray nodeIds = DOM.QuerySelectorAllResult.of(response).nodeIds();
     List<RemoteWebElement> res = new ArrayList<>();
     for (int i = 0; i < nodeIds.size(); i++) {
       NodeId id = new NodeId(nodeIds.getInt(i));
@@ -327,14 +428,9 @@ public class RemoteWebElement {
   }
 
   public RemoteWebElement findElementByXpath(String xpath) throws Exception {
-    String f =
-        "(function(xpath, element) { var result = "
-            + JsAtoms.xpath("xpath", "element")
-            + ";"
-            + "return result;})";
     JsonObject response =
         getInspectorResponse(
-            f,
+            XPATH_FUNCTION,
             false,
             callArgument().withValue(xpath),
             callArgument().withObjectId(getRemoteObject().getId()));
@@ -346,6 +442,24 @@ public class RemoteWebElement {
     }
   }
 
+  /**
+   * Finds the element by XPath as {@link #findElementByXpath} does, without blocking; the future
+   * holds null if there is none.
+   */
+  public ListenableFuture<RemoteWebElement> findElementByXpathAsync(
+      String xpath, Executor executor) {
+    ListenableFuture<JsonObject> response =
+        getInspectorResponseAsync(
+            XPATH_FUNCTION,
+            false,
+            remoteObject ->
+                ImmutableList.of(
+                    callArgument().withValue(xpath),
+                    callArgument().withObjectId(remoteObject.getId())),
+            executor);
+    return toWebElementAsync(response, executor);
+  }
+
   public List<RemoteWebElement> findElementsByXpath(String xpath) throws Exception {
     String f =
         "(function(xpath, element) { var results = "
@@ -366,6 +480,122 @@ public class RemoteWebElement {
     return res;
   }
 
+  /**
+   * Waits inside the page until a node under this element matches the locator or the timeout
+   * elapses, using a MutationObserver where the page has one and requestAnimationFrame otherwise.
+   * Returns whether the locator matched, or absent if the wait could not be awaited in the page,
+   * in which case the caller has to poll instead.
+   *
+   * @param using one of "css selector", "xpath", "link text" or "partial link text"
+   */
+  public Optional<Boolean> waitForLocator(String using, String value, Duration timeout) {
+    if (!inspector.canAwaitPromises()) {
+      return Optional.absent();
+    }
+    JsonObject response;
+    try {
+      response =
+          inspector.sendCommand(
+              waitForLocatorCommand(using, value, timeout), timeout.plus(LOCATOR_WAIT_SLACK));
+    } catch (WebDriverException e) {
+      log.log(Level.FINE, "in-page wait for locator failed, falling back to polling", e);
+      return Optional.absent();
+    }
+    return locatorMatched(response);
+  }
+
+  /** Waits inside the page as {@link #waitForLocator} does, without blocking. */
+  public ListenableFuture<Optional<Boolean>> waitForLocatorAsync(
+      String using, String value, Duration timeout, Executor executor) {
+    if (!inspector.canAwaitPromises()) {
+      return Futures.immediateFuture(Optional.<Boolean>absent());
+    }
+    ListenableFuture<Optional<Boolean>> matched =
+        Futures.transformAsync(
+            getRemoteObjectAsync(executor),
+            remoteObject ->
+                Futures.transform(
+                    inspector.sendCommandAsync(
+                        waitForLocatorCommand(using, value, timeout),
+                        timeout.plus(LOCATOR_WAIT_SLACK)),
+                    this::locatorMatched,
+                    directExecutor()),
+            executor);
+    return Futures.catching(
+        matched,
+        WebDriverException.class,
+        e -> {
+          log.log(Level.FINE, "in-page wait for locator failed, falling back to polling", e);
+          return Optional.absent();
+        },
+        directExecutor());
+  }
+
+  private Optional<Boolean> locatorMatched(JsonObject response) {
+    JsonObject result = response.getJsonObject("result");
+    if (result == null || !"boolean".equals(result.getString("type", null))) {
+      // The debugger handed back the promise itself, so it does not support awaiting promises.
+      inspector.setCannotAwaitPromises();
+      return Optional.absent();
+    }
+    return Optional.of(result.getBoolean("value"));
+  }
+
+  private DevtoolsCommand waitForLocatorCommand(String using, String value, Duration timeout) {
+    String f =
+        "(function(value, timeout) {"
+            + "var root = this;"
+            + "var matches = function() { return "
+            + locatorMatchExpression(using)
+            + "; };"
+            + "if (matches()) { return true; }"
+            + "return new Promise(function(resolve) {"
+            + "  var observer = null, done = false;"
+            + "  var finish = function(result) {"
+            + "    if (done) { return; }"
+            + "    done = true;"
+            + "    if (observer) { observer.disconnect(); }"
+            + "    clearTimeout(timer);"
+            + "    resolve(result);"
+            + "  };"
+            + "  var timer = setTimeout(function() { finish(matches()); }, timeout);"
+            + "  if (typeof MutationObserver !== 'undefined') {"
+            + "    observer = new MutationObserver(function() { if (matches()) { finish(true); } });"
+            + "    observer.observe(root, "
+            + "        {childList: true, subtree: true, attributes: true, characterData: true});"
+            + "  } else {"
+            + "    var tick = function() {"
+            + "      if (matches()) { finish(true); } else if (!done) { requestAnimationFrame(tick); }"
+            + "    };"
+            + "    requestAnimationFrame(tick);"
+            + "  }"
+            + "});"
+            + "})";
+    return Runtime.callFunctionOn(getRemoteObject().getId(), f)
+        .withArguments(
+            ImmutableList.of(
+                callArgument().withValue(value), callArgument().withValue(timeout.toMillis())))
+        .withReturnByValue(true)
+        .withAwaitPromise(true);
+  }
+
+  private static String locatorMatchExpression(String using) {
+    switch (using) {
+      case "css selector":
+        return "root.querySelector(value) != null";
+      case "xpath":
+        return JsAtoms.xpath("value", "root") + " != null";
+      case "link text":
+        return "Array.prototype.some.call(root.querySelectorAll('a'),"
+            + " function(a) { return a.innerText === value; })";
+      case "partial link text":
+        return "Array.prototype.some.call(root.querySelectorAll('a'),"
+            + " function(a) { return a.innerText.indexOf(value) != -1; })";
+      default:
+        throw new WebDriverException("NI , locator strategy " + using);
+    }
+  }
+
   public void setValueAtoms(String value) throws Exception {
     value = replaceSpecialKeys(value);
     String f =
@@ -423,4 +653,31 @@ public class RemoteWebElement {
     inspector.checkForJSErrors(response);
     return response;
   }
+
+  /**
+   * Calls the function on the element without blocking, once its remote object is resolved; the
+   * arguments are built from the remote object, and the response is checked for errors.
+   */
+  private ListenableFuture<JsonObject> getInspectorResponseAsync(
+      String javascript,
+      boolean returnByValue,
+      Function<RemoteObject, ImmutableList<CallArgument>> args,
+      Executor executor) {
+    return Futures.transformAsync(
+        getRemoteObjectAsync(executor),
+        remoteObject -> {
+          DevtoolsCommand cmd =
+              Runtime.callFunctionOn(remoteObject.getId(), javascript)
+                  .withReturnByValue(returnByValue)
+                  .withArguments(args.apply(remoteObject));
+          return Futures.transform(
+              inspector.sendCommandAsync(cmd),
+              response -> {
+                inspector.checkForJSErrors(response);
+                return response;
+              },
+              directExecutor());
+        },
+        executor);
+  }
 }